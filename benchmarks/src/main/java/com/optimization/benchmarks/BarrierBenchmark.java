@@ -0,0 +1,147 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.BarrierOptimizer;
+import com.optimization.objects.BarrierSchedule;
+import com.optimization.objects.LinearConstraintBlock;
+import com.optimization.objects.LinearEqualityConstraint;
+import com.optimization.objects.LinearInequalityConstraint;
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.NewtonCGSolver;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BarrierOptimizer} on QPs, LPs, equality-constrained QPs and n-ball projections,
+ * each over a random polytope of 2n box constraints plus m half-spaces; QPs and LPs also
+ * with an adaptive {@link BarrierSchedule}, and QPs with the polytope as a heap or off-heap
+ * {@link LinearConstraintBlock}; and QPs and LPs over the block with matrix-free Newton-CG
+ * centering ({@link NewtonCGSolver}); and QPs with L-BFGS centering, pure and with the true
+ * Hessian refreshed every 5 iterations ({@link LBFGSSolver}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BarrierBenchmark {
+    @Param({ "10", "50", "200" })
+    public int n;
+
+    /** Number of random half-spaces, as a multiple of n */
+    @Param({ "1", "4" })
+    public int mFactor;
+
+    private ObjectiveFunction qp;
+    private ObjectiveFunction lp;
+    private ObjectiveFunction nBall;
+    private LinearInequalityConstraint ineqc;
+    private LinearConstraintBlock block;
+    private LinearConstraintBlock directBlock;
+    private LinearEqualityConstraint eqc;
+    private InitialGuess origin;
+    private final BarrierSchedule adaptive = BarrierSchedule.adaptive();
+
+    @Setup
+    public void setup() {
+        qp = new ObjectiveFunction(Problems.denseQP(n, 1L));
+        lp = new ObjectiveFunction(Problems.linear(n, 3L));
+        nBall = new ObjectiveFunction(Problems.nBall(n, 4L));
+        ineqc = Problems.polytope(n, mFactor * n, 5L);
+        double[][] a = new double[ineqc.lcf.length][];
+        double[] b = new double[ineqc.lcf.length];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = ineqc.lcf[i].getWeights().toArray();
+            b[i] = -ineqc.lcf[i].getConstant();
+        }
+        block = new LinearConstraintBlock(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+        directBlock = LinearConstraintBlock.direct(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+        eqc = Problems.equalities(n, Math.max(1, n / 4), 2L);
+        origin = new InitialGuess(new double[n]);
+    }
+
+    private static PointValuePair solve(final SolverCounters counters, final OptimizationData... args) {
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(args);
+        counters.iterations += barrier.getIterations();
+        counters.newtonIterations += barrier.getNewtonIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair qp(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair lp(final SolverCounters counters) {
+        return solve(counters, lp, ineqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair equalityQP(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, eqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair nBallProjection(final SolverCounters counters) {
+        return solve(counters, nBall, ineqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair qpAdaptive(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, origin, adaptive);
+    }
+
+    @Benchmark
+    public PointValuePair lpAdaptive(final SolverCounters counters) {
+        return solve(counters, lp, ineqc, origin, adaptive);
+    }
+
+    @Benchmark
+    public PointValuePair qpBlock(final SolverCounters counters) {
+        return solve(counters, qp, block, origin);
+    }
+
+    @Benchmark
+    public PointValuePair qpDirectBlock(final SolverCounters counters) {
+        return solve(counters, qp, directBlock, origin);
+    }
+
+    @Benchmark
+    public PointValuePair qpNewtonCG(final SolverCounters counters) {
+        return solve(counters, qp, block, origin, new NewtonCGSolver());
+    }
+
+    @Benchmark
+    public PointValuePair lpNewtonCG(final SolverCounters counters) {
+        return solve(counters, lp, block, origin, new NewtonCGSolver());
+    }
+
+    @Benchmark
+    public PointValuePair qpLBFGS(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, origin, new LBFGSSolver());
+    }
+
+    @Benchmark
+    public PointValuePair qpHybrid(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, origin, new LBFGSSolver(LBFGSSolver.MEMORY_DEFAULT, 5));
+    }
+}
@@ -0,0 +1,98 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.BarrierOptimizer;
+import com.optimization.objects.LinearConstraintSet;
+import com.optimization.objects.LinearInequalityConstraint;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-solving a QP over a random polytope of 2n box constraints plus m half-spaces after one
+ * half-space changes: rebuilding the immutable {@link LinearInequalityConstraint} and solving
+ * cold, against updating a {@link LinearConstraintSet} in place and solving again with the
+ * same {@link BarrierOptimizer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintSetBenchmark {
+    @Param({ "20" })
+    public int n;
+
+    @Param({ "1000", "10000" })
+    public int m;
+
+    private ObjectiveFunction qp;
+    private double[][] a;
+    private double[] b;
+    private LinearConstraintSet set;
+    private BarrierOptimizer barrier;
+    private InitialGuess origin;
+    private Random rnd;
+
+    @Setup
+    public void setup() {
+        qp = new ObjectiveFunction(Problems.denseQP(n, 1L));
+        LinearInequalityConstraint p = Problems.polytope(n, m, 5L);
+        a = new double[p.lcf.length][];
+        b = new double[p.lcf.length];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = p.lcf[i].getWeights().toArray();
+            b[i] = -p.lcf[i].getConstant();
+        }
+        set = new LinearConstraintSet(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+        barrier = new BarrierOptimizer();
+        origin = new InitialGuess(new double[n]);
+        barrier.optimize(qp, set, origin);
+        rnd = new Random(7L);
+    }
+
+    // loosen or tighten a random half-space, keeping the origin strictly feasible
+    private int change() {
+        int k = 2 * n + rnd.nextInt(m);
+        b[k] = (b[k] == 1.0) ? 1.1 : 1.0;
+        return k;
+    }
+
+    @Benchmark
+    public PointValuePair rebuild(final SolverCounters counters) {
+        change();
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+        BarrierOptimizer cold = new BarrierOptimizer();
+        PointValuePair pvp = cold.optimize(qp, ineqc, origin);
+        counters.iterations += cold.getIterations();
+        counters.newtonIterations += cold.getNewtonIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair incremental(final SolverCounters counters) {
+        int k = change();
+        set.setBound(k, b[k]);
+        PointValuePair pvp = barrier.optimize(qp, set, origin);
+        counters.iterations += barrier.getIterations();
+        counters.newtonIterations += barrier.getNewtonIterations();
+        return pvp;
+    }
+}
@@ -0,0 +1,85 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.BarrierOptimizer;
+import com.optimization.objects.FactorQuadraticFunction;
+import com.optimization.objects.LinearEqualityConstraint;
+import com.optimization.objects.LinearInequalityConstraint;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BarrierOptimizer} on a long-only, fully invested portfolio over a k-factor risk model
+ * ({@link Problems#factorQP}): the objective as a {@link FactorQuadraticFunction}, whose Newton
+ * steps are solved by the Woodbury identity, against the same objective as a dense QP.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactorBenchmark {
+    @Param({ "200", "1000" })
+    public int n;
+
+    @Param({ "30" })
+    public int k;
+
+    private ObjectiveFunction factor;
+    private ObjectiveFunction dense;
+    private LinearInequalityConstraint longOnly;
+    private LinearEqualityConstraint budget;
+    private InitialGuess equalWeight;
+
+    @Setup
+    public void setup() {
+        FactorQuadraticFunction f = Problems.factorQP(n, k, 6L);
+        factor = new ObjectiveFunction(f);
+        dense = new ObjectiveFunction(f.toQuadraticFunction());
+        double[][] a = new double[n][n];
+        for (int j = 0; j < n; ++j) a[j][j] = -1.0;
+        longOnly = new LinearInequalityConstraint(new Array2DRowRealMatrix(a, false), new ArrayRealVector(n));
+        double[] ones = new double[n];
+        Arrays.fill(ones, 1.0);
+        budget = new LinearEqualityConstraint(new double[][] { ones }, new double[] { 1.0 });
+        double[] x0 = new double[n];
+        Arrays.fill(x0, 1.0 / n);
+        equalWeight = new InitialGuess(x0);
+    }
+
+    private static PointValuePair solve(final SolverCounters counters, final OptimizationData... args) {
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(args);
+        counters.iterations += barrier.getIterations();
+        counters.newtonIterations += barrier.getNewtonIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair dense(final SolverCounters counters) {
+        return solve(counters, dense, longOnly, budget, equalWeight);
+    }
+
+    @Benchmark
+    public PointValuePair factor(final SolverCounters counters) {
+        return solve(counters, factor, longOnly, budget, equalWeight);
+    }
+}
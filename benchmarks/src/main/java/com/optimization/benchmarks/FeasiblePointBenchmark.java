@@ -0,0 +1,65 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.ConvexOptimizer;
+import com.optimization.objects.LinearInequalityConstraint;
+import com.optimization.objects.PhaseI;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase I: {@link ConvexOptimizer#feasiblePoint} for a random polytope that does not
+ * contain the origin.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeasiblePointBenchmark {
+    @Param({ "10", "50", "200" })
+    public int n;
+
+    /** Number of random half-spaces, as a multiple of n */
+    @Param({ "1", "4" })
+    public int mFactor;
+
+    private LinearInequalityConstraint ineqc;
+
+    @Setup
+    public void setup() {
+        ineqc = Problems.shiftedPolytope(n, mFactor * n, 5L);
+    }
+
+    @Benchmark
+    public PointValuePair feasiblePoint() {
+        return ConvexOptimizer.feasiblePoint(ineqc);
+    }
+
+    @Benchmark
+    public PointValuePair smoothMaxEarlyExit() {
+        return ConvexOptimizer.feasiblePoint(ineqc, new PhaseI(PhaseI.Method.SMOOTH_MAX));
+    }
+
+    @Benchmark
+    public PointValuePair slack() {
+        return ConvexOptimizer.feasiblePoint(ineqc, new PhaseI(PhaseI.Method.SLACK));
+    }
+
+    @Benchmark
+    public PointValuePair slackMultiStart() {
+        return ConvexOptimizer.feasiblePoint(ineqc, new PhaseI(PhaseI.Method.SLACK, PhaseI.MAX_ITERATIONS_DEFAULT, 4, 5L));
+    }
+}
@@ -0,0 +1,89 @@
+package com.optimization.benchmarks;
+
+import com.optimization.util.KKTSolution;
+import com.optimization.util.KKTSolver;
+import com.optimization.util.NewtonWorkspace;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single KKT solve, through the {@link RealMatrix} API and through the in-place
+ * workspace API, for each preferred factorization.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KKTSolverBenchmark {
+    @Param({ "10", "50", "200" })
+    public int n;
+
+    /** Number of equality constraints */
+    @Param({ "0", "5" })
+    public int p;
+
+    @Param({ "CHOLESKY", "LU", "SVD" })
+    public KKTSolver.Factorization factorization;
+
+    private KKTSolver solver;
+    private RealMatrix hm, am, atm;
+    private RealVector gv, hv;
+    private double[][] h, a;
+    private double[] g, r, v, w;
+    private NewtonWorkspace ws;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1L);
+        solver = new KKTSolver(factorization);
+        h = Problems.spd(n, rnd);
+        g = Problems.gaussian(n, rnd);
+        a = Problems.gaussian(p, n, rnd);
+        r = Problems.gaussian(p, rnd);
+        v = new double[n];
+        w = new double[p];
+        hm = new Array2DRowRealMatrix(h);
+        gv = new ArrayRealVector(g);
+        if (p > 0) {
+            am = new Array2DRowRealMatrix(a);
+            atm = am.transpose();
+            hv = new ArrayRealVector(r);
+        }
+        ws = new NewtonWorkspace();
+        ws.ensure(n, p);
+    }
+
+    @Benchmark
+    public KKTSolution realMatrix() {
+        return (p == 0) ? solver.solve(hm, gv) : solver.solve(hm, am, atm, gv, hv);
+    }
+
+    @Benchmark
+    public double[] inPlace() {
+        // the in-place solve reads only the upper triangle of h, so h can be reused
+        if (p == 0) {
+            solver.solve(h, g, v, ws);
+        } else {
+            solver.solve(h, a, g, r, v, w, ws);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,84 @@
+package com.optimization.benchmarks;
+
+import com.optimization.util.Kernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Kernels} against the straightforward loops they replace: a dot product,
+ * axpy, and the rank-1 update of the upper triangle of an (n x n) matrix, as in the
+ * Hessians of the barrier and smooth-max functions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelsBenchmark {
+    @Param({ "16", "64", "256" })
+    public int n;
+
+    private double[] u;
+    private double[] v;
+    private double[][] h;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1L);
+        u = Problems.gaussian(n, rnd);
+        v = Problems.gaussian(n, rnd);
+        h = new double[n][n];
+    }
+
+    @Benchmark
+    public double dotLoop() {
+        double s = 0.0;
+        for (int j = 0; j < n; ++j) s += u[j] * v[j];
+        return s;
+    }
+
+    @Benchmark
+    public double dot() {
+        return Kernels.dot(u, 0, v, 0, n);
+    }
+
+    @Benchmark
+    public double[] axpyLoop() {
+        for (int j = 0; j < n; ++j) v[j] += 1e-9 * u[j];
+        return v;
+    }
+
+    @Benchmark
+    public double[] axpy() {
+        Kernels.axpy(1e-9, u, 0, v, 0, n);
+        return v;
+    }
+
+    @Benchmark
+    public double[][] rank1UpperLoop() {
+        for (int j = 0; j < n; ++j) {
+            final double[] hj = h[j];
+            for (int l = j; l < n; ++l) hj[l] += 1e-9 * u[j] * u[l];
+        }
+        return h;
+    }
+
+    @Benchmark
+    public double[][] rank1Upper() {
+        Kernels.rank1Upper(1e-9, u, h, n);
+        return h;
+    }
+}
@@ -0,0 +1,64 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.LinearEqualityConstraint;
+import com.optimization.objects.NewtonOptimizer;
+import com.optimization.objects.QuadraticFunction;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NewtonOptimizer} on unconstrained and equality-constrained dense QPs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NewtonBenchmark {
+    @Param({ "10", "50", "200" })
+    public int n;
+
+    /** Number of equality constraints, as a fraction of n */
+    @Param({ "0.25" })
+    public double equalityFraction;
+
+    private ObjectiveFunction qp;
+    private LinearEqualityConstraint eqc;
+
+    @Setup
+    public void setup() {
+        QuadraticFunction q = Problems.denseQP(n, 1L);
+        qp = new ObjectiveFunction(q);
+        eqc = Problems.equalities(n, Math.max(1, (int)(equalityFraction * n)), 2L);
+    }
+
+    @Benchmark
+    public PointValuePair unconstrainedQP(final SolverCounters counters) {
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pvp = newton.optimize(qp);
+        counters.newtonIterations += newton.getIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair equalityQP(final SolverCounters counters) {
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pvp = newton.optimize(qp, eqc);
+        counters.newtonIterations += newton.getIterations();
+        return pvp;
+    }
+}
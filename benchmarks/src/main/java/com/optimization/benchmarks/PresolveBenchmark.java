@@ -0,0 +1,70 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.BarrierOptimizer;
+import com.optimization.objects.LinearInequalityConstraint;
+import com.optimization.objects.Presolve;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BarrierOptimizer} on a dense QP over a polytope with bound, duplicate and redundant
+ * rows ({@link Problems#redundantPolytope}), as given and with a {@link Presolve}, which makes
+ * the box a diagonal barrier and leaves only the m random half-spaces as rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresolveBenchmark {
+    @Param({ "50", "200" })
+    public int n;
+
+    @Param({ "2" })
+    public int ratio;
+
+    private ObjectiveFunction qp;
+    private LinearInequalityConstraint polytope;
+    private InitialGuess origin;
+
+    @Setup
+    public void setup() {
+        qp = new ObjectiveFunction(Problems.denseQP(n, 7L));
+        polytope = Problems.redundantPolytope(n, ratio * n, 8L);
+        origin = new InitialGuess(new double[n]);
+    }
+
+    private static PointValuePair solve(final SolverCounters counters, final OptimizationData... args) {
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(args);
+        counters.iterations += barrier.getIterations();
+        counters.newtonIterations += barrier.getNewtonIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair plain(final SolverCounters counters) {
+        return solve(counters, qp, polytope, origin);
+    }
+
+    @Benchmark
+    public PointValuePair presolved(final SolverCounters counters) {
+        return solve(counters, qp, polytope, origin, new Presolve());
+    }
+}
@@ -0,0 +1,86 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.PrimalDualOptimizer;
+import com.optimization.objects.LinearEqualityConstraint;
+import com.optimization.objects.LinearInequalityConstraint;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PrimalDualOptimizer} on the problems of {@link BarrierBenchmark}, for comparison;
+ * each iteration, counted both as an iteration and a Newton iteration, is one factorization.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimalDualBenchmark {
+    @Param({ "10", "50", "200" })
+    public int n;
+
+    /** Number of random half-spaces, as a multiple of n */
+    @Param({ "1", "4" })
+    public int mFactor;
+
+    private ObjectiveFunction qp;
+    private ObjectiveFunction lp;
+    private ObjectiveFunction nBall;
+    private LinearInequalityConstraint ineqc;
+    private LinearEqualityConstraint eqc;
+    private InitialGuess origin;
+
+    @Setup
+    public void setup() {
+        qp = new ObjectiveFunction(Problems.denseQP(n, 1L));
+        lp = new ObjectiveFunction(Problems.linear(n, 3L));
+        nBall = new ObjectiveFunction(Problems.nBall(n, 4L));
+        ineqc = Problems.polytope(n, mFactor * n, 5L);
+        eqc = Problems.equalities(n, Math.max(1, n / 4), 2L);
+        origin = new InitialGuess(new double[n]);
+    }
+
+    private static PointValuePair solve(final SolverCounters counters, final OptimizationData... args) {
+        PrimalDualOptimizer pd = new PrimalDualOptimizer();
+        PointValuePair pvp = pd.optimize(args);
+        counters.iterations += pd.getIterations();
+        counters.newtonIterations += pd.getIterations();
+        return pvp;
+    }
+
+    @Benchmark
+    public PointValuePair qp(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair lp(final SolverCounters counters) {
+        return solve(counters, lp, ineqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair equalityQP(final SolverCounters counters) {
+        return solve(counters, qp, ineqc, eqc, origin);
+    }
+
+    @Benchmark
+    public PointValuePair nBallProjection(final SolverCounters counters) {
+        return solve(counters, nBall, ineqc, origin);
+    }
+}
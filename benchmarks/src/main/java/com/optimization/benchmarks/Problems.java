@@ -0,0 +1,225 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.FactorQuadraticFunction;
+import com.optimization.objects.LinearEqualityConstraint;
+import com.optimization.objects.LinearFunction;
+import com.optimization.objects.LinearInequalityConstraint;
+import com.optimization.objects.QuadraticFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import java.util.Random;
+
+/**
+ * Seeded random problem generators for the benchmarks.
+ * The same (n, m, seed) always produces the same problem, so runs are comparable.
+ */
+public final class Problems {
+    private Problems() {}
+
+    /**
+     * A random symmetric positive definite matrix M^T.M/n + I.
+     * @param n the dimension
+     * @param rnd the random source
+     * @return an (n x n) SPD matrix
+     */
+    public static double[][] spd(final int n, final Random rnd) {
+        double[][] m = gaussian(n, n, rnd);
+        double[][] a = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                double s = 0.0;
+                for (int k = 0; k < n; ++k) s += m[k][i] * m[k][j];
+                s /= n;
+                if (i == j) s += 1.0;
+                a[i][j] = s;
+                a[j][i] = s;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * A random (rows x cols) matrix with standard normal entries.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param rnd the random source
+     * @return the matrix
+     */
+    public static double[][] gaussian(final int rows, final int cols, final Random rnd) {
+        double[][] m = new double[rows][cols];
+        for (double[] row: m)
+            for (int j = 0; j < cols; ++j) row[j] = rnd.nextGaussian();
+        return m;
+    }
+
+    /**
+     * A random vector with standard normal entries.
+     * @param n the dimension
+     * @param rnd the random source
+     * @return the vector
+     */
+    public static double[] gaussian(final int n, final Random rnd) {
+        double[] v = new double[n];
+        for (int j = 0; j < n; ++j) v[j] = rnd.nextGaussian();
+        return v;
+    }
+
+    /**
+     * A dense, strictly convex quadratic (1/2)x.A.x + b.x with random SPD A.
+     * @param n the dimension
+     * @param seed the random seed
+     * @return the quadratic
+     */
+    public static QuadraticFunction denseQP(final int n, final long seed) {
+        Random rnd = new Random(seed);
+        return new QuadraticFunction(spd(n, rnd), gaussian(n, rnd), 0.0);
+    }
+
+    /**
+     * A random factor-model quadratic (1/2)x.(F.FT + diag(d)).x + b.x, as the risk less the return of
+     * a portfolio: F of (n x k) Gaussian loadings of scale 0.1, d uniform in [0.01, 0.05], b of scale 0.05.
+     * @param n the dimension
+     * @param k the number of factors
+     * @param seed the random seed
+     * @return the quadratic
+     */
+    public static FactorQuadraticFunction factorQP(final int n, final int k, final long seed) {
+        Random rnd = new Random(seed);
+        double[][] f = gaussian(n, k, rnd);
+        for (double[] row: f)
+            for (int j = 0; j < k; ++j) row[j] *= 0.1;
+        double[] d = new double[n];
+        for (int i = 0; i < n; ++i) d[i] = 0.01 + (0.04 * rnd.nextDouble());
+        double[] b = gaussian(n, rnd);
+        for (int i = 0; i < n; ++i) b[i] *= 0.05;
+        return new FactorQuadraticFunction(f, d, b, 0.0);
+    }
+
+    /**
+     * A random linear objective c.x.
+     * @param n the dimension
+     * @param seed the random seed
+     * @return the linear function
+     */
+    public static LinearFunction linear(final int n, final long seed) {
+        return new LinearFunction(new ArrayRealVector(gaussian(n, new Random(seed)), false), 0.0);
+    }
+
+    /**
+     * A bounded polytope containing the origin strictly in its interior:
+     * the box -1 &lt;= x[j] &lt;= 1, and m random half-spaces a[i].x &lt;= 1.
+     * The origin is therefore a strictly feasible starting point.
+     * @param n the dimension
+     * @param m the number of random half-spaces, in addition to the 2n box constraints
+     * @param seed the random seed
+     * @return the inequality constraints
+     */
+    public static LinearInequalityConstraint polytope(final int n, final int m, final long seed) {
+        Random rnd = new Random(seed);
+        double[][] a = new double[2 * n + m][];
+        double[] b = new double[2 * n + m];
+        for (int j = 0; j < n; ++j) {
+            a[2 * j] = new double[n];
+            a[2 * j][j] = 1.0;
+            a[2 * j + 1] = new double[n];
+            a[2 * j + 1][j] = -1.0;
+            b[2 * j] = 1.0;
+            b[2 * j + 1] = 1.0;
+        }
+        for (int i = 0; i < m; ++i) {
+            a[2 * n + i] = gaussian(n, rnd);
+            b[2 * n + i] = 1.0;
+        }
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+    }
+
+    /**
+     * The polytope of {@link #polytope} as a generated model might carry it: each random
+     * half-space is followed by a looser copy of itself, scaled by 2, and by a half-space
+     * a.x &lt;= 1 with |a|_1 &lt; 1, which the box already implies. Of its 2n + 3m rows, only the
+     * m random half-spaces are not bounds, duplicates or redundant.
+     * @param n the dimension
+     * @param m the number of random half-spaces
+     * @param seed the random seed
+     * @return the inequality constraints
+     */
+    public static LinearInequalityConstraint redundantPolytope(final int n, final int m, final long seed) {
+        LinearInequalityConstraint p = polytope(n, m, seed);
+        Random rnd = new Random(seed + 1);
+        double[][] a = new double[2 * n + 3 * m][];
+        double[] b = new double[a.length];
+        for (int i = 0; i < 2 * n; ++i) {
+            a[i] = p.lcf[i].getWeights().toArray();
+            b[i] = -p.lcf[i].getConstant();
+        }
+        for (int i = 0; i < m; ++i) {
+            final int k = 2 * n + 3 * i;
+            a[k] = p.lcf[2 * n + i].getWeights().toArray();
+            b[k] = 1.0;
+            a[k + 1] = a[k].clone();
+            for (int j = 0; j < n; ++j) a[k + 1][j] *= 2.0;
+            b[k + 1] = 3.0;
+            a[k + 2] = gaussian(n, rnd);
+            double norm = 0.0;
+            for (double aj: a[k + 2]) norm += Math.abs(aj);
+            for (int j = 0; j < n; ++j) a[k + 2][j] *= 0.9 / norm;
+            b[k + 2] = 1.0;
+        }
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+    }
+
+    /**
+     * A polytope as in {@link #polytope}, shifted so that the origin is infeasible:
+     * a starting point must first be found by phase I.
+     * @param n the dimension
+     * @param m the number of random half-spaces
+     * @param seed the random seed
+     * @return the inequality constraints
+     */
+    public static LinearInequalityConstraint shiftedPolytope(final int n, final int m, final long seed) {
+        LinearInequalityConstraint p = polytope(n, m, seed);
+        // a.(x - s) <= 1, with s = (2, 2, ...), puts the polytope around s
+        double[][] a = new double[p.lcf.length][];
+        double[] b = new double[p.lcf.length];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = p.lcf[i].getWeights().toArray();
+            double s = 0.0;
+            for (double aij: a[i]) s += 2.0 * aij;
+            b[i] = -p.lcf[i].getConstant() + s;
+        }
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+    }
+
+    /**
+     * Random equality constraints A.x = b, with p rows, that are consistent with
+     * a point well inside the box of {@link #polytope}.
+     * @param n the dimension
+     * @param p the number of equality constraints, &lt; n
+     * @param seed the random seed
+     * @return the equality constraints
+     */
+    public static LinearEqualityConstraint equalities(final int n, final int p, final long seed) {
+        Random rnd = new Random(seed);
+        double[][] a = gaussian(p, n, rnd);
+        double[] xs = new double[n];
+        for (int j = 0; j < n; ++j) xs[j] = 0.1 * (rnd.nextDouble() - 0.5);
+        double[] b = new double[p];
+        for (int i = 0; i < p; ++i)
+            for (int j = 0; j < n; ++j) b[i] += a[i][j] * xs[j];
+        return new LinearEqualityConstraint(a, b);
+    }
+
+    /**
+     * The n-ball function s((x-c).(x-c) - r^2)/2 with a random center c outside the
+     * unit box; minimized over a {@link #polytope} it projects c onto the polytope.
+     * @param n the dimension
+     * @param seed the random seed
+     * @return the n-ball quadratic
+     */
+    public static QuadraticFunction nBall(final int n, final long seed) {
+        double[] c = gaussian(n, new Random(seed));
+        for (int j = 0; j < n; ++j) c[j] *= 2.0;
+        return QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(c, false), 1.0, 1.0);
+    }
+}
@@ -0,0 +1,26 @@
+package com.optimization.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Iteration counts, reported by JMH as secondary results next to each timing.
+ * Divide by the number of operations to get the iterations per solve.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SolverCounters {
+    /** Outer (barrier) iterations */
+    public long iterations;
+    /** Newton iterations, summed over all centering steps */
+    public long newtonIterations;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        iterations = 0;
+        newtonIterations = 0;
+    }
+}
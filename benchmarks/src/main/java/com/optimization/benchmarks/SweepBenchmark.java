@@ -0,0 +1,93 @@
+package com.optimization.benchmarks;
+
+import com.optimization.objects.BarrierOptimizer;
+import com.optimization.objects.BatchSolver;
+import com.optimization.objects.LinearInequalityConstraint;
+import com.optimization.objects.ParameterSweep;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A frontier of 32 risk aversions over a random polytope of 2n box constraints plus 4n
+ * half-spaces: a serial loop of cold {@link BarrierOptimizer} solves, against a
+ * {@link ParameterSweep} on one segment and on four.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepBenchmark {
+    @Param({ "20", "50" })
+    public int n;
+
+    private ParameterSweep.ParametricObjective frontier;
+    private LinearInequalityConstraint ineqc;
+    private InitialGuess origin;
+    private double[] lambdas;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        frontier = ParameterSweep.frontier(Problems.denseQP(n, 1L), Problems.linear(n, 3L));
+        ineqc = Problems.polytope(n, 4 * n, 5L);
+        origin = new InitialGuess(new double[n]);
+        lambdas = new double[32];
+        for (int k = 0; k < lambdas.length; ++k) lambdas[k] = 0.1 * Math.pow(1.25, k);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public double cold(final SolverCounters counters) {
+        double s = 0.0;
+        for (double lambda: lambdas) {
+            BarrierOptimizer barrier = new BarrierOptimizer();
+            s += barrier.optimize(new ObjectiveFunction(frontier.at(lambda)), ineqc, origin).getSecond();
+            counters.newtonIterations += barrier.getNewtonIterations();
+        }
+        return s;
+    }
+
+    private double sweep(final int segments, final SolverCounters counters) {
+        List<BatchSolver.Result> results = new ParameterSweep(executor, segments, ineqc, origin).solve(frontier, lambdas);
+        double s = 0.0;
+        for (BatchSolver.Result r: results) {
+            s += r.solution.getSecond();
+            counters.newtonIterations += r.newtonIterations;
+        }
+        return s;
+    }
+
+    @Benchmark
+    public double sweep1(final SolverCounters counters) {
+        return sweep(1, counters);
+    }
+
+    @Benchmark
+    public double sweep4(final SolverCounters counters) {
+        return sweep(4, counters);
+    }
+}
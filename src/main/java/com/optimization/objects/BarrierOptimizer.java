@@ -1,19 +1,81 @@
 package com.optimization.objects;
 
+import com.optimization.util.KKTSolution;
+import com.optimization.util.KKTSolver;
+import com.optimization.util.LBFGSSolver;
 import com.optimization.util.LogBarrierFunction;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.ParallelEvaluation;
+import com.optimization.util.SparseKKTSolver;
+import com.optimization.util.SparseLogBarrierFunction;
+import com.optimization.util.SparseMatrix;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.optim.InitialGuess;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
 import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class BarrierOptimizer extends ConvexOptimizer {
     private ArrayList<ConvexFunction> constraintFunctions = new ArrayList<ConvexFunction>();
+    // blocks of linear constraints, evaluated in place when there is just one
+    private ArrayList<LinearConstraintBlock> blocks = new ArrayList<LinearConstraintBlock>();
     private RealVector xStart;
+    private ParallelEvaluation parallel;
+    private LinearEqualityConstraint eqConstraint;
+    // simple bounds on the variables, a diagonal barrier of their own, and their number
+    private double[] lower;
+    private double[] upper;
+    private int boundCount;
+    // sparse mode: all inequality constraints as G.x < h, all equalities as one sparse set,
+    // and a KKT solver shared by the centering steps so its symbolic analysis is reused
+    private SparseMatrix sparseG;
+    private double[] sparseH;
+    private SparseLinearEqualityConstraint sparseEq;
+    private SparseKKTSolver sparseSolver;
+    // the sparse KKT solver used when none is given, kept across optimizations
+    private SparseKKTSolver ownSparseSolver;
+    // matrix-free Newton-CG centering, if given
+    private NewtonCGSolver cgSolver;
+    // the L-BFGS solver of the centering steps, of the settings of the one given, if any; the
+    // pairs are kept here rather than in the given solver, which is left unchanged
+    private LBFGSSolver ownLbfgs;
+    // the centering engine: one barrier function, whose t is updated in place, and one Newton
+    // optimizer, which keeps its parsed arguments and workspace, for all the outer iterations
+    private LogBarrierFunction denseBarrier;
+    private SparseLogBarrierFunction sparseBarrier;
+    private NewtonOptimizer newton;
+    private boolean newtonParsed;
+    // a mutable constraint set, and what the last optimization solved with it
+    private LinearConstraintSet constraintSet;
+    private LinearConstraintSet lastSet;
+    private ConvexFunction lastObjective;
+    private ParallelEvaluation lastParallel;
+    private ArrayList<ConvexFunction> lastConstraintFunctions = new ArrayList<ConvexFunction>();
+    private ArrayList<LinearConstraintBlock> lastBlocks = new ArrayList<LinearConstraintBlock>();
+    private SimpleBounds lastBounds;
+    // the transpose of the dense equality constraint matrix, when needed
+    private RealMatrix eqTranspose;
+    private WarmStart warmStart;
+    private BarrierSchedule schedule;
+    private InexactCentering centering;
+    private EarlyExit earlyExit;
+    private SolverStatistics statistics;
+    private int newtonIterations;
+    // the last centered point, its barrier parameter and equality duals
+    private double[] lastX;
+    private double lastT;
+    private double[] lastNu;
+    // the presolve of the last optimization, if any, whose reduced problem was solved
+    private Presolve.Reduction reduction;
 
     private double epsilon = 1e-9; // ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
 
@@ -34,20 +96,76 @@ public class BarrierOptimizer extends ConvexOptimizer {
         super();
     }
 
+    /**
+     * {@inheritDoc}
+     * With a {@link Presolve} argument, the reduced problem is solved, and its solution mapped
+     * back to the original variables.
+     */
     @Override
     public PointValuePair optimize(OptimizationData... optData) {
-        return super.optimize(optData);
+        reduction = null;
+        Presolve presolve = null;
+        ObjectiveFunction objective = null;
+        for (OptimizationData data: optData) {
+            if (data instanceof Presolve) presolve = (Presolve) data;
+            if (data instanceof ObjectiveFunction) objective = (ObjectiveFunction) data;
+        }
+        if (presolve == null) return super.optimize(optData);
+        final Presolve.Reduction r = presolve.reduce(optData);
+        if (r.getData() == null) {
+            // every variable is fixed: nothing left to optimize
+            lastX = null;
+            final double[] x = r.expand(new double[0]);
+            return new PointValuePair(x, objective.getObjectiveFunction().value(x), false);
+        }
+        final PointValuePair pvp = super.optimize(r.getData());
+        reduction = r;
+        return new PointValuePair(r.expand(pvp.getPointRef()), pvp.getValue(), false);
+    }
+
+    /**
+     * @return the presolve of the last optimization, or null if it had no {@link Presolve} argument
+     */
+    public Presolve.Reduction getReduction() {
+        return reduction;
     }
 
     private boolean canPassFromMain(OptimizationData data) {
         if (data instanceof ObjectiveFunction) return false;
         if (data instanceof InitialGuess) return false;
+        if (data instanceof WarmStart) return false;
+        if (data instanceof BarrierSchedule) return false;
+        if (data instanceof InexactCentering) return false;
+        if (data instanceof SimpleBounds) return false;
+        if (data instanceof Presolve) return false;
+        if (data instanceof LBFGSSolver) return false;
         return true;
     }
 
     @Override
     protected void parseOptimizationData(OptimizationData... optData) {
         super.parseOptimizationData(optData);
+        constraintFunctions.clear();
+        blocks.clear();
+        newtonArgs.clear();
+        parallel = null;
+        eqConstraint = null;
+        sparseG = null;
+        sparseH = null;
+        sparseEq = null;
+        sparseSolver = null;
+        cgSolver = null;
+        ArrayList<SparseLinearInequalityConstraint> sparseIneq = new ArrayList<SparseLinearInequalityConstraint>();
+        sparseBarrier = null;
+        newtonParsed = false;
+        constraintSet = null;
+        eqTranspose = null;
+        warmStart = null;
+        schedule = null;
+        centering = null;
+        earlyExit = null;
+        statistics = null;
+        SimpleBounds bounds = null;
         for (OptimizationData data : optData) {
             if (canPassFromMain(data)) {
                 newtonArgs.add(data);
@@ -57,8 +175,96 @@ public class BarrierOptimizer extends ConvexOptimizer {
                     constraintFunctions.add(f);
                 }
             }
+            if (data instanceof ParallelEvaluation) {
+                parallel = (ParallelEvaluation) data;
+            }
+            if (data instanceof LinearEqualityConstraint) {
+                eqConstraint = (LinearEqualityConstraint) data;
+            }
+            if (data instanceof LinearConstraintBlock) {
+                blocks.add((LinearConstraintBlock) data);
+            }
+            if (data instanceof LinearConstraintSet) {
+                if (constraintSet != null) throw new IllegalArgumentException("at most one LinearConstraintSet");
+                constraintSet = (LinearConstraintSet) data;
+            }
+            if (data instanceof SparseLinearInequalityConstraint) {
+                sparseIneq.add((SparseLinearInequalityConstraint) data);
+            }
+            if (data instanceof SparseLinearEqualityConstraint) {
+                sparseEq = (SparseLinearEqualityConstraint) data;
+            }
+            if (data instanceof SparseKKTSolver) {
+                sparseSolver = (SparseKKTSolver) data;
+            }
+            if (data instanceof NewtonCGSolver) {
+                cgSolver = (NewtonCGSolver) data;
+            }
+            if (data instanceof LBFGSSolver) {
+                // the centering steps share the pairs, but not with an earlier solve
+                final LBFGSSolver given = (LBFGSSolver) data;
+                if ((ownLbfgs == null) || (ownLbfgs.getMemory() != given.getMemory())
+                        || (ownLbfgs.getRefreshInterval() != given.getRefreshInterval())) {
+                    ownLbfgs = new LBFGSSolver(given.getMemory(), given.getRefreshInterval());
+                }
+                ownLbfgs.reset();
+                newtonArgs.add(ownLbfgs);
+            }
+            if (data instanceof WarmStart) {
+                warmStart = (WarmStart) data;
+            }
+            if (data instanceof BarrierSchedule) {
+                schedule = (BarrierSchedule) data;
+            }
+            if (data instanceof InexactCentering) {
+                centering = (InexactCentering) data;
+            }
+            if (data instanceof EarlyExit) {
+                earlyExit = (EarlyExit) data;
+            }
+            if (data instanceof SolverStatistics) {
+                statistics = (SolverStatistics) data;
+            }
+            if (data instanceof SimpleBounds) {
+                bounds = (SimpleBounds) data;
+            }
         }
         int n = convexObjective.dimensions();
+        parseBounds(n, bounds);
+        if ((constraintSet != null) && (constraintSet.dimensions() != n))
+            throw new DimensionMismatchException(constraintSet.dimensions(), n);
+        // solving again with the same constraints: keep the barrier function, with its packed
+        // constraints, and only swap in the objective; with the same constraint set and objective,
+        // also resume from the last central point unless told otherwise
+        final boolean sameConstraints = (lastObjective != null) && (convexObjective.dimensions() == lastObjective.dimensions())
+                && (constraintSet == lastSet) && (parallel == lastParallel)
+                && constraintFunctions.equals(lastConstraintFunctions) && blocks.equals(lastBlocks)
+                && (bounds == lastBounds);
+        if (!sameConstraints) {
+            denseBarrier = null;
+        } else if (denseBarrier != null) {
+            denseBarrier.setObjective(convexObjective);
+        }
+        if (sameConstraints && (constraintSet != null) && (convexObjective == lastObjective) && (warmStart == null)) {
+            warmStart = getWarmStart();
+        }
+        lastSet = constraintSet;
+        lastObjective = convexObjective;
+        lastParallel = parallel;
+        lastBounds = bounds;
+        lastConstraintFunctions.clear();
+        lastConstraintFunctions.addAll(constraintFunctions);
+        lastBlocks.clear();
+        lastBlocks.addAll(blocks);
+        for (LinearConstraintBlock b: blocks) {
+            if (b.dimensions() != n) throw new DimensionMismatchException(b.dimensions(), n);
+        }
+        if (!sparseIneq.isEmpty() || (sparseEq != null) || (sparseSolver != null)) {
+            parseSparse(n, sparseIneq);
+            denseBarrier = null;
+        } else if ((denseBarrier != null) && (constraintSet != null)) {
+            denseBarrier.setLinearConstraints(constraintSet.rows(), constraintSet.offsets(), constraintSet.size());
+        }
         if (this.getStartPoint() != null) {
             xStart = new ArrayRealVector(this.getStartPoint());
             if (xStart.getDimension() != n)
@@ -68,21 +274,441 @@ public class BarrierOptimizer extends ConvexOptimizer {
         }
     }
 
+    // The simple bounds, with their finite entries counted; a variable's bounds must leave
+    // an interior, so lower < upper.
+    private void parseBounds(final int n, final SimpleBounds bounds) {
+        lower = null;
+        upper = null;
+        boundCount = 0;
+        if (bounds == null) return;
+        lower = bounds.getLower();
+        upper = bounds.getUpper();
+        if (lower.length != n) throw new DimensionMismatchException(lower.length, n);
+        if (upper.length != n) throw new DimensionMismatchException(upper.length, n);
+        for (int j = 0; j < n; ++j) {
+            if (!(lower[j] < upper[j])) throw new IllegalArgumentException("lower bounds must be below upper bounds");
+            if (lower[j] != Double.NEGATIVE_INFINITY) ++boundCount;
+            if (upper[j] != Double.POSITIVE_INFINITY) ++boundCount;
+        }
+    }
+
+    // Sparse mode: stack the dense, block and sparse inequality constraints into one sparse G.x < h,
+    // and make sure the centering steps share a sparse KKT solver.
+    private void parseSparse(final int n, final ArrayList<SparseLinearInequalityConstraint> sparseIneq) {
+        ArrayList<SparseMatrix> blocks = new ArrayList<SparseMatrix>();
+        final int ms = (constraintSet != null) ? constraintSet.size() : 0;
+        int mb = 0;
+        for (LinearConstraintBlock b: this.blocks) mb += b.rows();
+        int m = constraintFunctions.size() + ms + mb;
+        for (SparseLinearInequalityConstraint c: sparseIneq) {
+            if (c.A.cols != n) throw new DimensionMismatchException(c.A.cols, n);
+            m += c.A.rows;
+        }
+        m += boundCount;
+        sparseH = new double[m];
+        int k = 0;
+        if ((constraintFunctions.size() + ms + mb) > 0) {
+            double[][] rows = new double[constraintFunctions.size() + ms + mb][];
+            for (ConvexFunction f: constraintFunctions) {
+                LinearFunction lf = (LinearFunction) f;
+                rows[k] = lf.getWeights().toArray();
+                sparseH[k] = -lf.getConstant();
+                ++k;
+            }
+            for (int i = 0; i < ms; ++i) {
+                rows[k] = Arrays.copyOfRange(constraintSet.rows(), i * n, (i + 1) * n);
+                sparseH[k] = -constraintSet.offsets()[i];
+                ++k;
+            }
+            for (LinearConstraintBlock b: this.blocks) {
+                for (int i = 0; i < b.rows(); ++i) {
+                    rows[k] = b.getRow(i);
+                    sparseH[k] = b.getBound(i);
+                    ++k;
+                }
+            }
+            blocks.add(SparseMatrix.fromDense(rows));
+        }
+        for (SparseLinearInequalityConstraint c: sparseIneq) {
+            blocks.add(c.A);
+            System.arraycopy(c.b, 0, sparseH, k, c.b.length);
+            k += c.b.length;
+        }
+        if (boundCount > 0) {
+            // the bounds as unit rows: x[j] < u[j] and -x[j] < -l[j]
+            int[] rows = new int[boundCount];
+            int[] cols = new int[boundCount];
+            double[] vals = new double[boundCount];
+            int r = 0;
+            for (int j = 0; j < n; ++j) {
+                if (upper[j] != Double.POSITIVE_INFINITY) {
+                    rows[r] = r;
+                    cols[r] = j;
+                    vals[r] = 1.0;
+                    sparseH[k + r] = upper[j];
+                    ++r;
+                }
+                if (lower[j] != Double.NEGATIVE_INFINITY) {
+                    rows[r] = r;
+                    cols[r] = j;
+                    vals[r] = -1.0;
+                    sparseH[k + r] = -lower[j];
+                    ++r;
+                }
+            }
+            blocks.add(SparseMatrix.fromTriplets(boundCount, n, rows, cols, vals));
+            k += boundCount;
+        }
+        sparseG = blocks.isEmpty() ? SparseMatrix.zero(0, n)
+                : ((blocks.size() == 1) ? blocks.get(0) : SparseMatrix.stack(blocks));
+        sparseEq = SparseLinearEqualityConstraint.combine(eqConstraint, sparseEq);
+        if (sparseSolver == null) {
+            // kept across optimizations, so its symbolic analysis is reused while the pattern holds
+            if (ownSparseSolver == null) ownSparseSolver = new SparseKKTSolver();
+            sparseSolver = ownSparseSolver;
+            newtonArgs.add(sparseSolver);
+        }
+    }
+
+    // the number of inequality constraints
+    private int constraintCount() {
+        if (sparseG != null) return sparseG.rows;
+        int m = constraintFunctions.size() + ((constraintSet != null) ? constraintSet.size() : 0);
+        for (LinearConstraintBlock b: blocks) m += b.rows();
+        return m + boundCount;
+    }
+
+    // the number of equality constraints
+    private int equalityCount() {
+        if (sparseG != null) return (sparseEq != null) ? sparseEq.A.rows : 0;
+        return (eqConstraint != null) ? eqConstraint.b.getDimension() : 0;
+    }
+
+    // the log barrier function, set to t
+    private ConvexFunction barrier(final double t) {
+        if (sparseG != null) {
+            if (sparseBarrier == null) sparseBarrier = new SparseLogBarrierFunction(t, convexObjective, sparseG, sparseH);
+            sparseBarrier.setT(t);
+            return sparseBarrier;
+        }
+        if (denseBarrier == null) {
+            denseBarrier = denseBarrier(t);
+            denseBarrier.setBounds(lower, upper);
+        }
+        denseBarrier.setT(t);
+        return denseBarrier;
+    }
+
+    // The dense log barrier function. A constraint set, or else a single block, is read in place;
+    // several blocks are stacked together with the other linear constraints; constraints that
+    // cannot share the packed rows of a set are evaluated individually.
+    private LogBarrierFunction denseBarrier(final double t) {
+        if (constraintSet != null) {
+            ArrayList<ConvexFunction> other = new ArrayList<ConvexFunction>(constraintFunctions);
+            for (LinearConstraintBlock b: blocks) other.addAll(Arrays.asList(b.toConstraint().lcf));
+            return new LogBarrierFunction(t, convexObjective, constraintSet.rows(), constraintSet.offsets(),
+                    constraintSet.size(), other.toArray(new ConvexFunction[0]), parallel);
+        }
+        if (blocks.isEmpty()) return new LogBarrierFunction(t, convexObjective, constraintFunctions, parallel);
+        LinearConstraintBlock linear = blocks.get(0);
+        ArrayList<ConvexFunction> other = new ArrayList<ConvexFunction>();
+        ArrayList<LinearFunction> lfs = new ArrayList<LinearFunction>();
+        for (ConvexFunction f: constraintFunctions) {
+            if (f instanceof LinearFunction) {
+                lfs.add((LinearFunction) f);
+            } else {
+                other.add(f);
+            }
+        }
+        if ((blocks.size() > 1) || !lfs.isEmpty()) {
+            ArrayList<LinearConstraintBlock> all = new ArrayList<LinearConstraintBlock>(blocks);
+            if (!lfs.isEmpty()) all.add(LinearConstraintBlock.pack(lfs.toArray(new LinearFunction[0])));
+            linear = LinearConstraintBlock.stack(all);
+        }
+        return new LogBarrierFunction(t, convexObjective, linear, other.toArray(new ConvexFunction[0]), parallel);
+    }
+
+    /**
+     * @return the total number of Newton iterations taken by the centering steps of the
+     * last optimization; {@link #getIterations()} counts the outer barrier iterations.
+     */
+    public int getNewtonIterations() {
+        return newtonIterations;
+    }
+
+    /**
+     * @return the central point reached by the last optimization, with its barrier
+     * parameter and equality duals, for warm-starting a re-solve of a perturbed problem;
+     * or null if nothing has been optimized yet. After a presolve, the point is in the
+     * original variables, and the duals, rescaled to the original rows, are kept only if every
+     * equality row was.
+     */
+    public WarmStart getWarmStart() {
+        if (lastX == null) return null;
+        if (reduction == null) return new WarmStart(lastX, lastT, lastNu);
+        return new WarmStart(reduction.expand(lastX), lastT, reduction.expandDual(lastNu));
+    }
+
     @Override
     public PointValuePair doOptimize() {
-        double m = (double)((constraintFunctions != null) ? constraintFunctions.size() : 0);
+        newtonIterations = 0;
+        double m = (double)constraintCount();
 
         RealVector x = xStart;
-        for (double t = t0; (t * epsilon) <= m ; t *= mu) {
-            ConvexFunction bf = new LogBarrierFunction(t, convexObjective, constraintFunctions);
-            NewtonOptimizer newton = new NewtonOptimizer();
+        double mu = this.mu;
+        double t = t0;
+        if (schedule != null) {
+            mu = schedule.getMu();
+            t = schedule.isAdaptive() ? initialT(m, x.toArray()) : schedule.getT0();
+        }
+        final double tFirst = t;
+        boolean resumed = false;
+        lastT = t;
+        lastNu = null;
+        if ((warmStart != null) && isStrictlyFeasible(warmStart.getPoint())) {
+            // Resume the central path at the warm start's t. The centering step from the warm start
+            // is given the Newton steps of a cheap outer step; if it has not then reached a point at
+            // least as central as the starting point of a normal outer step from t/mu to t
+            // (suboptimality m(mu - 1 - log(mu))), it is abandoned, and the solve starts cold.
+            // Without inequality constraints any point will do, as one centering step solves the problem.
+            t = Math.max(tFirst, warmStart.getT());
+            double[] nu = warmStart.getDual();
+            if ((nu == null) || (equalityCount() == 0) || (nu.length != equalityCount())) {
+                nu = null;
+            } else {
+                for (int k = 0; k < nu.length; ++k) nu[k] *= t;
+            }
+            final boolean last = isLast(m, t, mu);
+            final int budget = (m == 0.0) ? Integer.MAX_VALUE : BarrierSchedule.FEW_NEWTON_STEPS;
+            RealVector xw = center(t, new ArrayRealVector(warmStart.getPoint()), nu, last, budget);
+            if ((m == 0.0) || ((0.5 * newtonDecrementSquared(barrier(t), xw)) <= m * (mu - 1.0 - Math.log(mu)))) {
+                // finish a centering step cut short by the budget
+                if (newton.getIterations() >= budget) xw = center(t, xw, newton.getDual(), last);
+                x = xw;
+                resumed = true;
+                t *= mu;
+            } else {
+                t = tFirst;
+            }
+        }
+        if (schedule == null) {
+            // without inequality constraints, the loop below would not center at all
+            if ((m == 0.0) && !resumed) x = center(t, x, null, true);
+            for (; (t * epsilon) <= m ; t *= mu) {
+                x = center(t, x, null, isLast(m, t, mu));
+                if ((earlyExit != null) && earlyExit.stopAt(x.toArray())) break;
+            }
+        } else if (!resumed || ((m * mu) / t > schedule.getGap())) {
+            // stop on the duality gap m/t of the last centered point
+            for (; ; t *= mu) {
+                x = center(t, x, null, isLast(m, t, mu));
+                if ((m / t) <= schedule.getGap()) break;
+                if ((earlyExit != null) && earlyExit.stopAt(x.toArray())) break;
+                // a centering step cut short by inexact centering counts as an expensive one
+                final boolean capped = (centering != null) && (newton.getIterations() >= centering.getMaxNewtonSteps());
+                mu = schedule.nextMu(mu, capped ? Integer.MAX_VALUE : newton.getIterations());
+            }
+        }
+        lastX = x.toArray();
+        return new PointValuePair(x.toArray(), convexObjective.value(x));
+    }
+
+    // The t for which x0 is closest to the central path: the least squares solution of
+    // t.grad(f0) + grad(phi) + AT.nu = 0, from section 11.3.1 of Boyd and Vandenberghe.
+    // The AT.nu term is eliminated by projecting both gradients onto the null space of A.
+    // Falls back to the default t0 when the estimate is not positive, and is capped at the t
+    // of the target duality gap. The t of the cached barrier function is left as it was.
+    private double initialT(final double m, final double[] x0) {
+        if ((m == 0.0) || !isStrictlyFeasible(x0)) return BarrierSchedule.T0_DEFAULT;
+        final int n = x0.length;
+        double[] g0 = new double[n];
+        double[] gphi = new double[n];
+        convexObjective.gradient(x0, g0);
+        final double tCached = (sparseG != null)
+                ? ((sparseBarrier == null) ? 0.0 : sparseBarrier.getT())
+                : ((denseBarrier == null) ? 0.0 : denseBarrier.getT());
+        barrier(1.0).gradient(x0, gphi);
+        if (tCached > 0.0) barrier(tCached);
+        for (int j = 0; j < n; ++j) gphi[j] -= g0[j];
+        if (equalityCount() > 0) {
+            g0 = nullSpaceProjection(g0);
+            gphi = nullSpaceProjection(gphi);
+        }
+        double gg = 0.0;
+        double gp = 0.0;
+        for (int j = 0; j < n; ++j) {
+            gg += g0[j] * g0[j];
+            gp += g0[j] * gphi[j];
+        }
+        final double t = -gp / gg;
+        if (!(t > 0.0) || Double.isInfinite(t)) return BarrierSchedule.T0_DEFAULT;
+        return Math.min(t, m / schedule.getGap());
+    }
+
+    // the projection of v onto the null space of the equality constraints: -xDelta of the
+    // KKT system with an identity Hessian
+    private double[] nullSpaceProjection(final double[] v) {
+        final int n = v.length;
+        final double[] pv = new double[n];
+        if (sparseG != null) {
+            int[] idx = new int[n];
+            double[] ones = new double[n];
+            for (int j = 0; j < n; ++j) {
+                idx[j] = j;
+                ones[j] = 1.0;
+            }
+            // a solver of its own, so the centering steps' symbolic analysis is kept
+            new SparseKKTSolver().solve(SparseMatrix.fromTriplets(n, n, idx, idx, ones), sparseEq.A,
+                    v, new double[sparseEq.A.rows], pv, new double[sparseEq.A.rows]);
+        } else {
+            RealMatrix A = eqConstraint.A;
+            if (eqTranspose == null) eqTranspose = A.transpose();
+            KKTSolution sol = new KKTSolver().solve(MatrixUtils.createRealIdentityMatrix(n), A, eqTranspose,
+                    new ArrayRealVector(v), new ArrayRealVector(A.getRowDimension()));
+            for (int j = 0; j < n; ++j) pv[j] = sol.xDelta.getEntry(j);
+        }
+        for (int j = 0; j < n; ++j) pv[j] = -pv[j];
+        return pv;
+    }
+
+    // true if centering for t is the last outer iteration
+    private boolean isLast(final double m, final double t, final double mu) {
+        if (schedule != null) return (m / t) <= schedule.getGap();
+        return (t * mu * epsilon) > m;
+    }
+
+    /**
+     * @return an estimate of f0(x) - p* at the last solution x: the duality gap m/t of its
+     * barrier parameter t, plus the suboptimality lambda^2/2 of x for its centering step, scaled
+     * to units of f0 by 1/t; or NaN if nothing has been optimized yet. This costs one more
+     * Hessian evaluation and KKT solve.
+     */
+    public double getAccuracy() {
+        if (lastX == null) return Double.NaN;
+        double lsq = newtonDecrementSquared(barrier(lastT), new ArrayRealVector(lastX));
+        return (constraintCount() + (0.5 * Math.max(0.0, lsq))) / lastT;
+    }
+
+    // One outer iteration: minimize the log barrier function for t, starting from x (and nu),
+    // to full accuracy if it is the last one, or else to the inexact centering tolerance if any.
+    private RealVector center(final double t, final RealVector x, final double[] nu, final boolean last) {
+        return center(t, x, nu, last, Integer.MAX_VALUE);
+    }
+
+    // a centering step of at most maxSteps Newton iterations
+    private RealVector center(final double t, final RealVector x, final double[] nu, final boolean last,
+                              final int maxSteps) {
+        incrementIterationCount();
+        final long start = (statistics != null) ? System.nanoTime() : 0L;
+        if (statistics != null) statistics.beginBarrierStep();
+        ConvexFunction bf = barrier(t);
+        PointValuePair pvp;
+        // the Newton optimizer, with its workspace, is kept across optimizations,
+        // but parses its arguments afresh at the first centering step of each
+        final boolean first = !newtonParsed;
+        if (newton == null) newton = new NewtonOptimizer();
+        newtonParsed = true;
+        if ((centering != null) && !last) {
+            newton.setStopping(centering.tolerance(constraintCount(), epsilon),
+                    Math.min(maxSteps, centering.getMaxNewtonSteps()));
+        } else {
+            newton.setStopping(epsilon, maxSteps);
+        }
+        if (first) {
             ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)newtonArgs.clone();
             args.add(new ObjectiveFunction(bf));
             args.add(new InitialGuess(x.toArray()));
-            PointValuePair pvp = newton.optimize(args.toArray(odType));
+            if (nu != null) args.add(new InitialDual(nu));
+            pvp = newton.optimize(args.toArray(odType));
+        } else {
+            pvp = newton.reoptimize(x.toArray(), nu);
+        }
+        newtonIterations += newton.getIterations();
+        if (statistics != null)
+            statistics.endBarrierStep(t, constraintCount(), newton.getIterations(), System.nanoTime() - start);
+
+        lastT = t;
+        lastNu = newton.getDual();
+        if (lastNu != null)
+            for (int k = 0; k < lastNu.length; ++k) lastNu[k] /= t;
+        return new ArrayRealVector(pvp.getFirst());
+    }
 
-            x = new ArrayRealVector(pvp.getFirst());
+    private boolean isStrictlyFeasible(final double[] x) {
+        if (x.length != convexObjective.dimensions()) return false;
+        if (sparseG != null) {
+            double[] gx = new double[sparseG.rows];
+            sparseG.multiply(x, gx);
+            for (int k = 0; k < gx.length; ++k) {
+                if (!(gx[k] < sparseH[k])) return false;
+            }
+            return true;
         }
-        return new PointValuePair(x.toArray(), convexObjective.value(x));
+        for (ConvexFunction f: constraintFunctions) {
+            if (!(f.value(x) < 0.0)) return false;
+        }
+        for (LinearConstraintBlock b: blocks) {
+            if (!b.isStrictlyFeasible(x)) return false;
+        }
+        if (lower != null) {
+            for (int j = 0; j < x.length; ++j) {
+                if (!(x[j] > lower[j]) || !(x[j] < upper[j])) return false;
+            }
+        }
+        return (constraintSet == null) || constraintSet.isStrictlyFeasible(x);
+    }
+
+    // the squared Newton decrement of the barrier function at x
+    private double newtonDecrementSquared(final ConvexFunction bf, final RealVector x) {
+        if (sparseG != null) {
+            final int n = x.getDimension();
+            double[] xa = x.toArray();
+            double[] g = new double[n];
+            double[] v = new double[n];
+            bf.gradient(xa, g);
+            SparseMatrix h = bf.sparseHessian(xa);
+            if (sparseEq == null) return sparseSolver.solve(h, g, v);
+            double[] r = new double[sparseEq.A.rows];
+            sparseEq.A.multiply(xa, r);
+            for (int k = 0; k < r.length; ++k) r[k] -= sparseEq.b[k];
+            sparseSolver.solve(h, sparseEq.A, g, r, v, new double[r.length]);
+            double lsq = 0.0;
+            for (int j = 0; j < n; ++j) lsq -= g[j] * v[j];
+            return lsq;
+        }
+        if (cgSolver != null) {
+            double[] xa = x.toArray();
+            double[] g = new double[xa.length];
+            bf.gradient(xa, g);
+            return cgSolver.solve(bf, xa, g, new double[xa.length]);
+        }
+        final LowRankHessian form = bf.lowRankHessian();
+        if ((form != null) && form.isDiagonalPositive() && (form.rank() < x.getDimension())) {
+            final int rank = form.rank();
+            final int n = x.getDimension();
+            final int p = (eqConstraint == null) ? 0 : eqConstraint.b.getDimension();
+            NewtonWorkspace ws = new NewtonWorkspace();
+            ws.ensureLowRank(n, p, rank);
+            double[] xa = x.toArray();
+            double[] g = new double[n];
+            double[] v = new double[n];
+            bf.evaluate(xa, g, null);
+            form.evaluate(xa, ws.lowRankD, ws.lowRankU);
+            double[][] A = (p > 0) ? eqConstraint.A.getData() : null;
+            double[] r = (p > 0) ? eqConstraint.A.operate(x).subtract(eqConstraint.b).toArray() : new double[0];
+            new KKTSolver().solveLowRank(A, g, r, v, new double[p], ws);
+            double lsq = 0.0;
+            for (int j = 0; j < n; ++j) lsq -= g[j] * v[j];
+            return lsq;
+        }
+        Evaluation e = bf.evaluate(x, 2);
+        KKTSolver kkt = new KKTSolver();
+        if ((eqConstraint == null) || (eqConstraint.b.getDimension() < 1)) {
+            return kkt.solve(e.hessian, e.gradient).lambdaSquared;
+        }
+        RealMatrix A = eqConstraint.A;
+        if (eqTranspose == null) eqTranspose = A.transpose();
+        KKTSolution sol = kkt.solve(e.hessian, A, eqTranspose, e.gradient, A.operate(x).subtract(eqConstraint.b));
+        return -e.gradient.dotProduct(sol.xDelta);
     }
 }
@@ -0,0 +1,125 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * The schedule of the barrier parameter t for {@link BarrierOptimizer}: its initial value t0,
+ * the factor mu it grows by after each centering step, and the duality gap m/t at which
+ * the barrier method stops (Algorithm 11.1, and section 11.3.1 on the choice of t0, from <p>
+ * Convex Optimization, Boyd and Vandenberghe, Cambridge University Press, 2008). <p>
+ * A fixed schedule uses the given mu and t0 throughout. An adaptive schedule picks t0 as the
+ * t for which the initial point is closest to the central path, that is, the t minimizing
+ * |t.grad(f0) + grad(phi) + AT.nu| at x0, which makes m/t0 an estimate of the initial duality
+ * gap (falling back to t0 = 1 when that t is not positive); then, after each centering step,
+ * it grows mu when the step took few Newton iterations and shrinks it when the step took many,
+ * within [muMin, muMax]. <p>
+ * Without a BarrierSchedule, BarrierOptimizer keeps its legacy schedule of mu = 15, t0 = 1,
+ * stopping once t.epsilon &gt; m.
+ */
+public class BarrierSchedule implements OptimizationData {
+    /** The default growth factor mu, and the initial one of adaptive schedules */
+    public static final double MU_DEFAULT = 15.0;
+    /** The default initial barrier parameter t0 */
+    public static final double T0_DEFAULT = 1.0;
+    /** The default duality gap m/t at which to stop */
+    public static final double GAP_DEFAULT = 1e-9;
+    /** Adaptive schedules grow mu after a centering step of at most this many Newton iterations */
+    public static final int FEW_NEWTON_STEPS = 8;
+    /** Adaptive schedules shrink mu after a centering step of at least this many Newton iterations */
+    public static final int MANY_NEWTON_STEPS = 25;
+
+    private final double mu;
+    private final double t0;
+    private final double gap;
+    private final boolean adaptive;
+    private final double muMin;
+    private final double muMax;
+
+    /**
+     * A fixed schedule, stopping at the default duality gap.
+     * @param mu the factor t grows by after each centering step, &gt; 1
+     * @param t0 the initial barrier parameter, &gt; 0
+     */
+    public BarrierSchedule(final double mu, final double t0) {
+        this(mu, t0, GAP_DEFAULT);
+    }
+
+    /**
+     * A fixed schedule.
+     * @param mu the factor t grows by after each centering step, &gt; 1
+     * @param t0 the initial barrier parameter, &gt; 0
+     * @param gap the duality gap m/t at which to stop, &gt; 0
+     */
+    public BarrierSchedule(final double mu, final double t0, final double gap) {
+        this(mu, t0, gap, false, mu, mu);
+        if (!(t0 > 0.0)) throw new IllegalArgumentException("t0 must be > 0");
+    }
+
+    private BarrierSchedule(
+            final double mu, final double t0, final double gap,
+            final boolean adaptive, final double muMin, final double muMax) {
+        if (!(mu > 1.0)) throw new IllegalArgumentException("mu must be > 1");
+        if (!(gap > 0.0)) throw new IllegalArgumentException("gap must be > 0");
+        if (!(muMin > 1.0) || !(muMin <= mu) || !(mu <= muMax))
+            throw new IllegalArgumentException("must have 1 < muMin <= mu <= muMax");
+        this.mu = mu;
+        this.t0 = t0;
+        this.gap = gap;
+        this.adaptive = adaptive;
+        this.muMin = muMin;
+        this.muMax = muMax;
+    }
+
+    /**
+     * @return an adaptive schedule starting from mu = 15, with mu in [2, 1000],
+     * stopping at the default duality gap
+     */
+    public static BarrierSchedule adaptive() {
+        return adaptive(MU_DEFAULT, 2.0, 1000.0, GAP_DEFAULT);
+    }
+
+    /**
+     * @param mu the initial growth factor
+     * @param muMin the least growth factor, &gt; 1
+     * @param muMax the greatest growth factor
+     * @param gap the duality gap m/t at which to stop, &gt; 0
+     * @return an adaptive schedule
+     */
+    public static BarrierSchedule adaptive(final double mu, final double muMin, final double muMax, final double gap) {
+        return new BarrierSchedule(mu, Double.NaN, gap, true, muMin, muMax);
+    }
+
+    /** @return the growth factor mu, or its initial value for an adaptive schedule */
+    public double getMu() {
+        return mu;
+    }
+
+    /** @return the initial barrier parameter, or NaN when it is chosen adaptively */
+    public double getT0() {
+        return t0;
+    }
+
+    /** @return the duality gap m/t at which to stop */
+    public double getGap() {
+        return gap;
+    }
+
+    /** @return true if t0 and mu are chosen adaptively */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @param mu the growth factor used for the last centering step
+     * @param newtonSteps the Newton iterations that step took
+     * @return the growth factor for the next step
+     */
+    public double nextMu(final double mu, final int newtonSteps) {
+        if (!adaptive) return mu;
+        // the Newton iterations of a centering step grow only about like log(mu), so
+        // mu is changed geometrically: squared while centering is cheap, else square-rooted
+        if (newtonSteps <= FEW_NEWTON_STEPS) return Math.min(muMax, mu * mu);
+        if (newtonSteps >= MANY_NEWTON_STEPS) return Math.max(muMin, Math.sqrt(mu));
+        return mu;
+    }
+}
@@ -0,0 +1,177 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolver;
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.SparseKKTSolver;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many independent problems concurrently on an executor. <p>
+ * The optimizers keep per-solve state and are not thread-safe, so each problem is solved
+ * by its own optimizer instance; problems with inequality constraints go to a
+ * {@link BarrierOptimizer}, the rest to a {@link NewtonOptimizer}. The {@link NewtonWorkspace}s
+ * are pooled: each solve borrows one and returns it when done, so there are only as many as
+ * problems were solved at once, on an executor of any kind, including one that starts a thread
+ * per task. <p>
+ * The common OptimizationData is passed to every solve at once. A {@link KKTSolver}, which holds
+ * only its choice of factorization, may be shared; data that hold the state of a solve, the
+ * workspaces, sparse KKT, Newton-CG and L-BFGS solvers and statistics, are rejected. <p>
+ * Problem data (objectives, constraints) must not be shared between problems unless it
+ * is safe to evaluate concurrently. Linear, quadratic and factor quadratic functions and
+ * the immutable constraint types are; a {@link LinearConstraintSet} is while it is not
+ * modified. Functions with scratch storage are not, such as the objectives made by
+ * {@link Presolve#reduce} and the barrier and smooth-max functions.
+ */
+public class BatchSolver {
+    private final ExecutorService executor;
+    private final OptimizationData[] common;
+    private final ConcurrentLinkedQueue<NewtonWorkspace> workspaces = new ConcurrentLinkedQueue<NewtonWorkspace>();
+
+    /**
+     * @param executor the executor to solve problems on; it is not shut down by this class
+     * @param common additional OptimizationData passed to every solve (e.g. a KKTSolver)
+     * @throws IllegalArgumentException if common holds per-solve state, which the solves would share
+     */
+    public BatchSolver(final ExecutorService executor, final OptimizationData... common) {
+        for (OptimizationData data: common) {
+            if ((data instanceof NewtonWorkspace) || (data instanceof SparseKKTSolver) || (data instanceof NewtonCGSolver)
+                    || (data instanceof LBFGSSolver) || (data instanceof SolverStatistics)) {
+                throw new IllegalArgumentException(data.getClass().getSimpleName()
+                        + " holds per-solve state and cannot be shared by the solves");
+            }
+        }
+        this.executor = executor;
+        this.common = common.clone();
+    }
+
+    /**
+     * Solve every problem, blocking until all of them have finished.
+     * A failure of one problem is reported in its result and does not affect the others.
+     * @param problems the problems to solve
+     * @return one result per problem, in the same order
+     */
+    public List<Result> solve(final List<Problem> problems) {
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(problems.size());
+        for (final Problem problem: problems) {
+            futures.add(executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return solveOne(problem);
+                }
+            }));
+        }
+        List<Result> results = new ArrayList<Result>(problems.size());
+        for (Future<Result> fut: futures) {
+            try {
+                results.add(fut.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                results.add(new Result(null, 0, 0, e.getCause()));
+            }
+        }
+        return results;
+    }
+
+    private Result solveOne(final Problem problem) {
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>(Arrays.asList(common));
+        args.addAll(problem.toOptimizationData());
+        NewtonWorkspace workspace = workspaces.poll();
+        if (workspace == null) workspace = new NewtonWorkspace();
+        args.add(workspace);
+        OptimizationData[] argv = args.toArray(new OptimizationData[0]);
+        try {
+            if (problem.inequalities != null) {
+                BarrierOptimizer barrier = new BarrierOptimizer();
+                PointValuePair pvp = barrier.optimize(argv);
+                return new Result(pvp, barrier.getIterations(), barrier.getNewtonIterations(), null);
+            } else {
+                NewtonOptimizer newton = new NewtonOptimizer();
+                PointValuePair pvp = newton.optimize(argv);
+                return new Result(pvp, newton.getIterations(), newton.getIterations(), null);
+            }
+        } catch (RuntimeException e) {
+            return new Result(null, 0, 0, e);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    /**
+     * One problem of a batch: an objective, optional linear inequality and equality
+     * constraints, and an optional initial guess (which must be strictly feasible
+     * for the inequality constraints).
+     */
+    public static class Problem {
+        public final ConvexFunction objective;
+        public final LinearInequalityConstraint inequalities;
+        public final LinearEqualityConstraint equalities;
+        public final InitialGuess initialGuess;
+
+        /**
+         * @param objective the convex objective function
+         * @param inequalities inequality constraints, or null
+         * @param equalities equality constraints, or null
+         * @param initialGuess the starting point, or null to start from zero
+         */
+        public Problem(
+                final ConvexFunction objective,
+                final LinearInequalityConstraint inequalities,
+                final LinearEqualityConstraint equalities,
+                final InitialGuess initialGuess) {
+            if (objective == null) throw new IllegalArgumentException("objective is required");
+            this.objective = objective;
+            this.inequalities = inequalities;
+            this.equalities = equalities;
+            this.initialGuess = initialGuess;
+        }
+
+        List<OptimizationData> toOptimizationData() {
+            ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+            args.add(new ObjectiveFunction(objective));
+            if (inequalities != null) args.add(inequalities);
+            if (equalities != null) args.add(equalities);
+            if (initialGuess != null) args.add(initialGuess);
+            return args;
+        }
+    }
+
+    /**
+     * The outcome of one problem: either a solution, or the failure that prevented it.
+     */
+    public static class Result {
+        /** The solution and objective value, or null if the solve failed */
+        public final PointValuePair solution;
+        /** The number of outer barrier iterations, or of Newton iterations for problems without inequalities */
+        public final int iterations;
+        /** The total number of Newton iterations */
+        public final int newtonIterations;
+        /** The exception that ended the solve, or null on success */
+        public final Throwable failure;
+
+        public Result(final PointValuePair solution, final int iterations,
+                      final int newtonIterations, final Throwable failure) {
+            this.solution = solution;
+            this.iterations = iterations;
+            this.newtonIterations = newtonIterations;
+            this.failure = failure;
+        }
+
+        public boolean isSuccess() { return failure == null; }
+    }
+}
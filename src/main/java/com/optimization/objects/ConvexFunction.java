@@ -1,6 +1,8 @@
 package com.optimization.objects;
 
+import com.optimization.util.SparseMatrix;
 import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -40,6 +42,190 @@ public abstract class ConvexFunction implements MultivariateFunction {
      */
     public abstract RealMatrix hessian(final RealVector x);
 
+    /**
+     * Evaluate the gradient into a caller-provided buffer. <p>
+     * The default delegates to {@link #gradient(RealVector)}; functions used on the
+     * Newton hot path override this to avoid allocating.
+     * @param x - point at which to evaluate gradient.
+     * @param g - receives the gradient of this function at (x)
+     */
+    public void gradient(final double[] x, final double[] g) {
+        RealVector gv = gradient(new ArrayRealVector(x, false));
+        for (int j = 0; j < g.length; ++j) g[j] = gv.getEntry(j);
+    }
+
+    /**
+     * Evaluate the Hessian into a caller-provided (n x n) buffer. <p>
+     * The default delegates to {@link #hessian(RealVector)}; functions used on the
+     * Newton hot path override this to avoid allocating.
+     * @param x - point at which to evaluate Hessian.
+     * @param h - receives the Hessian of this function at (x)
+     */
+    public void hessian(final double[] x, final double[][] h) {
+        RealMatrix hm = hessian(new ArrayRealVector(x, false));
+        for (int j = 0; j < h.length; ++j)
+            for (int k = 0; k < h.length; ++k)
+                h[j][k] = hm.getEntry(j, k);
+    }
+
+    /**
+     * @return true if the Hessian is the same at every point, as for quadratic and linear
+     * functions; optimizers may then evaluate and factor it only once
+     */
+    public boolean isHessianConstant() {
+        return false;
+    }
+
+    /**
+     * Evaluate the product of the Hessian at x with a vector v. <p>
+     * The default evaluates the dense Hessian, allocating O(n^2) storage;
+     * functions with cheaper products override this.
+     * @param x - point at which to evaluate Hessian.
+     * @param v - the vector to multiply
+     * @param hv - receives the product of the Hessian at (x) with v
+     */
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        final int n = dimensions();
+        double[][] h = new double[n][n];
+        hessian(x, h);
+        for (int j = 0; j < n; ++j) {
+            double s = 0.0;
+            for (int k = 0; k < n; ++k) s += h[j][k] * v[k];
+            hv[j] = s;
+        }
+    }
+
+    /**
+     * Evaluate the diagonal of the Hessian at x, as for a Jacobi preconditioner. <p>
+     * The default evaluates the dense Hessian, allocating O(n^2) storage; functions with
+     * cheaper Hessian-vector products override this too.
+     * @param x - point at which to evaluate Hessian.
+     * @param d - receives the diagonal of the Hessian at (x)
+     */
+    public void hessianDiagonal(final double[] x, final double[] d) {
+        final int n = dimensions();
+        double[][] h = new double[n][n];
+        hessian(x, h);
+        for (int j = 0; j < n; ++j) d[j] = h[j][j];
+    }
+
+    /**
+     * @return the Hessian in the form diag(d) + U.UT with U of (n x r) at every point, as for a
+     * factor model, so that it may be solved by the Woodbury identity in O(n.r^2) rather than
+     * factored as a dense matrix in O(n^3); or null if no such form is known, the default
+     */
+    public LowRankHessian lowRankHessian() {
+        return null;
+    }
+
+    /**
+     * The largest step s such that x + s.dx may be in the domain of this function, for a line
+     * search to start from, rather than discovering the boundary by trial evaluations. <p>
+     * Functions whose domain is bounded by linear constraints, such as log barriers, override
+     * this with a ratio test over the constraint rows; the bound is exact when every constraint
+     * is linear, and otherwise an upper bound. The default returns +inf, meaning no bound is known.
+     * A call to {@link #beginLine(double[], double[])} with the same, unchanged x and dx may reuse
+     * the products computed here.
+     * @param x - a point in the domain of this function
+     * @param dx - the direction of the step
+     * @return the largest feasible step, &gt; 0, or +inf if none is known
+     */
+    public double maxStep(final double[] x, final double[] dx) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Prepare to evaluate this function along the line x + s.dx, for a line search. <p>
+     * Functions whose restriction to a line is much cheaper to evaluate than the function
+     * itself, such as log barriers of linear constraints on a quadratic objective, override
+     * this and {@link #lineEvaluate(double, double[])} to precompute whatever does not depend
+     * on s. The default returns false. x and dx must not change during the line search.
+     * @param x - the start of the line, in the domain of this function
+     * @param dx - the direction of the line
+     * @return true if {@link #lineEvaluate(double, double[])} may be used along this line
+     */
+    public boolean beginLine(final double[] x, final double[] dx) {
+        return false;
+    }
+
+    /**
+     * Evaluate this function, and optionally its gradient, at x + s.dx on the line of the
+     * last successful {@link #beginLine(double[], double[])}.
+     * @param s - the step along the line
+     * @param g - receives the gradient at (x + s.dx), or null if it is not required
+     * @return the value of this function at (x + s.dx)
+     */
+    public double lineEvaluate(final double s, final double[] g) {
+        throw new UnsupportedOperationException("beginLine is not supported");
+    }
+
+    /**
+     * Evaluate the Hessian in sparse form, as its upper triangle. <p>
+     * The default evaluates the dense Hessian, taking O(n^2) time and memory; functions
+     * used in large sparse problems override this. Implementations should return the same
+     * non-zero pattern at every point where possible, so that sparse solvers can reuse
+     * their symbolic factorization.
+     * @param x - point at which to evaluate Hessian.
+     * @return the upper triangle of the Hessian of this function at (x)
+     */
+    public SparseMatrix sparseHessian(final double[] x) {
+        final int n = dimensions();
+        double[][] h = new double[n][n];
+        hessian(x, h);
+        return SparseMatrix.upperFromDense(h);
+    }
+
+    /**
+     * Evaluate the value, and optionally the gradient and Hessian, in a single pass. <p>
+     * Composite functions override this so that intermediate results (such as the
+     * values of their component functions) are computed once and shared between the
+     * value and its derivatives. The default delegates to the individual methods.
+     * If the returned value is infinite, the contents of g and h are unspecified.
+     * @param x - point at which to evaluate.
+     * @param g - receives the gradient at (x), or null if the gradient is not required
+     * @param h - receives the Hessian at (x), or null if the Hessian is not required
+     * @return the value of this function at (x)
+     */
+    public double evaluate(final double[] x, final double[] g, final double[][] h) {
+        double v = value(x);
+        if (g != null) gradient(x, g);
+        if (h != null) hessian(x, h);
+        return v;
+    }
+
+    /**
+     * Evaluate this function and its derivatives up to the requested order. <p>
+     * The default delegates to {@link #value(RealVector)}, {@link #gradient(RealVector)}
+     * and {@link #hessian(RealVector)}.
+     * @param x - point at which to evaluate.
+     * @param order - 0 for the value only, 1 to include the gradient, 2 to include the Hessian
+     * @return the value, gradient and Hessian at (x); derivatives not requested are null
+     */
+    public Evaluation evaluate(final RealVector x, final int order) {
+        double v = value(x);
+        RealVector g = (order >= 1) ? gradient(x) : null;
+        RealMatrix h = (order >= 2) ? hessian(x) : null;
+        return new Evaluation(v, g, h);
+    }
+
+    /**
+     * Implements {@link #evaluate(RealVector, int)} on top of
+     * {@link #evaluate(double[], double[], double[][])}, for subclasses whose fused
+     * buffer-based evaluation is cheaper than the individual methods.
+     * @param x - point at which to evaluate.
+     * @param order - 0 for the value only, 1 to include the gradient, 2 to include the Hessian
+     * @return the value, gradient and Hessian at (x); derivatives not requested are null
+     */
+    protected final Evaluation evaluateFused(final RealVector x, final int order) {
+        final int n = dimensions();
+        double[] g = (order >= 1) ? new double[n] : null;
+        double[][] h = (order >= 2) ? new double[n][n] : null;
+        double v = evaluate(x.toArray(), g, h);
+        return new Evaluation(v,
+                (g != null) ? new ArrayRealVector(g, false) : null,
+                (h != null) ? new Array2DRowRealMatrix(h, false) : null);
+    }
+
     /**
      * @param x a point to evaluate this function at.
      * @return the value of this function at (x)
@@ -1,18 +1,32 @@
 package com.optimization.objects;
 
+import com.optimization.util.ParallelEvaluation;
 import com.optimization.util.SmoothMaxFunction;
 import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.optim.InitialGuess;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
 import org.apache.commons.math3.optim.nonlinear.scalar.MultivariateOptimizer;
 import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class ConvexOptimizer extends MultivariateOptimizer {
+    // the rounds without progress after which the default phase I search gives up
+    private static final int STALLED_ROUNDS = 3;
+
     protected ConvexFunction convexObjective;
 
     protected ConvexOptimizer() {
@@ -22,6 +36,7 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
     @Override
     protected void parseOptimizationData(OptimizationData... optData) {
         super.parseOptimizationData(optData);
+        convexObjective = null;
         for (OptimizationData data: optData) {
             if (data instanceof ObjectiveFunction) {
                 MultivariateFunction f = ((ObjectiveFunction)data).getObjectiveFunction();
@@ -41,12 +56,36 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
         return super.optimize(optData);
     }
 
+    /**
+     * Phase I: find a point that strictly satisfies the {@link LinearInequalityConstraint}s
+     * and satisfies the {@link LinearEqualityConstraint}, starting from the {@link InitialGuess}
+     * if given, or else from the origin. <p>
+     * By default, this minimizes the smooth max over the constraints in rounds of increasing
+     * sharpness, each within an n-ball around the previous point, until a round ends at a
+     * feasible point or stops moving; or, as on an infeasible problem, until the max over the
+     * constraints has stopped decreasing for three rounds, or after
+     * {@link PhaseI#MAX_ITERATIONS_DEFAULT} Newton iterations in all. A {@link PhaseI} argument selects a search that stops at
+     * the first feasible point instead, with an iteration limit, a choice of the smooth max or of
+     * a slack variable phase I problem, and optional parallel multi-start. With no inequality
+     * constraints, the result is the point nearest the start that satisfies the equalities. <p>
+     * {@link SimpleBounds} are kept as a diagonal barrier by the {@link PhaseI.Method#SLACK}
+     * search, which then starts from the initial guess moved strictly inside them, and are
+     * treated as constraint rows otherwise.
+     * @param optData constraints (a {@link LinearConstraintSet} is read as a snapshot of its
+     * current rows, and a {@link LinearConstraintBlock} is copied), and optionally SimpleBounds, an InitialGuess, PhaseI settings,
+     * {@link ParallelEvaluation} and arguments for the {@link NewtonOptimizer}
+     * @return the point found, and the largest of the inequality constraint values there,
+     * which is negative if and only if the point is strictly feasible
+     */
     public static PointValuePair feasiblePoint(OptimizationData... optData) {
-        double epsilon = 1e-9;
-        RealVector initialGuess = null;
-        ArrayList<ConvexFunction> ineqConstraints = new ArrayList<ConvexFunction>();
-        final ConvexFunction[] fType = new ConvexFunction[0];
-        final OptimizationData[] odType = new OptimizationData[0];
+        double[] guess = null;
+        ParallelEvaluation parallel = null;
+        PhaseI phaseI = null;
+        LinearEqualityConstraint eqConstraint = null;
+        SimpleBounds bounds = null;
+        ArrayList<LinearFunction> ineqConstraints = new ArrayList<LinearFunction>();
+        // the dimension of a constraint set, which may be empty
+        int setDimensions = -1;
         final ArrayList<OptimizationData> solverArgs = new ArrayList<OptimizationData>();
 
         for (OptimizationData data: optData) {
@@ -54,30 +93,133 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
                 solverArgs.add(data);
             }
             if (data instanceof LinearInequalityConstraint) {
-                for (ConvexFunction f: ((LinearInequalityConstraint)data).lcf)
+                for (LinearFunction f: ((LinearInequalityConstraint)data).lcf)
                     ineqConstraints.add(f);
             }
+            if (data instanceof LinearConstraintSet) {
+                // a set may be empty, once its last constraint has been removed
+                final LinearConstraintSet set = (LinearConstraintSet)data;
+                setDimensions = set.dimensions();
+                if (set.size() > 0)
+                    for (LinearFunction f: set.toConstraint().lcf)
+                        ineqConstraints.add(f);
+            }
+            if (data instanceof LinearConstraintBlock) {
+                for (LinearFunction f: ((LinearConstraintBlock)data).toConstraint().lcf)
+                    ineqConstraints.add(f);
+            }
+            if (data instanceof LinearEqualityConstraint) {
+                eqConstraint = (LinearEqualityConstraint)data;
+            }
+            if (data instanceof ParallelEvaluation) {
+                parallel = (ParallelEvaluation)data;
+            }
+            if (data instanceof PhaseI) {
+                phaseI = (PhaseI)data;
+            }
+            if (data instanceof InitialGuess) {
+                guess = ((InitialGuess)data).getInitialGuess();
+            }
+            if (data instanceof SimpleBounds) {
+                bounds = (SimpleBounds)data;
+            }
+        }
+        if ((bounds != null) && ((phaseI == null) || (phaseI.getMethod() != PhaseI.Method.SLACK) || ineqConstraints.isEmpty())) {
+            // the bounds as rows -x[j] + l[j] < 0 and x[j] - u[j] < 0
+            final double[] lower = bounds.getLower();
+            final double[] upper = bounds.getUpper();
+            for (int j = 0; j < lower.length; ++j) {
+                if (lower[j] != Double.NEGATIVE_INFINITY) ineqConstraints.add(unit(lower.length, j, -1.0, lower[j]));
+                if (upper[j] != Double.POSITIVE_INFINITY) ineqConstraints.add(unit(lower.length, j, 1.0, -upper[j]));
+            }
+            bounds = null;
         }
 
-        // check to see if any linear equality constraints are in effect
-        boolean hasLinearInequalityConstraint = false;
-        for (OptimizationData data: solverArgs.toArray(odType))
-            if (data instanceof LinearEqualityConstraint) {
-                hasLinearInequalityConstraint = true;
+        final int n;
+        if (!ineqConstraints.isEmpty()) {
+            n = ineqConstraints.get(0).dimensions();
+        } else if (eqConstraint != null) {
+            n = eqConstraint.A.getColumnDimension();
+        } else if (guess != null) {
+            n = guess.length;
+        } else if (setDimensions >= 0) {
+            n = setDimensions;
+        } else {
+            throw new IllegalArgumentException("feasiblePoint requires constraints or an InitialGuess");
+        }
+        final double[] x0 = (guess != null) ? guess.clone() : new double[n];
+        if (x0.length != n) throw new DimensionMismatchException(x0.length, n);
+        final LinearFunction[] fk = ineqConstraints.toArray(new LinearFunction[0]);
+        if (fk.length == 0) {
+            // only the equalities, if any, remain: project x0 onto them
+            double[] x = x0;
+            if (eqConstraint != null) {
+                double[][] identity = MatrixUtils.createRealIdentityMatrix(n).getData();
+                double[] q = new double[n];
+                for (int j = 0; j < n; ++j) q[j] = -x0[j];
+                x = (new NewtonOptimizer()).optimize(
+                        new ObjectiveFunction(new QuadraticFunction(identity, q, 0.0)),
+                        eqConstraint, new InitialGuess(x0)).getFirst();
             }
-        final int n = ineqConstraints.get(0).dimensions();
-        initialGuess = new ArrayRealVector(n, 0.0);
-        final ConvexFunction[] fk = ineqConstraints.toArray(fType);
+            return new PointValuePair(x, Double.NEGATIVE_INFINITY);
+        }
+        if (phaseI == null) {
+            return smoothMax(x0, fk, solverArgs, parallel, null);
+        }
+        if ((bounds != null) && (bounds.getLower().length != n)) throw new DimensionMismatchException(bounds.getLower().length, n);
+        if (phaseI.getStarts() == 1) {
+            return search(phaseI, x0, fk, eqConstraint, bounds, solverArgs, parallel, null);
+        }
+        return multiStart(phaseI, x0, fk, eqConstraint, bounds, solverArgs, parallel);
+    }
+
+    // the row s.x[j] + c
+    private static LinearFunction unit(final int n, final int j, final double s, final double c) {
+        double[] a = new double[n];
+        a[j] = s;
+        return new LinearFunction(new ArrayRealVector(a, false), c);
+    }
+
+    // x moved strictly inside the bounds: to the midpoint of a finite interval, or else 1 away
+    // from the bound it violates
+    static double[] interior(final double[] x, final SimpleBounds bounds) {
+        final double[] lower = bounds.getLower();
+        final double[] upper = bounds.getUpper();
+        final double[] xi = x.clone();
+        for (int j = 0; j < xi.length; ++j) {
+            if ((xi[j] > lower[j]) && (xi[j] < upper[j])) continue;
+            if ((lower[j] != Double.NEGATIVE_INFINITY) && (upper[j] != Double.POSITIVE_INFINITY)) {
+                xi[j] = lower[j] + 0.5 * (upper[j] - lower[j]);
+            } else {
+                xi[j] = (xi[j] <= lower[j]) ? lower[j] + 1.0 : upper[j] - 1.0;
+            }
+        }
+        return xi;
+    }
+
+    // Minimize the smooth max over the constraints, in rounds of increasing alpha,
+    // until a round ends at a feasible point, stops moving, or the search is stopped. Without a
+    // search, it also stops once the max has not decreased for STALLED_ROUNDS rounds, as it does
+    // not on an infeasible problem, or after PhaseI.MAX_ITERATIONS_DEFAULT Newton iterations.
+    private static PointValuePair smoothMax(
+            final double[] x0, final LinearFunction[] fk,
+            final ArrayList<OptimizationData> solverArgs, final ParallelEvaluation parallel,
+            final Search search) {
+        final double epsilon = 1e-9;
+        final OptimizationData[] odType = new OptimizationData[0];
+        // the constraints, packed into one block, and the n-ball constraint of each round
+        final LinearConstraintBlock linear = LinearConstraintBlock.pack(fk);
         final double minNBallFactor = Math.log(1e-3);
-        RealVector x = initialGuess;
-        double s = fkMax(x.toArray(), fk);
+        RealVector x = new ArrayRealVector(x0);
+        double s = fkMax(x0, fk);
+        double sBest = s;
+        int stalled = 0;
+        int newtonLeft = PhaseI.MAX_ITERATIONS_DEFAULT;
 
         double alpha = 1.0;
-        while (true) {
+        while ((search == null) || !search.stopped) {
             double radius = Math.max(1.0, 2.0 * s);
             ConvexFunction nbc = QuadraticFunction.nBallConstraintFunction(x, radius, 1.0 / (radius * radius));
-            ArrayList<ConvexFunction> augConstraints = (ArrayList<ConvexFunction>)(ineqConstraints.clone());
-            augConstraints.add(nbc);
 
             double v0 = nbc.value(x);
             if (v0 < (s + minNBallFactor)) {
@@ -86,8 +228,12 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
 
             ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)solverArgs.clone();
             args.add(new InitialGuess(x.toArray()));
-            args.add(new ObjectiveFunction(new SmoothMaxFunction(alpha, augConstraints.toArray(fType))));
-            PointValuePair spvp = (new NewtonOptimizer()).optimize(args.toArray(odType));
+            args.add(new ObjectiveFunction(new SmoothMaxFunction(alpha, parallel, linear, nbc)));
+            if (search != null) args.add(search);
+            NewtonOptimizer newton = new NewtonOptimizer();
+            if (search == null) newton.setStopping(epsilon, newtonLeft);
+            PointValuePair spvp = newton.optimize(args.toArray(odType));
+            newtonLeft -= newton.getIterations();
             RealVector xprv = x;
             x = new ArrayRealVector(spvp.getFirst());
             s = fkMax(spvp.getFirst(), fk);
@@ -98,6 +244,15 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
             if (xdelta.dotProduct(xdelta) < epsilon) {
                 break;
             }
+            if (search == null) {
+                if (newtonLeft <= 0) break;
+                if (s < sBest - (epsilon * Math.max(1.0, Math.abs(sBest)))) {
+                    sBest = s;
+                    stalled = 0;
+                } else if (++stalled >= STALLED_ROUNDS) {
+                    break;
+                }
+            }
 
             // increase alpha as we converge, so that smooth-max more closely approximates true max
             // see: http://erikerlandson.github.io/blog/2019/01/02/the-smooth-max-minimum-incident-of-december-2018/
@@ -107,9 +262,159 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
         return new PointValuePair(x.toArray(), s);
     }
 
+    // Minimize s subject to f[k](x) - s <= 0 and -s - 1 <= 0 over z = (x, s), with the barrier
+    // method, from z0 = (x0, max(f[k](x0)) + 1), until the search is stopped. Bounds on x, if any,
+    // are kept by the barrier, from x0 moved inside them.
+    private static PointValuePair slack(
+            final double[] xs, final LinearFunction[] fk, final LinearEqualityConstraint eqConstraint,
+            final SimpleBounds bounds, final ParallelEvaluation parallel, final Search search) {
+        final double[] x0 = (bounds != null) ? interior(xs, bounds) : xs;
+        final int n = x0.length;
+        final int m = fk.length;
+        double[][] g = new double[m + 1][n + 1];
+        double[] h = new double[m + 1];
+        for (int k = 0; k < m; ++k) {
+            LinearFunction lf = fk[k];
+            for (int j = 0; j < n; ++j) g[k][j] = lf.getWeights().getEntry(j);
+            g[k][n] = -1.0;
+            h[k] = -lf.getConstant();
+        }
+        g[m][n] = -1.0;
+        h[m] = 1.0;
+        double[] z0 = Arrays.copyOf(x0, n + 1);
+        z0[n] = Math.max(0.0, fkMax(x0, fk) + 1.0);
+        double[] e = new double[n + 1];
+        e[n] = 1.0;
+
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        args.add(new ObjectiveFunction(new LinearFunction(new ArrayRealVector(e, false), 0.0)));
+        args.add(new LinearInequalityConstraint(new Array2DRowRealMatrix(g, false), new ArrayRealVector(h, false)));
+        if (eqConstraint != null) {
+            int p = eqConstraint.A.getRowDimension();
+            double[][] a = new double[p][];
+            for (int k = 0; k < p; ++k) a[k] = Arrays.copyOf(eqConstraint.A.getRow(k), n + 1);
+            args.add(new LinearEqualityConstraint(a, eqConstraint.b.toArray()));
+        }
+        if (bounds != null) {
+            double[] lower = Arrays.copyOf(bounds.getLower(), n + 1);
+            double[] upper = Arrays.copyOf(bounds.getUpper(), n + 1);
+            lower[n] = Double.NEGATIVE_INFINITY;
+            upper[n] = Double.POSITIVE_INFINITY;
+            args.add(new SimpleBounds(lower, upper));
+        }
+        args.add(new InitialGuess(z0));
+        args.add(search);
+        if (parallel != null) args.add(parallel);
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(args.toArray(new OptimizationData[0]));
+        double[] x = Arrays.copyOf(pvp.getFirst(), n);
+        return new PointValuePair(x, fkMax(x, fk));
+    }
+
+    // one phase I search with the given settings
+    private static PointValuePair search(
+            final PhaseI phaseI, final double[] x0, final LinearFunction[] fk,
+            final LinearEqualityConstraint eqConstraint, final SimpleBounds bounds,
+            final ArrayList<OptimizationData> solverArgs,
+            final ParallelEvaluation parallel, final AtomicBoolean found) {
+        Search search = new Search(fk, eqConstraint, phaseI.getMaxIterations(), found);
+        if (phaseI.getMethod() == PhaseI.Method.SLACK) {
+            return slack(x0, fk, eqConstraint, bounds, parallel, search);
+        }
+        return smoothMax(x0, fk, solverArgs, parallel, search);
+    }
+
+    // Run phase I searches from x0 and from random perturbations of it in parallel. Each search
+    // evaluates its functions sequentially; the first feasible point found wins, and stops the others.
+    private static PointValuePair multiStart(
+            final PhaseI phaseI, final double[] x0, final LinearFunction[] fk,
+            final LinearEqualityConstraint eqConstraint, final SimpleBounds bounds,
+            final ArrayList<OptimizationData> solverArgs, final ParallelEvaluation parallel) {
+        final int starts = phaseI.getStarts();
+        final AtomicBoolean found = new AtomicBoolean(false);
+        final AtomicReference<PointValuePair> first = new AtomicReference<PointValuePair>();
+        final PointValuePair[] results = new PointValuePair[starts];
+        final ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        for (OptimizationData data: solverArgs) {
+            if (!(data instanceof ParallelEvaluation)) args.add(data);
+        }
+        double spread = 1.0;
+        for (double xj: x0) spread = Math.max(spread, Math.abs(xj));
+        Random rnd = new Random(phaseI.getSeed());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(starts);
+        for (int i = 0; i < starts; ++i) {
+            final int start = i;
+            final double[] xi = x0.clone();
+            if (i > 0)
+                for (int j = 0; j < xi.length; ++j) xi[j] += spread * rnd.nextGaussian();
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    PointValuePair pvp = search(phaseI, xi, fk, eqConstraint, bounds, args, null, found);
+                    results[start] = pvp;
+                    if (isFeasible(pvp.getFirst(), fk, eqConstraint)) first.compareAndSet(null, pvp);
+                    return null;
+                }
+            });
+        }
+        ((parallel != null) ? parallel : new ParallelEvaluation()).invokeAll(tasks);
+        if (first.get() != null) return first.get();
+        PointValuePair best = results[0];
+        for (PointValuePair pvp: results)
+            if (pvp.getSecond() < best.getSecond()) best = pvp;
+        return best;
+    }
+
+    // strictly satisfies the inequalities, and satisfies the equalities to within 1e-9 relative
+    private static boolean isFeasible(
+            final double[] x, final ConvexFunction[] fk, final LinearEqualityConstraint eqConstraint) {
+        if (!(fkMax(x, fk) < 0.0)) return false;
+        if (eqConstraint == null) return true;
+        final int n = eqConstraint.A.getColumnDimension();
+        for (int k = 0; k < eqConstraint.A.getRowDimension(); ++k) {
+            final double bk = eqConstraint.b.getEntry(k);
+            double r = -bk;
+            for (int j = 0; j < n; ++j) r += eqConstraint.A.getEntry(k, j) * x[j];
+            if (Math.abs(r) > 1e-9 * Math.max(1.0, Math.abs(bk))) return false;
+        }
+        return true;
+    }
+
+    // Stops a phase I search at the first feasible point, after its iteration limit, or as soon
+    // as another search has found a feasible point. Points may carry extra trailing variables.
+    private static final class Search implements EarlyExit {
+        private final ConvexFunction[] fk;
+        private final LinearEqualityConstraint eqConstraint;
+        private final int maxIterations;
+        private final AtomicBoolean found;
+        private int iterations;
+        private boolean stopped;
+
+        Search(final ConvexFunction[] fk, final LinearEqualityConstraint eqConstraint,
+               final int maxIterations, final AtomicBoolean found) {
+            this.fk = fk;
+            this.eqConstraint = eqConstraint;
+            this.maxIterations = maxIterations;
+            this.found = found;
+        }
+
+        @Override
+        public boolean stopAt(final double[] x) {
+            if (stopped) return true;
+            if (isFeasible(x, fk, eqConstraint)) {
+                if (found != null) found.set(true);
+                stopped = true;
+            } else if ((++iterations > maxIterations) || ((found != null) && found.get())) {
+                stopped = true;
+            }
+            return stopped;
+        }
+    }
+
     private static boolean canPassFromMain(OptimizationData data) {
         if (data instanceof InitialGuess) return false;
         if (data instanceof ObjectiveFunction) return false;
+        if (data instanceof PhaseI) return false;
+        if (data instanceof SimpleBounds) return false;
         return true;
     }
 
@@ -0,0 +1,18 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * A condition that stops {@link NewtonOptimizer} at the first iterate satisfying it, returning
+ * that iterate; {@link BarrierOptimizer} also stops its outer iterations there. Phase I uses
+ * it to stop at the first strictly feasible point, rather than converging to the optimum of
+ * its auxiliary problem.
+ */
+public interface EarlyExit extends OptimizationData {
+    /**
+     * Called with the starting point and with each accepted Newton iterate.
+     * @param x the current iterate
+     * @return true to stop at x
+     */
+    boolean stopAt(double[] x);
+}
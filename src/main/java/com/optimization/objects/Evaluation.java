@@ -0,0 +1,23 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * The value of a {@link ConvexFunction} at a point, together with whichever
+ * derivatives were requested from {@link ConvexFunction#evaluate(RealVector, int)}.
+ */
+public class Evaluation {
+    /** The function value */
+    public final double value;
+    /** The gradient, or null if it was not requested */
+    public final RealVector gradient;
+    /** The Hessian, or null if it was not requested */
+    public final RealMatrix hessian;
+
+    public Evaluation(final double value, final RealVector gradient, final RealMatrix hessian) {
+        this.value = value;
+        this.gradient = gradient;
+        this.hessian = hessian;
+    }
+}
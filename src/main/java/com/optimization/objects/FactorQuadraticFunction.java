@@ -0,0 +1,214 @@
+package com.optimization.objects;
+
+import com.optimization.util.Kernels;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * A quadratic function whose quadratic weights are a factor model, diagonal plus low rank:
+ *      - Given F (n x k), d, b, c
+ *      - Implements 0.5*(x^T)(F.FT + diag(d))(x) + b.x + c
+ *      - F.(FT.x) + d*x + b is the gradient
+ *      - F.FT + diag(d) is the Hessian Matrix
+ * <p>
+ * F is stored by columns, in O(n.k) memory, and the value, gradient and Hessian-vector
+ * products take O(n.k) time, through the k factor exposures FT.x, rather than the O(n^2) of a
+ * dense {@link QuadraticFunction}. The Hessian is exposed in the form diag(d) + U.UT with U = F
+ * (see {@link #lowRankHessian()}), so that Newton steps are solved by the Woodbury identity; only
+ * {@link #hessian(RealVector)} and {@link #hessian(double[], double[][])} form the dense matrix.
+ */
+public class FactorQuadraticFunction extends ConvexFunction {
+    private final int n;
+    private final int k;
+    // the columns of F, as k rows of length n
+    private final double[][] columns;
+    private final double[] d;
+    private final double[] b;
+    private final double c;
+
+    /**
+     * Construct quadratic function 0.5*(x^T)(F.FT + diag(d))(x) + b.x + c
+     *
+     * @param F (n x k) matrix of factor loadings
+     * @param d Vector of the diagonal weights, such as idiosyncratic variances, &gt;= 0
+     * @param b Vector of weights for linear terms
+     * @param c Constant
+     */
+    public FactorQuadraticFunction(RealMatrix F, RealVector d, RealVector b, double c) {
+        this.n = F.getRowDimension();
+        this.k = F.getColumnDimension();
+        if (d.getDimension() != n) throw new DimensionMismatchException(d.getDimension(), n);
+        if (b.getDimension() != n) throw new DimensionMismatchException(b.getDimension(), n);
+        this.columns = F.transpose().getData();
+        this.d = d.toArray();
+        for (int i = 0; i < n; ++i) {
+            if (!(this.d[i] >= 0.0)) throw new IllegalArgumentException("diagonal weights must be >= 0");
+        }
+        this.b = b.toArray();
+        this.c = c;
+    }
+
+    /**
+     * Construct quadratic function 0.5*(x^T)(F.FT + diag(d))(x) + b.x + c using arrays
+     */
+    public FactorQuadraticFunction(double[][] F, double[] d, double[] b, double c) {
+        this(new Array2DRowRealMatrix(F), new ArrayRealVector(d), new ArrayRealVector(b), c);
+    }
+
+    @Override
+    public int dimensions() {
+        return n;
+    }
+
+    /**
+     * @return the number of factors k
+     */
+    public int factors() {
+        return k;
+    }
+
+    /**
+     * @return a copy of the factor loadings F
+     */
+    public RealMatrix getFactors() {
+        return new Array2DRowRealMatrix(columns, false).transpose();
+    }
+
+    /**
+     * @return a copy of the diagonal weights d
+     */
+    public RealVector getDiagonal() {
+        return new ArrayRealVector(d);
+    }
+
+    /**
+     * @return a copy of the weight vector b of the linear terms
+     */
+    public RealVector getWeights() {
+        return new ArrayRealVector(b);
+    }
+
+    /**
+     * @return the constant c
+     */
+    public double getConstant() {
+        return c;
+    }
+
+    /**
+     * @return the same function as a dense {@link QuadraticFunction}, of O(n^2) memory
+     */
+    public QuadraticFunction toQuadraticFunction() {
+        double[][] h = new double[n][n];
+        hessian(null, h);
+        return new QuadraticFunction(new Array2DRowRealMatrix(h, false), new ArrayRealVector(b), c);
+    }
+
+    @Override
+    public double value(final RealVector x) {
+        return evaluate(x.toArray(), null, null);
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        double[] g = new double[n];
+        evaluate(x.toArray(), g, null);
+        return new ArrayRealVector(g, false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        double[][] h = new double[n][n];
+        hessian(null, h);
+        return new Array2DRowRealMatrix(h, false);
+    }
+
+    @Override
+    public Evaluation evaluate(final RealVector x, final int order) {
+        return evaluateFused(x, order);
+    }
+
+    @Override
+    public double value(final double[] x) {
+        return evaluate(x, null, null);
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        evaluate(x, g, null);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] h) {
+        for (int i = 0; i < n; ++i) {
+            java.util.Arrays.fill(h[i], i, n, 0.0);
+            h[i][i] = d[i];
+        }
+        for (int j = 0; j < k; ++j) Kernels.rank1Upper(1.0, columns[j], h, n);
+        Kernels.symmetrize(h, n);
+    }
+
+    @Override
+    public boolean isHessianConstant() {
+        return true;
+    }
+
+    @Override
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        final double[] fv = exposures(v);
+        for (int i = 0; i < n; ++i) hv[i] = d[i] * v[i];
+        for (int j = 0; j < k; ++j) Kernels.axpy(fv[j], columns[j], 0, hv, 0, n);
+    }
+
+    @Override
+    public void hessianDiagonal(final double[] x, final double[] diag) {
+        System.arraycopy(d, 0, diag, 0, n);
+        for (int j = 0; j < k; ++j) {
+            final double[] fj = columns[j];
+            for (int i = 0; i < n; ++i) diag[i] += fj[i] * fj[i];
+        }
+    }
+
+    /**
+     * @return the constant Hessian with U = F, whose diagonal is positive when every d[i] is
+     */
+    @Override
+    public LowRankHessian lowRankHessian() {
+        boolean positive = true;
+        for (int i = 0; i < n; ++i) positive &= d[i] > 0.0;
+        return new LowRankHessian(k, positive) {
+            @Override
+            public void evaluate(final double[] x, final double[] diag, final double[][] u) {
+                System.arraycopy(d, 0, diag, 0, n);
+                for (int j = 0; j < k; ++j) System.arraycopy(columns[j], 0, u[j], 0, n);
+            }
+        };
+    }
+
+    /**
+     * Computes the factor exposures FT.x once and shares them between the value and the gradient.
+     */
+    @Override
+    public double evaluate(final double[] x, final double[] g, final double[][] h) {
+        final double[] fx = exposures(x);
+        double v = 0.5 * Kernels.dot(fx, 0, fx, 0, k);
+        for (int i = 0; i < n; ++i) {
+            v += ((0.5 * d[i] * x[i]) + b[i]) * x[i];
+            if (g != null) g[i] = (d[i] * x[i]) + b[i];
+        }
+        if (g != null)
+            for (int j = 0; j < k; ++j) Kernels.axpy(fx[j], columns[j], 0, g, 0, n);
+        if (h != null) hessian(x, h);
+        return v + c;
+    }
+
+    // FT.x, one dot product per column of F
+    private double[] exposures(final double[] x) {
+        double[] fx = new double[k];
+        for (int j = 0; j < k; ++j) fx[j] = Kernels.dot(columns[j], 0, x, 0, n);
+        return fx;
+    }
+}
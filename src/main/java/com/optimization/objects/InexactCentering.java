@@ -0,0 +1,58 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Inexact centering for {@link BarrierOptimizer}: every centering step but the last stops
+ * early, once the Newton decrement of the barrier function satisfies lambda^2/2 &lt;= r.m,
+ * or after a fixed number of Newton iterations. <p>
+ * lambda^2/2 estimates the suboptimality of a centering step in units of (t)f0 + phi, so the
+ * tolerance r.m puts x within about r times the current duality gap m/t of the central point,
+ * in units of f0: loose at small t, where the central point is only a stepping stone, and
+ * tight as t grows. The last centering step always runs to full accuracy, and
+ * {@link BarrierOptimizer#getAccuracy()} reports the accuracy achieved.
+ */
+public class InexactCentering implements OptimizationData {
+    /** The default relative tolerance r */
+    public static final double RELATIVE_TOLERANCE_DEFAULT = 0.1;
+    /** The default limit on Newton iterations per early centering step */
+    public static final int MAX_NEWTON_STEPS_DEFAULT = 20;
+
+    private final double relativeTolerance;
+    private final int maxNewtonSteps;
+
+    /**
+     * Inexact centering with the default relative tolerance and Newton step limit.
+     */
+    public InexactCentering() {
+        this(RELATIVE_TOLERANCE_DEFAULT, MAX_NEWTON_STEPS_DEFAULT);
+    }
+
+    /**
+     * @param relativeTolerance the relative tolerance r, &gt; 0
+     * @param maxNewtonSteps the limit on Newton iterations per early centering step, &gt;= 1
+     */
+    public InexactCentering(final double relativeTolerance, final int maxNewtonSteps) {
+        if (!(relativeTolerance > 0.0)) throw new IllegalArgumentException("relativeTolerance must be > 0");
+        if (maxNewtonSteps < 1) throw new IllegalArgumentException("maxNewtonSteps must be >= 1");
+        this.relativeTolerance = relativeTolerance;
+        this.maxNewtonSteps = maxNewtonSteps;
+    }
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    public int getMaxNewtonSteps() {
+        return maxNewtonSteps;
+    }
+
+    /**
+     * @param m the number of inequality constraints
+     * @param epsilon the tolerance of an exact centering step
+     * @return the tolerance on lambda^2/2 for an early centering step
+     */
+    public double tolerance(final int m, final double epsilon) {
+        return Math.max(epsilon, relativeTolerance * m);
+    }
+}
@@ -0,0 +1,22 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * A starting value for the dual variables (nu) of the equality constraints Ax = b,
+ * used by {@link NewtonOptimizer} in place of nu = 0.
+ */
+public class InitialDual implements OptimizationData {
+    private final double[] nu;
+
+    /**
+     * @param nu the initial dual vector, one entry per row of A
+     */
+    public InitialDual(final double[] nu) {
+        this.nu = nu.clone();
+    }
+
+    public double[] getDual() {
+        return nu.clone();
+    }
+}
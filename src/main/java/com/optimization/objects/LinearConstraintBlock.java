@@ -0,0 +1,423 @@
+package com.optimization.objects;
+
+import com.optimization.util.Kernels;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * A block of m linear inequality constraints a[k].x &lt; b[k], stored as one contiguous
+ * row-major (m x n) array, either on the heap or off-heap in a direct buffer, with the
+ * offsets c[k] = -b[k] on the heap. <p>
+ * The kernels work on a range of rows at once: the residuals a[k].x + c[k] as one matrix-vector
+ * product, sum(w[k].a[k]), and the scaled Gram matrix sum(w[k].a[k].a[k]T) in blocks of rows,
+ * so that the log barrier and smooth max functions evaluate linear constraints in tight loops
+ * over primitive arrays, rather than through one {@link LinearFunction} object per row.
+ * A block is immutable, except one made by {@link #wrap}, which reads its arrays in place.
+ */
+public class LinearConstraintBlock implements OptimizationData {
+    // number of rows processed together during Gram matrix assembly
+    private static final int ROW_BLOCK = 64;
+
+    private final int m;
+    private final int n;
+    // the rows, on the heap, or else off-heap
+    private final double[] a;
+    private final DoubleBuffer da;
+    private final double[] c;
+    // the column of the only non-zero coefficient of each row, or -1, and the number of such
+    // bound rows; found once, unless the rows are read in place, and so may change
+    private final int[] boundCols;
+    private final int boundCount;
+
+    private LinearConstraintBlock(final double[] a, final DoubleBuffer da, final double[] c, final int m, final int n,
+                                  final boolean inPlace) {
+        this.a = a;
+        this.da = da;
+        this.c = c;
+        this.m = m;
+        this.n = n;
+        if (inPlace) {
+            this.boundCols = null;
+            this.boundCount = -1;
+        } else {
+            this.boundCols = new int[m];
+            int count = 0;
+            for (int k = 0; k < m; ++k) {
+                boundCols[k] = scanBoundColumn(k);
+                if (boundCols[k] >= 0) ++count;
+            }
+            this.boundCount = count;
+        }
+    }
+
+    /**
+     * Construct a block of the constraints Ax &lt; b, on the heap
+     * @param A A matrix linear coefficient vectors
+     * @param b A vector of constants
+     */
+    public LinearConstraintBlock(final RealMatrix A, final RealVector b) {
+        this(rows(A), null, offsets(A, b), A.getRowDimension(), A.getColumnDimension(), false);
+    }
+
+    /**
+     * @param A A matrix linear coefficient vectors
+     * @param b A vector of constants
+     * @return a block of the constraints Ax &lt; b, whose rows are stored off-heap,
+     * in a direct buffer in native byte order
+     * @throws IllegalArgumentException if the rows take more than Integer.MAX_VALUE bytes,
+     * the capacity of a direct buffer
+     */
+    public static LinearConstraintBlock direct(final RealMatrix A, final RealVector b) {
+        final int m = A.getRowDimension();
+        final int n = A.getColumnDimension();
+        final long bytes = Math.multiplyExact(Math.multiplyExact(8L, (long) m), (long) n);
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("a direct block holds at most " + Integer.MAX_VALUE
+                    + " bytes, and " + m + " x " + n + " rows take " + bytes);
+        DoubleBuffer da = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        for (int k = 0; k < m; ++k) {
+            da.put(A.getRow(k));
+        }
+        return new LinearConstraintBlock(null, da, offsets(A, b), m, n, false);
+    }
+
+    /**
+     * @param a the rows, row-major, at least (m x n); read in place, not copied
+     * @param c the offsets -b, at least m; read in place, not copied
+     * @param m the number of rows
+     * @param n the dimension of x
+     * @return a block of the constraints a[k].x + c[k] &lt; 0 over the given arrays
+     */
+    public static LinearConstraintBlock wrap(final double[] a, final double[] c, final int m, final int n) {
+        if (a.length < m * n) throw new DimensionMismatchException(a.length, m * n);
+        if (c.length < m) throw new DimensionMismatchException(c.length, m);
+        return new LinearConstraintBlock(a, null, c, m, n, true);
+    }
+
+    /**
+     * @param f linear constraint functions of the same dimension, at least one
+     * @return a block of the constraints f[k](x) &lt; 0, on the heap
+     */
+    public static LinearConstraintBlock pack(final LinearFunction[] f) {
+        if (f.length < 1) throw new IllegalArgumentException("list of functions must be nonempty");
+        final int n = f[0].dimensions();
+        double[] a = new double[f.length * n];
+        double[] c = new double[f.length];
+        for (int k = 0; k < f.length; ++k) {
+            if (f[k].dimensions() != n) throw new DimensionMismatchException(f[k].dimensions(), n);
+            RealVector w = f[k].getWeights();
+            for (int j = 0; j < n; ++j) a[k * n + j] = w.getEntry(j);
+            c[k] = f[k].getConstant();
+        }
+        return new LinearConstraintBlock(a, null, c, f.length, n, false);
+    }
+
+    /**
+     * @param blocks blocks of the same dimension, at least one
+     * @return one block of all their rows, in order, on the heap
+     */
+    public static LinearConstraintBlock stack(final List<LinearConstraintBlock> blocks) {
+        final int n = blocks.get(0).n;
+        int m = 0;
+        for (LinearConstraintBlock b: blocks) {
+            if (b.n != n) throw new DimensionMismatchException(b.n, n);
+            m += b.m;
+        }
+        double[] a = new double[m * n];
+        double[] c = new double[m];
+        int k = 0;
+        for (LinearConstraintBlock b: blocks) {
+            for (int i = 0; i < b.m; ++i, ++k) {
+                b.copyRow(i, a, k * n);
+                c[k] = b.c[i];
+            }
+        }
+        return new LinearConstraintBlock(a, null, c, m, n, false);
+    }
+
+    private static double[] rows(final RealMatrix A) {
+        final int m = A.getRowDimension();
+        final int n = A.getColumnDimension();
+        double[] a = new double[m * n];
+        for (int k = 0; k < m; ++k) {
+            System.arraycopy(A.getRow(k), 0, a, k * n, n);
+        }
+        return a;
+    }
+
+    private static double[] offsets(final RealMatrix A, final RealVector b) {
+        final int m = A.getRowDimension();
+        if (b.getDimension() != m) {
+            throw new DimensionMismatchException(b.getDimension(), m);
+        }
+        double[] c = new double[m];
+        for (int k = 0; k < m; ++k) c[k] = -b.getEntry(k);
+        return c;
+    }
+
+    /** @return the number of rows m */
+    public int rows() {
+        return m;
+    }
+
+    /** @return the dimension of x */
+    public int dimensions() {
+        return n;
+    }
+
+    /** @return true if the rows are stored off-heap */
+    public boolean isDirect() {
+        return da != null;
+    }
+
+    /**
+     * @param k a row index
+     * @return a copy of the coefficients a[k]
+     */
+    public double[] getRow(final int k) {
+        double[] row = new double[n];
+        copyRow(k, row, 0);
+        return row;
+    }
+
+    /**
+     * @param k a row index
+     * @return the constant b[k]
+     */
+    public double getBound(final int k) {
+        return -c[k];
+    }
+
+    /**
+     * @return the constraints, copied into one {@link LinearFunction} per row
+     */
+    public LinearInequalityConstraint toConstraint() {
+        double[][] rows = new double[m][];
+        double[] b = new double[m];
+        for (int k = 0; k < m; ++k) {
+            rows[k] = getRow(k);
+            b[k] = -c[k];
+        }
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(rows, false), new ArrayRealVector(b, false));
+    }
+
+    /**
+     * r[k] = a[k].x for the rows k in [lo, hi)
+     * @param x a point
+     * @param r the products, indexed by row
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void multiply(final double[] x, final double[] r, final int lo, final int hi) {
+        final int n = this.n;
+        if (a != null) {
+            final double[] a = this.a;
+            for (int k = lo; k < hi; ++k) r[k] = Kernels.dot(a, k * n, x, 0, n);
+        } else {
+            final DoubleBuffer da = this.da;
+            for (int k = lo; k < hi; ++k) {
+                final int row = k * n;
+                double v = 0.0;
+                for (int j = 0; j < n; ++j) v += da.get(row + j) * x[j];
+                r[k] = v;
+            }
+        }
+    }
+
+    /**
+     * r[k] = a[k].x + c[k], the constraint values, for the rows k in [lo, hi)
+     * @param x a point
+     * @param r the constraint values, indexed by row
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void residuals(final double[] x, final double[] r, final int lo, final int hi) {
+        multiply(x, r, lo, hi);
+        for (int k = lo; k < hi; ++k) r[k] += c[k];
+    }
+
+    /**
+     * g += sum(w[k].a[k]) over the rows k in [lo, hi)
+     * @param w the row weights, indexed by row
+     * @param g the sum
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void addTransposeMultiply(final double[] w, final double[] g, final int lo, final int hi) {
+        final int n = this.n;
+        if (a != null) {
+            final double[] a = this.a;
+            for (int k = lo; k < hi; ++k) Kernels.axpy(w[k], a, k * n, g, 0, n);
+        } else {
+            final DoubleBuffer da = this.da;
+            for (int k = lo; k < hi; ++k) {
+                final int row = k * n;
+                final double wk = w[k];
+                for (int j = 0; j < n; ++j) g[j] += wk * da.get(row + j);
+            }
+        }
+    }
+
+    /**
+     * h += sum(w[k].a[k].a[k]T) over the rows k in [lo, hi), on the upper triangle of h only.
+     * This is accumulated in blocks of rows, so a block stays in cache while it is swept
+     * against every row of h.
+     * @param w the row weights, indexed by row
+     * @param h the sum
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void addScaledGram(final double[] w, final double[][] h, final int lo, final int hi) {
+        final int n = this.n;
+        for (int b0 = lo; b0 < hi; b0 += ROW_BLOCK) {
+            final int b1 = Math.min(hi, b0 + ROW_BLOCK);
+            for (int j = 0; j < n; ++j) {
+                final double[] hj = h[j];
+                if (a != null) {
+                    final double[] a = this.a;
+                    for (int k = b0; k < b1; ++k) {
+                        final int row = k * n;
+                        final double akj = a[row + j];
+                        if (akj == 0.0) continue;
+                        Kernels.axpy(w[k] * akj, a, row + j, hj, j, n - j);
+                    }
+                } else {
+                    final DoubleBuffer da = this.da;
+                    for (int k = b0; k < b1; ++k) {
+                        final int row = k * n;
+                        final double akj = da.get(row + j);
+                        if (akj == 0.0) continue;
+                        final double s = w[k] * akj;
+                        for (int l = j; l < n; ++l) hj[l] += s * da.get(row + l);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * d[j] += sum(w[k].a[k][j]^2) over the rows k in [lo, hi), the diagonal of the scaled Gram matrix
+     * @param w the row weights, indexed by row
+     * @param d the sum
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void addScaledSquares(final double[] w, final double[] d, final int lo, final int hi) {
+        final int n = this.n;
+        for (int k = lo; k < hi; ++k) {
+            final int row = k * n;
+            final double wk = w[k];
+            if (a != null) {
+                for (int j = 0; j < n; ++j) {
+                    final double akj = a[row + j];
+                    d[j] += wk * akj * akj;
+                }
+            } else {
+                for (int j = 0; j < n; ++j) {
+                    final double akj = da.get(row + j);
+                    d[j] += wk * akj * akj;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows with exactly one non-zero coefficient, which are bounds on single variables;
+     * counted when the block is made, or else on every call for a block made by {@link #wrap}
+     */
+    public int boundRows() {
+        if (boundCols != null) return boundCount;
+        int count = 0;
+        for (int k = 0; k < m; ++k) {
+            if (boundColumn(k) >= 0) ++count;
+        }
+        return count;
+    }
+
+    /**
+     * sum(w[k].a[k].a[k]T) over the rows k in [lo, hi), added in the form diag(d) + U.UT: a bound row, with
+     * a single non-zero coefficient, adds to d, and each other row k is written as sqrt(w[k]).a[k] to the
+     * next row of u, from u[offset]
+     * @param w the row weights, indexed by row, &gt;= 0
+     * @param d the diagonal part
+     * @param u the columns of U, as rows
+     * @param offset the first row of u to write
+     * @param lo the first row
+     * @param hi one past the last row
+     * @return the number of rows of u written
+     */
+    public int addScaledLowRank(final double[] w, final double[] d, final double[][] u, final int offset,
+                                final int lo, final int hi) {
+        int r = offset;
+        for (int k = lo; k < hi; ++k) {
+            final int j = boundColumn(k);
+            if (j >= 0) {
+                final double akj = (a != null) ? a[k * n + j] : da.get(k * n + j);
+                d[j] += w[k] * akj * akj;
+            } else {
+                final double[] uk = u[r++];
+                copyRow(k, uk, 0);
+                Kernels.scale(Math.sqrt(w[k]), uk, 0, n);
+            }
+        }
+        return r - offset;
+    }
+
+    /**
+     * Marks the variables bounded by a bound row, with a single non-zero coefficient, among the rows
+     * in [lo, hi); such a row adds a positive term to the diagonal of a barrier Hessian
+     * @param bounded set to true at the column of each bound row
+     * @param lo the first row
+     * @param hi one past the last row
+     */
+    public void markBoundColumns(final boolean[] bounded, final int lo, final int hi) {
+        for (int k = lo; k < hi; ++k) {
+            final int j = boundColumn(k);
+            if (j >= 0) bounded[j] = true;
+        }
+    }
+
+    // the column of the only non-zero coefficient of row k, or -1 if it has none or several
+    private int boundColumn(final int k) {
+        return (boundCols != null) ? boundCols[k] : scanBoundColumn(k);
+    }
+
+    private int scanBoundColumn(final int k) {
+        final int row = k * n;
+        int col = -1;
+        for (int j = 0; j < n; ++j) {
+            final double akj = (a != null) ? a[row + j] : da.get(row + j);
+            if (akj == 0.0) continue;
+            if (col >= 0) return -1;
+            col = j;
+        }
+        return col;
+    }
+
+    // true if a[k].x + c[k] < 0 for every row
+    boolean isStrictlyFeasible(final double[] x) {
+        double[] r = new double[m];
+        residuals(x, r, 0, m);
+        for (int k = 0; k < m; ++k) {
+            if (!(r[k] < 0.0)) return false;
+        }
+        return true;
+    }
+
+    private void copyRow(final int k, final double[] dst, final int offset) {
+        if (a != null) {
+            System.arraycopy(a, k * n, dst, offset, n);
+        } else {
+            for (int j = 0; j < n; ++j) dst[offset + j] = da.get(k * n + j);
+        }
+    }
+}
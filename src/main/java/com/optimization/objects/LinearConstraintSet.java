@@ -0,0 +1,217 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+
+import java.util.Arrays;
+
+/**
+ * A mutable set of linear inequality constraints a.x &lt; b, for problems whose constraints
+ * arrive, change and expire between solves. Rows are added, modified and removed in place,
+ * in O(n) time each, and are addressed by the handle returned by {@link #add(double[], double)}. <p>
+ * The rows are kept packed row-major, in the layout the dense log barrier uses for its linear
+ * block, so {@link BarrierOptimizer} evaluates them in place rather than copying them. An optimizer
+ * that solves again with the same set (and the same objective and other constraints) keeps its
+ * barrier function, Newton workspace and sparse KKT analysis, and unless given a {@link WarmStart},
+ * resumes from its last central point when that is still strictly feasible. <p>
+ * Removing a row moves the last row into its place, so row order is not preserved. A handle is
+ * valid until its row is removed, after which it may be issued again. A set must not be modified
+ * while a solve that uses it is running.
+ */
+public class LinearConstraintSet implements OptimizationData {
+    private final int n;
+    private int m;
+    // rows, row-major (capacity x n), and their offsets -b, so row k is the function a.x - b
+    private double[] rows;
+    private double[] offsets;
+    // the handle of the row in each slot, and the slot of each handle (-1 when free)
+    private int[] handleOf;
+    private int[] slotOf;
+    // handles released by remove, reused before new ones are issued
+    private int[] free;
+    private int freeCount;
+    private int handleCount;
+
+    /**
+     * An empty set.
+     * @param n the dimension of x
+     */
+    public LinearConstraintSet(final int n) {
+        if (n < 1) throw new IllegalArgumentException("n must be >= 1");
+        this.n = n;
+        this.rows = new double[16 * n];
+        this.offsets = new double[16];
+        this.handleOf = new int[16];
+        this.slotOf = new int[16];
+        this.free = new int[16];
+    }
+
+    /**
+     * A set of the constraints Ax &lt; b, whose rows get the handles 0 to m-1 in order.
+     * @param A A matrix linear coefficient vectors
+     * @param b A vector of constants
+     */
+    public LinearConstraintSet(final RealMatrix A, final RealVector b) {
+        this(A.getColumnDimension());
+        int k = A.getRowDimension();
+        if (b.getDimension() != k) {
+            throw new DimensionMismatchException(b.getDimension(), k);
+        }
+        for (int j = 0; j < k; ++j) {
+            add(A.getRow(j), b.getEntry(j));
+        }
+    }
+
+    /** @return the dimension of x */
+    public int dimensions() {
+        return n;
+    }
+
+    /** @return the number of constraints */
+    public int size() {
+        return m;
+    }
+
+    /**
+     * Add the constraint a.x &lt; b.
+     * @param a the coefficients
+     * @param b the constant
+     * @return the handle of the new row
+     */
+    public int add(final double[] a, final double b) {
+        if (a.length != n) throw new DimensionMismatchException(a.length, n);
+        if (m == offsets.length) {
+            final int capacity = 2 * m;
+            rows = Arrays.copyOf(rows, capacity * n);
+            offsets = Arrays.copyOf(offsets, capacity);
+            handleOf = Arrays.copyOf(handleOf, capacity);
+        }
+        final int handle;
+        if (freeCount > 0) {
+            handle = free[--freeCount];
+        } else {
+            if (handleCount == slotOf.length) {
+                slotOf = Arrays.copyOf(slotOf, 2 * handleCount);
+                free = Arrays.copyOf(free, 2 * handleCount);
+            }
+            handle = handleCount++;
+        }
+        System.arraycopy(a, 0, rows, m * n, n);
+        offsets[m] = -b;
+        handleOf[m] = handle;
+        slotOf[handle] = m;
+        ++m;
+        return handle;
+    }
+
+    /**
+     * Remove a constraint.
+     * @param handle the handle of the row
+     */
+    public void remove(final int handle) {
+        final int slot = slot(handle);
+        final int last = m - 1;
+        if (slot != last) {
+            System.arraycopy(rows, last * n, rows, slot * n, n);
+            offsets[slot] = offsets[last];
+            handleOf[slot] = handleOf[last];
+            slotOf[handleOf[slot]] = slot;
+        }
+        slotOf[handle] = -1;
+        free[freeCount++] = handle;
+        m = last;
+    }
+
+    /**
+     * Replace a constraint by a.x &lt; b.
+     * @param handle the handle of the row
+     * @param a the coefficients
+     * @param b the constant
+     */
+    public void set(final int handle, final double[] a, final double b) {
+        if (a.length != n) throw new DimensionMismatchException(a.length, n);
+        final int slot = slot(handle);
+        System.arraycopy(a, 0, rows, slot * n, n);
+        offsets[slot] = -b;
+    }
+
+    /**
+     * Change the constant of a constraint, keeping its coefficients.
+     * @param handle the handle of the row
+     * @param b the constant
+     */
+    public void setBound(final int handle, final double b) {
+        offsets[slot(handle)] = -b;
+    }
+
+    /**
+     * @param handle a handle
+     * @return true if the handle names a row of the set
+     */
+    public boolean contains(final int handle) {
+        return (handle >= 0) && (handle < handleCount) && (slotOf[handle] >= 0);
+    }
+
+    /**
+     * @param handle the handle of the row
+     * @return a copy of its coefficients a
+     */
+    public double[] getRow(final int handle) {
+        final int slot = slot(handle);
+        return Arrays.copyOfRange(rows, slot * n, (slot + 1) * n);
+    }
+
+    /**
+     * @param handle the handle of the row
+     * @return its constant b
+     */
+    public double getBound(final int handle) {
+        return -offsets[slot(handle)];
+    }
+
+    /**
+     * @return the current constraints, copied into an immutable constraint
+     * @throws IllegalStateException if the set is empty, as a constraint has at least one row
+     */
+    public LinearInequalityConstraint toConstraint() {
+        if (m == 0) throw new IllegalStateException("the constraint set is empty");
+        double[][] a = new double[m][];
+        double[] b = new double[m];
+        for (int k = 0; k < m; ++k) {
+            a[k] = Arrays.copyOfRange(rows, k * n, (k + 1) * n);
+            b[k] = -offsets[k];
+        }
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(a, false), new ArrayRealVector(b, false));
+    }
+
+    // the packed rows; only the first size() rows are in use, and the array is
+    // replaced when the set outgrows it
+    double[] rows() {
+        return rows;
+    }
+
+    // the packed offsets -b, as for rows()
+    double[] offsets() {
+        return offsets;
+    }
+
+    // true if a.x < b for every row
+    boolean isStrictlyFeasible(final double[] x) {
+        for (int k = 0; k < m; ++k) {
+            final int row = k * n;
+            double v = offsets[k];
+            for (int j = 0; j < n; ++j) v += rows[row + j] * x[j];
+            if (!(v < 0.0)) return false;
+        }
+        return true;
+    }
+
+    private int slot(final int handle) {
+        if (!contains(handle)) throw new IllegalArgumentException("no constraint with handle " + handle);
+        return slotOf[handle];
+    }
+}
@@ -1,5 +1,7 @@
 package com.optimization.objects;
 
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.OpenMapRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -8,9 +10,12 @@ import org.apache.commons.math3.linear.RealVector;
  * A linear function b.x + c; The gradient is b, and the Hessian is |0| (all zeros).
  */
 public class LinearFunction extends ConvexFunction {
+    // a read-only view of bData, which the kernels read directly
     private final RealVector b;
+    private final double[] bData;
     private final double c;
     private final int n;
+    private final SparseMatrix zeroHessian;
 
     /**
      * Construct a linear function b.x + c
@@ -21,14 +26,26 @@ public class LinearFunction extends ConvexFunction {
     public LinearFunction(RealVector b, double c) {
         int d = b.getDimension();
         if (d < 1) throw new IllegalArgumentException("Dimension must be nonzero");
-        this.b = b;
+        this.bData = b.toArray();
+        this.b = RealVector.unmodifiableRealVector(new ArrayRealVector(bData, false));
         this.c = c;
         this.n = d;
+        this.zeroHessian = SparseMatrix.zero(d, d);
     }
 
     @Override
     public int dimensions() { return n; }
 
+    /**
+     * @return the weight vector b (also the gradient), as a read-only view
+     */
+    public RealVector getWeights() { return b; }
+
+    /**
+     * @return the constant c
+     */
+    public double getConstant() { return c; }
+
     @Override
     public double value(final RealVector x) {
         return c + b.dotProduct(x);
@@ -45,6 +62,56 @@ public class LinearFunction extends ConvexFunction {
         return new OpenMapRealMatrix(n, n);
     }
 
+    @Override
+    public double value(final double[] x) {
+        double v = 0.0;
+        for (int j = 0; j < n; ++j) v += bData[j] * x[j];
+        return c + v;
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        System.arraycopy(bData, 0, g, 0, n);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] h) {
+        for (double[] row: h) java.util.Arrays.fill(row, 0.0);
+    }
+
+    @Override
+    public boolean isHessianConstant() {
+        return true;
+    }
+
+    @Override
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        java.util.Arrays.fill(hv, 0, n, 0.0);
+    }
+
+    @Override
+    public void hessianDiagonal(final double[] x, final double[] d) {
+        java.util.Arrays.fill(d, 0, n, 0.0);
+    }
+
+    /**
+     * @return the zero Hessian, of rank 0 with d = 0
+     */
+    @Override
+    public LowRankHessian lowRankHessian() {
+        return new LowRankHessian(0, n == 0) {
+            @Override
+            public void evaluate(final double[] x, final double[] d, final double[][] u) {
+                java.util.Arrays.fill(d, 0, n, 0.0);
+            }
+        };
+    }
+
+    @Override
+    public SparseMatrix sparseHessian(final double[] x) {
+        return zeroHessian;
+    }
+
     @Override
     public String toString() {
         return String.format("LinearFunction(%g, %s)", c, b.toString());
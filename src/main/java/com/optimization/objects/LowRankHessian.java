@@ -0,0 +1,49 @@
+package com.optimization.objects;
+
+/**
+ * The Hessian of a {@link ConvexFunction} in the form diag(d) + U.UT, where U has the same
+ * number r of columns at every point, as for a factor model, so that a Newton step may be
+ * solved by the Woodbury identity in O(n.r^2) rather than factored as a dense matrix in O(n^3);
+ * see {@link ConvexFunction#lowRankHessian()}. <p>
+ * The identity needs diag(d) to be invertible. A form whose diagonal may have zeros, such as
+ * that of a linear function, is still useful as a part of another, as of a barrier whose
+ * bounds make the diagonal positive, but a Newton step is not solved with it alone. <p>
+ * A form describes its function as it was when the form was made, and reads the current
+ * values of parameters that do not change r, such as the barrier multiplier t; it is made
+ * again after the structure of the function changes.
+ */
+public abstract class LowRankHessian {
+    private final int rank;
+    private final boolean diagonalPositive;
+
+    /**
+     * @param rank r, the number of columns of U, &gt;= 0
+     * @param diagonalPositive true if d &gt; 0 at every point
+     */
+    protected LowRankHessian(final int rank, final boolean diagonalPositive) {
+        if (rank < 0) throw new IllegalArgumentException("rank must be >= 0");
+        this.rank = rank;
+        this.diagonalPositive = diagonalPositive;
+    }
+
+    /** @return r, the number of columns of U */
+    public int rank() {
+        return rank;
+    }
+
+    /**
+     * @return true if d &gt; 0 at every point, so that the Woodbury identity applies;
+     * otherwise d &gt;= 0
+     */
+    public boolean isDiagonalPositive() {
+        return diagonalPositive;
+    }
+
+    /**
+     * Evaluate the Hessian at x in the form diag(d) + U.UT.
+     * @param x - point at which to evaluate Hessian.
+     * @param d - receives the diagonal part d, of length n
+     * @param u - receives the columns of U, as its first r rows, each of length n
+     */
+    public abstract void evaluate(double[] x, double[] d, double[][] u);
+}
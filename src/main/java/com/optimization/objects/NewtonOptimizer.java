@@ -1,21 +1,48 @@
 package com.optimization.objects;
 
-import com.optimization.util.KKTSolution;
 import com.optimization.util.KKTSolver;
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.SparseKKTSolver;
+import com.optimization.util.SparseMatrix;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.optim.PointValuePair;
 
 public class NewtonOptimizer extends ConvexOptimizer {
     private LinearEqualityConstraint eqConstraint;
+    // the dense equality constraints as arrays, extracted once per parse
+    private double[][] eqA;
+    private double[] eqB;
     private KKTSolver kktSolver = new KKTSolver();
+    // sparse mode: a sparse Hessian and KKT solve, and sparse equality constraints
+    private SparseKKTSolver sparseSolver;
+    private SparseMatrix sparseA;
+    private double[] sparseB;
+    // matrix-free mode: a truncated Newton step by conjugate gradients, without equality constraints
+    private NewtonCGSolver cgSolver;
+    // quasi-Newton mode: L-BFGS steps, or hybrid steps from a periodically refreshed Hessian
+    private LBFGSSolver lbfgs;
+    private NewtonWorkspace workspace;
+    // the workspace used when none is given, kept across optimizations
+    private NewtonWorkspace ownWorkspace;
+    private SolverStatistics statistics;
+    private EarlyExit earlyExit;
     private RealVector xStart;
+    private double[] nuStart;
+    private double[] nuFinal;
     private double epsilon = 1e-9;
+    // the stopping rule: lambda^2/2 <= tolerance, or maxSteps iterations; kept across optimizations
+    private double tolerance = epsilon;
+    private int maxSteps = Integer.MAX_VALUE;
     private double alpha = 0.4;
     private double beta = 0.8;
+    // the line search starts within this fraction of the step to the boundary of the domain,
+    // when the objective can bound its domain along a line (see ConvexFunction.maxStep)
+    private double eta = 0.9999;
 
     public NewtonOptimizer() {
         super();
@@ -26,16 +53,123 @@ public class NewtonOptimizer extends ConvexOptimizer {
         return super.optimize(optData);
     }
 
+    /**
+     * Optimize again from a new starting point, with the objective, constraints and other
+     * OptimizationData of the last call to {@link #optimize(OptimizationData...)}, skipping
+     * their parsing and setup. The objective may have been updated in place in between, as
+     * {@link com.optimization.util.LogBarrierFunction#setT(double)} does for successive
+     * centering steps of the barrier method.
+     * @param start the initial guess
+     * @param dual the initial guess for the equality duals (nu), or null to start from 0
+     * @return the optimum
+     */
+    public PointValuePair reoptimize(final double[] start, final double[] dual) {
+        if (convexObjective == null) throw new IllegalStateException("optimize has not been called");
+        if (start.length != convexObjective.dimensions())
+            throw new DimensionMismatchException(start.length, convexObjective.dimensions());
+        xStart = new ArrayRealVector(start);
+        nuStart = dual;
+        return optimize();
+    }
+
+    /**
+     * Set the stopping rule of the following optimizations: stop once the Newton decrement
+     * satisfies lambda^2/2 &lt;= tolerance (with the equality constraints, once they hold as
+     * well), or after maxSteps iterations, whichever comes first. The default is a tolerance
+     * of 1e-9 with no step limit. A loose rule suits subproblems whose solution is only a
+     * starting point for the next one, such as the early centering steps of the barrier method.
+     * @param tolerance the tolerance on lambda^2/2, &gt; 0
+     * @param maxSteps the maximum number of Newton iterations, &gt;= 1
+     */
+    public void setStopping(final double tolerance, final int maxSteps) {
+        if (!(tolerance > 0.0)) throw new IllegalArgumentException("tolerance must be > 0");
+        if (maxSteps < 1) throw new IllegalArgumentException("maxSteps must be >= 1");
+        this.tolerance = tolerance;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * @return the dual variables (nu) for the equality constraints at the last solution,
+     * or null if there were no equality constraints
+     */
+    public double[] getDual() {
+        return (nuFinal != null) ? nuFinal.clone() : null;
+    }
+
     @Override
     protected void parseOptimizationData(OptimizationData... optData) {
         super.parseOptimizationData(optData);
+        eqConstraint = null;
+        eqA = null;
+        eqB = null;
+        kktSolver = new KKTSolver();
+        sparseSolver = null;
+        sparseA = null;
+        sparseB = null;
+        cgSolver = null;
+        lbfgs = null;
+        SparseLinearEqualityConstraint sparseEq = null;
+        workspace = null;
+        statistics = null;
+        earlyExit = null;
+        nuStart = null;
         for (OptimizationData data: optData) {
             if (data instanceof LinearEqualityConstraint) {
                 eqConstraint = (LinearEqualityConstraint)data;
             }
+            if (data instanceof KKTSolver) {
+                kktSolver = (KKTSolver)data;
+            }
+            if (data instanceof SparseKKTSolver) {
+                sparseSolver = (SparseKKTSolver)data;
+            }
+            if (data instanceof SparseLinearEqualityConstraint) {
+                sparseEq = (SparseLinearEqualityConstraint)data;
+            }
+            if (data instanceof NewtonCGSolver) {
+                cgSolver = (NewtonCGSolver)data;
+            }
+            if (data instanceof LBFGSSolver) {
+                lbfgs = (LBFGSSolver)data;
+            }
+            if (data instanceof NewtonWorkspace) {
+                workspace = (NewtonWorkspace)data;
+            }
+            if (data instanceof SolverStatistics) {
+                statistics = (SolverStatistics)data;
+            }
+            if (data instanceof EarlyExit) {
+                earlyExit = (EarlyExit)data;
+            }
+            if (data instanceof InitialDual) {
+                nuStart = ((InitialDual)data).getDual();
+            }
         }
         // if we got here, convexObjective exists
         int n = convexObjective.dimensions();
+        if ((sparseSolver != null) || (sparseEq != null)) {
+            // sparse mode: all equality constraints are held as one sparse matrix
+            if (sparseSolver == null) sparseSolver = new SparseKKTSolver();
+            SparseLinearEqualityConstraint eq = SparseLinearEqualityConstraint.combine(eqConstraint, sparseEq);
+            if (eq != null) {
+                if (eq.A.cols != n) throw new DimensionMismatchException(eq.A.cols, n);
+                sparseA = eq.A;
+                sparseB = eq.b;
+            }
+            eqConstraint = null;
+        }
+        if ((cgSolver != null) && ((sparseSolver != null)
+                || ((eqConstraint != null) && (eqConstraint.b.getDimension() > 0)))) {
+            throw new IllegalArgumentException("NewtonCGSolver does not support equality constraints or sparse solves");
+        }
+        if ((lbfgs != null) && ((sparseSolver != null) || (cgSolver != null)
+                || ((eqConstraint != null) && (eqConstraint.b.getDimension() > 0)))) {
+            throw new IllegalArgumentException("LBFGSSolver does not support equality constraints, sparse or Newton-CG solves");
+        }
+        if (eqConstraint != null) {
+            eqA = eqConstraint.A.getData();
+            eqB = eqConstraint.b.toArray();
+        }
         if (this.getStartPoint() != null) {
             xStart = new ArrayRealVector(this.getStartPoint());
             if (xStart.getDimension() != n)
@@ -48,30 +182,109 @@ public class NewtonOptimizer extends ConvexOptimizer {
     @Override
     public PointValuePair doOptimize() {
         final int n = convexObjective.dimensions();
-        if ((eqConstraint == null) || (eqConstraint.b.getDimension() < 1)) {
+        final int p = (sparseA != null) ? sparseA.rows
+                : ((eqConstraint == null) ? 0 : eqConstraint.b.getDimension());
+        if ((workspace == null) && (ownWorkspace == null)) ownWorkspace = new NewtonWorkspace();
+        final NewtonWorkspace ws = (workspace != null) ? workspace : ownWorkspace;
+        final SolverStatistics stats = statistics;
+        // a Hessian of low rank plus a positive diagonal, as of a factor model, is solved by the
+        // Woodbury identity, without the dense (n x n) matrix
+        final LowRankHessian form = ((sparseSolver == null) && (cgSolver == null) && (lbfgs == null))
+                ? convexObjective.lowRankHessian() : null;
+        boolean lowRank = (form != null) && form.isDiagonalPositive() && (form.rank() < n);
+        if (lowRank) {
+            ws.ensureLowRank(n, p, form.rank());
+        } else if ((sparseSolver == null) && (cgSolver == null) && ((lbfgs == null) || (lbfgs.getRefreshInterval() > 0))) {
+            ws.ensure(n, p);
+        } else {
+            ws.ensureVectors(n, p);
+        }
+        nuFinal = null;
+        for (int j = 0; j < n; ++j) ws.x[j] = xStart.getEntry(j);
+        // a constant Hessian (a QP) is evaluated and factored once, on the first iteration,
+        // and its factors reused by every later one
+        final boolean constantHessian = (sparseSolver == null) && (cgSolver == null) && (lbfgs == null)
+                && convexObjective.isHessianConstant();
+        boolean factored = false;
+        // in the hybrid mode, the factors of the last true Hessian serve as the initial inverse
+        LBFGSSolver.InitialInverse h0 = null;
+        if (lbfgs != null) lbfgs.restart();
+        if (p < 1) {
             // constraints Ax = b are empty
             // Algorithm 9.5: Newton's method (unconstrained)
-            RealVector x = xStart;
+            double[] x = ws.x;
+            double[] tx = ws.tx;
+            final double[] grad = ws.grad;
+            final double[] xDelta = ws.xDelta;
             double v = convexObjective.value(x);
-            while (true) {
+            while ((earlyExit == null) || !earlyExit.stopAt(x)) {
                 incrementIterationCount();
-                RealVector grad = convexObjective.gradient(x);
-                RealMatrix hess = convexObjective.hessian(x);
-                KKTSolution sol = kktSolver.solve(hess, grad);
-                if (sol.lambdaSquared <= (2.0 * epsilon)) {
+                final long start = now(stats);
+                final long evaluated;
+                final double lambdaSquared;
+                if (factored) {
+                    convexObjective.evaluate(x, grad, null);
+                    evaluated = now(stats);
+                    kktSolver.resolve(ws.hess, null, grad, ws.residual, xDelta, ws.nuPlus, ws);
+                    lambdaSquared = -dot(grad, xDelta);
+                } else if (lbfgs != null) {
+                    final boolean refresh = lbfgs.isRefreshDue();
+                    convexObjective.evaluate(x, grad, refresh ? ws.hess : null);
+                    evaluated = now(stats);
+                    lbfgs.update(x, grad);
+                    if (refresh) {
+                        kktSolver.solve(ws.hess, grad, xDelta, ws);
+                        lbfgs.refreshed();
+                        if (h0 == null) h0 = initialInverse(ws);
+                    }
+                    lambdaSquared = lbfgs.direction(grad, xDelta, h0);
+                } else if (lowRank) {
+                    convexObjective.evaluate(x, grad, null);
+                    form.evaluate(x, ws.lowRankD, ws.lowRankU);
+                    evaluated = now(stats);
+                    kktSolver.solveLowRank(null, grad, ws.residual, xDelta, ws.nuPlus, ws);
+                    lambdaSquared = -dot(grad, xDelta);
+                    factored = constantHessian;
+                    // a solve that fell back to the dense matrix would do so again: keep to it
+                    lowRank = ws.lowRank;
+                } else if (cgSolver != null) {
+                    convexObjective.evaluate(x, grad, null);
+                    evaluated = now(stats);
+                    lambdaSquared = cgSolver.solve(convexObjective, x, grad, xDelta);
+                } else if (sparseSolver == null) {
+                    convexObjective.evaluate(x, grad, ws.hess);
+                    evaluated = now(stats);
+                    lambdaSquared = kktSolver.solve(ws.hess, grad, xDelta, ws);
+                    factored = constantHessian;
+                } else {
+                    convexObjective.evaluate(x, grad, null);
+                    SparseMatrix hs = convexObjective.sparseHessian(x);
+                    evaluated = now(stats);
+                    lambdaSquared = sparseSolver.solve(hs, grad, xDelta);
+                }
+                final long solved = now(stats);
+                if (lambdaSquared <= (2.0 * tolerance)) {
+                    if (stats != null)
+                        stats.newtonIteration(getIterations(), evaluated - start, 0L, solved - evaluated, 0L,
+                                0, 0, 0.0, lambdaSquared, Double.NaN, v);
                     break;
                 }
-                RealVector xDelta = sol.xDelta;
-                double gdd = grad.dotProduct(xDelta);
-                RealVector tx = null;
+                double gdd = dot(grad, xDelta);
+                boolean onLine = false;
                 double tv = 0.0;
                 boolean foundStep = false;
-                for (double t = 1.0; t >= 1e-300; t *= beta) {
-                    tx = x.add(xDelta.mapMultiply(t));
-                    tv = convexObjective.value(tx);
+                int backtracks = 0;
+                int infeasible = 0;
+                double t = startStep(x, xDelta);
+                for (; t >= 1e-300; t *= beta, ++backtracks) {
+                    for (int j = 0; j < n; ++j) tx[j] = x[j] + (xDelta[j] * t);
+                    // the full step is usually taken, so restrict to the line only once it is not
+                    if (backtracks == 1) onLine = convexObjective.beginLine(x, xDelta);
+                    tv = onLine ? convexObjective.lineEvaluate(t, null) : convexObjective.value(tx);
                     if (Double.isInfinite(tv)) {
                         // this is barrier convention for "outside the feasible domain",
                         // so try a smaller step
+                        ++infeasible;
                         continue;
                     }
                     double vtt = v + (t * alpha * gdd);
@@ -86,45 +299,104 @@ public class NewtonOptimizer extends ConvexOptimizer {
                         break;
                     }
                 }
+                if (stats != null)
+                    stats.newtonIteration(getIterations(), evaluated - start, 0L, solved - evaluated,
+                            now(stats) - solved, backtracks, infeasible, foundStep ? t : 0.0,
+                            lambdaSquared, Double.NaN, v);
                 // If there was no forward step to make, that indicates minimum
                 if (!foundStep) break;
                 // Update x,v for next iteration
                 double vprv = v;
+                double[] swap = x;
                 x = tx;
+                tx = swap;
                 v = tv;
-                // if improvement becomes very small then we are converged
-                if (Math.abs(1.0 - (v / vprv)) < epsilon) break;
+                // if improvement becomes very small then we are converged; not so for L-BFGS, whose
+                // steps make little progress on an ill-conditioned function far from its minimum,
+                // and which stops on its estimate of the decrement instead
+                if ((lbfgs == null) && (Math.abs(1.0 - (v / vprv)) < epsilon)) break;
+                if (getIterations() >= maxSteps) break;
             }
-            return new PointValuePair(x.toArray(), v);
+            return new PointValuePair(x, v);
         } else {
             // constraints Ax = b are non-empty
             // Algorithm 10.2: Newton's method with equality constraints
-            final RealMatrix A = eqConstraint.A;
-            final RealVector b = eqConstraint.b;
-            final RealMatrix AT = A.transpose();
-            final int nDual = b.getDimension();
-            RealVector x = xStart;
-            RealVector nu = new ArrayRealVector(nDual, 0.0);
-            double v = convexObjective.value(x);
-            while (true) {
+            final double[][] A = eqA;
+            final double[] b = (sparseA == null) ? eqB : sparseB;
+            double[] x = ws.x;
+            double[] tx = ws.tx;
+            double[] nu = ws.nu;
+            double[] tnu = ws.tnu;
+            double[] grad = ws.grad;
+            double[] tgrad = ws.tgrad;
+            final double[] xDelta = ws.xDelta;
+            final double[] nuPlus = ws.nuPlus;
+            final double[] h = ws.residual;
+            if (nuStart != null) {
+                if (nuStart.length != p) throw new DimensionMismatchException(nuStart.length, p);
+                System.arraycopy(nuStart, 0, nu, 0, p);
+            } else {
+                java.util.Arrays.fill(nu, 0.0);
+            }
+            // the gradient at x is carried over from the accepted line-search step
+            double v = convexObjective.evaluate(x, grad, null);
+            while ((earlyExit == null) || !earlyExit.stopAt(x)) {
                 incrementIterationCount();
-                RealVector grad = convexObjective.gradient(x);
-                double rNorm = residualNorm(x, nu, grad, A, AT, b);
-                if (rNorm <= epsilon) break;
-                RealMatrix hess = convexObjective.hessian(x);
-                KKTSolution sol = kktSolver.solve(hess, A, AT, grad, A.operate(x).subtract(b));
-                RealVector xDelta = sol.xDelta;
-                RealVector nuDelta = sol.nuPlus.subtract(nu);
-                RealVector tx = null;
-                RealVector tnu = null;
+                double rNorm = residualNorm(x, nu, grad, A, b, ws);
+                if (rNorm <= epsilon) {
+                    if (stats != null)
+                        stats.newtonIteration(getIterations(), 0L, 0L, 0L, 0L,
+                                0, 0, 0.0, Double.NaN, rNorm, v);
+                    break;
+                }
+                final long start = now(stats);
+                final long evaluated;
+                if (factored) {
+                    evaluated = now(stats);
+                    for (int k = 0; k < p; ++k) h[k] = dot(A[k], x) - b[k];
+                    kktSolver.resolve(ws.hess, A, grad, h, xDelta, nuPlus, ws);
+                } else if (lowRank) {
+                    form.evaluate(x, ws.lowRankD, ws.lowRankU);
+                    evaluated = now(stats);
+                    for (int k = 0; k < p; ++k) h[k] = dot(A[k], x) - b[k];
+                    kktSolver.solveLowRank(A, grad, h, xDelta, nuPlus, ws);
+                    factored = constantHessian;
+                    lowRank = ws.lowRank;
+                } else if (sparseSolver == null) {
+                    convexObjective.hessian(x, ws.hess);
+                    evaluated = now(stats);
+                    for (int k = 0; k < p; ++k) h[k] = dot(A[k], x) - b[k];
+                    kktSolver.solve(ws.hess, A, grad, h, xDelta, nuPlus, ws);
+                    factored = constantHessian;
+                } else {
+                    SparseMatrix hs = convexObjective.sparseHessian(x);
+                    evaluated = now(stats);
+                    sparseA.multiply(x, h);
+                    for (int k = 0; k < p; ++k) h[k] -= b[k];
+                    sparseSolver.solve(hs, sparseA, grad, h, xDelta, nuPlus);
+                }
+                final long solved = now(stats);
+                if ((tolerance > epsilon) && (norm(h) <= epsilon) && (-dot(grad, xDelta) <= (2.0 * tolerance))) {
+                    // Ax = b holds, and lambda^2 = -grad.xDelta is within a loose tolerance
+                    if (stats != null)
+                        stats.newtonIteration(getIterations(), 0L, evaluated - start, solved - evaluated, 0L,
+                                0, 0, 0.0, Double.NaN, rNorm, v);
+                    break;
+                }
+                boolean onLine = false;
                 double tv = 0.0;
                 boolean foundStep = false;
-                for (double t = 1.0; t >= 1e-300; t *= beta) {
-                    tx = x.add(xDelta.mapMultiply(t));
-                    tv = convexObjective.value(tx);
+                int backtracks = 0;
+                int infeasible = 0;
+                double t = startStep(x, xDelta);
+                for (; t >= 1e-300; t *= beta, ++backtracks) {
+                    for (int j = 0; j < n; ++j) tx[j] = x[j] + (xDelta[j] * t);
+                    if (backtracks == 1) onLine = convexObjective.beginLine(x, xDelta);
+                    tv = onLine ? convexObjective.lineEvaluate(t, tgrad) : convexObjective.evaluate(tx, tgrad, null);
                     if (Double.isInfinite(tv)) {
                         // this is barrier convention for "outside the feasible domain",
                         // so try a smaller step
+                        ++infeasible;
                         continue;
                     }
                     double ftt = 1.0 - (alpha * t);
@@ -133,37 +405,113 @@ public class NewtonOptimizer extends ConvexOptimizer {
                         // Further tests for improvement are going to fail
                         break;
                     }
-                    tnu = nu.add(nuDelta.mapMultiply(t));
-                    RealVector tgrad = convexObjective.gradient(tx);
-                    double tNorm = residualNorm(tx, tnu, tgrad, A, AT, b);
+                    for (int k = 0; k < p; ++k) tnu[k] = nu[k] + ((nuPlus[k] - nu[k]) * t);
+                    double tNorm = residualNorm(tx, tnu, tgrad, A, b, ws);
                     if (tNorm <= ftt * rNorm) {
                         // This step resulted in an improvement, so halt with success
                         foundStep = true;
                         break;
                     }
                 }
+                if (stats != null)
+                    stats.newtonIteration(getIterations(), 0L, evaluated - start, solved - evaluated,
+                            now(stats) - solved, backtracks, infeasible, foundStep ? t : 0.0,
+                            Double.NaN, rNorm, v);
                 // If there was no forward step to make, that indicates minimum
                 if (!foundStep) break;
                 // update for next iteration
                 double vprv = v;
+                double[] swap = x;
                 x = tx;
+                tx = swap;
+                swap = nu;
                 nu = tnu;
+                tnu = swap;
+                swap = grad;
+                grad = tgrad;
+                tgrad = swap;
                 v = tv;
                 // if improvement becomes very small then we are converged
                 if (Math.abs(1.0 - (v / vprv)) < epsilon) break;
+                if (getIterations() >= maxSteps) break;
             }
-            return new PointValuePair(x.toArray(), v);
+            nuFinal = nu.clone();
+            return new PointValuePair(x, v);
         }
     }
 
+    // inverse(H).q, by the factors of H that the last allocation-free KKT solve left in ws
+    private LBFGSSolver.InitialInverse initialInverse(final NewtonWorkspace ws) {
+        return new LBFGSSolver.InitialInverse() {
+            @Override
+            public void apply(final double[] q, final double[] r) {
+                kktSolver.resolve(ws.hess, null, q, ws.residual, r, ws.nuPlus, ws);
+                for (int j = 0; j < r.length; ++j) r[j] = -r[j];
+            }
+        };
+    }
+
+    // The first trial step: the largest of 1, beta, beta^2, ... within the fraction eta of the step
+    // to the boundary of the domain, so that the trials that would only have found the boundary
+    // are skipped, and none is outside a domain bounded by linear constraints alone.
+    // A bound that is not > 0, which maxStep should never return, is ignored, and the search
+    // backtracks from the full step as it would without one.
+    private double startStep(final double[] x, final double[] xDelta) {
+        final double s = eta * convexObjective.maxStep(x, xDelta);
+        if (!(s < 1.0) || !(s > 0.0)) return 1.0;
+        double t = Math.pow(beta, Math.ceil(Math.log(s) / Math.log(beta)));
+        while (t > s) t *= beta;
+        return t;
+    }
+
+    // the norm of the stacked primal residual (Ax - b) and dual residual (grad + AT.nu),
+    // with the dense A, or else the sparse one
     private double residualNorm(
-            RealVector x, RealVector nu, RealVector grad,
-            RealMatrix A, RealMatrix AT, RealVector b) {
-        RealVector r = A.operate(x).subtract(b);
-        RealVector rDual = grad.add(AT.operate(nu));
-        double rr = r.dotProduct(r) + rDual.dotProduct(rDual);
-        return Math.sqrt(rr);
+            double[] x, double[] nu, double[] grad,
+            double[][] A, double[] b, NewtonWorkspace ws) {
+        if (A == null) {
+            final double[] r = ws.tmpDual;
+            sparseA.multiply(x, r);
+            double rr = 0.0;
+            for (int k = 0; k < b.length; ++k) rr += (r[k] - b[k]) * (r[k] - b[k]);
+            final double[] rd = ws.tmp;
+            sparseA.transposeMultiply(nu, rd);
+            double dd = 0.0;
+            for (int j = 0; j < grad.length; ++j) dd += (grad[j] + rd[j]) * (grad[j] + rd[j]);
+            return Math.sqrt(rr + dd);
+        }
+        return residualNorm(x, nu, grad, A, b);
     }
 
-}
+    private static double residualNorm(
+            double[] x, double[] nu, double[] grad,
+            double[][] A, double[] b) {
+        double rr = 0.0;
+        for (int k = 0; k < b.length; ++k) {
+            double r = dot(A[k], x) - b[k];
+            rr += r * r;
+        }
+        double dd = 0.0;
+        for (int j = 0; j < grad.length; ++j) {
+            double rd = grad[j];
+            for (int k = 0; k < b.length; ++k) rd += A[k][j] * nu[k];
+            dd += rd * rd;
+        }
+        return Math.sqrt(rr + dd);
+    }
 
+    // a timestamp, taken only when statistics are being recorded
+    private static long now(final SolverStatistics stats) {
+        return (stats != null) ? System.nanoTime() : 0L;
+    }
+
+    private static double norm(final double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    private static double dot(final double[] a, final double[] b) {
+        double s = 0.0;
+        for (int j = 0; j < a.length; ++j) s += a[j] * b[j];
+        return s;
+    }
+}
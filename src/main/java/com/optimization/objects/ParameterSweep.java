@@ -0,0 +1,153 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolver;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.SparseKKTSolver;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Solves one set of constraints for a sweep of parametric objectives f(p), such as the
+ * points of an efficient frontier, by continuation along the grid of parameters. <p>
+ * The grid, in the order given, is split into contiguous segments that are solved
+ * concurrently on an executor. Each segment is solved in order by one {@link BarrierOptimizer},
+ * which keeps its packed constraints, Newton workspace and sparse KKT analysis from point to
+ * point, and warm-starts each point from the central path of its neighbour (see
+ * {@link WarmStart}); the first point of each segment starts cold. The continuation pays off
+ * when neighbouring parameters have nearby solutions, so the grid should be ordered. <p>
+ * The common OptimizationData (constraints, initial guess, schedule, ...) is shared by all the
+ * segments, and must be safe to evaluate concurrently; the constraint types of this library are.
+ * A {@link KKTSolver}, which holds only its choice of factorization, may be shared. Data that
+ * hold the state of a solve, the workspaces, sparse KKT and Newton-CG solvers and statistics,
+ * cannot be shared, and are rejected; each segment's optimizer keeps its own workspace and
+ * sparse KKT solver, and the pairs of an {@link com.optimization.util.LBFGSSolver} given. An {@link EarlyExit} given must be thread-safe.
+ * The objectives made by the {@link ParametricObjective} must not be shared between points.
+ */
+public class ParameterSweep {
+    private final ExecutorService executor;
+    private final int segments;
+    private final OptimizationData[] common;
+
+    /**
+     * An objective function for each parameter value.
+     */
+    public interface ParametricObjective {
+        /**
+         * @param p a parameter value
+         * @return the objective for p, a new instance per call
+         */
+        ConvexFunction at(double p);
+    }
+
+    /**
+     * @param executor the executor to solve segments on; it is not shut down by this class
+     * @param segments the number of segments to split the grid into, usually the number of
+     * threads of the executor, &gt;= 1
+     * @param common the constraints, and other OptimizationData passed to every solve;
+     * an InitialGuess must be strictly feasible for the inequality constraints
+     * @throws IllegalArgumentException if common holds per-solve state, which the segments would share
+     */
+    public ParameterSweep(final ExecutorService executor, final int segments, final OptimizationData... common) {
+        if (segments < 1) throw new IllegalArgumentException("segments must be >= 1");
+        for (OptimizationData data: common) {
+            if ((data instanceof NewtonWorkspace) || (data instanceof SparseKKTSolver)
+                    || (data instanceof NewtonCGSolver) || (data instanceof SolverStatistics)) {
+                throw new IllegalArgumentException(data.getClass().getSimpleName()
+                        + " holds per-solve state and cannot be shared by the segments");
+            }
+        }
+        this.executor = executor;
+        this.segments = segments;
+        this.common = common.clone();
+    }
+
+    /**
+     * The objectives of a mean-variance frontier: p.risk(x) - ret(x) for a risk aversion p,
+     * where risk is a quadratic function, usually 0.5*(x^T)Sigma(x), and ret a linear return term.
+     * @param risk the risk term
+     * @param ret the return term
+     * @return the parametric objective
+     */
+    public static ParametricObjective frontier(final QuadraticFunction risk, final LinearFunction ret) {
+        if (ret.dimensions() != risk.dimensions())
+            throw new DimensionMismatchException(ret.dimensions(), risk.dimensions());
+        return new ParametricObjective() {
+            @Override
+            public ConvexFunction at(final double p) {
+                return new QuadraticFunction(
+                        risk.getQuadraticWeights().scalarMultiply(p),
+                        risk.getWeights().mapMultiply(p).subtract(ret.getWeights()),
+                        (p * risk.getConstant()) - ret.getConstant());
+            }
+        };
+    }
+
+    /**
+     * Solve f(p) for every p in the grid, blocking until all of them have finished.
+     * A failure at one point is reported in its result, and the next point of its segment
+     * starts cold.
+     * @param objective the parametric objective
+     * @param parameters the grid of parameter values, ordered so that neighbours are close
+     * @return one result per parameter value, in the same order
+     */
+    public List<BatchSolver.Result> solve(final ParametricObjective objective, final double[] parameters) {
+        final int count = parameters.length;
+        final BatchSolver.Result[] results = new BatchSolver.Result[count];
+        final int nseg = Math.max(1, Math.min(segments, count));
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(nseg);
+        for (int s = 0; s < nseg; ++s) {
+            final int lo = (int)(((long)count * s) / nseg);
+            final int hi = (int)(((long)count * (s + 1)) / nseg);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    solveSegment(objective, parameters, lo, hi, results);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> fut: futures) {
+            try {
+                fut.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    // Solve the points [lo, hi) in order with one optimizer, each warm-started from the last.
+    private void solveSegment(
+            final ParametricObjective objective, final double[] parameters,
+            final int lo, final int hi, final BatchSolver.Result[] results) {
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        WarmStart warmStart = null;
+        for (int k = lo; k < hi; ++k) {
+            try {
+                ArrayList<OptimizationData> args = new ArrayList<OptimizationData>(Arrays.asList(common));
+                args.add(new ObjectiveFunction(objective.at(parameters[k])));
+                if (warmStart != null) args.add(warmStart);
+                PointValuePair pvp = barrier.optimize(args.toArray(new OptimizationData[0]));
+                results[k] = new BatchSolver.Result(pvp, barrier.getIterations(), barrier.getNewtonIterations(), null);
+                warmStart = barrier.getWarmStart();
+            } catch (RuntimeException e) {
+                results[k] = new BatchSolver.Result(null, 0, 0, e);
+                warmStart = null;
+            }
+        }
+    }
+}
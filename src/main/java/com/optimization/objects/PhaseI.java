@@ -0,0 +1,62 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Settings for the phase I search of {@link ConvexOptimizer#feasiblePoint}. Passing one
+ * selects a search that returns the first strictly feasible point it reaches, rather than
+ * converging to the optimum of its auxiliary problem: <p>
+ * {@link Method#SMOOTH_MAX} minimizes the smooth max over the constraints, in rounds of
+ * increasing sharpness alpha, as the default search does. <p>
+ * {@link Method#SLACK} minimizes s subject to f[k](x) &lt;= s and s &gt;= -1 with the barrier
+ * method, starting from s = max(f[k](x0)) + 1 (Section 11.4.1 of Convex Optimization, Boyd and
+ * Vandenberghe, Cambridge University Press, 2008). It is an LP, as the constraints are. <p>
+ * Either search stops after a limit on its total Newton iterations. With several starts, one
+ * search runs from the initial guess and the others from random perturbations of it, in
+ * parallel on the pool of the {@link com.optimization.util.ParallelEvaluation} argument if any,
+ * or else on the common pool; the first feasible point found is returned, and the other
+ * searches stop at their next Newton iteration.
+ */
+public class PhaseI implements OptimizationData {
+    /** The phase I problem to solve */
+    public enum Method { SMOOTH_MAX, SLACK }
+
+    /** The default limit on Newton iterations */
+    public static final int MAX_ITERATIONS_DEFAULT = 1000;
+
+    private final Method method;
+    private final int maxIterations;
+    private final int starts;
+    private final long seed;
+
+    /**
+     * A single search with the default iteration limit.
+     * @param method the phase I problem to solve
+     */
+    public PhaseI(final Method method) {
+        this(method, MAX_ITERATIONS_DEFAULT, 1, 0L);
+    }
+
+    /**
+     * @param method the phase I problem to solve
+     * @param maxIterations the limit on the Newton iterations of each search, &gt;= 1
+     * @param starts the number of searches, &gt;= 1
+     * @param seed the random seed for the starting points of all but the first search
+     */
+    public PhaseI(final Method method, final int maxIterations, final int starts, final long seed) {
+        if (maxIterations < 1) throw new IllegalArgumentException("maxIterations must be >= 1");
+        if (starts < 1) throw new IllegalArgumentException("starts must be >= 1");
+        this.method = method;
+        this.maxIterations = maxIterations;
+        this.starts = starts;
+        this.seed = seed;
+    }
+
+    public Method getMethod() { return method; }
+
+    public int getMaxIterations() { return maxIterations; }
+
+    public int getStarts() { return starts; }
+
+    public long getSeed() { return seed; }
+}
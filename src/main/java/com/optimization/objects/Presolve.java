@@ -0,0 +1,592 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Presolve settings for the {@link BarrierOptimizer}. Passing one reduces the problem before
+ * it is optimized, and maps the solution back to the original variables: <p>
+ * Variables pinned by equality rows with a single nonzero coefficient are fixed and eliminated,
+ * which may leave further rows with a single nonzero, and so on; the fixed values are
+ * substituted into every other constraint and into the objective. <p>
+ * Inequality rows with no nonzero coefficient left are dropped if satisfied; rows on a single
+ * variable are tightened into simple bounds, which the barrier evaluates as a diagonal term of
+ * O(n) rather than as dense rows (see {@link SimpleBounds}); parallel rows, equal up to a positive
+ * scale, are merged into the tightest of them; and rows satisfied everywhere in the box of the
+ * bounds are dropped. Equality rows left with no free variable, or parallel to another row with
+ * the same right-hand side, are dropped likewise. Inconsistent or empty constraints are reported
+ * as an IllegalArgumentException. <p>
+ * The presolve reads the dense {@link LinearInequalityConstraint} and {@link LinearEqualityConstraint}
+ * arguments, and {@link SimpleBounds}; a {@link WarmStart} and the result are in the original
+ * variables. The other constraint types are not supported.
+ */
+public class Presolve implements OptimizationData {
+    /** The default relative tolerance for comparing coefficients and fixed values */
+    public static final double TOLERANCE_DEFAULT = 1e-9;
+
+    private final double tolerance;
+
+    public Presolve() {
+        this(TOLERANCE_DEFAULT);
+    }
+
+    /**
+     * @param tolerance the relative tolerance for parallel rows, and for the consistency of
+     * the values fixed by equalities, &gt; 0
+     */
+    public Presolve(final double tolerance) {
+        if (!(tolerance > 0.0)) throw new IllegalArgumentException("tolerance must be > 0");
+        this.tolerance = tolerance;
+    }
+
+    public double getTolerance() { return tolerance; }
+
+    /**
+     * Reduce a problem.
+     * @param optData the arguments of a {@link BarrierOptimizer}, with an ObjectiveFunction
+     * @return the reduction, with the arguments of the reduced problem
+     */
+    public Reduction reduce(OptimizationData... optData) {
+        ConvexFunction objective = null;
+        double[] guess = null;
+        WarmStart warm = null;
+        SimpleBounds bounds = null;
+        LinearEqualityConstraint eq = null;
+        ArrayList<LinearFunction> ineq = new ArrayList<LinearFunction>();
+        ArrayList<OptimizationData> other = new ArrayList<OptimizationData>();
+        for (OptimizationData data: optData) {
+            if (data instanceof ObjectiveFunction) {
+                MultivariateFunction f = ((ObjectiveFunction) data).getObjectiveFunction();
+                if (!(f instanceof ConvexFunction)) throw new IllegalArgumentException("ConvexFunction objective required");
+                objective = (ConvexFunction) f;
+            } else if (data instanceof InitialGuess) {
+                guess = ((InitialGuess) data).getInitialGuess();
+            } else if (data instanceof WarmStart) {
+                warm = (WarmStart) data;
+            } else if (data instanceof SimpleBounds) {
+                bounds = (SimpleBounds) data;
+            } else if (data instanceof LinearEqualityConstraint) {
+                eq = (LinearEqualityConstraint) data;
+            } else if (data instanceof LinearInequalityConstraint) {
+                ineq.addAll(Arrays.asList(((LinearInequalityConstraint) data).lcf));
+            } else if ((data instanceof LinearConstraintBlock) || (data instanceof LinearConstraintSet)
+                    || (data instanceof SparseLinearInequalityConstraint) || (data instanceof SparseLinearEqualityConstraint)) {
+                throw new IllegalArgumentException("presolve supports dense linear constraints only");
+            } else if (!(data instanceof Presolve)) {
+                other.add(data);
+            }
+        }
+        if (objective == null) throw new IllegalStateException("Expected a ConvexFunction argument");
+        final int n = objective.dimensions();
+        final double[] x0 = (guess != null) ? guess.clone() : new double[n];
+        if (x0.length != n) throw new DimensionMismatchException(x0.length, n);
+        double[] lower = new double[n];
+        double[] upper = new double[n];
+        Arrays.fill(lower, Double.NEGATIVE_INFINITY);
+        Arrays.fill(upper, Double.POSITIVE_INFINITY);
+        if (bounds != null) {
+            if (bounds.getLower().length != n) throw new DimensionMismatchException(bounds.getLower().length, n);
+            if (bounds.getUpper().length != n) throw new DimensionMismatchException(bounds.getUpper().length, n);
+            lower = bounds.getLower();
+            upper = bounds.getUpper();
+        }
+        final Reduction r = new Reduction(n);
+
+        // fix the variables pinned by equalities, until no row with a single free variable is left
+        double[][] ea = (eq != null) ? eq.A.getData() : new double[0][];
+        double[] eb = (eq != null) ? eq.b.toArray() : new double[0];
+        if ((eq != null) && (eq.A.getColumnDimension() != n)) throw new DimensionMismatchException(eq.A.getColumnDimension(), n);
+        boolean[] pinning = new boolean[eb.length];
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int k = 0; k < eb.length; ++k) {
+                if (pinning[k]) continue;
+                int count = 0;
+                int last = -1;
+                double rhs = eb[k];
+                for (int j = 0; j < n; ++j) {
+                    if (ea[k][j] == 0.0) continue;
+                    if (r.fixed[j]) {
+                        rhs -= ea[k][j] * r.values[j];
+                    } else {
+                        ++count;
+                        last = j;
+                    }
+                }
+                if (count == 1) {
+                    final double v = rhs / ea[k][last];
+                    if (!(v > lower[last]) || !(v < upper[last]))
+                        throw new IllegalArgumentException("equality constraints fix a variable outside its bounds");
+                    r.fixed[last] = true;
+                    r.values[last] = v;
+                    pinning[k] = true;
+                    changed = true;
+                }
+            }
+        }
+        r.index();
+        final int nr = r.free.length;
+
+        // the inequality rows on the free variables, with the fixed values substituted
+        double[] lr = new double[nr];
+        double[] ur = new double[nr];
+        for (int i = 0; i < nr; ++i) {
+            lr[i] = lower[r.free[i]];
+            ur[i] = upper[r.free[i]];
+        }
+        ArrayList<double[]> rows = new ArrayList<double[]>();
+        ArrayList<Double> offsets = new ArrayList<Double>();
+        HashMap<Key, Integer> parallel = new HashMap<Key, Integer>();
+        for (LinearFunction lf: ineq) {
+            if (lf.dimensions() != n) throw new DimensionMismatchException(lf.dimensions(), n);
+            final double[] a = lf.getWeights().toArray();
+            double c = lf.getConstant();
+            for (int j = 0; j < n; ++j) {
+                if (r.fixed[j]) c += a[j] * r.values[j];
+            }
+            final double[] ar = r.restrict(a);
+            int count = 0;
+            int last = -1;
+            double scale = 0.0;
+            for (int i = 0; i < nr; ++i) {
+                if (ar[i] != 0.0) {
+                    ++count;
+                    last = i;
+                    scale = Math.max(scale, Math.abs(ar[i]));
+                }
+            }
+            if (count == 0) {
+                if (!(c < 0.0)) throw new IllegalArgumentException("inequality constraints are infeasible");
+                ++r.emptyRows;
+            } else if (count == 1) {
+                // a.x + c < 0 on a single variable
+                final double v = -c / ar[last];
+                if (ar[last] > 0.0) {
+                    ur[last] = Math.min(ur[last], v);
+                } else {
+                    lr[last] = Math.max(lr[last], v);
+                }
+                ++r.boundRows;
+            } else {
+                // scaled to a largest coefficient of 1, the row with the largest offset is the tightest
+                for (int i = 0; i < nr; ++i) ar[i] /= scale;
+                c /= scale;
+                final Key key = new Key(ar, tolerance);
+                final Integer k = parallel.get(key);
+                if (k == null) {
+                    parallel.put(key, rows.size());
+                    rows.add(ar);
+                    offsets.add(c);
+                } else {
+                    if (c > offsets.get(k)) offsets.set(k, c);
+                    ++r.duplicateRows;
+                }
+            }
+        }
+        for (int i = 0; i < nr; ++i) {
+            if (!(lr[i] < ur[i])) throw new IllegalArgumentException("inequality constraints are infeasible");
+        }
+        // drop the rows whose largest value over the box of the bounds is still < 0
+        ArrayList<double[]> kept = new ArrayList<double[]>();
+        ArrayList<Double> keptOffsets = new ArrayList<Double>();
+        for (int k = 0; k < rows.size(); ++k) {
+            final double[] ar = rows.get(k);
+            double max = offsets.get(k);
+            for (int i = 0; i < nr; ++i) {
+                if (ar[i] > 0.0) max += ar[i] * ur[i];
+                if (ar[i] < 0.0) max += ar[i] * lr[i];
+            }
+            if (max < 0.0) {
+                ++r.redundantRows;
+            } else {
+                kept.add(ar);
+                keptOffsets.add(offsets.get(k));
+            }
+        }
+
+        // the equality rows on the free variables, less the empty and parallel ones
+        ArrayList<double[]> eqRows = new ArrayList<double[]>();
+        ArrayList<Double> eqRhs = new ArrayList<Double>();
+        ArrayList<Double> eqScales = new ArrayList<Double>();
+        HashMap<Key, Integer> eqParallel = new HashMap<Key, Integer>();
+        for (int k = 0; k < eb.length; ++k) {
+            if (pinning[k]) continue;
+            double rhs = eb[k];
+            double size = Math.abs(eb[k]);
+            for (int j = 0; j < n; ++j) {
+                if (r.fixed[j]) {
+                    rhs -= ea[k][j] * r.values[j];
+                    size += Math.abs(ea[k][j] * r.values[j]);
+                }
+            }
+            final double[] ar = r.restrict(ea[k]);
+            double scale = 0.0;
+            int first = -1;
+            for (int i = 0; i < nr; ++i) {
+                if (Math.abs(ar[i]) > scale) scale = Math.abs(ar[i]);
+                if ((first < 0) && (ar[i] != 0.0)) first = i;
+            }
+            if (first < 0) {
+                if (Math.abs(rhs) > tolerance * (1.0 + size))
+                    throw new IllegalArgumentException("equality constraints are inconsistent");
+                ++r.emptyRows;
+                continue;
+            }
+            // scaled to a largest coefficient of 1, and a positive first coefficient
+            if (ar[first] < 0.0) scale = -scale;
+            for (int i = 0; i < nr; ++i) ar[i] /= scale;
+            rhs /= scale;
+            final Key key = new Key(ar, tolerance);
+            final Integer e = eqParallel.get(key);
+            if (e == null) {
+                eqParallel.put(key, eqRows.size());
+                eqRows.add(ar);
+                eqRhs.add(rhs);
+                eqScales.add(scale);
+            } else {
+                if (Math.abs(rhs - eqRhs.get(e)) > tolerance * (1.0 + Math.abs(rhs)))
+                    throw new IllegalArgumentException("equality constraints are inconsistent");
+                ++r.duplicateRows;
+            }
+        }
+        if (eqRows.size() == eb.length) {
+            r.eqScales = new double[eqScales.size()];
+            for (int k = 0; k < r.eqScales.length; ++k) r.eqScales[k] = eqScales.get(k);
+        }
+
+        if (nr == 0) return r;
+        ArrayList<OptimizationData> data = new ArrayList<OptimizationData>();
+        data.add(new ObjectiveFunction(r.fixedCount() > 0 ? new Restricted(objective, r) : objective));
+        if (!kept.isEmpty()) data.add(constraint(kept, keptOffsets));
+        if (!eqRows.isEmpty()) {
+            double[] b = new double[eqRhs.size()];
+            for (int k = 0; k < b.length; ++k) b[k] = eqRhs.get(k);
+            data.add(new LinearEqualityConstraint(eqRows.toArray(new double[0][]), b));
+        }
+        boolean bounded = false;
+        for (int i = 0; i < nr; ++i) {
+            bounded |= (lr[i] != Double.NEGATIVE_INFINITY) || (ur[i] != Double.POSITIVE_INFINITY);
+        }
+        if (bounded) data.add(new SimpleBounds(lr, ur));
+        data.add(new InitialGuess(start(r.restrict(x0), kept, keptOffsets, lr, ur)));
+        if (warm != null) {
+            data.add(new WarmStart(r.restrict(warm.getPoint()), warm.getT(), r.restrictDual(warm.getDual())));
+        }
+        data.addAll(other);
+        r.data = data.toArray(new OptimizationData[0]);
+        return r;
+    }
+
+    // The restriction of the initial guess, moved inside the bounds, if it is strictly feasible for
+    // the reduced rows, as it need not be when it did not satisfy the pinning equalities; or else a
+    // phase I point, found by a slack search of bounded length that keeps the bounds as a barrier.
+    private static double[] start(final double[] xr, final ArrayList<double[]> rows, final ArrayList<Double> offsets,
+                                  final double[] lower, final double[] upper) {
+        final SimpleBounds bounds = new SimpleBounds(lower, upper);
+        final double[] x = ConvexOptimizer.interior(xr, bounds);
+        boolean feasible = true;
+        for (int k = 0; k < rows.size(); ++k) {
+            double v = offsets.get(k);
+            for (int i = 0; i < x.length; ++i) v += rows.get(k)[i] * x[i];
+            feasible &= (v < 0.0);
+        }
+        if (feasible) return x;
+        PointValuePair p = ConvexOptimizer.feasiblePoint(constraint(rows, offsets), bounds,
+                new InitialGuess(x), new PhaseI(PhaseI.Method.SLACK));
+        if (!(p.getValue() < 0.0)) throw new IllegalArgumentException("no strictly feasible point found for the inequality constraints");
+        return p.getPoint();
+    }
+
+    // the rows a[k].x + c[k] < 0
+    private static LinearInequalityConstraint constraint(final ArrayList<double[]> rows, final ArrayList<Double> offsets) {
+        double[] b = new double[offsets.size()];
+        for (int k = 0; k < b.length; ++k) b[k] = -offsets.get(k);
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(rows.toArray(new double[0][]), false),
+                new ArrayRealVector(b, false));
+    }
+
+    /**
+     * The result of a presolve: the arguments of the reduced problem, which are over the free
+     * variables only, and the values of the fixed variables, which map its solution back.
+     */
+    public static final class Reduction {
+        private final int n;
+        private final boolean[] fixed;
+        private final double[] values;
+        private int[] free;
+        private OptimizationData[] data;
+        // the scale each equality row was divided by, if every row was kept in order, or null
+        private double[] eqScales;
+        private int emptyRows;
+        private int boundRows;
+        private int duplicateRows;
+        private int redundantRows;
+
+        private Reduction(final int n) {
+            this.n = n;
+            this.fixed = new boolean[n];
+            this.values = new double[n];
+        }
+
+        // the free variables, in order
+        private void index() {
+            free = new int[n - fixedCount()];
+            int i = 0;
+            for (int j = 0; j < n; ++j) {
+                if (!fixed[j]) free[i++] = j;
+            }
+        }
+
+        /**
+         * @return the arguments of the reduced problem, or null if every variable is fixed
+         */
+        public OptimizationData[] getData() {
+            return (data != null) ? data.clone() : null;
+        }
+
+        /** @return the number of variables of the reduced problem */
+        public int getFreeVariables() { return free.length; }
+
+        /** @return the number of variables fixed by equalities */
+        public int getFixedVariables() { return n - free.length; }
+
+        /** @return the number of rows without a free variable that were dropped */
+        public int getEmptyRows() { return emptyRows; }
+
+        /** @return the number of inequality rows on a single variable, made into bounds */
+        public int getBoundRows() { return boundRows; }
+
+        /** @return the number of rows merged into a parallel row */
+        public int getDuplicateRows() { return duplicateRows; }
+
+        /** @return the number of inequality rows dropped as satisfied within the bounds */
+        public int getRedundantRows() { return redundantRows; }
+
+        /** @return true if every equality row was kept, in order, so its duals carry over, rescaled */
+        public boolean isEqualityKept() { return eqScales != null; }
+
+        /**
+         * A reduced equality row is the original row divided by a scale s, so its dual is s.nu.
+         * @param nu duals of the reduced equality rows, or null
+         * @return the duals of the original rows, or null if rows were dropped or nu is null
+         */
+        public double[] expandDual(final double[] nu) {
+            if ((nu == null) || (eqScales == null) || (nu.length != eqScales.length)) return null;
+            final double[] full = new double[nu.length];
+            for (int k = 0; k < nu.length; ++k) full[k] = nu[k] / eqScales[k];
+            return full;
+        }
+
+        /**
+         * @param nu duals of the original equality rows, or null
+         * @return the duals of the reduced rows, or null if rows were dropped or nu is null
+         */
+        public double[] restrictDual(final double[] nu) {
+            if ((nu == null) || (eqScales == null) || (nu.length != eqScales.length)) return null;
+            final double[] r = new double[nu.length];
+            for (int k = 0; k < nu.length; ++k) r[k] = nu[k] * eqScales[k];
+            return r;
+        }
+
+        /**
+         * @param x a point of the reduced problem
+         * @return the point of the original problem, with the fixed values
+         */
+        public double[] expand(final double[] x) {
+            if (x.length != free.length) throw new DimensionMismatchException(x.length, free.length);
+            final double[] full = values.clone();
+            for (int i = 0; i < free.length; ++i) full[free[i]] = x[i];
+            return full;
+        }
+
+        /**
+         * @param x a point of the original problem
+         * @return its free variables, a point of the reduced problem
+         */
+        public double[] restrict(final double[] x) {
+            if (x.length != n) throw new DimensionMismatchException(x.length, n);
+            final double[] r = new double[free.length];
+            for (int i = 0; i < free.length; ++i) r[i] = x[free[i]];
+            return r;
+        }
+
+        private int fixedCount() {
+            int count = 0;
+            for (boolean f: fixed) {
+                if (f) ++count;
+            }
+            return count;
+        }
+    }
+
+    // Coefficients rounded to the tolerance, so that parallel rows scaled alike compare equal.
+    private static final class Key {
+        private final long[] q;
+
+        Key(final double[] a, final double tolerance) {
+            q = new long[a.length];
+            for (int i = 0; i < a.length; ++i) q[i] = Math.round(a[i] / tolerance);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return (o instanceof Key) && Arrays.equals(q, ((Key) o).q);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(q);
+        }
+    }
+
+    // The objective over the free variables: f0 at the point with the fixed values, and its
+    // derivatives restricted to the free variables.
+    private static final class Restricted extends ConvexFunction {
+        private final ConvexFunction f0;
+        private final Reduction r;
+        private final int n;
+        private final double[] x;
+        private final double[] v;
+        private final double[] g;
+        private double[][] h;
+        private double[][] u;
+
+        Restricted(final ConvexFunction f0, final Reduction r) {
+            this.f0 = f0;
+            this.r = r;
+            this.n = r.free.length;
+            this.x = r.values.clone();
+            this.v = new double[r.n];
+            this.g = new double[r.n];
+        }
+
+        @Override
+        public int dimensions() {
+            return n;
+        }
+
+        @Override
+        public double value(final RealVector x) {
+            return evaluate(x.toArray(), null, null);
+        }
+
+        @Override
+        public RealVector gradient(final RealVector x) {
+            double[] g = new double[n];
+            evaluate(x.toArray(), g, null);
+            return new ArrayRealVector(g, false);
+        }
+
+        @Override
+        public RealMatrix hessian(final RealVector x) {
+            double[][] h = new double[n][n];
+            evaluate(x.toArray(), null, h);
+            return new Array2DRowRealMatrix(h, false);
+        }
+
+        @Override
+        public Evaluation evaluate(final RealVector x, final int order) {
+            return evaluateFused(x, order);
+        }
+
+        @Override
+        public double value(final double[] x) {
+            return evaluate(x, null, null);
+        }
+
+        @Override
+        public void gradient(final double[] x, final double[] g) {
+            evaluate(x, g, null);
+        }
+
+        @Override
+        public void hessian(final double[] x, final double[][] h) {
+            evaluate(x, null, h);
+        }
+
+        @Override
+        public double evaluate(final double[] xr, final double[] gr, final double[][] hr) {
+            embed(xr, x);
+            if ((hr != null) && (h == null)) h = new double[r.n][r.n];
+            final double value = f0.evaluate(x, (gr != null) ? g : null, (hr != null) ? h : null);
+            if (gr != null) select(g, gr);
+            if (hr != null) {
+                for (int i = 0; i < n; ++i) {
+                    final double[] hi = h[r.free[i]];
+                    for (int k = 0; k < n; ++k) hr[i][k] = hi[r.free[k]];
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public boolean isHessianConstant() {
+            return f0.isHessianConstant();
+        }
+
+        @Override
+        public void hessianVector(final double[] xr, final double[] vr, final double[] hv) {
+            embed(xr, x);
+            Arrays.fill(v, 0.0);
+            embed(vr, v);
+            f0.hessianVector(x, v, g);
+            select(g, hv);
+        }
+
+        @Override
+        public void hessianDiagonal(final double[] xr, final double[] d) {
+            embed(xr, x);
+            f0.hessianDiagonal(x, g);
+            select(g, d);
+        }
+
+        @Override
+        public LowRankHessian lowRankHessian() {
+            final LowRankHessian h0 = f0.lowRankHessian();
+            if (h0 == null) return null;
+            final int rank = h0.rank();
+            // the free entries of a positive diagonal are positive
+            return new LowRankHessian(rank, h0.isDiagonalPositive()) {
+                @Override
+                public void evaluate(final double[] xr, final double[] d, final double[][] ur) {
+                    embed(xr, x);
+                    if ((u == null) || (u.length < rank)) u = new double[rank][r.n];
+                    h0.evaluate(x, g, u);
+                    select(g, d);
+                    for (int k = 0; k < rank; ++k) select(u[k], ur[k]);
+                }
+            };
+        }
+
+        @Override
+        public double maxStep(final double[] xr, final double[] dxr) {
+            embed(xr, x);
+            Arrays.fill(v, 0.0);
+            embed(dxr, v);
+            return f0.maxStep(x, v);
+        }
+
+        // the free entries of the full vector a
+        private void select(final double[] a, final double[] ar) {
+            for (int i = 0; i < n; ++i) ar[i] = a[r.free[i]];
+        }
+
+        // sets the free entries of the full vector a to ar
+        private void embed(final double[] ar, final double[] a) {
+            for (int i = 0; i < n; ++i) a[r.free[i]] = ar[i];
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolver;
+import com.optimization.util.NewtonWorkspace;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+
+import java.util.ArrayList;
+
+/**
+ * A primal-dual interior-point method for
+ * <pre>
+ * minimize f0(x) subject to G.x &lt; h, A.x = b
+ * </pre>
+ * Algorithm 11.2 of <p>
+ * Convex Optimization, Boyd and Vandenberghe, Cambridge University Press, 2008, <p>
+ * with the centering parameter chosen by Mehrotra's predictor-corrector heuristic: each
+ * iteration factors the KKT system once, solves it for the affine scaling (predictor)
+ * direction, and solves it again on the same factors for the combined (corrector) direction.
+ * Where {@link BarrierOptimizer} runs Newton's method to convergence for each value of t,
+ * this takes a single step per iteration, so it usually needs a fraction of the factorizations.
+ * <p>
+ * It takes the dense OptimizationData of {@link BarrierOptimizer}: an ObjectiveFunction of a
+ * ConvexFunction, {@link LinearInequalityConstraint}, {@link LinearConstraintBlock},
+ * {@link LinearConstraintSet} and SimpleBounds, all stacked into the rows of G.x &lt; h,
+ * {@link LinearEqualityConstraint}, and an InitialGuess that strictly satisfies the inequality
+ * constraints; the equality constraints need not hold at the initial guess. The sparse
+ * constraint types are rejected with an IllegalArgumentException. A {@link KKTSolver},
+ * {@link NewtonWorkspace} and {@link SolverStatistics} may also be given. {@link #getIterations()} counts the
+ * iterations, each of which is one factorization.
+ */
+public class PrimalDualOptimizer extends ConvexOptimizer {
+    // inequality constraints as G.x < h, by rows
+    private double[][] G;
+    private double[] h;
+    private LinearEqualityConstraint eqConstraint;
+    private KKTSolver kktSolver = new KKTSolver();
+    private NewtonWorkspace workspace;
+    private SolverStatistics statistics;
+    private RealVector xStart;
+    private double[] lambdaFinal;
+    private double[] nuFinal;
+
+    // tolerance on the surrogate duality gap, and on the primal and dual residuals
+    // relative to 1 + |b| and 1 + |grad f0|
+    private double epsilon = 1e-9;
+    // the least fraction of the step to the boundary of s, lambda >= 0; it tends to 1 with mu
+    private double eta = 0.99;
+    // backtracking line search parameters
+    private double alpha = 0.01;
+    private double beta = 0.5;
+
+    public PrimalDualOptimizer() {
+        super();
+    }
+
+    @Override
+    public PointValuePair optimize(OptimizationData... optData) {
+        return super.optimize(optData);
+    }
+
+    /**
+     * @return the dual variables (nu) for the equality constraints at the last solution,
+     * or null if there were no equality constraints
+     */
+    public double[] getDual() {
+        return (nuFinal != null) ? nuFinal.clone() : null;
+    }
+
+    /**
+     * @return the dual variables (lambda) for the inequality constraints at the last solution,
+     * or null if nothing has been optimized yet
+     */
+    public double[] getInequalityDual() {
+        return (lambdaFinal != null) ? lambdaFinal.clone() : null;
+    }
+
+    @Override
+    protected void parseOptimizationData(OptimizationData... optData) {
+        super.parseOptimizationData(optData);
+        ArrayList<LinearFunction> constraints = new ArrayList<LinearFunction>();
+        ArrayList<LinearConstraintBlock> blocks = new ArrayList<LinearConstraintBlock>();
+        LinearConstraintSet constraintSet = null;
+        SimpleBounds bounds = null;
+        eqConstraint = null;
+        kktSolver = new KKTSolver();
+        workspace = null;
+        statistics = null;
+        for (OptimizationData data: optData) {
+            if (data instanceof LinearInequalityConstraint) {
+                for (LinearFunction f: ((LinearInequalityConstraint)data).lcf) constraints.add(f);
+            }
+            if (data instanceof LinearConstraintBlock) {
+                blocks.add((LinearConstraintBlock)data);
+            }
+            if (data instanceof LinearConstraintSet) {
+                if (constraintSet != null) throw new IllegalArgumentException("at most one LinearConstraintSet");
+                constraintSet = (LinearConstraintSet)data;
+            }
+            if (data instanceof SimpleBounds) {
+                bounds = (SimpleBounds)data;
+            }
+            if ((data instanceof SparseLinearInequalityConstraint) || (data instanceof SparseLinearEqualityConstraint)) {
+                throw new IllegalArgumentException("the primal-dual method supports dense linear constraints only");
+            }
+            if (data instanceof LinearEqualityConstraint) {
+                eqConstraint = (LinearEqualityConstraint)data;
+            }
+            if (data instanceof KKTSolver) {
+                kktSolver = (KKTSolver)data;
+            }
+            if (data instanceof NewtonWorkspace) {
+                workspace = (NewtonWorkspace)data;
+            }
+            if (data instanceof SolverStatistics) {
+                statistics = (SolverStatistics)data;
+            }
+        }
+        int n = convexObjective.dimensions();
+        // every kind of linear inequality, stacked as the rows of G.x < h
+        ArrayList<double[]> rows = new ArrayList<double[]>();
+        ArrayList<Double> rhs = new ArrayList<Double>();
+        for (LinearFunction f: constraints) {
+            if (f.dimensions() != n) throw new DimensionMismatchException(f.dimensions(), n);
+            rows.add(f.getWeights().toArray());
+            rhs.add(-f.getConstant());
+        }
+        for (LinearConstraintBlock block: blocks) {
+            if (block.dimensions() != n) throw new DimensionMismatchException(block.dimensions(), n);
+            for (int k = 0; k < block.rows(); ++k) {
+                rows.add(block.getRow(k));
+                rhs.add(block.getBound(k));
+            }
+        }
+        if ((constraintSet != null) && (constraintSet.size() > 0)) {
+            if (constraintSet.dimensions() != n) throw new DimensionMismatchException(constraintSet.dimensions(), n);
+            for (LinearFunction f: constraintSet.toConstraint().lcf) {
+                rows.add(f.getWeights().toArray());
+                rhs.add(-f.getConstant());
+            }
+        }
+        if (bounds != null) {
+            // the finite bounds as unit rows: x[j] < u[j] and -x[j] < -l[j]
+            double[] lower = bounds.getLower();
+            double[] upper = bounds.getUpper();
+            if (lower.length != n) throw new DimensionMismatchException(lower.length, n);
+            if (upper.length != n) throw new DimensionMismatchException(upper.length, n);
+            for (int j = 0; j < n; ++j) {
+                if (!(lower[j] < upper[j])) throw new IllegalArgumentException("lower bounds must be below upper bounds");
+                if (upper[j] != Double.POSITIVE_INFINITY) {
+                    double[] row = new double[n];
+                    row[j] = 1.0;
+                    rows.add(row);
+                    rhs.add(upper[j]);
+                }
+                if (lower[j] != Double.NEGATIVE_INFINITY) {
+                    double[] row = new double[n];
+                    row[j] = -1.0;
+                    rows.add(row);
+                    rhs.add(-lower[j]);
+                }
+            }
+        }
+        G = rows.toArray(new double[rows.size()][]);
+        h = new double[rhs.size()];
+        for (int k = 0; k < h.length; ++k) h[k] = rhs.get(k);
+        if ((eqConstraint != null) && (eqConstraint.A.getColumnDimension() != n))
+            throw new DimensionMismatchException(eqConstraint.A.getColumnDimension(), n);
+        if (this.getStartPoint() != null) {
+            xStart = new ArrayRealVector(this.getStartPoint());
+            if (xStart.getDimension() != n)
+                throw new DimensionMismatchException(xStart.getDimension(), n);
+        } else {
+            xStart = new ArrayRealVector(n, 0.0);
+        }
+    }
+
+    @Override
+    public PointValuePair doOptimize() {
+        final int n = convexObjective.dimensions();
+        final int m = G.length;
+        final int p = (eqConstraint == null) ? 0 : eqConstraint.b.getDimension();
+        final double[][] A = (p > 0) ? eqConstraint.A.getData() : new double[0][];
+        final double[] b = (p > 0) ? eqConstraint.b.toArray() : new double[0];
+        final double bNorm = Math.sqrt(dot(b, b));
+        final NewtonWorkspace ws = (workspace != null) ? workspace : new NewtonWorkspace();
+        final SolverStatistics stats = statistics;
+        ws.ensure(n, p);
+        double[] x = ws.x;
+        double[] tx = ws.tx;
+        double[] grad = ws.grad;
+        double[] tgrad = ws.tgrad;
+        double[] nu = ws.nu;
+        double[] tnu = ws.tnu;
+        final double[] dx = ws.xDelta;
+        final double[] nuPlus = ws.nuPlus;
+        final double[] rp = ws.residual;
+        final double[] trp = new double[p];
+        final double[] rd = new double[n];
+        final double[] geff = new double[n];
+        double[] s = new double[m];
+        double[] ts = new double[m];
+        double[] lambda = new double[m];
+        double[] tlambda = new double[m];
+        final double[] ds = new double[m];
+        final double[] dlambda = new double[m];
+        final double[] target = new double[m];
+
+        for (int j = 0; j < n; ++j) x[j] = xStart.getEntry(j);
+        for (int k = 0; k < m; ++k) {
+            s[k] = h[k] - dot(G[k], x);
+            if (!(s[k] > 0.0))
+                throw new IllegalArgumentException("initial guess must strictly satisfy the inequality constraints");
+            // the central point for t = 1
+            lambda[k] = 1.0 / s[k];
+        }
+        java.util.Arrays.fill(nu, 0.0);
+        // the gradient at x is carried over from the accepted line-search step
+        double v = convexObjective.evaluate(x, grad, null);
+        while (true) {
+            incrementIterationCount();
+            final long start = now(stats);
+            final double[][] H = ws.hess;
+            convexObjective.hessian(x, H);
+            final long evaluated = now(stats);
+
+            // dual residual grad + GT.lambda + AT.nu, primal residual Ax - b, and the surrogate gap
+            dualResidual(grad, lambda, nu, A, rd);
+            for (int k = 0; k < p; ++k) rp[k] = dot(A[k], x) - b[k];
+            final double rdNorm = Math.sqrt(dot(rd, rd));
+            final double rpNorm = Math.sqrt(dot(rp, rp));
+            final double gap = dot(s, lambda);
+            if ((rdNorm <= epsilon * (1.0 + Math.sqrt(dot(grad, grad))))
+                    && (rpNorm <= epsilon * (1.0 + bNorm)) && (gap <= epsilon)) {
+                if (stats != null)
+                    stats.newtonIteration(getIterations(), 0L, evaluated - start, 0L, 0L,
+                            0, 0, 0.0, Double.NaN, Math.hypot(rdNorm, rpNorm), v);
+                break;
+            }
+            final double mu = (m > 0) ? (gap / m) : 0.0;
+
+            // eliminate the inequality duals: H + GT.diag(lambda/s).G, on the upper triangle
+            for (int k = 0; k < m; ++k) {
+                final double[] gk = G[k];
+                final double dk = lambda[k] / s[k];
+                for (int i = 0; i < n; ++i) {
+                    final double c = dk * gk[i];
+                    if (c == 0.0) continue;
+                    final double[] hi = H[i];
+                    for (int j = i; j < n; ++j) hi[j] += c * gk[j];
+                }
+            }
+            // predictor: the affine scaling direction, which targets lambda.s = 0
+            if (p == 0) {
+                kktSolver.solve(H, grad, dx, ws);
+            } else {
+                kktSolver.solve(H, A, grad, rp, dx, nuPlus, ws);
+            }
+            java.util.Arrays.fill(target, 0.0);
+            directions(dx, s, lambda, target, ds, dlambda);
+            double sigmaMu = 0.0;
+            boolean corrected = false;
+            if (m > 0) {
+                final double a = Math.min(1.0, maxStep(s, ds, lambda, dlambda));
+                double muAff = 0.0;
+                for (int k = 0; k < m; ++k) muAff += (s[k] + a * ds[k]) * (lambda[k] + a * dlambda[k]);
+                muAff /= m;
+                // the centering parameter of Mehrotra, at most 1, as muAff may exceed mu when a is small
+                final double sigma = Math.min(1.0, Math.pow(muAff / mu, 3));
+                sigmaMu = sigma * mu;
+                // corrector: target lambda.s = sigma.mu, less the second order term of the predictor
+                for (int k = 0; k < m; ++k) target[k] = sigmaMu - ds[k] * dlambda[k];
+                effectiveGradient(grad, s, target, geff);
+                kktSolver.resolve(H, A, geff, rp, dx, nuPlus, ws);
+                directions(dx, s, lambda, target, ds, dlambda);
+                corrected = true;
+            }
+            final long solved = now(stats);
+
+            // backtrack from a fraction of the longest step that keeps s and lambda positive,
+            // until the residual, with the centering target sigma.mu, decreases enough
+            final double r0 = residualNorm(rd, rp, s, lambda, sigmaMu);
+            double t = 0.0;
+            double tv = 0.0;
+            boolean foundStep = false;
+            int backtracks = 0;
+            int infeasible = 0;
+            while (true) {
+                for (t = Math.min(1.0, Math.max(eta, 1.0 - mu) * maxStep(s, ds, lambda, dlambda));
+                     t >= 1e-12; t *= beta, ++backtracks) {
+                    for (int j = 0; j < n; ++j) tx[j] = x[j] + (dx[j] * t);
+                    tv = convexObjective.evaluate(tx, tgrad, null);
+                    if (Double.isInfinite(tv) || Double.isNaN(tv)) {
+                        ++infeasible;
+                        continue;
+                    }
+                    for (int k = 0; k < m; ++k) {
+                        ts[k] = s[k] + (ds[k] * t);
+                        tlambda[k] = lambda[k] + (dlambda[k] * t);
+                    }
+                    for (int k = 0; k < p; ++k) tnu[k] = nu[k] + ((nuPlus[k] - nu[k]) * t);
+                    dualResidual(tgrad, tlambda, tnu, A, rd);
+                    // the primal residual is linear in x, so it shrinks by (1 - t)
+                    for (int k = 0; k < p; ++k) trp[k] = rp[k] * (1.0 - t);
+                    final double tNorm = residualNorm(rd, trp, ts, tlambda, sigmaMu);
+                    if (tNorm <= (1.0 - (alpha * t)) * r0) {
+                        foundStep = true;
+                        break;
+                    }
+                }
+                if (foundStep || !corrected) break;
+                // The second order term can spoil the descent of the residual. Without it the
+                // direction is the Newton step for the residual, along which it must decrease.
+                for (int k = 0; k < m; ++k) target[k] = sigmaMu;
+                effectiveGradient(grad, s, target, geff);
+                kktSolver.resolve(H, A, geff, rp, dx, nuPlus, ws);
+                directions(dx, s, lambda, target, ds, dlambda);
+                corrected = false;
+            }
+            if (stats != null)
+                stats.newtonIteration(getIterations(), 0L, evaluated - start, solved - evaluated,
+                        now(stats) - solved, backtracks, infeasible, foundStep ? t : 0.0,
+                        Double.NaN, Math.hypot(rdNorm, rpNorm), v);
+            // no acceptable step: the residuals are as small as rounding allows
+            if (!foundStep) break;
+            double[] swap = x;
+            x = tx;
+            tx = swap;
+            swap = grad;
+            grad = tgrad;
+            tgrad = swap;
+            swap = nu;
+            nu = tnu;
+            tnu = swap;
+            swap = s;
+            s = ts;
+            ts = swap;
+            swap = lambda;
+            lambda = tlambda;
+            tlambda = swap;
+            v = tv;
+        }
+        lambdaFinal = lambda.clone();
+        nuFinal = (p > 0) ? nu.clone() : null;
+        return new PointValuePair(x.clone(), v);
+    }
+
+    // rd = grad + GT.lambda + AT.nu
+    private void dualResidual(
+            final double[] grad, final double[] lambda, final double[] nu,
+            final double[][] A, final double[] rd) {
+        System.arraycopy(grad, 0, rd, 0, rd.length);
+        for (int k = 0; k < G.length; ++k) {
+            final double[] gk = G[k];
+            final double lk = lambda[k];
+            for (int j = 0; j < rd.length; ++j) rd[j] += lk * gk[j];
+        }
+        for (int k = 0; k < A.length; ++k) {
+            final double[] ak = A[k];
+            final double nk = nu[k];
+            for (int j = 0; j < rd.length; ++j) rd[j] += nk * ak[j];
+        }
+    }
+
+    // the gradient for the reduced KKT system with centrality target lambda.s = target:
+    // geff = grad + GT.(target/s)
+    private void effectiveGradient(final double[] grad, final double[] s, final double[] target, final double[] geff) {
+        System.arraycopy(grad, 0, geff, 0, geff.length);
+        for (int k = 0; k < G.length; ++k) {
+            final double[] gk = G[k];
+            final double ck = target[k] / s[k];
+            for (int j = 0; j < geff.length; ++j) geff[j] += ck * gk[j];
+        }
+    }
+
+    // Given dx, the slack and inequality dual directions:
+    // ds = -G.dx, and from lambda.ds + s.dlambda = target - lambda.s, dlambda = (target - lambda.ds)/s - lambda
+    private void directions(
+            final double[] dx, final double[] s, final double[] lambda, final double[] target,
+            final double[] ds, final double[] dlambda) {
+        for (int k = 0; k < G.length; ++k) {
+            ds[k] = -dot(G[k], dx);
+            dlambda[k] = ((target[k] - (lambda[k] * ds[k])) / s[k]) - lambda[k];
+        }
+    }
+
+    // the largest step a such that s + a.ds &gt;= 0 and lambda + a.dlambda &gt;= 0, or +inf
+    private static double maxStep(final double[] s, final double[] ds, final double[] lambda, final double[] dlambda) {
+        double a = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < s.length; ++k) {
+            if (ds[k] < 0.0) a = Math.min(a, -s[k] / ds[k]);
+            if (dlambda[k] < 0.0) a = Math.min(a, -lambda[k] / dlambda[k]);
+        }
+        return a;
+    }
+
+    // the norm of the stacked dual, centrality (lambda.s - sigma.mu) and primal residuals
+    private static double residualNorm(
+            final double[] rd, final double[] rp, final double[] s, final double[] lambda, final double sigmaMu) {
+        double rr = dot(rd, rd) + dot(rp, rp);
+        for (int k = 0; k < s.length; ++k) {
+            final double rc = (lambda[k] * s[k]) - sigmaMu;
+            rr += rc * rc;
+        }
+        return Math.sqrt(rr);
+    }
+
+    private static double dot(final double[] a, final double[] b) {
+        double s = 0.0;
+        for (int j = 0; j < a.length; ++j) s += a[j] * b[j];
+        return s;
+    }
+
+    // a timestamp, taken only when statistics are being recorded
+    private static long now(final SolverStatistics stats) {
+        return (stats != null) ? System.nanoTime() : 0L;
+    }
+}
@@ -1,5 +1,7 @@
 package com.optimization.objects;
 
+import com.optimization.util.Kernels;
+import com.optimization.util.SparseMatrix;
 import org.apache.commons.math3.linear.*;
 
 /**
@@ -12,8 +14,12 @@ import org.apache.commons.math3.linear.*;
 public class QuadraticFunction extends ConvexFunction {
     private final RealMatrix A;
     private final RealVector b;
+    private final double[][] aData;
+    private final double[] bData;
     private final double c;
     private final int n;
+    // the constant Hessian in sparse form, built on first use
+    private SparseMatrix sparseA;
 
     /**
      * Construct quadratic function 0.5*(x^T)A(x) + b.x + c
@@ -25,9 +31,11 @@ public class QuadraticFunction extends ConvexFunction {
     public QuadraticFunction(RealMatrix A, RealVector b, double c) {
         MatrixUtils.checkSymmetric(A, 1e-6);
         this.A = A.copy();
-        this.b = b.copy();
         this.c = c;
         this.n = b.getDimension();
+        this.aData = A.getData();
+        this.bData = b.toArray();
+        this.b = RealVector.unmodifiableRealVector(new ArrayRealVector(bData, false));
     }
 
     /**
@@ -42,6 +50,21 @@ public class QuadraticFunction extends ConvexFunction {
         return n;
     }
 
+    /**
+     * @return a copy of the matrix A of the quadratic terms (also the Hessian)
+     */
+    public RealMatrix getQuadraticWeights() { return A.copy(); }
+
+    /**
+     * @return the weight vector b of the linear terms, as a read-only view
+     */
+    public RealVector getWeights() { return b; }
+
+    /**
+     * @return the constant c
+     */
+    public double getConstant() { return c; }
+
     /**
      * Dot product of A.x + b.x + c
      */
@@ -63,6 +86,70 @@ public class QuadraticFunction extends ConvexFunction {
         return A.copy();
     }
 
+    @Override
+    public double value(final double[] x) {
+        return evaluate(x, null, null);
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        evaluate(x, g, null);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] h) {
+        for (int i = 0; i < n; ++i) System.arraycopy(aData[i], 0, h[i], 0, n);
+    }
+
+    @Override
+    public boolean isHessianConstant() {
+        return true;
+    }
+
+    @Override
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        for (int i = 0; i < n; ++i) hv[i] = Kernels.dot(aData[i], 0, v, 0, n);
+    }
+
+    @Override
+    public void hessianDiagonal(final double[] x, final double[] d) {
+        for (int i = 0; i < n; ++i) d[i] = aData[i][i];
+    }
+
+    @Override
+    public SparseMatrix sparseHessian(final double[] x) {
+        if (sparseA == null) sparseA = SparseMatrix.upperFromDense(aData);
+        return sparseA;
+    }
+
+    /**
+     * Computes A.x once and shares it between the value and the gradient.
+     */
+    @Override
+    public double evaluate(final double[] x, final double[] g, final double[][] h) {
+        double ax = 0.0;
+        double bx = 0.0;
+        for (int i = 0; i < n; ++i) {
+            final double[] ai = aData[i];
+            double s = 0.0;
+            for (int j = 0; j < n; ++j) s += ai[j] * x[j];
+            ax += s * x[i];
+            bx += bData[i] * x[i];
+            if (g != null) g[i] = s + bData[i];
+        }
+        if (h != null) hessian(x, h);
+        return (0.5 * ax) + bx + c;
+    }
+
+    @Override
+    public Evaluation evaluate(final RealVector x, final int order) {
+        RealVector ax = A.operate(x);
+        double v = (0.5 * ax.dotProduct(x)) + b.dotProduct(x) + c;
+        RealVector g = (order >= 1) ? ax.add(b) : null;
+        RealMatrix h = (order >= 2) ? A.copy() : null;
+        return new Evaluation(v, g, h);
+    }
+
     /**
      * Create a quadratic function that corresponds to s((x-c).(x-c) &lt; r^2).
      * That is, constrained to an n-dimensional ball of radius r, with scaling factor s.
@@ -0,0 +1,216 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records per-iteration statistics of a solve. <p>
+ * Pass an instance as OptimizationData to {@link NewtonOptimizer} or {@link BarrierOptimizer};
+ * the barrier optimizer forwards it to each of its centering steps. Every Newton iteration
+ * and every outer barrier step is recorded, and also reported to an optional {@link Listener}
+ * as it completes. When no SolverStatistics is given, the optimizers take no timings at all. <p>
+ * Records accumulate across solves until {@link #clear()} is called. An instance must not be
+ * shared by concurrent solves.
+ */
+public class SolverStatistics implements OptimizationData {
+    /**
+     * Receives each record as soon as it is complete, e.g. to forward it to a metrics system.
+     */
+    public interface Listener {
+        void newtonIteration(NewtonIteration iteration);
+        void barrierStep(BarrierStep step);
+    }
+
+    private final Listener listener;
+    private final ArrayList<NewtonIteration> newtonIterations = new ArrayList<NewtonIteration>();
+    private final ArrayList<BarrierStep> barrierSteps = new ArrayList<BarrierStep>();
+    // the index of the barrier step in progress, or -1 outside of a barrier solve
+    private int currentStep = -1;
+
+    public SolverStatistics() {
+        this(null);
+    }
+
+    /**
+     * @param listener receives each record as it completes, or null
+     */
+    public SolverStatistics(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /** @return the recorded Newton iterations, in order */
+    public List<NewtonIteration> getNewtonIterations() {
+        return Collections.unmodifiableList(newtonIterations);
+    }
+
+    /** @return the recorded outer barrier steps, in order */
+    public List<BarrierStep> getBarrierSteps() {
+        return Collections.unmodifiableList(barrierSteps);
+    }
+
+    /** Discard all records */
+    public void clear() {
+        newtonIterations.clear();
+        barrierSteps.clear();
+        currentStep = -1;
+    }
+
+    /**
+     * Totals over all recorded iterations, keyed by metric name, in a fixed order:
+     * newtonIterations, barrierSteps, evaluationNanos, hessianNanos, factorizationNanos,
+     * lineSearchNanos, backtracks, infeasibleSteps, totalNanos.
+     * @return the totals
+     */
+    public Map<String, Long> totals() {
+        long evaluation = 0L, hessian = 0L, factorization = 0L, lineSearch = 0L;
+        long backtracks = 0L, infeasible = 0L, total = 0L;
+        for (NewtonIteration it: newtonIterations) {
+            evaluation += it.evaluationNanos;
+            hessian += it.hessianNanos;
+            factorization += it.factorizationNanos;
+            lineSearch += it.lineSearchNanos;
+            backtracks += it.backtracks;
+            infeasible += it.infeasibleSteps;
+        }
+        if (barrierSteps.isEmpty()) {
+            total = evaluation + hessian + factorization + lineSearch;
+        } else {
+            for (BarrierStep step: barrierSteps) total += step.nanos;
+        }
+        LinkedHashMap<String, Long> totals = new LinkedHashMap<String, Long>();
+        totals.put("newtonIterations", (long)newtonIterations.size());
+        totals.put("barrierSteps", (long)barrierSteps.size());
+        totals.put("evaluationNanos", evaluation);
+        totals.put("hessianNanos", hessian);
+        totals.put("factorizationNanos", factorization);
+        totals.put("lineSearchNanos", lineSearch);
+        totals.put("backtracks", backtracks);
+        totals.put("infeasibleSteps", infeasible);
+        totals.put("totalNanos", total);
+        return totals;
+    }
+
+    void beginBarrierStep() {
+        currentStep = barrierSteps.size();
+    }
+
+    void endBarrierStep(final double t, final double m, final int iterations, final long nanos) {
+        BarrierStep step = new BarrierStep(currentStep, t, m / t, iterations, nanos);
+        currentStep = -1;
+        barrierSteps.add(step);
+        if (listener != null) listener.barrierStep(step);
+    }
+
+    void newtonIteration(
+            final int iteration, final long evaluationNanos, final long hessianNanos,
+            final long factorizationNanos, final long lineSearchNanos,
+            final int backtracks, final int infeasibleSteps, final double stepSize,
+            final double decrementSquared, final double residualNorm, final double value) {
+        NewtonIteration it = new NewtonIteration(currentStep, iteration,
+                evaluationNanos, hessianNanos, factorizationNanos, lineSearchNanos,
+                backtracks, infeasibleSteps, stepSize, decrementSquared, residualNorm, value);
+        newtonIterations.add(it);
+        if (listener != null) listener.newtonIteration(it);
+    }
+
+    /**
+     * One Newton iteration: the evaluation of derivatives at x, the solve for the Newton step,
+     * and the backtracking line search along it.
+     */
+    public static class NewtonIteration {
+        /** The index of the enclosing barrier step, or -1 for a standalone Newton solve */
+        public final int barrierStep;
+        /** The iteration number within its Newton solve, from 1 */
+        public final int iteration;
+        /**
+         * Time spent evaluating the objective, gradient and Hessian at x, which are evaluated
+         * together. With equality constraints the gradient is carried over from the line search
+         * and only the Hessian is evaluated, so this is 0 and the time is in hessianNanos.
+         */
+        public final long evaluationNanos;
+        /** Time spent evaluating the Hessian separately (with equality constraints) */
+        public final long hessianNanos;
+        /** Time spent factoring and solving the KKT system */
+        public final long factorizationNanos;
+        /** Time spent in the line search, including its function evaluations */
+        public final long lineSearchNanos;
+        /** The number of step reductions, including those for infeasible trial points */
+        public final int backtracks;
+        /** The number of trial points rejected as outside the domain (infinite value) */
+        public final int infeasibleSteps;
+        /** The accepted step size, or 0 if no step was taken */
+        public final double stepSize;
+        /** The squared Newton decrement (NaN with equality constraints) */
+        public final double decrementSquared;
+        /** The norm of the primal and dual residuals (NaN without equality constraints) */
+        public final double residualNorm;
+        /** The objective value at the start of the iteration */
+        public final double value;
+
+        public NewtonIteration(
+                final int barrierStep, final int iteration,
+                final long evaluationNanos, final long hessianNanos,
+                final long factorizationNanos, final long lineSearchNanos,
+                final int backtracks, final int infeasibleSteps, final double stepSize,
+                final double decrementSquared, final double residualNorm, final double value) {
+            this.barrierStep = barrierStep;
+            this.iteration = iteration;
+            this.evaluationNanos = evaluationNanos;
+            this.hessianNanos = hessianNanos;
+            this.factorizationNanos = factorizationNanos;
+            this.lineSearchNanos = lineSearchNanos;
+            this.backtracks = backtracks;
+            this.infeasibleSteps = infeasibleSteps;
+            this.stepSize = stepSize;
+            this.decrementSquared = decrementSquared;
+            this.residualNorm = residualNorm;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "NewtonIteration(step=%d, it=%d, eval=%dns, hess=%dns, kkt=%dns, ls=%dns, "
+                    + "backtracks=%d, infeasible=%d, s=%g, lambda2=%g, r=%g, v=%g)",
+                    barrierStep, iteration, evaluationNanos, hessianNanos, factorizationNanos,
+                    lineSearchNanos, backtracks, infeasibleSteps, stepSize, decrementSquared,
+                    residualNorm, value);
+        }
+    }
+
+    /**
+     * One outer iteration of the barrier method: a centering step for a fixed t.
+     */
+    public static class BarrierStep {
+        /** The index of this step within the recorded steps */
+        public final int step;
+        /** The barrier parameter t */
+        public final double t;
+        /** The duality gap m/t at the centered point */
+        public final double dualityGap;
+        /** The number of Newton iterations of the centering step */
+        public final int newtonIterations;
+        /** The wall time of the centering step */
+        public final long nanos;
+
+        public BarrierStep(final int step, final double t, final double dualityGap,
+                           final int newtonIterations, final long nanos) {
+            this.step = step;
+            this.t = t;
+            this.dualityGap = dualityGap;
+            this.newtonIterations = newtonIterations;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("BarrierStep(step=%d, t=%g, gap=%g, newton=%d, %dns)",
+                    step, t, dualityGap, newtonIterations, nanos);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.optimization.objects;
+
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Represents a set of linear equality constraints Ax = b, with a sparse A. <p>
+ * Passing these constraints to {@link NewtonOptimizer} or {@link BarrierOptimizer}
+ * makes them solve in sparse mode.
+ */
+public class SparseLinearEqualityConstraint implements OptimizationData {
+    public final SparseMatrix A;
+    public final double[] b;
+
+    /**
+     * Construct a set of linear equality constraints Ax = b.
+     * Represents equations A[i].x = b[i], for each row of A.
+     * @param A the sparse matrix of linear weights
+     * @param b the vector of constants
+     */
+    public SparseLinearEqualityConstraint(final SparseMatrix A, final double[] b) {
+        if (b.length != A.rows)
+            throw new DimensionMismatchException(b.length, A.rows);
+        this.A = A;
+        this.b = b;
+    }
+
+    /**
+     * Combine dense and sparse equality constraints into one sparse set, dense rows first.
+     * @param dense dense equality constraints, or null
+     * @param sparse sparse equality constraints, or null
+     * @return the combined constraints, or null if both are null
+     */
+    static SparseLinearEqualityConstraint combine(
+            final LinearEqualityConstraint dense, final SparseLinearEqualityConstraint sparse) {
+        if (dense == null) return sparse;
+        SparseMatrix ad = SparseMatrix.fromDense(dense.A.getData());
+        if (sparse == null) return new SparseLinearEqualityConstraint(ad, dense.b.toArray());
+        double[] b = new double[ad.rows + sparse.A.rows];
+        System.arraycopy(dense.b.toArray(), 0, b, 0, ad.rows);
+        System.arraycopy(sparse.b, 0, b, ad.rows, sparse.A.rows);
+        return new SparseLinearEqualityConstraint(
+                SparseMatrix.stack(java.util.Arrays.asList(ad, sparse.A)), b);
+    }
+}
@@ -0,0 +1,28 @@
+package com.optimization.objects;
+
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Represents a set of linear inequality constraints Ax &lt; b, with a sparse A. <p>
+ * Unlike {@link LinearInequalityConstraint}, which keeps a dense {@link LinearFunction}
+ * per row, storage is proportional to the non-zeros of A. Passing these constraints to
+ * {@link BarrierOptimizer} makes it solve in sparse mode.
+ */
+public class SparseLinearInequalityConstraint implements OptimizationData {
+    public final SparseMatrix A;
+    public final double[] b;
+
+    /**
+     * Construct a set of linear inequality constraints Ax &lt; b
+     * @param A the sparse matrix of linear weights
+     * @param b the vector of constants
+     */
+    public SparseLinearInequalityConstraint(final SparseMatrix A, final double[] b) {
+        if (b.length != A.rows)
+            throw new DimensionMismatchException(b.length, A.rows);
+        this.A = A;
+        this.b = b;
+    }
+}
@@ -0,0 +1,34 @@
+package com.optimization.objects;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * A point on the central path from a previous {@link BarrierOptimizer} solve: the primal
+ * solution x, the barrier parameter t it was centered for, and the duals nu of the
+ * equality constraints. Passing it back to a re-solve of a slightly changed problem lets
+ * the barrier method resume from t rather than restarting its schedule from t0.
+ * See {@link BarrierOptimizer#getWarmStart()}.
+ */
+public class WarmStart implements OptimizationData {
+    private final double[] x;
+    private final double t;
+    private final double[] nu;
+
+    /**
+     * @param x the primal point
+     * @param t the barrier parameter x was centered for, &gt; 0
+     * @param nu estimates of the equality constraint duals, or null
+     */
+    public WarmStart(final double[] x, final double t, final double[] nu) {
+        if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
+        this.x = x.clone();
+        this.t = t;
+        this.nu = (nu != null) ? nu.clone() : null;
+    }
+
+    public double[] getPoint() { return x.clone(); }
+
+    public double getT() { return t; }
+
+    public double[] getDual() { return (nu != null) ? nu.clone() : null; }
+}
@@ -10,16 +10,33 @@ public class KKTSolution {
     public final RealVector nuPlus;
     /** The lambda-squared value from the KKT equations, or null if in (alg 10.2) mode */
     public final double lambdaSquared;
+    /** The factorization that was used for the Hessian block */
+    public final KKTSolver.Factorization hessianFactorization;
+    /** The factorization that was used for the Schur complement, or null if in (alg 9.5) mode */
+    public final KKTSolver.Factorization schurFactorization;
 
     public KKTSolution(final RealVector xd, final RealVector nup) {
+        this(xd, nup, KKTSolver.Factorization.SVD, KKTSolver.Factorization.SVD);
+    }
+
+    public KKTSolution(final RealVector xd, final double lsq) {
+        this(xd, lsq, KKTSolver.Factorization.SVD);
+    }
+
+    public KKTSolution(final RealVector xd, final RealVector nup,
+                       final KKTSolver.Factorization hf, final KKTSolver.Factorization sf) {
         this.xDelta = xd;
         this.nuPlus = nup;
         this.lambdaSquared = 0.0;
+        this.hessianFactorization = hf;
+        this.schurFactorization = sf;
     }
 
-    public KKTSolution(final RealVector xd, final double lsq) {
+    public KKTSolution(final RealVector xd, final double lsq, final KKTSolver.Factorization hf) {
         this.xDelta = xd;
         this.lambdaSquared = lsq;
         this.nuPlus = null;
+        this.hessianFactorization = hf;
+        this.schurFactorization = null;
     }
 }
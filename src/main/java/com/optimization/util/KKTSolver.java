@@ -1,12 +1,48 @@
 package com.optimization.util;
 
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
 import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.NonSymmetricMatrixException;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.util.Precision;
 
 public class KKTSolver implements OptimizationData {
+    /**
+     * The matrix factorizations available to the solver, in order of preference.
+     * A solve starts at the preferred factorization and falls back down the list
+     * whenever a matrix turns out to be indefinite (CHOLESKY) or singular (LU).
+     * SVD always succeeds, yielding the least-squares solution for singular systems.
+     */
+    public enum Factorization { CHOLESKY, LU, SVD }
+
+    /** Relative tolerance for treating a matrix as symmetric in the Cholesky path */
+    private static final double SYMMETRY_THRESHOLD = 1e-10;
+
+    private final Factorization preferred;
+
+    /**
+     * Construct a solver that tries Cholesky first, then LU, then SVD.
+     */
+    public KKTSolver() {
+        this(Factorization.CHOLESKY);
+    }
+
+    /**
+     * Construct a solver that starts from the given factorization.
+     * For example, {@code new KKTSolver(Factorization.SVD)} always uses SVD.
+     * @param preferred the first factorization to attempt
+     */
+    public KKTSolver(final Factorization preferred) {
+        this.preferred = preferred;
+    }
+
     // Algorithm 10.3
     /**
      * solve block factored matrix equation:
@@ -28,15 +64,16 @@ public class KKTSolver implements OptimizationData {
             final RealMatrix H,
             final RealMatrix A, final RealMatrix AT,
             final RealVector g, final RealVector h) {
-        DecompositionSolver dsH = (new SingularValueDecomposition(H)).getSolver();
+        Factored fH = factor(H);
+        DecompositionSolver dsH = fH.solver;
         RealMatrix m1 = dsH.solve(AT);
         RealVector v1 = dsH.solve(g);
         RealMatrix S = A.multiply(m1); // -S relative to 10.3
-        DecompositionSolver dsS = (new SingularValueDecomposition(S)).getSolver();
-        RealVector w = dsS.solve(h.subtract(A.operate(v1))); // both sides neg, so w same
+        Factored fS = factor(S);
+        RealVector w = fS.solver.solve(h.subtract(A.operate(v1))); // both sides neg, so w same
         RealVector v = dsH.solve(g.add(AT.operate(w))); // this yields -v
         v.mapMultiplyToSelf(-1.0); // correct -v to +v
-        return new KKTSolution(v, w);
+        return new KKTSolution(v, w, fH.kind, fS.kind);
     }
 
     // step 1 of algorithm 9.5
@@ -50,10 +87,357 @@ public class KKTSolver implements OptimizationData {
      * @return solution delta-x with lambda-squared
      */
     public KKTSolution solve(final RealMatrix H, final RealVector g) {
-        DecompositionSolver dsH = (new SingularValueDecomposition(H)).getSolver();
-        RealVector v = dsH.solve(g);
+        Factored fH = factor(H);
+        RealVector v = fH.solver.solve(g);
         double lsq = g.dotProduct(v);
         v.mapMultiplyToSelf(-1.0);
-        return new KKTSolution(v, lsq);
+        return new KKTSolution(v, lsq, fH.kind);
+    }
+
+    /**
+     * Allocation-free variant of {@link #solve(RealMatrix, RealVector)}. <p>
+     * The lower triangle of H is overwritten with its Cholesky factor; the diagonal
+     * and upper triangle are left intact. When H is not positive definite (or a
+     * factorization other than Cholesky is preferred) this falls back to the
+     * allocating solve.
+     * @param H Hessian matrix (n x n), symmetric
+     * @param g gradient, corresponding to H
+     * @param v receives delta-x
+     * @param ws workspace supplying scratch buffers
+     * @return lambda-squared
+     */
+    public double solve(final double[][] H, final double[] g, final double[] v, final NewtonWorkspace ws) {
+        final int n = g.length;
+        ws.cholesky = false;
+        ws.lowRank = false;
+        if ((preferred != Factorization.CHOLESKY) || !choleskyInPlace(H, ws.hessDiag, n)) {
+            KKTSolution sol = solve(fromUpper(H, n), new ArrayRealVector(g));
+            copy(sol.xDelta, v);
+            ws.hessianFactorization = sol.hessianFactorization;
+            return sol.lambdaSquared;
+        }
+        ws.hessianFactorization = Factorization.CHOLESKY;
+        ws.cholesky = true;
+        final double[] z = ws.tmp;
+        forward(H, ws.hessDiag, g, z, n);
+        double lsq = 0.0;
+        for (int j = 0; j < n; ++j) lsq += z[j] * z[j];
+        backward(H, ws.hessDiag, z, v, n);
+        for (int j = 0; j < n; ++j) v[j] = -v[j];
+        return lsq;
+    }
+
+    /**
+     * Allocation-free variant of {@link #solve(RealMatrix, RealMatrix, RealMatrix, RealVector, RealVector)}. <p>
+     * With H = L.LT the Schur complement is formed as YT.Y where Y = inverse(L).AT, so it is
+     * symmetric by construction. The lower triangle of H is overwritten as in
+     * {@link #solve(double[][], double[], double[], NewtonWorkspace)}.
+     * @param H Hessian matrix (n x n), symmetric
+     * @param A coefficient matrix of equality constraints (p x n)
+     * @param g gradient, corresponding to H
+     * @param h constant vector block corresponding to A
+     * @param v receives delta-x
+     * @param w receives nu+
+     * @param ws workspace supplying scratch buffers
+     */
+    public void solve(
+            final double[][] H, final double[][] A,
+            final double[] g, final double[] h,
+            final double[] v, final double[] w, final NewtonWorkspace ws) {
+        final int n = g.length;
+        final int p = h.length;
+        ws.cholesky = false;
+        ws.lowRank = false;
+        boolean fast = (preferred == Factorization.CHOLESKY) && choleskyInPlace(H, ws.hessDiag, n);
+        if (fast) {
+            final double[][] Y = ws.y;
+            final double[][] S = ws.schur;
+            for (int k = 0; k < p; ++k) forward(H, ws.hessDiag, A[k], Y[k], n);
+            for (int k = 0; k < p; ++k)
+                for (int l = k; l < p; ++l) S[k][l] = dot(Y[k], Y[l], n);
+            fast = choleskyInPlace(S, ws.schurDiag, p);
+        }
+        if (!fast) {
+            RealMatrix Am = new Array2DRowRealMatrix(A, true);
+            KKTSolution sol = solve(fromUpper(H, n), Am, Am.transpose(),
+                    new ArrayRealVector(g), new ArrayRealVector(h));
+            copy(sol.xDelta, v);
+            copy(sol.nuPlus, w);
+            ws.hessianFactorization = sol.hessianFactorization;
+            ws.schurFactorization = sol.schurFactorization;
+            return;
+        }
+        ws.hessianFactorization = Factorization.CHOLESKY;
+        ws.schurFactorization = Factorization.CHOLESKY;
+        ws.cholesky = true;
+        solveFactored(H, g, h, v, w, ws, n, p);
+    }
+
+    /**
+     * Allocation-free variant of {@link #solve(double[][], double[][], double[], double[], double[], double[], NewtonWorkspace)}
+     * for a Hessian of the form H = diag(d) + U.UT, with U of (n x r) and r small, as of a factor model. <p>
+     * By the Woodbury identity, inverse(H) = inverse(D) - inverse(D).U.inverse(C).UT.inverse(D), so only
+     * the (r x r) capacitance matrix C = I + UT.inverse(D).U is factored, in O(n.r^2 + r^3) time and O(n.r)
+     * memory rather than O(n^3) and O(n^2); the Schur complement A.inverse(H).AT then takes p more solves
+     * by the identity. Where some d[j] is not positive, or a factorization other than Cholesky is
+     * preferred, the dense H is formed in ws and solved as usual.
+     * @param A coefficient matrix of equality constraints (p x n), or null when p is 0
+     * @param g gradient, corresponding to H
+     * @param h constant vector block corresponding to A
+     * @param v receives delta-x
+     * @param w receives nu+
+     * @param ws workspace fitted by {@link NewtonWorkspace#ensureLowRank}, holding d in lowRankD
+     * and the columns of U in lowRankU, as left by {@code LowRankHessian.evaluate}
+     */
+    public void solveLowRank(
+            final double[][] A, final double[] g, final double[] h,
+            final double[] v, final double[] w, final NewtonWorkspace ws) {
+        final int n = g.length;
+        final int p = h.length;
+        final double[] d = ws.lowRankD;
+        final double[][] u = ws.lowRankU;
+        final int r = u.length;
+        ws.cholesky = false;
+        ws.lowRank = false;
+        boolean fast = (preferred == Factorization.CHOLESKY);
+        for (int j = 0; fast && (j < n); ++j) fast = d[j] > 0.0;
+        if (fast) {
+            final double[][] C = ws.capacitance;
+            for (int a = 0; a < r; ++a) {
+                final double[] ua = u[a];
+                for (int b = a; b < r; ++b) {
+                    final double[] ub = u[b];
+                    double s = 0.0;
+                    for (int j = 0; j < n; ++j) s += (ua[j] * ub[j]) / d[j];
+                    C[a][b] = (a == b) ? (1.0 + s) : s;
+                }
+            }
+            fast = choleskyInPlace(C, ws.capacitanceDiag, r);
+        }
+        if (fast && (p > 0)) {
+            final double[][] Y = ws.y;
+            final double[][] S = ws.schur;
+            for (int k = 0; k < p; ++k) applyLowRankInverse(A[k], Y[k], ws, n);
+            for (int k = 0; k < p; ++k)
+                for (int l = k; l < p; ++l) S[k][l] = dot(A[k], Y[l], n);
+            fast = choleskyInPlace(S, ws.schurDiag, p);
+        }
+        if (!fast) {
+            ws.ensure(n, p);
+            final double[][] H = ws.hess;
+            for (int i = 0; i < n; ++i) {
+                final double[] hi = H[i];
+                java.util.Arrays.fill(hi, i, n, 0.0);
+                hi[i] = d[i];
+                for (int a = 0; a < r; ++a) Kernels.axpy(u[a][i], u[a], i, hi, i, n - i);
+            }
+            if (p == 0) {
+                solve(H, g, v, ws);
+            } else {
+                solve(H, A, g, h, v, w, ws);
+            }
+            return;
+        }
+        ws.hessianFactorization = Factorization.CHOLESKY;
+        ws.schurFactorization = Factorization.CHOLESKY;
+        ws.lowRank = true;
+        solveLowRankFactored(A, g, h, v, w, ws, n, p);
+    }
+
+    /**
+     * Solve the KKT system of the preceding allocation-free solve again, for a new g and h,
+     * reusing the Cholesky factors which that solve left in H and ws, or the low-rank factors
+     * which it left in ws; as for the corrector step of a predictor-corrector method. Where the
+     * preceding solve did not take the Cholesky path, the system is solved afresh. H and A must
+     * be those of the preceding solve.
+     * @param H Hessian matrix (n x n), as left by the preceding solve
+     * @param A coefficient matrix of equality constraints (p x n), with p possibly 0
+     * @param g gradient, corresponding to H
+     * @param h constant vector block corresponding to A
+     * @param v receives delta-x
+     * @param w receives nu+
+     * @param ws workspace of the preceding solve
+     */
+    public void resolve(
+            final double[][] H, final double[][] A,
+            final double[] g, final double[] h,
+            final double[] v, final double[] w, final NewtonWorkspace ws) {
+        final int n = g.length;
+        final int p = h.length;
+        if (ws.lowRank) {
+            solveLowRankFactored(A, g, h, v, w, ws, n, p);
+            return;
+        }
+        if (!ws.cholesky) {
+            if (p == 0) {
+                solve(H, g, v, ws);
+            } else {
+                solve(H, A, g, h, v, w, ws);
+            }
+            return;
+        }
+        solveFactored(H, g, h, v, w, ws, n, p);
+    }
+
+    // the solve of the Cholesky path, given L in H and ws.hessDiag and, when p > 0,
+    // Y = inverse(L).AT in ws.y and the Schur complement factor in ws.schur and ws.schurDiag
+    private static void solveFactored(
+            final double[][] H, final double[] g, final double[] h,
+            final double[] v, final double[] w, final NewtonWorkspace ws, final int n, final int p) {
+        final double[][] Y = ws.y;
+        final double[] z = ws.tmp;
+        final double[] r = ws.tmpDual;
+        forward(H, ws.hessDiag, g, z, n);
+        for (int k = 0; k < p; ++k) r[k] = h[k] - dot(Y[k], z, n);
+        forward(ws.schur, ws.schurDiag, r, w, p);
+        backward(ws.schur, ws.schurDiag, w, w, p);
+        for (int k = 0; k < p; ++k) {
+            final double wk = w[k];
+            final double[] yk = Y[k];
+            for (int j = 0; j < n; ++j) z[j] += wk * yk[j];
+        }
+        backward(H, ws.hessDiag, z, v, n);
+        for (int j = 0; j < n; ++j) v[j] = -v[j];
+    }
+
+    // the solve of the low-rank path, given the capacitance factor in ws.capacitance and
+    // ws.capacitanceDiag and, when p > 0, Y = inverse(H).AT in ws.y and the Schur complement
+    // factor in ws.schur and ws.schurDiag: v = -inverse(H).(g + AT.w)
+    private static void solveLowRankFactored(
+            final double[][] A, final double[] g, final double[] h,
+            final double[] v, final double[] w, final NewtonWorkspace ws, final int n, final int p) {
+        final double[][] Y = ws.y;
+        final double[] z = ws.tmp;
+        final double[] r = ws.tmpDual;
+        applyLowRankInverse(g, z, ws, n);
+        for (int k = 0; k < p; ++k) r[k] = h[k] - dot(A[k], z, n);
+        forward(ws.schur, ws.schurDiag, r, w, p);
+        backward(ws.schur, ws.schurDiag, w, w, p);
+        for (int k = 0; k < p; ++k) Kernels.axpy(w[k], Y[k], 0, z, 0, n);
+        for (int j = 0; j < n; ++j) v[j] = -z[j];
+    }
+
+    // z = inverse(H).q for H = diag(d) + U.UT, by the Woodbury identity and the capacitance factor
+    private static void applyLowRankInverse(final double[] q, final double[] z, final NewtonWorkspace ws, final int n) {
+        final double[] d = ws.lowRankD;
+        final double[][] u = ws.lowRankU;
+        final double[] s = ws.tmpRank;
+        final int r = u.length;
+        for (int j = 0; j < n; ++j) z[j] = q[j] / d[j];
+        for (int a = 0; a < r; ++a) s[a] = dot(u[a], z, n);
+        forward(ws.capacitance, ws.capacitanceDiag, s, s, r);
+        backward(ws.capacitance, ws.capacitanceDiag, s, s, r);
+        for (int a = 0; a < r; ++a) {
+            final double sa = s[a];
+            final double[] ua = u[a];
+            for (int j = 0; j < n; ++j) z[j] -= (sa * ua[j]) / d[j];
+        }
+    }
+
+    /**
+     * Factor a square matrix, starting from the preferred factorization and falling
+     * back to the next one whenever the current one does not apply.
+     * Thresholds are relative to the largest diagonal entry, so that badly scaled
+     * but well conditioned systems still take the fast path.
+     * @param M a square matrix
+     * @return a solver for M, tagged with the factorization that produced it
+     */
+    Factored factor(final RealMatrix M) {
+        final int n = M.getRowDimension();
+        double scale = 0.0;
+        for (int j = 0; j < n; ++j) scale = Math.max(scale, Math.abs(M.getEntry(j, j)));
+        final double tiny = scale * n * Precision.EPSILON;
+        if (preferred == Factorization.CHOLESKY) {
+            try {
+                CholeskyDecomposition chol = new CholeskyDecomposition(M, SYMMETRY_THRESHOLD, tiny);
+                return new Factored(chol.getSolver(), Factorization.CHOLESKY);
+            } catch (NonPositiveDefiniteMatrixException e) {
+                // indefinite or (numerically) singular: fall through to LU
+            } catch (NonSymmetricMatrixException e) {
+                // fall through to LU
+            }
+        }
+        if (preferred != Factorization.SVD) {
+            DecompositionSolver lu = (new LUDecomposition(M, tiny)).getSolver();
+            if (lu.isNonSingular()) {
+                return new Factored(lu, Factorization.LU);
+            }
+        }
+        return new Factored((new SingularValueDecomposition(M)).getSolver(), Factorization.SVD);
+    }
+
+    // In-place Cholesky: reads the upper triangle of M and writes L into the strict lower
+    // triangle, with the diagonal of L in d. Returns false if M is not positive definite.
+    private static boolean choleskyInPlace(final double[][] M, final double[] d, final int n) {
+        double scale = 0.0;
+        for (int j = 0; j < n; ++j) scale = Math.max(scale, Math.abs(M[j][j]));
+        final double tiny = scale * n * Precision.EPSILON;
+        for (int j = 0; j < n; ++j) {
+            final double[] mj = M[j];
+            double s = mj[j];
+            for (int k = 0; k < j; ++k) s -= mj[k] * mj[k];
+            if (!(s > tiny)) return false;
+            final double djj = Math.sqrt(s);
+            d[j] = djj;
+            for (int i = j + 1; i < n; ++i) {
+                final double[] mi = M[i];
+                double t = mj[i];
+                for (int k = 0; k < j; ++k) t -= mi[k] * mj[k];
+                mi[j] = t / djj;
+            }
+        }
+        return true;
+    }
+
+    // solve L.z = b, where L is stored by choleskyInPlace; z may alias b
+    private static void forward(final double[][] L, final double[] d, final double[] b, final double[] z, final int n) {
+        for (int i = 0; i < n; ++i) {
+            final double[] li = L[i];
+            double s = b[i];
+            for (int k = 0; k < i; ++k) s -= li[k] * z[k];
+            z[i] = s / d[i];
+        }
+    }
+
+    // solve LT.x = z, where L is stored by choleskyInPlace; x may alias z
+    private static void backward(final double[][] L, final double[] d, final double[] z, final double[] x, final int n) {
+        if (x != z) System.arraycopy(z, 0, x, 0, n);
+        for (int i = n - 1; i >= 0; --i) {
+            final double[] li = L[i];
+            final double xi = x[i] / d[i];
+            x[i] = xi;
+            for (int k = 0; k < i; ++k) x[k] -= li[k] * xi;
+        }
+    }
+
+    private static double dot(final double[] a, final double[] b, final int n) {
+        double s = 0.0;
+        for (int j = 0; j < n; ++j) s += a[j] * b[j];
+        return s;
+    }
+
+    // rebuild a symmetric matrix from the (untouched) upper triangle of M
+    private static RealMatrix fromUpper(final double[][] M, final int n) {
+        double[][] data = new double[n][n];
+        for (int i = 0; i < n; ++i)
+            for (int j = i; j < n; ++j) {
+                data[i][j] = M[i][j];
+                data[j][i] = M[i][j];
+            }
+        return new Array2DRowRealMatrix(data, false);
+    }
+
+    private static void copy(final RealVector src, final double[] dst) {
+        for (int j = 0; j < dst.length; ++j) dst[j] = src.getEntry(j);
+    }
+
+    static final class Factored {
+        final DecompositionSolver solver;
+        final Factorization kind;
+
+        Factored(final DecompositionSolver solver, final Factorization kind) {
+            this.solver = solver;
+            this.kind = kind;
+        }
     }
 }
@@ -0,0 +1,121 @@
+package com.optimization.util;
+
+/**
+ * Dense kernels over raw double[] ranges, for the hot loops of the barrier and smooth-max
+ * functions: dot products, axpy, scaling, rank-1 updates of the upper triangle of a symmetric
+ * matrix, and batches of exp. <p>
+ * These are plain scalar loops, written so the JIT can compile them well: axpy and scaling
+ * are simple counted loops over arrays with offsets, which C2 unrolls and vectorizes with SIMD
+ * instructions (SSE/AVX) on its own, and dot products are unrolled by four into independent
+ * partial sums, since the JIT may not reorder a floating point reduction itself. Because of
+ * those partial sums, a dot product may differ from the sequential sum in the last bits.
+ */
+public final class Kernels {
+    private Kernels() { }
+
+    /**
+     * @param a the first vector
+     * @param ao the offset of the first entry in a
+     * @param b the second vector
+     * @param bo the offset of the first entry in b
+     * @param n the number of entries
+     * @return the dot product of a[ao .. ao+n) and b[bo .. bo+n)
+     */
+    public static double dot(final double[] a, final int ao, final double[] b, final int bo, final int n) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        final int n4 = n & ~3;
+        int j = 0;
+        for (; j < n4; j += 4) {
+            s0 += a[ao + j] * b[bo + j];
+            s1 += a[ao + j + 1] * b[bo + j + 1];
+            s2 += a[ao + j + 2] * b[bo + j + 2];
+            s3 += a[ao + j + 3] * b[bo + j + 3];
+        }
+        for (; j < n; ++j) s0 += a[ao + j] * b[bo + j];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * y[yo .. yo+n) += alpha.x[xo .. xo+n)
+     * @param alpha the scale of x
+     * @param x the vector added
+     * @param xo the offset of the first entry in x
+     * @param y the vector updated
+     * @param yo the offset of the first entry in y
+     * @param n the number of entries
+     */
+    public static void axpy(final double alpha, final double[] x, final int xo, final double[] y, final int yo, final int n) {
+        for (int j = 0; j < n; ++j) y[yo + j] += alpha * x[xo + j];
+    }
+
+    /**
+     * y[o .. o+n) *= alpha
+     * @param alpha the scale
+     * @param y the vector scaled
+     * @param o the offset of the first entry in y
+     * @param n the number of entries
+     */
+    public static void scale(final double alpha, final double[] y, final int o, final int n) {
+        for (int j = 0; j < n; ++j) y[o + j] *= alpha;
+    }
+
+    /**
+     * h += alpha.u.uT on the upper triangle of the (n x n) matrix h only
+     * @param alpha the scale
+     * @param u the vector, of length at least n
+     * @param h the matrix updated
+     * @param n the dimension
+     */
+    public static void rank1Upper(final double alpha, final double[] u, final double[][] h, final int n) {
+        for (int j = 0; j < n; ++j) {
+            final double s = alpha * u[j];
+            if (s != 0.0) axpy(s, u, j, h[j], j, n - j);
+        }
+    }
+
+    /**
+     * Copy the upper triangle of the (n x n) matrix h onto its lower triangle.
+     * @param h the matrix
+     * @param n the dimension
+     */
+    public static void symmetrize(final double[][] h, final int n) {
+        for (int j = 1; j < n; ++j) {
+            final double[] hj = h[j];
+            for (int k = 0; k < j; ++k) hj[k] = h[k][j];
+        }
+    }
+
+    /**
+     * @param x a vector
+     * @param lo the first entry
+     * @param hi one past the last entry
+     * @return the maximum of x[lo .. hi), or -inf if the range is empty
+     */
+    public static double max(final double[] x, final int lo, final int hi) {
+        double z = Double.NEGATIVE_INFINITY;
+        for (int k = lo; k < hi; ++k) z = Math.max(z, x[k]);
+        return z;
+    }
+
+    /**
+     * x[k] = e^(alpha.(x[k] - z)) over [lo, hi), the shifted exponentials of a log-sum-exp
+     * @param alpha the scale
+     * @param z the shift, usually the maximum of x, so that no term overflows
+     * @param x the exponents, replaced by the exponentials
+     * @param lo the first entry
+     * @param hi one past the last entry
+     * @return the sum of the exponentials
+     */
+    public static double expShifted(final double alpha, final double z, final double[] x, final int lo, final int hi) {
+        double s = 0.0;
+        for (int k = lo; k < hi; ++k) {
+            final double e = Math.exp(alpha * (x[k] - z));
+            x[k] = e;
+            s += e;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,214 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Limited-memory BFGS (L-BFGS) steps for {@link com.optimization.objects.NewtonOptimizer},
+ * in place of Newton steps, for functions whose Hessians are expensive to evaluate. <p>
+ * The inverse Hessian is approximated from the last m pairs of steps s = x[k+1] - x[k] and
+ * gradient changes y = g[k+1] - g[k], and applied to the gradient by the two-loop recursion
+ * (Nocedal and Wright, algorithm 7.4), in O(mn) time and memory; no Hessian is evaluated. The
+ * step is taken by the usual backtracking line search. Pairs with too little curvature s.y are
+ * skipped, so the approximation stays positive definite. <p>
+ * In the hybrid mode, the true Hessian is evaluated and factored every k iterations, and serves
+ * as the initial approximation H0 of the recursion until the next refresh, with the pairs
+ * collected since; otherwise H0 is the scaled identity (s.y/y.y)I of the latest pair. <p>
+ * The pairs are kept from one optimization to the next, so that each centering step of a
+ * barrier method starts from the curvature of the last; {@link #reset()} forgets them.
+ * {@link com.optimization.objects.BarrierOptimizer} only reads the settings of the solver
+ * given, and keeps the pairs of its centering steps in a solver of its own. <p>
+ * The optimization stops when the decrement estimated from the approximation falls below the
+ * tolerance, or when no step improves the value. Pure L-BFGS then stalls on rounding once the
+ * barrier parameter t is large, and reaches a relative accuracy of about 1e-6 to 1e-8 where
+ * Newton steps reach the barrier tolerance; the hybrid mode is accurate to the tolerance. <p>
+ * Only problems without equality constraints are supported. A solver keeps its pairs and
+ * is not thread-safe: use one per thread.
+ */
+public class LBFGSSolver implements OptimizationData {
+    /** The default number of pairs kept */
+    public static final int MEMORY_DEFAULT = 10;
+
+    /**
+     * The inverse of an initial Hessian approximation H0.
+     */
+    public interface InitialInverse {
+        /**
+         * @param q a vector
+         * @param r receives inverse(H0).q
+         */
+        void apply(double[] q, double[] r);
+    }
+
+    private final int memory;
+    private final int refreshInterval;
+    // the pairs, in a ring of capacity memory: s, y and 1/(s.y), the newest at head - 1
+    private double[][] s;
+    private double[][] y;
+    private double[] rho;
+    // the candidate pair, swapped into the ring only if it passes the curvature condition
+    private double[] sNew;
+    private double[] yNew;
+    private double[] alpha;
+    private double[] r;
+    private int count;
+    private int head;
+    // the point and gradient of the last update, if any
+    private double[] lastX;
+    private double[] lastG;
+    private boolean hasLast;
+    private int sinceRefresh;
+
+    /**
+     * Construct a solver of pure L-BFGS steps, keeping the last 10 pairs.
+     */
+    public LBFGSSolver() {
+        this(MEMORY_DEFAULT, 0);
+    }
+
+    /**
+     * @param memory the number of pairs kept, &gt;= 1
+     * @param refreshInterval k, to evaluate the true Hessian every k iterations (the hybrid mode),
+     * or 0 for pure L-BFGS
+     */
+    public LBFGSSolver(final int memory, final int refreshInterval) {
+        if (memory < 1) throw new IllegalArgumentException("memory must be >= 1");
+        if (refreshInterval < 0) throw new IllegalArgumentException("refreshInterval must be >= 0");
+        this.memory = memory;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /** @return the number of pairs kept */
+    public int getMemory() {
+        return memory;
+    }
+
+    /** @return the refresh interval k of the hybrid mode, or 0 for pure L-BFGS */
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /** @return the number of pairs held, used by the next {@link #direction} */
+    public int getPairs() {
+        return count;
+    }
+
+    /**
+     * Forget all pairs, as before an unrelated problem.
+     */
+    public void reset() {
+        count = 0;
+        head = 0;
+        restart();
+    }
+
+    /**
+     * Start a new optimization, of a function that may have changed since the last, such as the
+     * next centering step of a barrier method: the pairs are kept, but none is made from the last
+     * point of the old function, and the hybrid mode refreshes the true Hessian first.
+     */
+    public void restart() {
+        hasLast = false;
+        sinceRefresh = 0;
+    }
+
+    /**
+     * Record the pair from the last point to x, if any, and x itself.
+     * @param x the current point
+     * @param g the gradient at x
+     */
+    public void update(final double[] x, final double[] g) {
+        final int n = x.length;
+        if ((lastX == null) || (lastX.length != n)) {
+            s = new double[memory][n];
+            y = new double[memory][n];
+            rho = new double[memory];
+            sNew = new double[n];
+            yNew = new double[n];
+            alpha = new double[memory];
+            r = new double[n];
+            lastX = new double[n];
+            lastG = new double[n];
+            count = 0;
+            head = 0;
+            hasLast = false;
+        }
+        if (hasLast) {
+            final double[] sk = sNew;
+            final double[] yk = yNew;
+            for (int j = 0; j < n; ++j) {
+                sk[j] = x[j] - lastX[j];
+                yk[j] = g[j] - lastG[j];
+            }
+            final double sy = Kernels.dot(sk, 0, yk, 0, n);
+            final double yy = Kernels.dot(yk, 0, yk, 0, n);
+            // the curvature condition, relative to the size of the step
+            if (sy > 1e-10 * Math.sqrt(Kernels.dot(sk, 0, sk, 0, n) * yy)) {
+                sNew = s[head];
+                yNew = y[head];
+                s[head] = sk;
+                y[head] = yk;
+                rho[head] = 1.0 / sy;
+                head = (head + 1) % memory;
+                count = Math.min(count + 1, memory);
+            }
+        }
+        System.arraycopy(x, 0, lastX, 0, n);
+        System.arraycopy(g, 0, lastG, 0, n);
+        hasLast = true;
+    }
+
+    /**
+     * @return true if the hybrid mode is due to evaluate the true Hessian at this iteration;
+     * the caller then calls {@link #refreshed()}
+     */
+    public boolean isRefreshDue() {
+        return (refreshInterval > 0) && ((sinceRefresh == 0) || (sinceRefresh >= refreshInterval));
+    }
+
+    /**
+     * Note that the true Hessian has been evaluated at the current point, and is the new H0;
+     * the pairs collected under the old H0 are dropped.
+     */
+    public void refreshed() {
+        count = 0;
+        head = 0;
+        sinceRefresh = 0;
+    }
+
+    /**
+     * The quasi-Newton step d = -inverse(H).g, by the two-loop recursion over the pairs.
+     * @param g the gradient at the current point
+     * @param d receives the step
+     * @param h0 the inverse of the initial approximation, or null for the scaled identity
+     * @return lambda^2 = -g.d, the estimated squared Newton decrement
+     */
+    public double direction(final double[] g, final double[] d, final InitialInverse h0) {
+        final int n = g.length;
+        ++sinceRefresh;
+        final double[] q = d;
+        System.arraycopy(g, 0, q, 0, n);
+        for (int i = 0; i < count; ++i) {
+            final int k = (head - 1 - i + memory) % memory;
+            alpha[k] = rho[k] * Kernels.dot(s[k], 0, q, 0, n);
+            Kernels.axpy(-alpha[k], y[k], 0, q, 0, n);
+        }
+        if (h0 != null) {
+            h0.apply(q, r);
+            System.arraycopy(r, 0, q, 0, n);
+        } else if (count > 0) {
+            final int k = (head - 1 + memory) % memory;
+            Kernels.scale(1.0 / (rho[k] * Kernels.dot(y[k], 0, y[k], 0, n)), q, 0, n);
+        } else {
+            // no curvature information yet: a steepest descent step of unit length
+            final double gNorm = Math.sqrt(Kernels.dot(g, 0, g, 0, n));
+            if (gNorm > 0.0) Kernels.scale(1.0 / gNorm, q, 0, n);
+        }
+        for (int i = count - 1; i >= 0; --i) {
+            final int k = (head - 1 - i + memory) % memory;
+            final double b = rho[k] * Kernels.dot(y[k], 0, q, 0, n);
+            Kernels.axpy(alpha[k] - b, s[k], 0, q, 0, n);
+        }
+        Kernels.scale(-1.0, d, 0, n);
+        return -Kernels.dot(g, 0, d, 0, n);
+    }
+}
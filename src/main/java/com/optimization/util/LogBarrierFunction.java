@@ -1,25 +1,97 @@
 package com.optimization.util;
 
 import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.Evaluation;
+import com.optimization.objects.LinearConstraintBlock;
+import com.optimization.objects.LinearFunction;
+import com.optimization.objects.LowRankHessian;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
  * Given a convex objective function f0 and convex constraints f[k],
  * computes the log barrier function: <p>
  * b(x) = (t)f0(x) - sum(log(f[k](x))) <p>
- * returns +inf if any f[k](x) &gt;= 0
+ * returns +inf if any f[k](x) &gt;= 0 <p>
+ * Constraints that are {@link LinearFunction}s are packed into a single dense
+ * (m x n) {@link LinearConstraintBlock} G, or one may be given directly, so that their values
+ * are one matrix-vector product and their Hessian contribution is assembled as
+ * GT.diag(1/f[k]^2).G in one blocked product, rather than as m separate outer products. <p>
+ * When every constraint is linear and f0 has a constant Hessian (a QP or LP), b restricted to
+ * a line x + s.dx is (t)(f0 + s.g0.dx + s^2.dx.H0.dx/2) - sum(log(-(G[k].x + c[k]) - s.G[k].dx)),
+ * so {@link #beginLine(double[], double[])} precomputes G.x, G.dx and the quadratic terms once,
+ * and each line-search trial then costs O(m) rather than a full O(n^2 + mn) evaluation. <p>
+ * The largest step to the boundary of the linear constraints along dx is found by a ratio test
+ * over G.x and G.dx in {@link #maxStep(double[], double[])}, and a following beginLine on the
+ * same line reuses both products. <p>
+ * {@link #hessianVector(double[], double[], double[])} applies the Hessian without forming it,
+ * as (t)H0.v + GT.diag(1/f[k]^2).G.v plus the terms of the other constraints, in O(mn) time and
+ * O(m + n) memory; the constraint terms are computed once per point, and kept for as long as
+ * products are taken at that point, as by a conjugate gradient solve. <p>
+ * When every constraint is linear and f0 has a low-rank Hessian (see {@link ConvexFunction#lowRankHessian()}),
+ * so has b: the bound rows, on single variables, only add to the diagonal, and every other row
+ * adds one column a[k]/|f[k]| to U. <p>
+ * Simple bounds l &lt; x &lt; u, given by {@link #setBounds(double[], double[])}, are a separate
+ * diagonal barrier -sum(log(x[j] - l[j]) + log(u[j] - x[j])), whose value, gradient, Hessian
+ * diagonal, ratio test and line terms all take O(n), rather than two dense rows each. <p>
+ * The buffer-based evaluation methods share per-instance scratch storage, so a
+ * single instance must not be evaluated from several threads at once.
  */
 public class LogBarrierFunction extends ConvexFunction {
-    private final double t;
-    private final ConvexFunction f0;
-    private final ConvexFunction[] f;
+    private double t;
+    private ConvexFunction f0;
     private final int n;
+    // linear constraints, and their number of rows
+    private LinearConstraintBlock linear;
+    private int m;
+    // all other constraints
+    private final ConvexFunction[] f;
+    private final ParallelEvaluation parallel;
+    // simple bounds, +-inf where absent, or null
+    private double[] lower;
+    private double[] upper;
+    // scratch storage for the buffer-based path: values and then gradient weights of the
+    // linear rows, their Hessian weights, and per-chunk partial sums
+    private double[] res;
+    private double[] wk;
+    private Chunk scratch;
+    private Chunk[] chunks;
+    // the line of the last beginLine: f0, g0.dx and dx.H0.dx at x, g0 and H0.dx,
+    // and the linear constraint values at x and their change along dx
+    private double lineF0;
+    private double lineD1;
+    private double lineD2;
+    private double[] lineG0;
+    private double[] lineHdx;
+    private double[] lineV;
+    private double[] lineDv;
+    private double[] lineZ;
+    // the x and dx of the last beginLine, for the bound terms
+    private double[] lineX;
+    private double[] lineDx;
+    // copies of the x and dx of the last maxStep, whose lineV and lineDv beginLine may reuse
+    // if it is the next call of either, and x and dx are unchanged; every maxStep, beginLine
+    // and change of the constraints starts a new generation
+    private double[] stepX;
+    private double[] stepDx;
+    private long lineGeneration;
+    private long stepGeneration = -1L;
+    // the point of the last Hessian-vector product, if still valid, and the constraint terms
+    // there: 1/f[k]^2 and then G.v of the linear rows, and the values and gradients of the others
+    private boolean prodValid;
+    private double[] prodX;
+    private double[] prodW;
+    private double[] prodGv;
+    private double[] prodV;
+    private double[][] prodG;
+    private double[] prodHv;
 
     /**
      * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x)))
@@ -28,14 +100,79 @@ public class LogBarrierFunction extends ConvexFunction {
      * @param f a list of convex constraint functions
      */
     public LogBarrierFunction(double t, ConvexFunction f0, ConvexFunction[] f) {
+        this(t, f0, f, null);
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x)))
+     * whose constraint sums are evaluated in parallel
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param f a list of convex constraint functions
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     */
+    public LogBarrierFunction(double t, ConvexFunction f0, ConvexFunction[] f, ParallelEvaluation parallel) {
+        if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
+        this.t = t;
+        this.f0 = f0;
+        this.n = f0.dimensions();
+        ArrayList<LinearFunction> linear = new ArrayList<LinearFunction>();
+        ArrayList<ConvexFunction> other = new ArrayList<ConvexFunction>();
+        for (ConvexFunction fi: f) {
+            if (fi.dimensions() != n) throw new DimensionMismatchException(fi.dimensions(), n);
+            if (fi instanceof LinearFunction) {
+                linear.add((LinearFunction)fi);
+            } else {
+                other.add(fi);
+            }
+        }
+        this.m = linear.size();
+        this.linear = linear.isEmpty() ? LinearConstraintBlock.wrap(new double[0], new double[0], 0, n)
+                : LinearConstraintBlock.pack(linear.toArray(new LinearFunction[0]));
+        this.f = other.toArray(new ConvexFunction[0]);
+        this.parallel = parallel;
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x))) whose linear
+     * constraints are given already packed, and are read in place rather than copied,
+     * so that they may be updated between evaluations
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param ga the linear constraint rows, row-major, at least (m x n)
+     * @param gc the linear constraint offsets, so row k is ga[k].x + gc[k], at least m
+     * @param m the number of linear constraint rows
+     * @param f other convex constraint functions, evaluated individually
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     */
+    public LogBarrierFunction(double t, ConvexFunction f0, double[] ga, double[] gc, int m,
+                              ConvexFunction[] f, ParallelEvaluation parallel) {
+        this(t, f0, LinearConstraintBlock.wrap(ga, gc, m, f0.dimensions()), f, parallel);
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x))) over a block of
+     * linear constraints, which is read in place, and other constraints
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param linear the linear constraints
+     * @param f other convex constraint functions, evaluated individually
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     */
+    public LogBarrierFunction(double t, ConvexFunction f0, LinearConstraintBlock linear,
+                              ConvexFunction[] f, ParallelEvaluation parallel) {
         if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
         this.t = t;
         this.f0 = f0;
         this.n = f0.dimensions();
-        this.f = f;
+        if (linear.dimensions() != n) throw new DimensionMismatchException(linear.dimensions(), n);
         for (ConvexFunction fi: f) {
             if (fi.dimensions() != n) throw new DimensionMismatchException(fi.dimensions(), n);
         }
+        this.linear = linear;
+        this.m = linear.rows();
+        this.f = f.clone();
+        this.parallel = parallel;
     }
 
     /**
@@ -45,7 +182,73 @@ public class LogBarrierFunction extends ConvexFunction {
      * @param f a list of convex constraint functions
      */
     public LogBarrierFunction(double t, ConvexFunction f0, Collection<ConvexFunction> f) {
-        this(t, f0, f.toArray(new ConvexFunction[0]));
+        this(t, f0, f.toArray(new ConvexFunction[0]), null);
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x)))
+     * whose constraint sums are evaluated in parallel
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param f a list of convex constraint functions
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     */
+    public LogBarrierFunction(double t, ConvexFunction f0, Collection<ConvexFunction> f, ParallelEvaluation parallel) {
+        this(t, f0, f.toArray(new ConvexFunction[0]), parallel);
+    }
+
+    /** @return the multiplier constant t for f0 */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Update the multiplier t in place, so that one instance, with its packed constraints and scratch storage,
+     * serves every outer iteration of a barrier solve.
+     * @param t multiplier constant for f0, must be &gt; 0
+     */
+    public void setT(final double t) {
+        if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
+        this.t = t;
+    }
+
+    /**
+     * Replace the objective f0 in place, keeping the constraints, t and the scratch storage,
+     * as when the same constraints are solved for a sequence of objectives.
+     * @param f0 a convex objective function of the same dimension
+     */
+    public void setObjective(final ConvexFunction f0) {
+        if (f0.dimensions() != n) throw new DimensionMismatchException(f0.dimensions(), n);
+        this.f0 = f0;
+    }
+
+    /**
+     * Replace the packed linear constraints in place, keeping the other constraints, f0, t and
+     * the scratch storage, as when the rows of a mutable constraint set have changed.
+     * @param ga the linear constraint rows, row-major, at least (m x n)
+     * @param gc the linear constraint offsets, at least m
+     * @param m the number of linear constraint rows
+     */
+    public void setLinearConstraints(final double[] ga, final double[] gc, final int m) {
+        this.linear = LinearConstraintBlock.wrap(ga, gc, m, n);
+        this.m = m;
+        ++lineGeneration;
+        this.prodValid = false;
+    }
+
+    /**
+     * Set simple bounds l &lt; x &lt; u, read in place, which add the diagonal barrier
+     * -sum(log(x[j] - l[j]) + log(u[j] - x[j])) over the finite bounds.
+     * @param lower the lower bounds, -inf where there is none, or null for no bounds
+     * @param upper the upper bounds, +inf where there is none, or null for no bounds
+     */
+    public void setBounds(final double[] lower, final double[] upper) {
+        if ((lower == null) != (upper == null)) throw new IllegalArgumentException("lower and upper bounds must both be given");
+        if ((lower != null) && (lower.length != n)) throw new DimensionMismatchException(lower.length, n);
+        if ((upper != null) && (upper.length != n)) throw new DimensionMismatchException(upper.length, n);
+        this.lower = lower;
+        this.upper = upper;
+        ++lineGeneration;
     }
 
     @Override
@@ -55,46 +258,387 @@ public class LogBarrierFunction extends ConvexFunction {
 
     @Override
     public double value(final RealVector x) {
-        double v = t * f0.value(x);
-        for (ConvexFunction fi: f) {
-            double ti = fi.value(x);
-            if (ti >= 0.0) {
-                return Double.POSITIVE_INFINITY;
-            }
-            v -= Math.log(-ti);
-        }
-        return v;
+        return evaluate(x.toArray(), null, null);
     }
 
     @Override
     public RealVector gradient(final RealVector x) {
         // g should be dense, due to contributions of barrier functions
-        RealVector g = new ArrayRealVector(f0.gradient(x).toArray(), false);
-        g.mapMultiplyToSelf(t);
-        for (ConvexFunction fi: f) {
-            double zi = -1.0 / fi.value(x);
-            g.combineToSelf(1.0, zi, fi.gradient(x));
-        }
-        return g;
+        double[] g = new double[n];
+        evaluate(x.toArray(), g, null);
+        return new ArrayRealVector(g, false);
     }
 
     @Override
     public RealMatrix hessian(final RealVector x) {
         // h should be dense, due to contributions of barrier functions
-        RealMatrix h = new Array2DRowRealMatrix(f0.hessian(x).getData(), false);
-        for (int j = 0; j < n; ++j)
-            for (int k = 0; k < n; ++k)
-                h.multiplyEntry(j, k, t);
-        for (ConvexFunction fi: f) {
-            double vi = fi.value(x);
-            RealVector gi = fi.gradient(x);
-            RealMatrix hi = fi.hessian(x);
+        double[][] h = new double[n][n];
+        evaluate(x.toArray(), null, h);
+        return new Array2DRowRealMatrix(h, false);
+    }
+
+    @Override
+    public Evaluation evaluate(final RealVector x, final int order) {
+        return evaluateFused(x, order);
+    }
+
+    @Override
+    public double value(final double[] x) {
+        return evaluate(x, null, null);
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        evaluate(x, g, null);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] h) {
+        evaluate(x, null, h);
+    }
+
+    /**
+     * Evaluates each constraint function once, at the highest derivative order requested,
+     * and accumulates its contributions to the value, gradient and Hessian together.
+     */
+    @Override
+    public double evaluate(final double[] x, final double[] g, final double[][] h) {
+        prodValid = false;
+        if ((res == null) || (res.length < m)) res = new double[m];
+        if ((h != null) && ((wk == null) || (wk.length < m))) wk = new double[m];
+        double v = t * f0.evaluate(x, g, h);
+        if (g != null)
+            for (int j = 0; j < n; ++j) g[j] *= t;
+        if (h != null)
+            for (int j = 0; j < n; ++j)
+                for (int k = j; k < n; ++k)
+                    h[j][k] *= t;
+        final int count = m + f.length;
+        if ((parallel == null) || (count <= parallel.getChunkSize())) {
+            if (scratch == null) scratch = new Chunk();
+            v = accumulate(0, count, x, g, h, scratch, v);
+        } else {
+            v += accumulateParallel(count, x, g, h);
+        }
+        if (Double.isInfinite(v)) return v;
+        if (lower != null) v = addBounds(x, g, h, null, v);
+        if (Double.isInfinite(v)) return v;
+        if (h != null) Kernels.symmetrize(h, n);
+        return v;
+    }
+
+    @Override
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        prepareProducts(x);
+        f0.hessianVector(x, v, hv);
+        Kernels.scale(t, hv, 0, n);
+        if (m > 0) {
+            linear.multiply(v, prodGv, 0, m);
+            for (int i = 0; i < m; ++i) prodGv[i] *= prodW[i];
+            linear.addTransposeMultiply(prodGv, hv, 0, m);
+        }
+        for (int k = 0; k < f.length; ++k) {
+            // gk.gkT.v/vk^2 - Hk.v/vk
+            final double vk = prodV[k];
+            final double[] gk = prodG[k];
+            f[k].hessianVector(x, v, prodHv);
+            Kernels.axpy(Kernels.dot(gk, 0, v, 0, n) / (vk * vk), gk, 0, hv, 0, n);
+            Kernels.axpy(-1.0 / vk, prodHv, 0, hv, 0, n);
+        }
+        if (lower != null) {
+            for (int j = 0; j < n; ++j) {
+                final double sl = x[j] - lower[j];
+                final double su = upper[j] - x[j];
+                hv[j] += ((1.0 / (sl * sl)) + (1.0 / (su * su))) * v[j];
+            }
+        }
+    }
+
+    @Override
+    public void hessianDiagonal(final double[] x, final double[] d) {
+        prepareProducts(x);
+        f0.hessianDiagonal(x, d);
+        Kernels.scale(t, d, 0, n);
+        if (m > 0) linear.addScaledSquares(prodW, d, 0, m);
+        for (int k = 0; k < f.length; ++k) {
+            final double vk = prodV[k];
+            final double[] gk = prodG[k];
+            f[k].hessianDiagonal(x, prodHv);
+            for (int j = 0; j < n; ++j) d[j] += ((gk[j] * gk[j]) / (vk * vk)) - (prodHv[j] / vk);
+        }
+        if (lower != null) addBounds(x, null, null, d, 0.0);
+    }
+
+    /**
+     * The form of f0 scaled by t, with a column of U per linear row that is not a bound row; the
+     * diagonal is positive where that of f0 is, or where a variable has a bound row or a finite
+     * simple bound. The form is made again after {@link #setLinearConstraints}.
+     */
+    @Override
+    public LowRankHessian lowRankHessian() {
+        if (f.length > 0) return null;
+        final LowRankHessian h0 = f0.lowRankHessian();
+        if (h0 == null) return null;
+        final int r0 = h0.rank();
+        final LinearConstraintBlock block = linear;
+        final int rows = m;
+        boolean positive = h0.isDiagonalPositive();
+        if (!positive) {
+            boolean[] bounded = new boolean[n];
+            block.markBoundColumns(bounded, 0, rows);
+            positive = true;
+            for (int j = 0; j < n; ++j) {
+                positive &= bounded[j] || ((lower != null)
+                        && ((lower[j] != Double.NEGATIVE_INFINITY) || (upper[j] != Double.POSITIVE_INFINITY)));
+            }
+        }
+        return new LowRankHessian(r0 + rows - block.boundRows(), positive) {
+            @Override
+            public void evaluate(final double[] x, final double[] d, final double[][] u) {
+                prepareProducts(x);
+                h0.evaluate(x, d, u);
+                Kernels.scale(t, d, 0, n);
+                final double st = Math.sqrt(t);
+                for (int k = 0; k < r0; ++k) Kernels.scale(st, u[k], 0, n);
+                if (rows > 0) block.addScaledLowRank(prodW, d, u, r0, 0, rows);
+                if (lower != null) addBounds(x, null, null, d, 0.0);
+            }
+        };
+    }
+
+    // Adds the bound terms at x to v, g and the diagonal of h or d, whichever are given.
+    // Returns +inf if any bound is not strictly satisfied. An infinite bound adds 1/inf = 0.
+    private double addBounds(final double[] x, final double[] g, final double[][] h, final double[] d, double v) {
+        for (int j = 0; j < n; ++j) {
+            final double sl = x[j] - lower[j];
+            final double su = upper[j] - x[j];
+            if (!(sl > 0.0) || !(su > 0.0)) return Double.POSITIVE_INFINITY;
+            if (sl != Double.POSITIVE_INFINITY) v -= Math.log(sl);
+            if (su != Double.POSITIVE_INFINITY) v -= Math.log(su);
+            if (g != null) g[j] += (1.0 / su) - (1.0 / sl);
+            final double w = (1.0 / (sl * sl)) + (1.0 / (su * su));
+            if (h != null) h[j][j] += w;
+            if (d != null) d[j] += w;
+        }
+        return v;
+    }
+
+    // the constraint terms of the Hessian at x, unless they are those of the last product
+    private void prepareProducts(final double[] x) {
+        if (prodValid && java.util.Arrays.equals(prodX, x)) return;
+        if ((prodW == null) || (prodW.length < m)) {
+            prodW = new double[m];
+            prodGv = new double[m];
+        }
+        if (prodG == null) {
+            prodX = new double[n];
+            prodV = new double[f.length];
+            prodG = new double[f.length][n];
+            prodHv = new double[n];
+        }
+        linear.residuals(x, prodW, 0, m);
+        for (int i = 0; i < m; ++i) {
+            final double vi = prodW[i];
+            if (vi >= 0.0) throw new IllegalArgumentException("x is outside the barrier domain");
+            prodW[i] = 1.0 / (vi * vi);
+        }
+        for (int k = 0; k < f.length; ++k) {
+            prodV[k] = f[k].evaluate(x, prodG[k], null);
+            if (prodV[k] >= 0.0) throw new IllegalArgumentException("x is outside the barrier domain");
+        }
+        System.arraycopy(x, 0, prodX, 0, n);
+        prodValid = true;
+    }
+
+    /**
+     * The ratio test min(-G[k].x - c[k])/(G[k].dx) over the linear rows with G[k].dx &gt; 0,
+     * and the bound of f0; other constraints are not bounded here, so when there are any this
+     * is an upper bound on the feasible step.
+     */
+    @Override
+    public double maxStep(final double[] x, final double[] dx) {
+        double s = f0.maxStep(x, dx);
+        ensureLine();
+        linear.residuals(x, lineV, 0, m);
+        linear.multiply(dx, lineDv, 0, m);
+        for (int i = 0; i < m; ++i) {
+            final double dv = lineDv[i];
+            if (dv > 0.0) s = Math.min(s, -lineV[i] / dv);
+        }
+        if (lower != null) {
             for (int j = 0; j < n; ++j) {
-                for (int k = 0; k < n; ++k) {
-                    h.addToEntry(j, k, (gi.getEntry(j)*gi.getEntry(k)/(vi*vi)) - hi.getEntry(j, k)/vi);
+                if (dx[j] < 0.0) s = Math.min(s, (x[j] - lower[j]) / -dx[j]);
+                if (dx[j] > 0.0) s = Math.min(s, (upper[j] - x[j]) / dx[j]);
+            }
+        }
+        System.arraycopy(x, 0, stepX, 0, n);
+        System.arraycopy(dx, 0, stepDx, 0, n);
+        stepGeneration = ++lineGeneration;
+        return s;
+    }
+
+    @Override
+    public boolean beginLine(final double[] x, final double[] dx) {
+        final boolean stepped = (stepGeneration == lineGeneration)
+                && Arrays.equals(x, stepX) && Arrays.equals(dx, stepDx);
+        ++lineGeneration;
+        if ((f.length > 0) || !f0.isHessianConstant()) return false;
+        ensureLine();
+        lineF0 = f0.evaluate(x, lineG0, null);
+        if (Double.isInfinite(lineF0)) return false;
+        f0.hessianVector(x, dx, lineHdx);
+        double d1 = 0.0;
+        double d2 = 0.0;
+        for (int j = 0; j < n; ++j) {
+            d1 += lineG0[j] * dx[j];
+            d2 += lineHdx[j] * dx[j];
+        }
+        lineD1 = d1;
+        lineD2 = d2;
+        if (!stepped) linear.residuals(x, lineV, 0, m);
+        for (int i = 0; i < m; ++i) {
+            if (lineV[i] >= 0.0) return false;
+        }
+        if (!stepped) linear.multiply(dx, lineDv, 0, m);
+        if (lower != null) {
+            if (Double.isInfinite(addBounds(x, null, null, null, 0.0))) return false;
+            System.arraycopy(x, 0, lineX, 0, n);
+            System.arraycopy(dx, 0, lineDx, 0, n);
+        }
+        return true;
+    }
+
+    private void ensureLine() {
+        if (lineG0 == null) {
+            lineG0 = new double[n];
+            lineHdx = new double[n];
+            lineX = new double[n];
+            lineDx = new double[n];
+            stepX = new double[n];
+            stepDx = new double[n];
+        }
+        if ((lineV == null) || (lineV.length < m)) {
+            lineV = new double[m];
+            lineDv = new double[m];
+            lineZ = new double[m];
+        }
+    }
+
+    @Override
+    public double lineEvaluate(final double s, final double[] g) {
+        double v = t * (lineF0 + s * (lineD1 + 0.5 * s * lineD2));
+        for (int i = 0; i < m; ++i) {
+            final double vi = lineV[i] + s * lineDv[i];
+            if (vi >= 0.0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            v -= Math.log(-vi);
+        }
+        if (g != null) {
+            for (int j = 0; j < n; ++j) g[j] = t * (lineG0[j] + s * lineHdx[j]);
+            for (int i = 0; i < m; ++i) lineZ[i] = -1.0 / (lineV[i] + s * lineDv[i]);
+            linear.addTransposeMultiply(lineZ, g, 0, m);
+        }
+        if (lower != null) {
+            for (int j = 0; j < n; ++j) {
+                final double xj = lineX[j] + s * lineDx[j];
+                final double sl = xj - lower[j];
+                final double su = upper[j] - xj;
+                if (!(sl > 0.0) || !(su > 0.0)) return Double.POSITIVE_INFINITY;
+                if (sl != Double.POSITIVE_INFINITY) v -= Math.log(sl);
+                if (su != Double.POSITIVE_INFINITY) v -= Math.log(su);
+                if (g != null) g[j] += (1.0 / su) - (1.0 / sl);
+            }
+        }
+        return v;
+    }
+
+    // Adds the contributions of constraints [lo, hi) to v, g and the upper triangle of h.
+    // Indices below m are rows of the linear block, the rest index the other constraints.
+    // Returns +inf as soon as any constraint is not strictly satisfied.
+    private double accumulate(
+            final int lo, final int hi, final double[] x,
+            final double[] g, final double[][] h, final Chunk c, double v) {
+        // linear constraints: gradient a[i], Hessian zero; all values in one product,
+        // then res[i] is overwritten by the gradient weight -1/f[i]
+        final int lhi = Math.min(hi, m);
+        if (lo < lhi) {
+            linear.residuals(x, res, lo, lhi);
+            for (int i = lo; i < lhi; ++i) {
+                final double vi = res[i];
+                if (vi >= 0.0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                v -= Math.log(-vi);
+                if (h != null) wk[i] = 1.0 / (vi * vi);
+                res[i] = -1.0 / vi;
+            }
+            if (g != null) linear.addTransposeMultiply(res, g, lo, lhi);
+            if (h != null) linear.addScaledGram(wk, h, lo, lhi);
+        }
+
+        final boolean needGrad = (g != null) || (h != null);
+        for (int k = Math.max(lo, m); k < hi; ++k) {
+            final ConvexFunction fi = f[k - m];
+            if (needGrad && (c.gi == null)) c.gi = new double[n];
+            if ((h != null) && (c.hi == null)) c.hi = new double[n][n];
+            final double[] gi = c.gi;
+            final double[][] hi2 = c.hi;
+            double vi = fi.evaluate(x, needGrad ? gi : null, (h != null) ? hi2 : null);
+            if (vi >= 0.0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            v -= Math.log(-vi);
+            if (g != null) Kernels.axpy(-1.0 / vi, gi, 0, g, 0, n);
+            if (h != null) {
+                // upper triangle of gi.giT/vi^2 - hi/vi
+                Kernels.rank1Upper(1.0 / (vi * vi), gi, h, n);
+                for (int j = 0; j < n; ++j) Kernels.axpy(-1.0 / vi, hi2[j], j, h[j], j, n - j);
+            }
+        }
+        return v;
+    }
+
+    // Accumulates each chunk into its own buffers on the pool, then reduces in chunk order.
+    private double accumulateParallel(
+            final int count, final double[] x, final double[] g, final double[][] h) {
+        final int nc = parallel.chunks(count);
+        if ((chunks == null) || (chunks.length != nc)) {
+            chunks = new Chunk[nc];
+            for (int c = 0; c < nc; ++c) chunks[c] = new Chunk();
+        }
+        parallel.forEachChunk(count, new ParallelEvaluation.ChunkBody() {
+            @Override
+            public void apply(int chunk, int lo, int hi) {
+                Chunk c = chunks[chunk];
+                if (g != null) {
+                    if (c.g == null) c.g = new double[n];
+                    java.util.Arrays.fill(c.g, 0.0);
+                }
+                if (h != null) {
+                    if (c.h == null) c.h = new double[n][n];
+                    for (double[] row: c.h) java.util.Arrays.fill(row, 0.0);
                 }
+                c.v = accumulate(lo, hi, x, (g != null) ? c.g : null, (h != null) ? c.h : null, c, 0.0);
             }
+        });
+        double v = 0.0;
+        for (Chunk c: chunks) {
+            v += c.v;
+            if (Double.isInfinite(v)) return v;
+            if (g != null) Kernels.axpy(1.0, c.g, 0, g, 0, n);
+            if (h != null)
+                for (int j = 0; j < n; ++j) Kernels.axpy(1.0, c.h[j], j, h[j], j, n - j);
         }
-        return h;
+        return v;
+    }
+
+    // per-chunk partial sums and scratch storage
+    private static final class Chunk {
+        double v;
+        double[] g;
+        double[][] h;
+        double[] gi;
+        double[][] hi;
     }
 }
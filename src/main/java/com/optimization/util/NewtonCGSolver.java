@@ -0,0 +1,112 @@
+package com.optimization.util;
+
+import com.optimization.objects.ConvexFunction;
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Matrix-free counterpart of {@link KKTSolver}, for truncated Newton (Newton-CG): the Newton
+ * system Hv = -g is solved approximately by conjugate gradients, preconditioned by the diagonal
+ * of H, using only the products of {@link ConvexFunction#hessianVector(double[], double[], double[])}
+ * and {@link ConvexFunction#hessianDiagonal(double[], double[])}. The Hessian is never formed, so
+ * a solve takes O(n) memory, plus whatever the function needs for its products. <p>
+ * The iterations stop once the residual r = Hv + g has |r| &lt;= eta.|g|, both measured in the
+ * norm of the preconditioner, sqrt(rT.diag(H)^-1.r), as barrier Hessians are badly scaled; the
+ * forcing term eta = min(maxForcing, sqrt(|g|)) is loose far from the optimum and tightens as
+ * |g| goes to 0, for superlinear convergence (Nocedal and Wright, section 7.1). They also stop
+ * on negative curvature, or after a fixed number of iterations. Each solve returns a descent
+ * direction. <p>
+ * Only systems without equality constraints are supported. A solver keeps scratch storage and
+ * is not thread-safe: use one per thread.
+ */
+public class NewtonCGSolver implements OptimizationData {
+    /** The default largest forcing term */
+    public static final double MAX_FORCING_DEFAULT = 0.5;
+
+    private final double maxForcing;
+    private final int maxIterations;
+    private int iterations;
+    // the residual Hv + g, the preconditioned residual, the search direction, H.d and diag(H)
+    private double[] r;
+    private double[] z;
+    private double[] d;
+    private double[] hd;
+    private double[] diag;
+
+    /**
+     * Construct a solver with the largest forcing term 0.5, and at most n iterations per solve.
+     */
+    public NewtonCGSolver() {
+        this(MAX_FORCING_DEFAULT, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxForcing the largest forcing term, in (0, 1)
+     * @param maxIterations the limit on conjugate gradient iterations per solve, &gt;= 1;
+     * a solve also stops after n iterations
+     */
+    public NewtonCGSolver(final double maxForcing, final int maxIterations) {
+        if (!(maxForcing > 0.0) || !(maxForcing < 1.0)) throw new IllegalArgumentException("maxForcing must be in (0, 1)");
+        if (maxIterations < 1) throw new IllegalArgumentException("maxIterations must be >= 1");
+        this.maxForcing = maxForcing;
+        this.maxIterations = maxIterations;
+    }
+
+    /** @return the number of conjugate gradient iterations of the last solve */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Solve Hv = -g approximately, where H is the Hessian of f at x.
+     * @param f the function
+     * @param x the point
+     * @param g the gradient of f at x
+     * @param v receives the step
+     * @return lambda^2 = -g.v, the estimated squared Newton decrement
+     */
+    public double solve(final ConvexFunction f, final double[] x, final double[] g, final double[] v) {
+        final int n = g.length;
+        if ((r == null) || (r.length != n)) {
+            r = new double[n];
+            z = new double[n];
+            d = new double[n];
+            hd = new double[n];
+            diag = new double[n];
+        }
+        iterations = 0;
+        java.util.Arrays.fill(v, 0.0);
+        final double gNorm = Math.sqrt(Kernels.dot(g, 0, g, 0, n));
+        if (gNorm == 0.0) return 0.0;
+        f.hessianDiagonal(x, diag);
+        for (int j = 0; j < n; ++j) diag[j] = (diag[j] > 0.0) ? 1.0 / diag[j] : 1.0;
+        // v = 0, so r = g
+        System.arraycopy(g, 0, r, 0, n);
+        for (int j = 0; j < n; ++j) {
+            z[j] = diag[j] * r[j];
+            d[j] = -z[j];
+        }
+        double rz = Kernels.dot(r, 0, z, 0, n);
+        final double tolerance = Math.min(maxForcing, Math.sqrt(gNorm)) * Math.sqrt(rz);
+        final int limit = Math.min(maxIterations, n);
+        while (iterations < limit) {
+            f.hessianVector(x, d, hd);
+            final double dhd = Kernels.dot(d, 0, hd, 0, n);
+            if (!(dhd > 0.0)) {
+                // negative curvature: keep the step so far, or the preconditioned steepest descent
+                if (iterations == 0) System.arraycopy(d, 0, v, 0, n);
+                break;
+            }
+            ++iterations;
+            final double a = rz / dhd;
+            Kernels.axpy(a, d, 0, v, 0, n);
+            Kernels.axpy(a, hd, 0, r, 0, n);
+            for (int j = 0; j < n; ++j) z[j] = diag[j] * r[j];
+            final double rzNext = Kernels.dot(r, 0, z, 0, n);
+            if (Math.sqrt(rzNext) <= tolerance) break;
+            final double beta = rzNext / rz;
+            rz = rzNext;
+            for (int j = 0; j < n; ++j) d[j] = (beta * d[j]) - z[j];
+        }
+        return -Kernels.dot(g, 0, v, 0, n);
+    }
+}
@@ -0,0 +1,126 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Reusable scratch storage for {@link com.optimization.objects.NewtonOptimizer}
+ * and the allocation-free solves of {@link KKTSolver}.
+ * <p>
+ * Passing the same workspace to successive optimizations means the Newton loop
+ * and its line search run without allocating; buffers are only (re)allocated when
+ * the problem dimensions change. A workspace is not thread-safe: use one per thread.
+ */
+public class NewtonWorkspace implements OptimizationData {
+    private int n = -1;
+    private int p = -1;
+
+    // primal and dual iterates, and their line-search trial points
+    public double[] x, tx, nu, tnu;
+    // gradient at x and at the trial point, the Newton step, and the solved nu+
+    public double[] grad, tgrad, xDelta, nuPlus;
+    // Hessian at x; its lower triangle is overwritten by the Cholesky factor
+    public double[][] hess;
+    public double[] hessDiag;
+    // rows of inverse(L).AT, the Schur complement and its Cholesky diagonal; in a low-rank
+    // solve, rows of inverse(H).AT instead
+    public double[][] y, schur;
+    public double[] schurDiag;
+    // a Hessian diag(d) + U.UT of low rank: d, the columns of U as rows, and the Cholesky factor
+    // of the (r x r) capacitance matrix I + UT.inverse(diag(d)).U, its diagonal and a temporary
+    public double[] lowRankD;
+    public double[][] lowRankU, capacitance;
+    public double[] capacitanceDiag, tmpRank;
+    // equality residual Ax - b, and general purpose temporaries
+    public double[] residual, tmp, tmpDual;
+
+    /** The factorization used by the most recent allocation-free Hessian solve */
+    public KKTSolver.Factorization hessianFactorization;
+    /** The factorization used by the most recent allocation-free Schur complement solve */
+    public KKTSolver.Factorization schurFactorization;
+    /**
+     * Whether the most recent allocation-free solve left Cholesky factors in place, in its H and
+     * in hessDiag, y, schur and schurDiag, for {@link KKTSolver#resolve} to reuse
+     */
+    public boolean cholesky;
+    /**
+     * Whether the most recent allocation-free solve was a low-rank one, by
+     * {@link KKTSolver#solveLowRank}, that left its factors in lowRankD, lowRankU, capacitance,
+     * capacitanceDiag, y, schur and schurDiag, for {@link KKTSolver#resolve} to reuse
+     */
+    public boolean lowRank;
+
+    /**
+     * Make sure the buffers fit a problem with n primal variables and p equality constraints.
+     * @param n number of primal variables
+     * @param p number of equality constraints
+     */
+    public void ensure(final int n, final int p) {
+        ensureVectors(n, p);
+        if ((hess == null) || (hess.length != n)) {
+            hess = new double[n][n];
+        }
+        if ((y == null) || (y.length != p) || ((p > 0) && (y[0].length != n))) {
+            y = new double[p][n];
+        }
+        if ((schur == null) || (schur.length != p)) {
+            schur = new double[p][p];
+        }
+    }
+
+    /**
+     * Make sure the buffers fit a problem with n primal variables, p equality constraints and a
+     * Hessian diag(d) + U.UT with U of (n x r), without allocating the dense (n x n) Hessian.
+     * @param n number of primal variables
+     * @param p number of equality constraints
+     * @param r the rank of the low-rank part of the Hessian
+     */
+    public void ensureLowRank(final int n, final int p, final int r) {
+        ensureVectors(n, p);
+        if ((lowRankD == null) || (lowRankD.length != n)) {
+            lowRankD = new double[n];
+        }
+        if ((lowRankU == null) || (lowRankU.length != r) || ((r > 0) && (lowRankU[0].length != n))) {
+            lowRankU = new double[r][n];
+        }
+        if ((capacitance == null) || (capacitance.length != r)) {
+            capacitance = new double[r][r];
+            capacitanceDiag = new double[r];
+            tmpRank = new double[r];
+        }
+        if ((y == null) || (y.length != p) || ((p > 0) && (y[0].length != n))) {
+            y = new double[p][n];
+        }
+        if ((schur == null) || (schur.length != p)) {
+            schur = new double[p][p];
+        }
+    }
+
+    /**
+     * Make sure the vector buffers fit a problem with n primal variables and p equality
+     * constraints, without allocating the dense (n x n) and (p x n) matrices; for solves
+     * whose Hessian is sparse.
+     * @param n number of primal variables
+     * @param p number of equality constraints
+     */
+    public void ensureVectors(final int n, final int p) {
+        if (n != this.n) {
+            x = new double[n];
+            tx = new double[n];
+            grad = new double[n];
+            tgrad = new double[n];
+            xDelta = new double[n];
+            tmp = new double[n];
+            hessDiag = new double[n];
+        }
+        if (p != this.p) {
+            nu = new double[p];
+            tnu = new double[p];
+            nuPlus = new double[p];
+            residual = new double[p];
+            tmpDual = new double[p];
+            schurDiag = new double[p];
+        }
+        this.n = n;
+        this.p = p;
+    }
+}
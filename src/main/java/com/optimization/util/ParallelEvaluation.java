@@ -0,0 +1,104 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Opt-in parallel evaluation of the constraint sums in {@link LogBarrierFunction}
+ * and {@link SmoothMaxFunction}. <p>
+ * Constraints are split into fixed-size chunks, each chunk is accumulated into its
+ * own value/gradient/Hessian buffers on a ForkJoinPool, and the partial results are
+ * then reduced in chunk order. Since the partition depends only on the chunk size,
+ * results are reproducible regardless of the pool size or scheduling. <p>
+ * Pass an instance to {@link com.optimization.objects.BarrierOptimizer} or
+ * {@link com.optimization.objects.ConvexOptimizer#feasiblePoint} as OptimizationData.
+ */
+public class ParallelEvaluation implements OptimizationData {
+    /** The default number of constraints per chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Evaluate in chunks of {@link #DEFAULT_CHUNK_SIZE} on the common ForkJoinPool.
+     */
+    public ParallelEvaluation() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool the pool to run chunks on
+     * @param chunkSize the number of constraints per chunk, &gt; 0
+     */
+    public ParallelEvaluation(final ForkJoinPool pool, final int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be > 0");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() { return chunkSize; }
+
+    /**
+     * @param count a number of constraints
+     * @return the number of chunks that count is split into
+     */
+    public int chunks(final int count) {
+        return (count + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * Run the given tasks on the pool and wait for all of them.
+     * @param tasks the tasks to run
+     */
+    public void invokeAll(final List<Callable<Void>> tasks) {
+        List<Future<Void>> futures = pool.invokeAll(tasks);
+        for (Future<Void> fut: futures) {
+            try {
+                fut.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * Split [0, count) into chunks and run body over each of them on the pool.
+     * @param count the number of constraints
+     * @param body the work for one chunk
+     */
+    public void forEachChunk(final int count, final ChunkBody body) {
+        final int chunks = chunks(count);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int c = 0; c < chunks; ++c) {
+            final int chunk = c;
+            final int lo = c * chunkSize;
+            final int hi = Math.min(count, lo + chunkSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    body.apply(chunk, lo, hi);
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /** The work done for one chunk [lo, hi) of constraints */
+    public interface ChunkBody {
+        void apply(int chunk, int lo, int hi);
+    }
+}
@@ -1,6 +1,9 @@
 package com.optimization.util;
 
 import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.Evaluation;
+import com.optimization.objects.LinearConstraintBlock;
+import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
@@ -10,11 +13,41 @@ import org.apache.commons.math3.util.Pair;
 /**
  * Given a set of convex functions f[k] for k = 1,2,..., implements the smooth-max
  * over f[k]: (1/a)log(sum(e^(a f[k]))).
- * See also: http://erikerlandson.github.io/blog/2018/05/27/the-gradient-and-hessian-of-the-smooth-max-over-functions/
+ * See also: http://erikerlandson.github.io/blog/2018/05/27/the-gradient-and-hessian-of-the-smooth-max-over-functions/ <p>
+ * Linear functions may be given as a {@link LinearConstraintBlock}, whose values are one
+ * matrix-vector product, and whose Hessian contribution sum(a.e[k].a[k].a[k]T) is one blocked
+ * product, rather than m separate outer products. <p>
+ * {@link #hessianVector(double[], double[], double[])} applies the Hessian
+ * sum(p[k].(H[k] + a.g[k].g[k]T)) - a.gm.gmT, with weights p[k] = e[k]/sum(e) and mean gradient gm,
+ * without forming it; the weights and gradients are computed once per point, and kept for as long
+ * as products are taken at that point. <p>
+ * The buffer-based evaluation methods share per-instance scratch storage, so a
+ * single instance must not be evaluated from several threads at once.
  */
 public class SmoothMaxFunction extends ConvexFunction {
     private final double alpha;
+    private final int n;
+    // linear functions, and their number of rows, which come before f in the order of evaluation
+    private final LinearConstraintBlock linear;
+    private final int m;
     private final ConvexFunction[] f;
+    private final ParallelEvaluation parallel;
+    // scratch storage for the buffer-based evaluation: values and then weights of the linear rows,
+    // and the values of the other functions
+    private double[] res;
+    private double[] values;
+    private Part total;
+    private Part[] parts;
+    // the point of the last Hessian-vector product, if still valid, and the terms there:
+    // the weights p[k] = e[k]/sum(e) of all the functions, then scratch for a.v of the linear
+    // rows, the gradients of the others, and the weighted mean gradient
+    private boolean prodValid;
+    private double[] prodX;
+    private double[] prodP;
+    private double[] prodAv;
+    private double[][] prodG;
+    private double[] prodMean;
+    private double[] prodHv;
 
     /**
      * Construct a smooth-max function over a collection of convex functions
@@ -23,16 +56,55 @@ public class SmoothMaxFunction extends ConvexFunction {
      * @param f A collection of convex functions
      */
     public SmoothMaxFunction(double alpha, ConvexFunction... f) {
+        this(alpha, null, f);
+    }
+
+    /**
+     * Construct a smooth-max function over a collection of convex functions,
+     * whose sums over f[k] are evaluated in parallel
+     *
+     * @param alpha A weighting parameter
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     * @param f A collection of convex functions
+     */
+    public SmoothMaxFunction(double alpha, ParallelEvaluation parallel, ConvexFunction... f) {
         if (f.length < 1) throw new IllegalArgumentException("list of functions must be nonempty");
         this.alpha = alpha;
+        this.parallel = parallel;
+        this.n = f[0].dimensions();
+        this.linear = null;
+        this.m = 0;
+        this.f = f;
+    }
+
+    /**
+     * Construct a smooth-max function over a block of linear functions a[k].x + c[k] and a
+     * collection of other convex functions, whose sums are evaluated in parallel
+     *
+     * @param alpha A weighting parameter
+     * @param parallel parallel evaluation settings, or null to evaluate sequentially
+     * @param linear A block of linear functions, read in place
+     * @param f A collection of other convex functions, possibly empty
+     */
+    public SmoothMaxFunction(double alpha, ParallelEvaluation parallel, LinearConstraintBlock linear, ConvexFunction... f) {
+        if ((linear.rows() + f.length) < 1) throw new IllegalArgumentException("list of functions must be nonempty");
+        this.alpha = alpha;
+        this.parallel = parallel;
+        this.n = linear.dimensions();
+        for (ConvexFunction fk: f) {
+            if (fk.dimensions() != n) throw new DimensionMismatchException(fk.dimensions(), n);
+        }
+        this.linear = linear;
+        this.m = linear.rows();
         this.f = f;
     }
 
     @Override
-    public int dimensions() { return f[0].dimensions(); }
+    public int dimensions() { return n; }
 
     @Override
     public double value(final RealVector x) {
+        if (linear != null) return evaluate(x.toArray(), null, null);
         Pair<Double, double[]> pre = precompute(x);
         double z = pre.getFirst();
         double[] exp = pre.getSecond();
@@ -43,48 +115,235 @@ public class SmoothMaxFunction extends ConvexFunction {
 
     @Override
     public RealVector gradient(final RealVector x) {
-        Pair<Double, double[]> pre = precompute(x);
-        double[] exp = pre.getSecond();
-        RealVector g = new ArrayRealVector(dimensions(), 0.0);
-        double d = 0.0;
-        for (int k = 0; k < f.length; ++k) {
-            RealVector gk = f[k].gradient(x);
-            d += exp[k];
-            g.combineToSelf(1.0, exp[k], gk);
-        }
-        g.mapDivideToSelf(d);
-        return g;
+        double[] g = new double[dimensions()];
+        evaluate(x.toArray(), g, null);
+        return new ArrayRealVector(g, false);
     }
 
     @Override
     public RealMatrix hessian(final RealVector x) {
-        Pair<Double, double[]> pre = precompute(x);
-        double[] exp = pre.getSecond();
         int n = dimensions();
-        RealMatrix h = new Array2DRowRealMatrix(n, n);
-        double d = 0.0;
-        for (int k = 0; k < f.length; ++k) {
-            d += exp[k];
-            RealVector gfk = f[k].gradient(x);
-            RealMatrix hfk = f[k].hessian(x);
+        double[][] h = new double[n][n];
+        evaluate(x.toArray(), null, h);
+        return new Array2DRowRealMatrix(h, false);
+    }
+
+    @Override
+    public Evaluation evaluate(final RealVector x, final int order) {
+        return evaluateFused(x, order);
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        evaluate(x, g, null);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] h) {
+        evaluate(x, null, h);
+    }
+
+    @Override
+    public double value(final double[] x) {
+        return evaluate(x, null, null);
+    }
+
+    /**
+     * Takes the values of all f[k] first, and their maximum z, and then adds each term
+     * e^(a(f[k] - z)) once, evaluating the gradient and Hessian of f[k] only then, so that
+     * the sums are never rescaled.
+     */
+    @Override
+    public double evaluate(final double[] x, final double[] g, final double[][] h) {
+        prodValid = false;
+        final int n = dimensions();
+        final boolean needGrad = (g != null) || (h != null);
+        if (total == null) total = new Part();
+        if ((res == null) && (m > 0)) res = new double[m];
+        if ((values == null) && (f.length > 0)) values = new double[f.length];
+        final Part p = total;
+        if (needGrad && (p.gs == null)) p.gs = new double[n];
+        p.h = h;
+        final int count = m + f.length;
+        if ((parallel == null) || (count <= parallel.getChunkSize())) {
+            accumulate(0, count, x, needGrad, p);
+        } else {
+            accumulateParallel(x, needGrad, h != null, p);
+        }
+        final double[] gs = p.gs;
+        if (needGrad) {
+            for (int i = 0; i < n; ++i) gs[i] /= p.s;
+            if (g != null) System.arraycopy(gs, 0, g, 0, n);
+        }
+        if (h != null) {
+            double d = 1.0 / p.s;
             for (int i = 0; i < n; ++i)
-                for (int j = 0; j < n; ++j) {
-                    h.addToEntry(i, j, exp[k] * hfk.getEntry(i, j));
-                    h.addToEntry(i, j, alpha * exp[k] * gfk.getEntry(i) * gfk.getEntry(j));
+                for (int j = 0; j < n; ++j)
+                    h[i][j] = (h[i][j] * d) - (alpha * gs[i] * gs[j]);
+        }
+        return p.z + (Math.log(p.s) / alpha);
+    }
+
+    @Override
+    public void hessianVector(final double[] x, final double[] v, final double[] hv) {
+        prepareProducts(x);
+        java.util.Arrays.fill(hv, 0, n, 0.0);
+        if (m > 0) {
+            linear.multiply(v, prodAv, 0, m);
+            for (int k = 0; k < m; ++k) prodAv[k] *= alpha * prodP[k];
+            linear.addTransposeMultiply(prodAv, hv, 0, m);
+        }
+        for (int k = 0; k < f.length; ++k) {
+            final double pk = prodP[m + k];
+            final double[] gk = prodG[k];
+            f[k].hessianVector(x, v, prodHv);
+            Kernels.axpy(pk, prodHv, 0, hv, 0, n);
+            Kernels.axpy(alpha * pk * Kernels.dot(gk, 0, v, 0, n), gk, 0, hv, 0, n);
+        }
+        Kernels.axpy(-alpha * Kernels.dot(prodMean, 0, v, 0, n), prodMean, 0, hv, 0, n);
+    }
+
+    @Override
+    public void hessianDiagonal(final double[] x, final double[] d) {
+        prepareProducts(x);
+        java.util.Arrays.fill(d, 0, n, 0.0);
+        if (m > 0) {
+            for (int k = 0; k < m; ++k) prodAv[k] = alpha * prodP[k];
+            linear.addScaledSquares(prodAv, d, 0, m);
+        }
+        for (int k = 0; k < f.length; ++k) {
+            final double pk = prodP[m + k];
+            final double[] gk = prodG[k];
+            f[k].hessianDiagonal(x, prodHv);
+            for (int j = 0; j < n; ++j) d[j] += pk * (prodHv[j] + (alpha * gk[j] * gk[j]));
+        }
+        for (int j = 0; j < n; ++j) d[j] -= alpha * prodMean[j] * prodMean[j];
+    }
+
+    // the weights and gradients at x, unless they are those of the last product
+    private void prepareProducts(final double[] x) {
+        if (prodValid && java.util.Arrays.equals(prodX, x)) return;
+        final int count = m + f.length;
+        if (prodP == null) {
+            prodX = new double[n];
+            prodP = new double[count];
+            prodAv = new double[m];
+            prodG = new double[f.length][n];
+            prodMean = new double[n];
+            prodHv = new double[n];
+        }
+        if (m > 0) linear.residuals(x, prodP, 0, m);
+        for (int k = 0; k < f.length; ++k) prodP[m + k] = f[k].evaluate(x, prodG[k], null);
+        final double z = Kernels.max(prodP, 0, count);
+        final double s = Kernels.expShifted(alpha, z, prodP, 0, count);
+        Kernels.scale(1.0 / s, prodP, 0, count);
+        java.util.Arrays.fill(prodMean, 0.0);
+        if (m > 0) linear.addTransposeMultiply(prodP, prodMean, 0, m);
+        for (int k = 0; k < f.length; ++k) Kernels.axpy(prodP[m + k], prodG[k], 0, prodMean, 0, n);
+        System.arraycopy(x, 0, prodX, 0, n);
+        prodValid = true;
+    }
+
+    // Accumulates functions lo .. hi-1 into p, relative to their maximum p.z:
+    // p.s = sum(e[k]), p.gs = sum(e[k].grad(f[k])), p.h = sum(e[k].(hess(f[k]) + alpha.grad.gradT)).
+    // Indices below m are rows of the linear block, the rest index f.
+    private void accumulate(final int lo, final int hi, final double[] x, final boolean needGrad, final Part p) {
+        final int n = dimensions();
+        final double[][] h = p.h;
+        if (needGrad && (p.gk == null)) p.gk = new double[n];
+        if ((h != null) && (p.hk == null)) p.hk = new double[n][n];
+        final double[] gk = p.gk;
+        final double[] gs = p.gs;
+        final double[][] hk = p.hk;
+        if (needGrad) java.util.Arrays.fill(gs, 0.0);
+        if (h != null)
+            for (double[] row: h) java.util.Arrays.fill(row, 0.0);
+        // the values first, and their maximum z
+        final int lhi = Math.min(hi, m);
+        final int olo = Math.max(lo, m);
+        double z = Double.NEGATIVE_INFINITY;
+        if (lo < lhi) {
+            linear.residuals(x, res, lo, lhi);
+            z = Kernels.max(res, lo, lhi);
+        }
+        for (int k = olo; k < hi; ++k) {
+            values[k - m] = f[k - m].value(x);
+            z = Math.max(z, values[k - m]);
+        }
+        double s = 0.0;
+        if (lo < lhi) {
+            // linear rows: res[k] = e[k]
+            s = Kernels.expShifted(alpha, z, res, lo, lhi);
+            if (needGrad) linear.addTransposeMultiply(res, gs, lo, lhi);
+            if (h != null) {
+                Kernels.scale(alpha, res, lo, lhi - lo);
+                linear.addScaledGram(res, h, lo, lhi);
+                Kernels.symmetrize(h, n);
+            }
+        }
+        for (int k = olo; k < hi; ++k) {
+            double ek = Math.exp(alpha * (values[k - m] - z));
+            s += ek;
+            if (!needGrad) continue;
+            f[k - m].evaluate(x, gk, (h != null) ? hk : null);
+            Kernels.axpy(ek, gk, 0, gs, 0, n);
+            if (h != null)
+                for (int i = 0; i < n; ++i) {
+                    Kernels.axpy(ek, hk[i], 0, h[i], 0, n);
+                    Kernels.axpy(alpha * ek * gk[i], gk, 0, h[i], 0, n);
                 }
         }
-        d = 1.0 / d;
-        RealVector g = gradient(x);
-        for (int i = 0; i < n; ++i)
-            for (int j = 0; j < n; ++j) {
-                h.multiplyEntry(i, j, d);
-                h.addToEntry(i, j, (-alpha) * g.getEntry(i) * g.getEntry(j));
+        p.z = z;
+        p.s = s;
+    }
+
+    // Accumulates each chunk into its own Part on the pool, then reduces the parts into
+    // total in chunk order, rescaling each to the overall maximum.
+    private void accumulateParallel(final double[] x, final boolean needGrad, final boolean needHess, final Part total) {
+        final int n = dimensions();
+        final int count = m + f.length;
+        final int nc = parallel.chunks(count);
+        if ((parts == null) || (parts.length != nc)) {
+            parts = new Part[nc];
+            for (int c = 0; c < nc; ++c) parts[c] = new Part();
+        }
+        parallel.forEachChunk(count, new ParallelEvaluation.ChunkBody() {
+            @Override
+            public void apply(int chunk, int lo, int hi) {
+                Part p = parts[chunk];
+                if (needGrad && (p.gs == null)) p.gs = new double[n];
+                if (needHess && (p.hOwn == null)) p.hOwn = new double[n][n];
+                p.h = needHess ? p.hOwn : null;
+                accumulate(lo, hi, x, needGrad, p);
             }
-        return h;
+        });
+        double z = Double.NEGATIVE_INFINITY;
+        for (Part p: parts) z = Math.max(z, p.z);
+        double s = 0.0;
+        if (needGrad) java.util.Arrays.fill(total.gs, 0.0);
+        if (needHess)
+            for (double[] row: total.h) java.util.Arrays.fill(row, 0.0);
+        for (Part p: parts) {
+            double r = Math.exp(alpha * (p.z - z));
+            s += r * p.s;
+            if (needGrad) Kernels.axpy(r, p.gs, 0, total.gs, 0, n);
+            if (needHess)
+                for (int i = 0; i < n; ++i) Kernels.axpy(r, p.h[i], 0, total.h[i], 0, n);
+        }
+        total.z = z;
+        total.s = s;
+    }
+
+    // running log-sum-exp state for a range of f[k], and its scratch storage
+    private static final class Part {
+        double z, s;
+        double[] gk, gs;
+        double[][] h, hk, hOwn;
     }
 
     // Pre-computes z, the maximum of f[k](x), and also e^(α(f[k]-z)) for each f[k].
     // See: http://erikerlandson.github.io/blog/2018/05/28/computing-smooth-max-and-its-gradients-without-over-and-underflow/
+    // Used only without a linear block.
     private Pair<Double, double[]> precompute(final RealVector x) {
         double[] exp = new double[f.length];
         double z = Double.NEGATIVE_INFINITY;
@@ -0,0 +1,216 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Sparse counterpart of {@link KKTSolver}, for problems whose Hessian and equality
+ * constraints are given as {@link SparseMatrix}. <p>
+ * The KKT system is solved as a whole, through a sparse LDLT factorization of the
+ * regularized quasidefinite matrix
+ * <pre>
+ * | H+dI  AT |
+ * | A    -dI |
+ * </pre>
+ * with a small d &gt; 0 (scaled separately for the primal and dual blocks), followed by
+ * iterative refinement against the unregularized system. The fill-reducing ordering and symbolic factorization are computed once per
+ * non-zero pattern and reused for as long as successive solves present the same pattern,
+ * which is the case across Newton iterations and barrier steps. Memory and time therefore
+ * scale with the non-zeros of H, A and the factor, rather than with n^2. <p>
+ * A solver keeps per-pattern state and is not thread-safe: use one per thread.
+ */
+public class SparseKKTSolver implements OptimizationData {
+    private final double regularization;
+    private final int refinementSteps;
+
+    // the last analysed KKT pattern, and where H, A and the diagonal go in it
+    private SparseMatrix hPattern;
+    private SparseMatrix aPattern;
+    private SparseMatrix kkt;
+    private int[] hPos;
+    private int[] aPos;
+    private int[] diagPos;
+    private SparseLDL ldl;
+    private double[] kReg;
+    private double[] rhs;
+    private double[] sol;
+    private double[] res;
+
+    /**
+     * Construct a solver with regularization 1e-9 (relative to the largest diagonal
+     * entry of H) and two refinement steps.
+     */
+    public SparseKKTSolver() {
+        this(1e-9, 2);
+    }
+
+    /**
+     * @param regularization the regularization d, relative to max(1, max |H[i][i]|) for the
+     * primal block, and to its inverse for the dual block
+     * @param refinementSteps the number of iterative refinement steps after each solve
+     */
+    public SparseKKTSolver(final double regularization, final int refinementSteps) {
+        if (regularization <= 0.0) throw new IllegalArgumentException("regularization must be > 0");
+        if (refinementSteps < 0) throw new IllegalArgumentException("refinementSteps must be >= 0");
+        this.regularization = regularization;
+        this.refinementSteps = refinementSteps;
+    }
+
+    /**
+     * Solve the constraint-free system Hv = -g.
+     * @param H the upper triangle of the Hessian (n x n)
+     * @param g gradient, corresponding to H
+     * @param v receives delta-x
+     * @return lambda-squared, -g.v
+     */
+    public double solve(final SparseMatrix H, final double[] g, final double[] v) {
+        solve(H, null, g, null, v, null);
+        double lsq = 0.0;
+        for (int j = 0; j < g.length; ++j) lsq -= g[j] * v[j];
+        return lsq;
+    }
+
+    /**
+     * solve the KKT system:
+     * <pre>
+     * | H AT | | v | = -| g |
+     * | A  0 | | w |    | h |
+     * </pre>
+     * as in {@link KKTSolver#solve(org.apache.commons.math3.linear.RealMatrix,
+     * org.apache.commons.math3.linear.RealMatrix, org.apache.commons.math3.linear.RealMatrix,
+     * org.apache.commons.math3.linear.RealVector, org.apache.commons.math3.linear.RealVector)}.
+     * @param H the upper triangle of the Hessian (n x n)
+     * @param A coefficient matrix of equality constraints (p x n), or null if there are none
+     * @param g gradient, corresponding to H
+     * @param h constant vector block corresponding to A, or null if A is null
+     * @param v receives delta-x
+     * @param w receives nu+, or null if A is null
+     */
+    public void solve(
+            final SparseMatrix H, final SparseMatrix A,
+            final double[] g, final double[] h,
+            final double[] v, final double[] w) {
+        final int n = H.rows;
+        final int p = (A == null) ? 0 : A.rows;
+        if (g.length != n) throw new DimensionMismatchException(g.length, n);
+        if ((A != null) && (A.cols != n)) throw new DimensionMismatchException(A.cols, n);
+        analyse(H, A);
+
+        // assemble the unregularized KKT values, then a regularized copy to factor
+        final double[] kx = kkt.values;
+        java.util.Arrays.fill(kx, 0.0);
+        for (int k = 0; k < hPos.length; ++k) kx[hPos[k]] += H.values[k];
+        for (int k = 0; k < aPos.length; ++k) kx[aPos[k]] += A.values[k];
+        double dmax = 1.0;
+        for (int i = 0; i < n; ++i) dmax = Math.max(dmax, Math.abs(kx[diagPos[i]]));
+        // the primal block is scaled like H, the dual block like the Schur complement A.inverse(H).AT
+        final double deltaPrimal = regularization * dmax;
+        final double deltaDual = regularization / dmax;
+        System.arraycopy(kx, 0, kReg, 0, kx.length);
+        for (int i = 0; i < n; ++i) kReg[diagPos[i]] += deltaPrimal;
+        for (int i = n; i < n + p; ++i) kReg[diagPos[i]] -= deltaDual;
+        ldl.factor(kReg);
+
+        for (int j = 0; j < n; ++j) rhs[j] = -g[j];
+        for (int k = 0; k < p; ++k) rhs[n + k] = -h[k];
+        ldl.solve(rhs, sol);
+        // iterative refinement against the unregularized system
+        for (int step = 0; step < refinementSteps; ++step) {
+            kkt.symmetricMultiply(sol, res);
+            for (int i = 0; i < n + p; ++i) res[i] = rhs[i] - res[i];
+            ldl.solve(res, res);
+            for (int i = 0; i < n + p; ++i) sol[i] += res[i];
+        }
+        System.arraycopy(sol, 0, v, 0, n);
+        if (p > 0) System.arraycopy(sol, n, w, 0, p);
+    }
+
+    /**
+     * @return the number of non-zeros in the last factor L, or 0 before the first solve
+     */
+    public int factorNonZeros() {
+        return (ldl != null) ? ldl.factorNonZeros() : 0;
+    }
+
+    // (re)build the KKT pattern and its symbolic factorization when H or A change pattern
+    private void analyse(final SparseMatrix H, final SparseMatrix A) {
+        if ((kkt != null) && hPattern.samePattern(H)
+                && ((A == null) ? (aPattern == null) : ((aPattern != null) && aPattern.samePattern(A)))) {
+            return;
+        }
+        final int n = H.rows;
+        final int p = (A == null) ? 0 : A.rows;
+        final int N = n + p;
+        final SparseMatrix AT = (A == null) ? null : A.transpose();
+        // where each entry of A lands in AT
+        int[] atOf = new int[(A == null) ? 0 : A.nonZeros()];
+        if (A != null) {
+            int[] next = new int[n];
+            for (int j = 0; j < n; ++j) next[j] = AT.rowPtr[j];
+            for (int k = 0; k < p; ++k)
+                for (int q = A.rowPtr[k]; q < A.rowPtr[k + 1]; ++q) atOf[q] = next[A.colIdx[q]]++;
+        }
+        // row j < n: the upper triangle of H row j, the diagonal, then AT row j shifted by n;
+        // row n + k: the diagonal only
+        int[] rowPtr = new int[N + 1];
+        for (int j = 0; j < n; ++j) {
+            int cnt = H.rowPtr[j + 1] - H.rowPtr[j];
+            if (!hasEntry(H, j, j)) ++cnt;
+            if (AT != null) cnt += AT.rowPtr[j + 1] - AT.rowPtr[j];
+            rowPtr[j + 1] = rowPtr[j] + cnt;
+        }
+        for (int i = n; i < N; ++i) rowPtr[i + 1] = rowPtr[i] + 1;
+        int[] colIdx = new int[rowPtr[N]];
+        hPos = new int[H.nonZeros()];
+        diagPos = new int[N];
+        int[] atPos = new int[(AT == null) ? 0 : AT.nonZeros()];
+        for (int j = 0; j < n; ++j) {
+            int q = rowPtr[j];
+            boolean diag = false;
+            for (int k = H.rowPtr[j]; k < H.rowPtr[j + 1]; ++k) {
+                final int c = H.colIdx[k];
+                if (c < j) throw new IllegalArgumentException("H must be given as its upper triangle");
+                if ((c > j) && !diag) {
+                    diagPos[j] = q;
+                    colIdx[q++] = j;
+                    diag = true;
+                }
+                if (c == j) {
+                    diagPos[j] = q;
+                    diag = true;
+                }
+                hPos[k] = q;
+                colIdx[q++] = c;
+            }
+            if (!diag) {
+                diagPos[j] = q;
+                colIdx[q++] = j;
+            }
+            if (AT != null) {
+                for (int k = AT.rowPtr[j]; k < AT.rowPtr[j + 1]; ++k) {
+                    atPos[k] = q;
+                    colIdx[q++] = n + AT.colIdx[k];
+                }
+            }
+        }
+        for (int i = n; i < N; ++i) {
+            diagPos[i] = rowPtr[i];
+            colIdx[rowPtr[i]] = i;
+        }
+        aPos = new int[atOf.length];
+        for (int q = 0; q < atOf.length; ++q) aPos[q] = atPos[atOf[q]];
+
+        kkt = new SparseMatrix(N, N, rowPtr, colIdx, new double[colIdx.length]);
+        ldl = new SparseLDL(kkt);
+        kReg = new double[colIdx.length];
+        rhs = new double[N];
+        sol = new double[N];
+        res = new double[N];
+        hPattern = H;
+        aPattern = A;
+    }
+
+    private static boolean hasEntry(final SparseMatrix m, final int i, final int j) {
+        return java.util.Arrays.binarySearch(m.colIdx, m.rowPtr[i], m.rowPtr[i + 1], j) >= 0;
+    }
+}
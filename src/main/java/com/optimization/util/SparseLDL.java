@@ -0,0 +1,310 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.Arrays;
+
+/**
+ * Sparse LDLT factorization P.K.PT = L.D.LT of a symmetric matrix K, with a
+ * minimum degree fill-reducing permutation P. <p>
+ * The factorization is split into a symbolic analysis of the non-zero pattern of K
+ * (ordering, elimination tree and column counts of L), done once on construction, and
+ * a numeric factorization that can be repeated for any values on that pattern. D is
+ * diagonal, so no pivoting is done: K must be strongly factorizable, which holds for
+ * positive definite and for quasidefinite matrices (| H+dI AT ; A -dI | with d &gt; 0)
+ * under any symmetric permutation. <p>
+ * The numeric phase follows the up-looking LDL algorithm of
+ * T. A. Davis, Algorithm 849: A Concise Sparse Cholesky Factorization Package, ACM TOMS 31(4), 2005.
+ */
+public class SparseLDL {
+    private final int n;
+    // the analysed pattern, as the upper triangle of K in compressed rows
+    private final SparseMatrix pattern;
+    // perm[k] is the row of K eliminated k-th; pinv is its inverse
+    private final int[] perm;
+    private final int[] pinv;
+    // the upper triangle of P.K.PT in compressed columns, and where each entry of K goes in it
+    private final int[] cp;
+    private final int[] ci;
+    private final double[] cx;
+    private final int[] cpos;
+    // elimination tree, and the column pointers, row indices and values of L
+    private final int[] parent;
+    private final int[] lp;
+    private final int[] li;
+    private final double[] lx;
+    private final double[] d;
+    // numeric work arrays
+    private final int[] lnz;
+    private final int[] flag;
+    private final int[] stack;
+    private final double[] y;
+
+    /**
+     * Analyse the pattern of a symmetric matrix.
+     * @param upper the upper triangle of K (n x n), including the diagonal;
+     * only its pattern is used
+     */
+    public SparseLDL(final SparseMatrix upper) {
+        if (upper.rows != upper.cols) throw new DimensionMismatchException(upper.cols, upper.rows);
+        this.n = upper.rows;
+        this.pattern = upper;
+        this.perm = minimumDegree(upper);
+        this.pinv = new int[n];
+        for (int k = 0; k < n; ++k) pinv[perm[k]] = k;
+
+        // scatter K into the upper triangle of P.K.PT, by columns
+        final int nz = upper.nonZeros();
+        cp = new int[n + 1];
+        for (int i = 0; i < n; ++i) {
+            for (int k = upper.rowPtr[i]; k < upper.rowPtr[i + 1]; ++k) {
+                ++cp[Math.max(pinv[i], pinv[upper.colIdx[k]]) + 1];
+            }
+        }
+        for (int j = 0; j < n; ++j) cp[j + 1] += cp[j];
+        int[] next = Arrays.copyOf(cp, n);
+        ci = new int[nz];
+        cx = new double[nz];
+        cpos = new int[nz];
+        for (int i = 0; i < n; ++i) {
+            for (int k = upper.rowPtr[i]; k < upper.rowPtr[i + 1]; ++k) {
+                final int a = pinv[i];
+                final int b = pinv[upper.colIdx[k]];
+                final int q = next[Math.max(a, b)]++;
+                ci[q] = Math.min(a, b);
+                cpos[k] = q;
+            }
+        }
+
+        // elimination tree and column counts of L
+        parent = new int[n];
+        lnz = new int[n];
+        flag = new int[n];
+        for (int k = 0; k < n; ++k) {
+            parent[k] = -1;
+            flag[k] = k;
+            for (int q = cp[k]; q < cp[k + 1]; ++q) {
+                for (int i = ci[q]; (i < k) && (flag[i] != k); i = parent[i]) {
+                    if (parent[i] == -1) parent[i] = k;
+                    ++lnz[i];
+                    flag[i] = k;
+                }
+            }
+        }
+        lp = new int[n + 1];
+        for (int k = 0; k < n; ++k) lp[k + 1] = lp[k] + lnz[k];
+        li = new int[lp[n]];
+        lx = new double[lp[n]];
+        d = new double[n];
+        stack = new int[n];
+        y = new double[n];
+    }
+
+    /**
+     * @param upper the upper triangle of a symmetric matrix
+     * @return true if this analysis applies to its pattern
+     */
+    public boolean analyses(final SparseMatrix upper) {
+        return pattern.samePattern(upper);
+    }
+
+    /** @return the number of non-zeros in the strictly lower triangle of L */
+    public int factorNonZeros() {
+        return lp[n];
+    }
+
+    /** @return the fill-reducing permutation: row perm[k] of K is eliminated k-th */
+    public int[] getPermutation() {
+        return perm.clone();
+    }
+
+    /**
+     * Numerically factor a matrix with the analysed pattern.
+     * @param values the values of the upper triangle of K, in the order of the analysed pattern
+     * @throws SingularMatrixException if a zero pivot is encountered
+     */
+    public void factor(final double[] values) {
+        if (values.length != cpos.length) throw new DimensionMismatchException(values.length, cpos.length);
+        for (int k = 0; k < values.length; ++k) cx[cpos[k]] = values[k];
+        for (int k = 0; k < n; ++k) {
+            // the pattern of row k of L is the union of the paths up the elimination tree
+            // from each row index of column k; scatter column k into y meanwhile
+            y[k] = 0.0;
+            int top = n;
+            flag[k] = k;
+            lnz[k] = 0;
+            for (int q = cp[k]; q < cp[k + 1]; ++q) {
+                int i = ci[q];
+                y[i] += cx[q];
+                int len = 0;
+                for (; flag[i] != k; i = parent[i]) {
+                    stack[len++] = i;
+                    flag[i] = k;
+                }
+                while (len > 0) stack[--top] = stack[--len];
+            }
+            // sparse triangular solve for row k of L, and the pivot D[k]
+            double dk = y[k];
+            y[k] = 0.0;
+            for (; top < n; ++top) {
+                final int i = stack[top];
+                final double yi = y[i];
+                y[i] = 0.0;
+                final int p2 = lp[i] + lnz[i];
+                for (int p = lp[i]; p < p2; ++p) y[li[p]] -= lx[p] * yi;
+                final double lki = yi / d[i];
+                dk -= lki * yi;
+                li[p2] = k;
+                lx[p2] = lki;
+                ++lnz[i];
+            }
+            if ((dk == 0.0) || Double.isNaN(dk)) throw new SingularMatrixException();
+            d[k] = dk;
+        }
+    }
+
+    /**
+     * Solve K.x = b using the last numeric factorization.
+     * @param b the right hand side
+     * @param x receives the solution; may be the same array as b
+     */
+    public void solve(final double[] b, final double[] x) {
+        final double[] z = y;
+        for (int k = 0; k < n; ++k) z[k] = b[perm[k]];
+        for (int j = 0; j < n; ++j) {
+            final double zj = z[j];
+            for (int p = lp[j]; p < lp[j + 1]; ++p) z[li[p]] -= lx[p] * zj;
+        }
+        for (int j = 0; j < n; ++j) z[j] /= d[j];
+        for (int j = n - 1; j >= 0; --j) {
+            double zj = z[j];
+            for (int p = lp[j]; p < lp[j + 1]; ++p) zj -= lx[p] * z[li[p]];
+            z[j] = zj;
+        }
+        for (int k = 0; k < n; ++k) x[perm[k]] = z[k];
+        Arrays.fill(z, 0.0);
+    }
+
+    /**
+     * Minimum degree ordering of the graph of a symmetric pattern, by explicit elimination:
+     * repeatedly eliminate a node of least degree and connect its neighbours into a clique.
+     * Ties go to the lowest index, so the ordering is deterministic.
+     * @param upper the upper triangle of a symmetric pattern
+     * @return the elimination order
+     */
+    static int[] minimumDegree(final SparseMatrix upper) {
+        final int n = upper.rows;
+        // adjacency lists, without self loops
+        int[] deg = new int[n];
+        for (int i = 0; i < n; ++i) {
+            for (int k = upper.rowPtr[i]; k < upper.rowPtr[i + 1]; ++k) {
+                final int j = upper.colIdx[k];
+                if (j != i) {
+                    ++deg[i];
+                    ++deg[j];
+                }
+            }
+        }
+        int[][] adj = new int[n][];
+        for (int i = 0; i < n; ++i) adj[i] = new int[Math.max(4, deg[i])];
+        Arrays.fill(deg, 0);
+        for (int i = 0; i < n; ++i) {
+            for (int k = upper.rowPtr[i]; k < upper.rowPtr[i + 1]; ++k) {
+                final int j = upper.colIdx[k];
+                if (j != i) {
+                    adj[i][deg[i]++] = j;
+                    adj[j][deg[j]++] = i;
+                }
+            }
+        }
+        final boolean[] eliminated = new boolean[n];
+        final int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int stamp = 0;
+        // lazy min-heap of (degree, node), packed into longs; stale entries are skipped
+        LongHeap heap = new LongHeap(2 * n);
+        for (int i = 0; i < n; ++i) heap.push(((long)deg[i] << 32) | i);
+        int[] order = new int[n];
+        int[] nbr = new int[n];
+        for (int k = 0; k < n; ++k) {
+            int v;
+            while (true) {
+                long top = heap.pop();
+                v = (int)top;
+                if (!eliminated[v] && ((int)(top >>> 32) == deg[v])) break;
+            }
+            order[k] = v;
+            eliminated[v] = true;
+            // live neighbours of v
+            int nn = 0;
+            for (int q = 0; q < deg[v]; ++q) {
+                final int u = adj[v][q];
+                if (!eliminated[u]) nbr[nn++] = u;
+            }
+            // make the neighbours a clique, dropping v from their lists
+            for (int a = 0; a < nn; ++a) {
+                final int u = nbr[a];
+                ++stamp;
+                int[] au = adj[u];
+                int du = 0;
+                for (int q = 0; q < deg[u]; ++q) {
+                    final int w = au[q];
+                    if (!eliminated[w]) {
+                        mark[w] = stamp;
+                        au[du++] = w;
+                    }
+                }
+                for (int b = 0; b < nn; ++b) {
+                    final int w = nbr[b];
+                    if ((w != u) && (mark[w] != stamp)) {
+                        if (du == au.length) au = adj[u] = Arrays.copyOf(au, 2 * au.length);
+                        au[du++] = w;
+                    }
+                }
+                if (du != deg[u]) heap.push(((long)du << 32) | u);
+                deg[u] = du;
+            }
+            adj[v] = null;
+        }
+        return order;
+    }
+
+    // a binary min-heap of longs
+    private static final class LongHeap {
+        private long[] a;
+        private int size;
+
+        LongHeap(final int capacity) {
+            a = new long[Math.max(capacity, 1)];
+        }
+
+        void push(final long e) {
+            if (size == a.length) a = Arrays.copyOf(a, 2 * a.length);
+            int i = size++;
+            while (i > 0) {
+                final int p = (i - 1) >>> 1;
+                if (a[p] <= e) break;
+                a[i] = a[p];
+                i = p;
+            }
+            a[i] = e;
+        }
+
+        long pop() {
+            final long top = a[0];
+            final long e = a[--size];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= size) break;
+                if ((c + 1 < size) && (a[c + 1] < a[c])) ++c;
+                if (e <= a[c]) break;
+                a[i] = a[c];
+                i = c;
+            }
+            a[i] = e;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.optimization.util;
+
+import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.Evaluation;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import java.util.Arrays;
+
+/**
+ * Given a convex objective function f0 and sparse linear constraints G.x &lt; h,
+ * computes the log barrier function: <p>
+ * b(x) = (t)f0(x) - sum(log(h[k] - G[k].x)) <p>
+ * returns +inf if any G[k].x &gt;= h[k] <p>
+ * The Hessian (t)H0 + GT.diag(1/s[k]^2).G, with slacks s = h - G.x, is assembled directly in
+ * sparse form by {@link #sparseHessian(double[])}: its non-zero pattern, and where each product
+ * G[k][i]*G[k][j] lands in it, is worked out once, so each evaluation costs time proportional
+ * to the sum over rows of (non-zeros per row)^2, and never O(n^2). The dense methods are
+ * provided for completeness, for small problems. <p>
+ * When f0 has a constant Hessian (a QP or LP), {@link #beginLine(double[], double[])} precomputes
+ * the slacks and G.dx along a line, so each line-search trial costs O(m) for the value, and
+ * O(nnz(G)) more for the gradient. {@link #maxStep(double[], double[])} computes the same
+ * slacks and G.dx for its ratio test, and a following beginLine on the same line reuses them. <p>
+ * The sparse evaluation shares per-instance scratch storage, so a single instance must
+ * not be evaluated from several threads at once.
+ */
+public class SparseLogBarrierFunction extends ConvexFunction {
+    private double t;
+    private final ConvexFunction f0;
+    private final int n;
+    private final SparseMatrix G;
+    private final double[] h;
+    // slacks h - G.x, and the symbolic Hessian assembly
+    private final double[] s;
+    private SparseMatrix f0Pattern;
+    private SparseMatrix pattern;
+    private int[] f0Pos;
+    private int[] pairPos;
+    // the line of the last beginLine: f0, g0.dx and dx.H0.dx at x, g0 and H0.dx,
+    // and the slacks at x and G.dx
+    private double lineF0;
+    private double lineD1;
+    private double lineD2;
+    private double[] lineG0;
+    private double[] lineHdx;
+    private double[] lineS;
+    private double[] lineDs;
+    // copies of the x and dx of the last maxStep, whose lineS and lineDs beginLine may reuse
+    // if it is the next call of either, and x and dx are unchanged; every maxStep and
+    // beginLine starts a new generation
+    private double[] stepX;
+    private double[] stepDx;
+    private long lineGeneration;
+    private long stepGeneration = -1L;
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(h[k] - G[k].x))
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param G constraint coefficients (m x n)
+     * @param h constraint constants (m)
+     */
+    public SparseLogBarrierFunction(double t, ConvexFunction f0, SparseMatrix G, double[] h) {
+        if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
+        this.n = f0.dimensions();
+        if (G.cols != n) throw new DimensionMismatchException(G.cols, n);
+        if (h.length != G.rows) throw new DimensionMismatchException(h.length, G.rows);
+        this.t = t;
+        this.f0 = f0;
+        this.G = G;
+        this.h = h;
+        this.s = new double[G.rows];
+    }
+
+    /** @return the multiplier constant t for f0 */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Update the multiplier t in place, so that one instance, with its symbolic Hessian assembly,
+     * serves every outer iteration of a barrier solve.
+     * @param t multiplier constant for f0, must be &gt; 0
+     */
+    public void setT(final double t) {
+        if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
+        this.t = t;
+    }
+
+    @Override
+    public int dimensions() {
+        return n;
+    }
+
+    @Override
+    public double value(final RealVector x) {
+        return evaluate(x.toArray(), null, null);
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        double[] g = new double[n];
+        evaluate(x.toArray(), g, null);
+        return new ArrayRealVector(g, false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        double[][] hd = new double[n][n];
+        evaluate(x.toArray(), null, hd);
+        return new Array2DRowRealMatrix(hd, false);
+    }
+
+    @Override
+    public Evaluation evaluate(final RealVector x, final int order) {
+        return evaluateFused(x, order);
+    }
+
+    @Override
+    public double value(final double[] x) {
+        return evaluate(x, null, null);
+    }
+
+    @Override
+    public void gradient(final double[] x, final double[] g) {
+        evaluate(x, g, null);
+    }
+
+    @Override
+    public void hessian(final double[] x, final double[][] hd) {
+        evaluate(x, null, hd);
+    }
+
+    @Override
+    public double evaluate(final double[] x, final double[] g, final double[][] hd) {
+        double v = t * f0.evaluate(x, g, null);
+        if (Double.isInfinite(v)) return v;
+        double bv = slacks(x);
+        if (Double.isInfinite(bv)) return bv;
+        v += bv;
+        if (g != null) {
+            for (int j = 0; j < n; ++j) g[j] *= t;
+            // g += GT.(1/s)
+            for (int k = 0; k < G.rows; ++k) {
+                final double zk = 1.0 / s[k];
+                for (int q = G.rowPtr[k]; q < G.rowPtr[k + 1]; ++q) g[G.colIdx[q]] += zk * G.values[q];
+            }
+        }
+        if (hd != null) {
+            SparseMatrix hs = assemble(x);
+            for (double[] row: hd) java.util.Arrays.fill(row, 0.0);
+            for (int i = 0; i < n; ++i) {
+                for (int q = hs.rowPtr[i]; q < hs.rowPtr[i + 1]; ++q) {
+                    final int j = hs.colIdx[q];
+                    hd[i][j] = hs.values[q];
+                    hd[j][i] = hs.values[q];
+                }
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public SparseMatrix sparseHessian(final double[] x) {
+        if (Double.isInfinite(slacks(x))) throw new IllegalArgumentException("x is outside the barrier domain");
+        return assemble(x);
+    }
+
+    /**
+     * The ratio test min(s[k]/(G[k].dx)) over the rows with G[k].dx &gt; 0, and the bound of f0.
+     */
+    @Override
+    public double maxStep(final double[] x, final double[] dx) {
+        double a = f0.maxStep(x, dx);
+        ensureLine();
+        for (int k = 0; k < G.rows; ++k) {
+            double gx = 0.0;
+            for (int q = G.rowPtr[k]; q < G.rowPtr[k + 1]; ++q) gx += G.values[q] * x[G.colIdx[q]];
+            lineS[k] = h[k] - gx;
+        }
+        G.multiply(dx, lineDs);
+        for (int k = 0; k < G.rows; ++k) {
+            final double dsk = lineDs[k];
+            if (dsk > 0.0) a = Math.min(a, lineS[k] / dsk);
+        }
+        System.arraycopy(x, 0, stepX, 0, n);
+        System.arraycopy(dx, 0, stepDx, 0, n);
+        stepGeneration = ++lineGeneration;
+        return a;
+    }
+
+    @Override
+    public boolean beginLine(final double[] x, final double[] dx) {
+        final boolean stepped = (stepGeneration == lineGeneration)
+                && Arrays.equals(x, stepX) && Arrays.equals(dx, stepDx);
+        ++lineGeneration;
+        if (!f0.isHessianConstant()) return false;
+        ensureLine();
+        lineF0 = f0.evaluate(x, lineG0, null);
+        if (Double.isInfinite(lineF0)) return false;
+        if (stepped) {
+            for (int k = 0; k < G.rows; ++k) {
+                if (lineS[k] <= 0.0) return false;
+            }
+        } else if (Double.isInfinite(slacks(x))) {
+            return false;
+        }
+        f0.sparseHessian(x).symmetricMultiply(dx, lineHdx);
+        double d1 = 0.0;
+        double d2 = 0.0;
+        for (int j = 0; j < n; ++j) {
+            d1 += lineG0[j] * dx[j];
+            d2 += lineHdx[j] * dx[j];
+        }
+        lineD1 = d1;
+        lineD2 = d2;
+        if (!stepped) {
+            System.arraycopy(s, 0, lineS, 0, G.rows);
+            G.multiply(dx, lineDs);
+        }
+        return true;
+    }
+
+    private void ensureLine() {
+        if (lineG0 == null) {
+            lineG0 = new double[n];
+            lineHdx = new double[n];
+            lineS = new double[G.rows];
+            lineDs = new double[G.rows];
+            stepX = new double[n];
+            stepDx = new double[n];
+        }
+    }
+
+    @Override
+    public double lineEvaluate(final double step, final double[] g) {
+        double v = t * (lineF0 + step * (lineD1 + 0.5 * step * lineD2));
+        for (int k = 0; k < G.rows; ++k) {
+            final double sk = lineS[k] - step * lineDs[k];
+            if (sk <= 0.0) return Double.POSITIVE_INFINITY;
+            v -= Math.log(sk);
+        }
+        if (g != null) {
+            for (int j = 0; j < n; ++j) g[j] = t * (lineG0[j] + step * lineHdx[j]);
+            for (int k = 0; k < G.rows; ++k) {
+                final double zk = 1.0 / (lineS[k] - step * lineDs[k]);
+                for (int q = G.rowPtr[k]; q < G.rowPtr[k + 1]; ++q) g[G.colIdx[q]] += zk * G.values[q];
+            }
+        }
+        return v;
+    }
+
+    // s = h - G.x; returns -sum(log(s)), or +inf if any slack is not positive
+    private double slacks(final double[] x) {
+        double v = 0.0;
+        for (int k = 0; k < G.rows; ++k) {
+            double gx = 0.0;
+            for (int q = G.rowPtr[k]; q < G.rowPtr[k + 1]; ++q) gx += G.values[q] * x[G.colIdx[q]];
+            final double sk = h[k] - gx;
+            if (sk <= 0.0) return Double.POSITIVE_INFINITY;
+            s[k] = sk;
+            v -= Math.log(sk);
+        }
+        return v;
+    }
+
+    // (t)H0 + GT.diag(1/s^2).G, on the upper triangle, using the slacks of the last evaluation
+    private SparseMatrix assemble(final double[] x) {
+        final SparseMatrix h0 = f0.sparseHessian(x);
+        if ((pattern == null) || !f0Pattern.samePattern(h0)) analyse(h0);
+        final double[] hv = new double[pattern.nonZeros()];
+        for (int q = 0; q < f0Pos.length; ++q) hv[f0Pos[q]] += t * h0.values[q];
+        int pq = 0;
+        for (int k = 0; k < G.rows; ++k) {
+            final double wk = 1.0 / (s[k] * s[k]);
+            final int q1 = G.rowPtr[k + 1];
+            for (int a = G.rowPtr[k]; a < q1; ++a) {
+                final double ca = wk * G.values[a];
+                for (int b = a; b < q1; ++b) hv[pairPos[pq++]] += ca * G.values[b];
+            }
+        }
+        return new SparseMatrix(n, n, pattern.rowPtr, pattern.colIdx, hv);
+    }
+
+    // the union of the patterns of H0 and of GT.G, and where each of their terms lands in it
+    private void analyse(final SparseMatrix h0) {
+        int pairs = 0;
+        for (int k = 0; k < G.rows; ++k) {
+            final int nk = G.rowPtr[k + 1] - G.rowPtr[k];
+            pairs += (nk * (nk + 1)) / 2;
+        }
+        final int n0 = h0.nonZeros();
+        int[] ri = new int[n0 + pairs];
+        int[] ci = new int[n0 + pairs];
+        int e = 0;
+        for (int i = 0; i < n; ++i) {
+            for (int q = h0.rowPtr[i]; q < h0.rowPtr[i + 1]; ++q) {
+                ri[e] = i;
+                ci[e] = h0.colIdx[q];
+                ++e;
+            }
+        }
+        for (int k = 0; k < G.rows; ++k) {
+            final int q1 = G.rowPtr[k + 1];
+            for (int a = G.rowPtr[k]; a < q1; ++a) {
+                for (int b = a; b < q1; ++b) {
+                    // column indices increase along a row, so (G.colIdx[a], G.colIdx[b]) is upper
+                    ri[e] = G.colIdx[a];
+                    ci[e] = G.colIdx[b];
+                    ++e;
+                }
+            }
+        }
+        SparseMatrix p = SparseMatrix.fromTriplets(n, n, ri, ci, new double[e]);
+        f0Pos = new int[n0];
+        pairPos = new int[pairs];
+        for (int q = 0; q < e; ++q) {
+            final int pos = java.util.Arrays.binarySearch(p.colIdx, p.rowPtr[ri[q]], p.rowPtr[ri[q] + 1], ci[q]);
+            if (q < n0) {
+                f0Pos[q] = pos;
+            } else {
+                pairPos[q - n0] = pos;
+            }
+        }
+        pattern = p;
+        f0Pattern = h0;
+    }
+}
@@ -0,0 +1,291 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable sparse matrix in compressed sparse row (CSR) form. <p>
+ * The non-zeros of row i are at positions rowPtr[i] (inclusive) to rowPtr[i+1] (exclusive)
+ * of colIdx and values, with strictly increasing column indices. The transpose of a CSR
+ * matrix is the compressed sparse column (CSC) form of the same matrix, see {@link #transpose()}. <p>
+ * Symmetric matrices, such as Hessians, are represented by their upper triangle
+ * (including the diagonal) only.
+ */
+public class SparseMatrix {
+    public final int rows;
+    public final int cols;
+    public final int[] rowPtr;
+    public final int[] colIdx;
+    public final double[] values;
+
+    /**
+     * Wrap CSR arrays, without copying them.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param rowPtr row start offsets, of length rows + 1
+     * @param colIdx column indices, strictly increasing within each row
+     * @param values the non-zero values
+     */
+    public SparseMatrix(final int rows, final int cols, final int[] rowPtr, final int[] colIdx, final double[] values) {
+        if (rowPtr.length != rows + 1) throw new DimensionMismatchException(rowPtr.length, rows + 1);
+        if (colIdx.length != values.length) throw new DimensionMismatchException(values.length, colIdx.length);
+        if (rowPtr[rows] != values.length) throw new DimensionMismatchException(values.length, rowPtr[rows]);
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return an all-zero matrix
+     */
+    public static SparseMatrix zero(final int rows, final int cols) {
+        return new SparseMatrix(rows, cols, new int[rows + 1], new int[0], new double[0]);
+    }
+
+    /**
+     * Assemble a matrix from (row, column, value) triplets; duplicate entries are summed.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param ri row index of each entry
+     * @param ci column index of each entry
+     * @param v value of each entry
+     * @return the matrix
+     */
+    public static SparseMatrix fromTriplets(final int rows, final int cols,
+                                            final int[] ri, final int[] ci, final double[] v) {
+        final int nz = ri.length;
+        if ((ci.length != nz) || (v.length != nz)) throw new DimensionMismatchException(v.length, nz);
+        // counting sort by column, then a stable counting sort by row,
+        // so that entries are ordered by row and by column within each row
+        int[] colCount = new int[cols + 1];
+        int[] rowCount = new int[rows + 1];
+        for (int e = 0; e < nz; ++e) {
+            if ((ri[e] < 0) || (ri[e] >= rows)) throw new OutOfRangeException(ri[e], 0, rows - 1);
+            if ((ci[e] < 0) || (ci[e] >= cols)) throw new OutOfRangeException(ci[e], 0, cols - 1);
+            ++colCount[ci[e] + 1];
+            ++rowCount[ri[e] + 1];
+        }
+        for (int j = 0; j < cols; ++j) colCount[j + 1] += colCount[j];
+        for (int i = 0; i < rows; ++i) rowCount[i + 1] += rowCount[i];
+        int[] byCol = new int[nz];
+        for (int e = 0; e < nz; ++e) byCol[colCount[ci[e]]++] = e;
+        int[] order = new int[nz];
+        for (int q = 0; q < nz; ++q) {
+            final int e = byCol[q];
+            order[rowCount[ri[e]]++] = e;
+        }
+        int[] rowPtr = new int[rows + 1];
+        int[] colIdx = new int[nz];
+        double[] values = new double[nz];
+        int k = 0;
+        int start = 0;
+        for (int q = 0; q < nz; ++q) {
+            final int e = order[q];
+            final int i = ri[e];
+            if ((q == 0) || (ri[order[q - 1]] != i)) start = k;
+            if ((k > start) && (colIdx[k - 1] == ci[e])) {
+                values[k - 1] += v[e];
+            } else {
+                colIdx[k] = ci[e];
+                values[k] = v[e];
+                ++k;
+            }
+            rowPtr[i + 1] = k;
+        }
+        // rows without entries start where the previous row ended
+        for (int i = 0; i < rows; ++i) rowPtr[i + 1] = Math.max(rowPtr[i + 1], rowPtr[i]);
+        return new SparseMatrix(rows, cols, rowPtr, Arrays.copyOf(colIdx, k), Arrays.copyOf(values, k));
+    }
+
+    /**
+     * @param a a dense matrix, by rows
+     * @return the non-zeros of a, in sparse form
+     */
+    public static SparseMatrix fromDense(final double[][] a) {
+        final int rows = a.length;
+        final int cols = (rows > 0) ? a[0].length : 0;
+        int nz = 0;
+        for (double[] row: a) {
+            if (row.length != cols) throw new DimensionMismatchException(row.length, cols);
+            for (double aij: row) if (aij != 0.0) ++nz;
+        }
+        int[] rowPtr = new int[rows + 1];
+        int[] colIdx = new int[nz];
+        double[] values = new double[nz];
+        int k = 0;
+        for (int i = 0; i < rows; ++i) {
+            for (int j = 0; j < cols; ++j) {
+                if (a[i][j] != 0.0) {
+                    colIdx[k] = j;
+                    values[k] = a[i][j];
+                    ++k;
+                }
+            }
+            rowPtr[i + 1] = k;
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, values);
+    }
+
+    /**
+     * @param h a dense symmetric matrix
+     * @return the non-zeros of the upper triangle of h, in sparse form
+     */
+    public static SparseMatrix upperFromDense(final double[][] h) {
+        final int n = h.length;
+        int nz = 0;
+        for (int i = 0; i < n; ++i)
+            for (int j = i; j < n; ++j) if (h[i][j] != 0.0) ++nz;
+        int[] rowPtr = new int[n + 1];
+        int[] colIdx = new int[nz];
+        double[] values = new double[nz];
+        int k = 0;
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                if (h[i][j] != 0.0) {
+                    colIdx[k] = j;
+                    values[k] = h[i][j];
+                    ++k;
+                }
+            }
+            rowPtr[i + 1] = k;
+        }
+        return new SparseMatrix(n, n, rowPtr, colIdx, values);
+    }
+
+    /**
+     * Stack matrices with the same number of columns on top of each other.
+     * @param blocks the matrices, top to bottom
+     * @return the stacked matrix
+     */
+    public static SparseMatrix stack(final List<SparseMatrix> blocks) {
+        if (blocks.isEmpty()) throw new IllegalArgumentException("no blocks to stack");
+        final int cols = blocks.get(0).cols;
+        int rows = 0, nz = 0;
+        for (SparseMatrix b: blocks) {
+            if (b.cols != cols) throw new DimensionMismatchException(b.cols, cols);
+            rows += b.rows;
+            nz += b.nonZeros();
+        }
+        int[] rowPtr = new int[rows + 1];
+        int[] colIdx = new int[nz];
+        double[] values = new double[nz];
+        int r = 0, k = 0;
+        for (SparseMatrix b: blocks) {
+            System.arraycopy(b.colIdx, 0, colIdx, k, b.nonZeros());
+            System.arraycopy(b.values, 0, values, k, b.nonZeros());
+            for (int i = 0; i < b.rows; ++i) rowPtr[r + i + 1] = k + b.rowPtr[i + 1];
+            r += b.rows;
+            k += b.nonZeros();
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, values);
+    }
+
+    /** @return the number of stored non-zeros */
+    public int nonZeros() {
+        return rowPtr[rows];
+    }
+
+    /**
+     * @param i a row index
+     * @param j a column index
+     * @return the entry at (i, j)
+     */
+    public double getEntry(final int i, final int j) {
+        int k = Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i + 1], j);
+        return (k >= 0) ? values[k] : 0.0;
+    }
+
+    /**
+     * @return the transpose; its CSR arrays are the CSC arrays of this matrix
+     */
+    public SparseMatrix transpose() {
+        final int nz = nonZeros();
+        int[] tPtr = new int[cols + 1];
+        for (int k = 0; k < nz; ++k) ++tPtr[colIdx[k] + 1];
+        for (int j = 0; j < cols; ++j) tPtr[j + 1] += tPtr[j];
+        int[] next = Arrays.copyOf(tPtr, cols);
+        int[] tIdx = new int[nz];
+        double[] tVal = new double[nz];
+        for (int i = 0; i < rows; ++i) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                final int q = next[colIdx[k]]++;
+                tIdx[q] = i;
+                tVal[q] = values[k];
+            }
+        }
+        return new SparseMatrix(cols, rows, tPtr, tIdx, tVal);
+    }
+
+    /**
+     * y = this.x
+     * @param x a vector of length cols
+     * @param y receives the product, of length rows
+     */
+    public void multiply(final double[] x, final double[] y) {
+        for (int i = 0; i < rows; ++i) {
+            double s = 0.0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) s += values[k] * x[colIdx[k]];
+            y[i] = s;
+        }
+    }
+
+    /**
+     * y = transpose(this).x
+     * @param x a vector of length rows
+     * @param y receives the product, of length cols
+     */
+    public void transposeMultiply(final double[] x, final double[] y) {
+        Arrays.fill(y, 0, cols, 0.0);
+        for (int i = 0; i < rows; ++i) {
+            final double xi = x[i];
+            if (xi == 0.0) continue;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) y[colIdx[k]] += values[k] * xi;
+        }
+    }
+
+    /**
+     * y = this.x for a symmetric matrix stored as its upper triangle
+     * @param x a vector of length cols
+     * @param y receives the product, of length rows
+     */
+    public void symmetricMultiply(final double[] x, final double[] y) {
+        Arrays.fill(y, 0, rows, 0.0);
+        for (int i = 0; i < rows; ++i) {
+            double s = 0.0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                final int j = colIdx[k];
+                s += values[k] * x[j];
+                if (j != i) y[j] += values[k] * x[i];
+            }
+            y[i] += s;
+        }
+    }
+
+    /**
+     * @return this matrix as a dense array, by rows
+     */
+    public double[][] toDense() {
+        double[][] a = new double[rows][cols];
+        for (int i = 0; i < rows; ++i)
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) a[i][colIdx[k]] = values[k];
+        return a;
+    }
+
+    /**
+     * @param other another matrix
+     * @return true if both matrices have the same dimensions and non-zero positions
+     */
+    public boolean samePattern(final SparseMatrix other) {
+        if (other == this) return true;
+        if ((other.rows != rows) || (other.cols != cols)) return false;
+        if ((other.rowPtr == rowPtr) && (other.colIdx == colIdx)) return true;
+        return Arrays.equals(other.rowPtr, rowPtr) && Arrays.equals(other.colIdx, colIdx);
+    }
+}
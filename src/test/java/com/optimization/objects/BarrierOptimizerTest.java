@@ -0,0 +1,527 @@
+package com.optimization.objects;
+
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.LogBarrierFunction;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.SmoothMaxFunction;
+import com.optimization.util.SparseKKTSolver;
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BarrierOptimizerTest {
+
+    private static final LinearInequalityConstraint INEQC = new LinearInequalityConstraint(
+            new Array2DRowRealMatrix(new double[][] {
+                    { -1.0, 0.0 },
+                    { 0.0, -1.0 },
+                    { -1.0, -3.0 },
+                    { 2.0, 5.0 },
+                    { 3.0, 4.0 }
+            }),
+            new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 }));
+
+    private static final LinearEqualityConstraint EQC = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 1.0 } },
+            new double[] { 14.0 });
+
+    private static QuadraticFunction objective(double shift) {
+        return new QuadraticFunction(
+                new double[][] { { 1.0, 0.2 }, { 0.2, 0.5 } },
+                new double[] { 3.0 - shift, 4.0 },
+                0.0);
+    }
+
+    private static OptimizationData[] args(boolean withEquality, OptimizationData... data) {
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>(Arrays.asList(data));
+        if (withEquality) args.add(EQC);
+        return args.toArray(new OptimizationData[0]);
+    }
+
+    @Test
+    public void test_warm_start() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        for (boolean withEquality: new boolean[] { false, true }) {
+            BarrierOptimizer barrier = new BarrierOptimizer();
+            barrier.optimize(args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            WarmStart ws = barrier.getWarmStart();
+            assertNotNull(ws);
+
+            // re-solve with a slightly perturbed objective, cold and warm
+            BarrierOptimizer cold = new BarrierOptimizer();
+            PointValuePair pc = cold.optimize(args(withEquality, new ObjectiveFunction(objective(20.1)), INEQC, ig));
+            BarrierOptimizer warm = new BarrierOptimizer();
+            PointValuePair pw = warm.optimize(args(withEquality, new ObjectiveFunction(objective(20.1)), INEQC, ig, ws));
+            assertArrayEquals(pc.getFirst(), pw.getFirst(), 1e-6);
+            assertTrue(warm.getNewtonIterations() < cold.getNewtonIterations());
+            assertTrue(warm.getIterations() < cold.getIterations());
+        }
+    }
+
+    @Test
+    public void test_warm_start_large_perturbation() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        barrier.optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig);
+        // the optimum moves to a different vertex; the resumed centering stalls, so start cold
+        BarrierOptimizer cold = new BarrierOptimizer();
+        PointValuePair pc = cold.optimize(new ObjectiveFunction(objective(0.0)), INEQC, ig);
+        BarrierOptimizer warm = new BarrierOptimizer();
+        PointValuePair pw = warm.optimize(new ObjectiveFunction(objective(0.0)), INEQC, ig, barrier.getWarmStart());
+        assertArrayEquals(pc.getFirst(), pw.getFirst(), 1e-6);
+        // no more than the budget of the resumed centering step is spent on it
+        assertTrue(warm.getNewtonIterations() <= cold.getNewtonIterations() + BarrierSchedule.FEW_NEWTON_STEPS);
+    }
+
+    @Test
+    public void test_warm_start_equality_only() {
+        // no inequality constraints: one centering step solves the problem, from any point
+        InitialGuess ig = new InitialGuess(new double[] { 0.0, 0.0 });
+        BarrierOptimizer cold = new BarrierOptimizer();
+        PointValuePair pc = cold.optimize(new ObjectiveFunction(objective(20.0)), EQC, ig);
+        double[] expected = new NewtonOptimizer().optimize(new ObjectiveFunction(objective(20.0)), EQC, ig).getFirst();
+        assertArrayEquals(expected, pc.getFirst(), 1e-9);
+        assertEquals(14.0, pc.getFirst()[0] + pc.getFirst()[1], 1e-9);
+        BarrierOptimizer warm = new BarrierOptimizer();
+        PointValuePair pw = warm.optimize(new ObjectiveFunction(objective(20.1)), EQC, ig, cold.getWarmStart());
+        BarrierOptimizer again = new BarrierOptimizer();
+        PointValuePair pa = again.optimize(new ObjectiveFunction(objective(20.1)), EQC, ig);
+        assertArrayEquals(pa.getFirst(), pw.getFirst(), 1e-9);
+        assertEquals(1, warm.getIterations());
+        assertTrue(warm.getNewtonIterations() <= again.getNewtonIterations());
+    }
+
+    @Test
+    public void test_warm_start_infeasible_falls_back() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        BarrierOptimizer cold = new BarrierOptimizer();
+        PointValuePair pc = cold.optimize(new ObjectiveFunction(objective(0.0)), INEQC, ig);
+        BarrierOptimizer warm = new BarrierOptimizer();
+        // (-1, -1) violates x >= 0, so the warm start is ignored
+        PointValuePair pw = warm.optimize(new ObjectiveFunction(objective(0.0)), INEQC, ig,
+                new WarmStart(new double[] { -1.0, -1.0 }, 1e6, null));
+        assertArrayEquals(pc.getFirst(), pw.getFirst(), 0.0);
+        assertEquals(cold.getNewtonIterations(), warm.getNewtonIterations());
+    }
+
+    @Test
+    public void test_statistics() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        final int[] reported = new int[2];
+        SolverStatistics stats = new SolverStatistics(new SolverStatistics.Listener() {
+            @Override
+            public void newtonIteration(SolverStatistics.NewtonIteration iteration) { ++reported[0]; }
+            @Override
+            public void barrierStep(SolverStatistics.BarrierStep step) { ++reported[1]; }
+        });
+        for (boolean withEquality: new boolean[] { false, true }) {
+            stats.clear();
+            reported[0] = reported[1] = 0;
+            BarrierOptimizer plain = new BarrierOptimizer();
+            PointValuePair pp = plain.optimize(args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            BarrierOptimizer barrier = new BarrierOptimizer();
+            PointValuePair ps = barrier.optimize(args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig, stats));
+            // recording does not change the solve
+            assertArrayEquals(pp.getFirst(), ps.getFirst(), 0.0);
+
+            assertEquals(barrier.getIterations(), stats.getBarrierSteps().size());
+            assertEquals(barrier.getNewtonIterations(), stats.getNewtonIterations().size());
+            assertEquals(stats.getBarrierSteps().size(), reported[1]);
+            assertEquals(stats.getNewtonIterations().size(), reported[0]);
+            int newton = 0;
+            for (SolverStatistics.BarrierStep step: stats.getBarrierSteps()) {
+                assertEquals(5.0 / step.t, step.dualityGap, 0.0);
+                newton += step.newtonIterations;
+            }
+            assertEquals(newton, stats.getNewtonIterations().size());
+            SolverStatistics.BarrierStep last = stats.getBarrierSteps().get(stats.getBarrierSteps().size() - 1);
+            assertTrue(last.dualityGap < 1e-7);
+            for (SolverStatistics.NewtonIteration it: stats.getNewtonIterations()) {
+                assertTrue(it.barrierStep >= 0);
+                assertTrue(it.backtracks >= it.infeasibleSteps);
+                assertEquals(withEquality, Double.isNaN(it.decrementSquared));
+                assertEquals(!withEquality, Double.isNaN(it.residualNorm));
+            }
+            assertEquals(Long.valueOf(newton), stats.totals().get("newtonIterations"));
+        }
+    }
+
+    @Test
+    public void test_schedule() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        for (boolean withEquality: new boolean[] { false, true }) {
+            PointValuePair legacy = new BarrierOptimizer().optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            for (BarrierSchedule schedule: new BarrierSchedule[] {
+                    new BarrierSchedule(100.0, 10.0, 1e-6), BarrierSchedule.adaptive(10.0, 2.0, 1e4, 1e-6) }) {
+                SolverStatistics stats = new SolverStatistics();
+                BarrierOptimizer barrier = new BarrierOptimizer();
+                PointValuePair ps = barrier.optimize(
+                        args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig, schedule, stats));
+                // the duality gap bounds the suboptimality of the value, not of the point
+                assertEquals(legacy.getSecond(), ps.getSecond(), 1e-6);
+                // stop at the first centered point within the duality gap
+                java.util.List<SolverStatistics.BarrierStep> steps = stats.getBarrierSteps();
+                assertTrue(steps.get(steps.size() - 1).dualityGap <= 1e-6);
+                assertTrue(steps.get(steps.size() - 2).dualityGap > 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void test_inexact_centering() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        for (boolean withEquality: new boolean[] { false, true }) {
+            BarrierOptimizer exact = new BarrierOptimizer();
+            PointValuePair pe = exact.optimize(args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            BarrierOptimizer inexact = new BarrierOptimizer();
+            PointValuePair pi = inexact.optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig, new InexactCentering()));
+            assertEquals(pe.getSecond(), pi.getSecond(), 1e-7);
+            assertEquals(exact.getIterations(), inexact.getIterations());
+            assertTrue(inexact.getNewtonIterations() < exact.getNewtonIterations());
+            // the last centering step is exact, so the accuracy is about the final duality gap
+            assertTrue(inexact.getAccuracy() >= 5.0 / inexact.getWarmStart().getT());
+            assertTrue(inexact.getAccuracy() < 1e-7);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_schedule_mu_not_above_one() {
+        new BarrierSchedule(1.0, 1.0);
+    }
+
+    @Test
+    public void test_sparse_matches_dense() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        SparseLinearInequalityConstraint sparse = new SparseLinearInequalityConstraint(
+                SparseMatrix.fromDense(new double[][] {
+                        { -1.0, 0.0 },
+                        { 0.0, -1.0 },
+                        { -1.0, -3.0 },
+                        { 2.0, 5.0 },
+                        { 3.0, 4.0 }
+                }),
+                new double[] { 0.0,0.0,-15.0,100.0,80.0 });
+        for (boolean withEquality: new boolean[] { false, true }) {
+            PointValuePair dense = new BarrierOptimizer().optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            PointValuePair ps = new BarrierOptimizer().optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), sparse, ig));
+            assertArrayEquals(dense.getFirst(), ps.getFirst(), 1e-6);
+            // dense constraints are folded into the sparse ones, once a sparse solve is requested
+            PointValuePair pm = new BarrierOptimizer().optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig, new SparseKKTSolver()));
+            assertArrayEquals(dense.getFirst(), pm.getFirst(), 1e-6);
+        }
+    }
+
+    @Test
+    public void test_constraint_set() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        for (boolean sparse: new boolean[] { false, true }) {
+            LinearConstraintSet set = new LinearConstraintSet(
+                    new Array2DRowRealMatrix(new double[][] {
+                            { -1.0, 0.0 },
+                            { 0.0, -1.0 },
+                            { -1.0, -3.0 },
+                            { 2.0, 5.0 },
+                            { 3.0, 4.0 }
+                    }),
+                    new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 }));
+            OptimizationData mode = sparse ? new SparseKKTSolver() : new SolverStatistics();
+            ObjectiveFunction objective = new ObjectiveFunction(objective(20.0));
+            BarrierOptimizer barrier = new BarrierOptimizer();
+            PointValuePair ps = barrier.optimize(objective, set, ig, mode);
+            PointValuePair pc = new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig);
+            assertArrayEquals(pc.getFirst(), ps.getFirst(), 1e-6);
+
+            // add a row, loosen one and remove another, then solve again with the same optimizer
+            int cut = set.add(new double[] { 0.0, 1.0 }, 30.0);
+            set.setBound(4, 81.0);
+            set.remove(0);
+            assertEquals(5, set.size());
+            assertFalse(set.contains(0));
+            assertEquals(30.0, set.getBound(cut), 0.0);
+            assertArrayEquals(new double[] { 3.0, 4.0 }, set.getRow(4), 0.0);
+            ps = barrier.optimize(objective, set, ig, mode);
+            BarrierOptimizer cold = new BarrierOptimizer();
+            pc = cold.optimize(objective, set.toConstraint(), ig);
+            assertArrayEquals(pc.getFirst(), ps.getFirst(), 1e-6);
+            // the second solve resumes from the first one's central point, which is still feasible
+            assertTrue(barrier.getNewtonIterations() < cold.getNewtonIterations());
+            assertEquals(0, set.add(new double[] { 0.0, 1.0 }, 50.0));
+        }
+        // a set whose last constraint has been removed constrains nothing
+        LinearConstraintSet empty = new LinearConstraintSet(2);
+        empty.remove(empty.add(new double[] { 1.0, 1.0 }, 1.0));
+        assertEquals(0, empty.size());
+        assertArrayEquals(new double[] { 0.0, 0.0 }, ConvexOptimizer.feasiblePoint(empty).getFirst(), 0.0);
+        assertArrayEquals(new double[] { 3.0, 4.0 },
+                ConvexOptimizer.feasiblePoint(empty, new InitialGuess(new double[] { 3.0, 4.0 })).getFirst(), 0.0);
+        PointValuePair pe = ConvexOptimizer.feasiblePoint(empty, INEQC);
+        for (LinearFunction f: INEQC.lcf) assertTrue(f.value(pe.getFirst()) < 0.0);
+        try {
+            empty.toConstraint();
+            fail("expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_constraint_block() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        Array2DRowRealMatrix A = new Array2DRowRealMatrix(new double[][] {
+                { -1.0, 0.0 },
+                { 0.0, -1.0 },
+                { -1.0, -3.0 },
+                { 2.0, 5.0 },
+                { 3.0, 4.0 }
+        });
+        ArrayRealVector b = new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 });
+        for (boolean withEquality: new boolean[] { false, true }) {
+            PointValuePair pc = new BarrierOptimizer().optimize(
+                    args(withEquality, new ObjectiveFunction(objective(20.0)), INEQC, ig));
+            for (LinearConstraintBlock block: new LinearConstraintBlock[] {
+                    new LinearConstraintBlock(A, b), LinearConstraintBlock.direct(A, b) }) {
+                PointValuePair pb = new BarrierOptimizer().optimize(
+                        args(withEquality, new ObjectiveFunction(objective(20.0)), block, ig));
+                assertArrayEquals(pc.getFirst(), pb.getFirst(), 1e-8);
+                PointValuePair ps = new BarrierOptimizer().optimize(
+                        args(withEquality, new ObjectiveFunction(objective(20.0)), block, ig, new SparseKKTSolver()));
+                assertArrayEquals(pc.getFirst(), ps.getFirst(), 1e-6);
+            }
+        }
+        // a block split in two, and stacked back together, with a single-row constraint
+        LinearConstraintBlock top = new LinearConstraintBlock(A.getSubMatrix(0, 2, 0, 1), b.getSubVector(0, 3));
+        LinearConstraintBlock bottom = LinearConstraintBlock.direct(A.getSubMatrix(3, 3, 0, 1), b.getSubVector(3, 1));
+        LinearInequalityConstraint last = new LinearInequalityConstraint(A.getSubMatrix(4, 4, 0, 1), b.getSubVector(4, 1));
+        PointValuePair pc = new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig);
+        PointValuePair pb = new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), top, bottom, last, ig);
+        assertArrayEquals(pc.getFirst(), pb.getFirst(), 1e-8);
+        assertTrue(ConvexOptimizer.feasiblePoint(top, bottom, last).getSecond() < 0.0);
+        // the two bound rows, counted once for a block of its own rows, and on every call for a wrapped one
+        assertEquals(2, new LinearConstraintBlock(A, b).boundRows());
+        assertEquals(2, LinearConstraintBlock.direct(A, b).boundRows());
+        assertEquals(2, LinearConstraintBlock.pack(INEQC.lcf).boundRows());
+        assertEquals(2, LinearConstraintBlock.stack(Arrays.asList(top, bottom)).boundRows());
+        double[] rows = { -1.0, 0.0, 0.0, -1.0, -1.0, -3.0 };
+        LinearConstraintBlock wrapped = LinearConstraintBlock.wrap(rows, new double[] { 0.0, 0.0, 15.0 }, 3, 2);
+        assertEquals(2, wrapped.boundRows());
+        rows[5] = 0.0;
+        assertEquals(3, wrapped.boundRows());
+        // 30000 x 30000 rows take 7.2e9 bytes, more than a direct buffer holds
+        try {
+            LinearConstraintBlock.direct(new OpenMapRealMatrix(30000, 30000), new ArrayRealVector(30000));
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("30000 x 30000"));
+        }
+    }
+
+    @Test
+    public void test_newton_cg() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        double[] x = ig.getInitialGuess();
+        double[] v = { 0.7, -1.3 };
+        // Hessian-vector products and diagonals against the dense Hessian, with a nonlinear constraint
+        QuadraticFunction ball = QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(new double[] { 10.0, 10.0 }), 20.0, 1.0);
+        ArrayList<ConvexFunction> fk = new ArrayList<ConvexFunction>(Arrays.asList((ConvexFunction[])INEQC.lcf));
+        fk.add(ball);
+        ConvexFunction[] fs = {
+                new LogBarrierFunction(3.0, objective(20.0), fk),
+                new SmoothMaxFunction(2.0, fk.toArray(new ConvexFunction[0])),
+                new SmoothMaxFunction(2.0, null, LinearConstraintBlock.pack(INEQC.lcf), ball) };
+        for (ConvexFunction f: fs) {
+            double[][] h = new double[2][2];
+            f.hessian(x, h);
+            double[] hv = new double[2];
+            double[] d = new double[2];
+            f.hessianVector(x, v, hv);
+            f.hessianDiagonal(x, d);
+            for (int j = 0; j < 2; ++j) {
+                assertEquals(h[j][0] * v[0] + h[j][1] * v[1], hv[j], 1e-9 * (1.0 + Math.abs(hv[j])));
+                assertEquals(h[j][j], d[j], 1e-9 * (1.0 + Math.abs(d[j])));
+            }
+        }
+        // Newton-CG centering finds the same optimum, and rejects equality constraints
+        PointValuePair pc = new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig);
+        PointValuePair pg = new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig, new NewtonCGSolver());
+        assertArrayEquals(pc.getFirst(), pg.getFirst(), 1e-6);
+        try {
+            new BarrierOptimizer().optimize(new ObjectiveFunction(objective(20.0)), INEQC, EQC, ig, new NewtonCGSolver());
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_lbfgs() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        BarrierOptimizer exact = new BarrierOptimizer();
+        PointValuePair pe = exact.optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig);
+        // pure L-BFGS, which stalls on rounding once t is large, and the hybrid that refreshes
+        // the true Hessian every 5 iterations
+        LBFGSSolver[] solvers = { new LBFGSSolver(), new LBFGSSolver(5, 5) };
+        double[] tolerances = { 1e-5, 1e-6 };
+        for (int k = 0; k < solvers.length; ++k) {
+            BarrierOptimizer barrier = new BarrierOptimizer();
+            PointValuePair pq = barrier.optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig, solvers[k]);
+            assertArrayEquals(pe.getFirst(), pq.getFirst(), tolerances[k]);
+            assertTrue(barrier.getNewtonIterations() >= exact.getNewtonIterations());
+            // the pairs are kept by the optimizer, not in the solver given
+            assertEquals(0, solvers[k].getPairs());
+            PointValuePair pr = barrier.optimize(new ObjectiveFunction(objective(20.0)), INEQC, ig, solvers[k]);
+            assertArrayEquals(pq.getFirst(), pr.getFirst(), 0.0);
+        }
+        // unconstrained: a quadratic is minimized exactly
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pu = newton.optimize(new ObjectiveFunction(objective(20.0)), new InitialGuess(new double[] { 1.0, 1.0 }), new LBFGSSolver());
+        assertArrayEquals(new double[] { 20.217391304347828, -16.086956521739133 }, pu.getFirst(), 1e-6);
+    }
+
+    @Test
+    public void test_factor_quadratic() {
+        // a 2-factor risk model over 6 assets, long only and fully invested, with one sector limit
+        double[][] f = { { 0.3, 0.1 }, { 0.2, -0.1 }, { 0.4, 0.2 }, { 0.1, 0.3 }, { 0.25, 0.0 }, { 0.15, -0.2 } };
+        double[] d = { 0.02, 0.03, 0.05, 0.01, 0.04, 0.02 };
+        double[] b = { -0.05, -0.08, -0.12, -0.03, -0.07, -0.04 };
+        FactorQuadraticFunction factor = new FactorQuadraticFunction(f, d, b, 0.0);
+        QuadraticFunction dense = factor.toQuadraticFunction();
+        double[] x = { 0.1, 0.2, 0.3, 0.1, 0.2, 0.1 };
+        assertEquals(dense.value(x), factor.value(x), 1e-14);
+        double[][] rows = new double[7][6];
+        double[] bounds = new double[7];
+        for (int j = 0; j < 6; ++j) rows[j][j] = -1.0;
+        rows[6][2] = 1.0;
+        rows[6][4] = 1.0;
+        bounds[6] = 0.4;
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(rows), new ArrayRealVector(bounds));
+        LinearEqualityConstraint budget = new LinearEqualityConstraint(
+                new double[][] { { 1.0, 1.0, 1.0, 1.0, 1.0, 1.0 } }, new double[] { 1.0 });
+        InitialGuess ig = new InitialGuess(new double[] { 1.0 / 6, 1.0 / 6, 1.0 / 6, 1.0 / 6, 1.0 / 6, 1.0 / 6 });
+        // the bound rows only add to the diagonal, so the barrier Hessian has rank 2 + 1 < 6
+        assertEquals(3, new LogBarrierFunction(1.0, factor, ineqc.lcf).lowRankHessian().rank());
+        PointValuePair pd = new BarrierOptimizer().optimize(new ObjectiveFunction(dense), ineqc, budget, ig);
+        PointValuePair pf = new BarrierOptimizer().optimize(new ObjectiveFunction(factor), ineqc, budget, ig);
+        assertArrayEquals(pd.getFirst(), pf.getFirst(), 1e-6);
+        assertEquals(pd.getSecond(), pf.getSecond(), 1e-9);
+    }
+
+    @Test
+    public void test_presolve() {
+        // x2 is pinned by an equality, three rows are bounds, 2x0 + 2x1 < 10 is looser than
+        // x0 + x1 < 4, x0 - x1 < 50 holds over the bounds, and the last row is empty
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] {
+                        { -1.0, 0.0, 0.0 },
+                        { 0.0, -1.0, 0.0 },
+                        { 1.0, 0.0, 0.0 },
+                        { 1.0, 1.0, 0.0 },
+                        { 2.0, 2.0, 0.0 },
+                        { 1.0, -1.0, 0.0 },
+                        { 0.0, 0.0, 0.0 } }),
+                new ArrayRealVector(new double[] { 0.0, 0.0, 3.0, 4.0, 10.0, 50.0, 1.0 }));
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { 0.0, 0.0, 2.0 }, { 1.0, 1.0, 1.0 } }, new double[] { 3.0, 3.5 });
+        QuadraticFunction f = new QuadraticFunction(
+                new double[][] { { 2.0, 0.0, 0.5 }, { 0.0, 2.0, 0.0 }, { 0.5, 0.0, 2.0 } },
+                new double[] { -4.0, -2.0, 0.0 }, 0.0);
+        InitialGuess ig = new InitialGuess(new double[] { 1.0, 1.0, 1.0 });
+        PointValuePair plain = new BarrierOptimizer().optimize(new ObjectiveFunction(f), ineqc, eqc, ig);
+        BarrierOptimizer optimizer = new BarrierOptimizer();
+        PointValuePair pvp = optimizer.optimize(new ObjectiveFunction(f), ineqc, eqc, ig, new Presolve());
+        Presolve.Reduction r = optimizer.getReduction();
+        assertEquals(1, r.getFixedVariables());
+        assertEquals(3, r.getBoundRows());
+        assertEquals(1, r.getDuplicateRows());
+        assertEquals(1, r.getRedundantRows());
+        assertEquals(1, r.getEmptyRows());
+        assertEquals(1.5, pvp.getPoint()[2], 0.0);
+        assertArrayEquals(plain.getPoint(), pvp.getPoint(), 1e-6);
+        assertEquals(plain.getValue(), pvp.getValue(), 1e-9);
+        assertEquals(3, optimizer.getWarmStart().getPoint().length);
+
+        // the bounds alone, as a diagonal barrier, and as rows of the sparse mode
+        SimpleBounds bounds = new SimpleBounds(new double[] { 0.0, 0.0, 0.0 },
+                new double[] { 3.0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY });
+        PointValuePair dense = new BarrierOptimizer().optimize(new ObjectiveFunction(f), bounds, eqc, ig);
+        PointValuePair sparse = new BarrierOptimizer().optimize(new ObjectiveFunction(f), bounds, eqc, ig,
+                new SparseKKTSolver());
+        assertArrayEquals(dense.getPoint(), sparse.getPoint(), 1e-6);
+    }
+
+    @Test
+    public void test_presolve_duals() {
+        // the equality row is divided by -2 in the reduced problem, so its dual by -1/2
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { -1.0, 2.0, 0.0 } }, new double[] { 1.0 });
+        QuadraticFunction f = new QuadraticFunction(
+                new double[][] { { 2.0, 0.0, 0.0 }, { 0.0, 2.0, 0.0 }, { 0.0, 0.0, 2.0 } },
+                new double[] { -4.0, -2.0, 1.0 }, 0.0);
+        InitialGuess ig = new InitialGuess(new double[] { 0.5, 0.5, 0.5 });
+        BarrierOptimizer plain = new BarrierOptimizer();
+        plain.optimize(new ObjectiveFunction(f), INEQC3, eqc, ig);
+        BarrierOptimizer presolved = new BarrierOptimizer();
+        presolved.optimize(new ObjectiveFunction(f), INEQC3, eqc, ig, new Presolve());
+        assertTrue(presolved.getReduction().isEqualityKept());
+        double[] nu = plain.getWarmStart().getDual();
+        assertArrayEquals(nu, presolved.getWarmStart().getDual(), 1e-6 * (1.0 + Math.abs(nu[0])));
+
+        // and back into the reduced problem
+        Presolve.Reduction r = new Presolve().reduce(new ObjectiveFunction(f), INEQC3, eqc, ig,
+                new WarmStart(new double[] { 0.5, 0.5, 0.5 }, 1.0, new double[] { 3.0 }));
+        for (OptimizationData data: r.getData()) {
+            if (data instanceof WarmStart) assertArrayEquals(new double[] { -6.0 }, ((WarmStart) data).getDual(), 0.0);
+        }
+    }
+
+    // 0 < x[j] < 2
+    private static final LinearInequalityConstraint INEQC3 = new LinearInequalityConstraint(
+            new Array2DRowRealMatrix(new double[][] {
+                    { -1.0, 0.0, 0.0 }, { 0.0, -1.0, 0.0 }, { 0.0, 0.0, -1.0 },
+                    { 1.0, 0.0, 0.0 }, { 0.0, 1.0, 0.0 }, { 0.0, 0.0, 1.0 } }),
+            new ArrayRealVector(new double[] { 0.0, 0.0, 0.0, 2.0, 2.0, 2.0 }));
+
+    @Test
+    public void test_presolve_start() {
+        // no initial guess: the origin violates the bounds and x0 + x1 > 3, so a phase I point is used
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0, 0.0 }, { -1.0, -1.0, 0.0 } }),
+                new ArrayRealVector(new double[] { 5.0, -3.0 }));
+        QuadraticFunction f = new QuadraticFunction(
+                new double[][] { { 2.0, 0.0, 0.0 }, { 0.0, 2.0, 0.0 }, { 0.0, 0.0, 2.0 } },
+                new double[] { 0.0, 0.0, -2.0 }, 0.0);
+        SimpleBounds bounds = new SimpleBounds(new double[] { 0.5, 0.5, 0.5 },
+                new double[] { 3.0, 3.0, Double.POSITIVE_INFINITY });
+        PointValuePair plain = new BarrierOptimizer().optimize(new ObjectiveFunction(f), ineqc, bounds,
+                new InitialGuess(new double[] { 2.0, 2.0, 2.0 }));
+        PointValuePair pvp = new BarrierOptimizer().optimize(new ObjectiveFunction(f), ineqc, bounds, new Presolve());
+        assertArrayEquals(plain.getPoint(), pvp.getPoint(), 1e-6);
+
+        // x0 + x1 < 1 and x0 + x1 > 3 have no common point
+        LinearInequalityConstraint infeasible = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0, 0.0 }, { -1.0, -1.0, 0.0 } }),
+                new ArrayRealVector(new double[] { 1.0, -3.0 }));
+        try {
+            new BarrierOptimizer().optimize(new ObjectiveFunction(f), infeasible, new Presolve());
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
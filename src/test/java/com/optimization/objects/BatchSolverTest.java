@@ -0,0 +1,102 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolver;
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.SparseKKTSolver;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BatchSolverTest {
+
+    @Test
+    public void test_batch() {
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] {
+                        { -1.0, 0.0 },
+                        { 0.0, -1.0 },
+                        { -1.0, -3.0 },
+                        { 2.0, 5.0 },
+                        { 3.0, 4.0 }
+                }),
+                new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 }));
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0 } },
+                new double[] { 1.0 });
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(ineqc).getFirst());
+
+        List<BatchSolver.Problem> problems = new ArrayList<BatchSolver.Problem>();
+        for (int k = 0; k < 20; ++k) {
+            // shift the linear term so each problem has a different solution
+            QuadraticFunction q = new QuadraticFunction(
+                    new double[][] { { 1.0, 0.0 }, { 0.0, 0.0 } },
+                    new double[] { 3.0 - k, 4.0 },
+                    0.0);
+            problems.add(new BatchSolver.Problem(q, ineqc, ((k % 2) == 0) ? null : eqc, ig));
+        }
+        // without inequalities, solved by Newton's method alone
+        problems.add(new BatchSolver.Problem(new QuadraticFunction(
+                new double[][] { { 1.0, 0.0 }, { 0.0, 2.0 } }, new double[] { -1.0, 4.0 }, 0.0), null, eqc, null));
+        // an objective of the wrong dimension fails without affecting the others
+        problems.add(new BatchSolver.Problem(
+                new QuadraticFunction(new double[][] { { 1.0 } }, new double[] { 1.0 }, 0.0), ineqc, null, ig));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<BatchSolver.Result> results = new BatchSolver(executor).solve(problems);
+            assertEquals(problems.size(), results.size());
+            for (int k = 0; k < 20; ++k) {
+                BatchSolver.Result r = results.get(k);
+                assertTrue(r.isSuccess());
+                assertTrue(r.newtonIterations > 0);
+                BatchSolver.Problem p = problems.get(k);
+                BarrierOptimizer barrier = new BarrierOptimizer();
+                double[] expected = (p.equalities == null)
+                        ? barrier.optimize(new ObjectiveFunction(p.objective), ineqc, ig).getFirst()
+                        : barrier.optimize(new ObjectiveFunction(p.objective), ineqc, eqc, ig).getFirst();
+                assertArrayEquals(expected, r.solution.getFirst(), 0.0);
+                assertEquals(barrier.getIterations(), r.iterations);
+            }
+            BatchSolver.Result rn = results.get(20);
+            assertTrue(rn.isSuccess());
+            assertArrayEquals(new double[] { 1.0, 1.0 }, rn.solution.getFirst(), 1e-12);
+            assertTrue(rn.iterations > 0);
+            assertEquals(rn.iterations, rn.newtonIterations);
+            assertFalse(results.get(21).isSuccess());
+            assertNull(results.get(21).solution);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_rejects_shared_state() {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            for (OptimizationData data: new OptimizationData[] { new SparseKKTSolver(), new NewtonCGSolver(),
+                    new LBFGSSolver(), new NewtonWorkspace(), new SolverStatistics() }) {
+                try {
+                    new BatchSolver(executor, data);
+                    fail("expected an IllegalArgumentException for " + data.getClass().getSimpleName());
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+            // a KKT solver holds only its choice of factorization
+            new BatchSolver(executor, new KKTSolver(KKTSolver.Factorization.SVD));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
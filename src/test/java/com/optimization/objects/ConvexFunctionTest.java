@@ -1,8 +1,15 @@
 package com.optimization.objects;
 
+import com.optimization.util.LogBarrierFunction;
+import com.optimization.util.SmoothMaxFunction;
+import com.optimization.util.SparseLogBarrierFunction;
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.exception.MathUnsupportedOperationException;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.optim.PointValuePair;
 import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
 import org.junit.Test;
@@ -344,4 +351,159 @@ public class ConvexFunctionTest {
         assertArrayEquals(TARGET, RESULT, 1e-8);
     }
 
+    @Test
+    public void test_phase_i() {
+        System.out.println("\n- TEST PHASE I: slack and smooth-max searches, multi-start -");
+
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] {
+                        { -1.0, 0.0 },
+                        { 0.0, -1.0 },
+                        { -1.0, -3.0 },
+                        { 2.0, 5.0 },
+                        { 3.0, 4.0 }
+                }),
+                new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 }));
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0 } },
+                new double[] { 1.0 });
+        InitialGuess far = new InitialGuess(new double[] { -5.0, 4.0 });
+
+        for (PhaseI phaseI: new PhaseI[] {
+                new PhaseI(PhaseI.Method.SLACK),
+                new PhaseI(PhaseI.Method.SMOOTH_MAX),
+                new PhaseI(PhaseI.Method.SLACK, 1000, 4, 7L) }) {
+            PointValuePair fpvp = ConvexOptimizer.feasiblePoint(ineqc, phaseI, far);
+            assertTrue(fpvp.getSecond() < 0.0);
+
+            fpvp = ConvexOptimizer.feasiblePoint(ineqc, eqc, phaseI, far);
+            assertTrue(fpvp.getSecond() < 0.0);
+            assertEquals(1.0, fpvp.getFirst()[1], 1e-9);
+        }
+
+        // an infeasible problem stops at the iteration limit, with a positive max constraint
+        LinearInequalityConstraint infeasible = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] { { 1.0 }, { -1.0 } }),
+                new ArrayRealVector(new double[] { -1.0, -1.0 }));
+        PointValuePair fpvp = ConvexOptimizer.feasiblePoint(
+                infeasible, new PhaseI(PhaseI.Method.SLACK, 50, 1, 0L));
+        assertTrue(fpvp.getSecond() > 0.0);
+
+        // with only equalities, the start is projected onto them
+        fpvp = ConvexOptimizer.feasiblePoint(eqc, far);
+        assertArrayEquals(new double[] { -5.0, 1.0 }, fpvp.getFirst(), 1e-9);
+    }
+
+    @Test
+    public void test_phase_i_infeasible() {
+        // x0 + x1 < 1 and x0 + x1 > 3: the default search must give up rather than loop
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0 }, { -1.0, -1.0 } }),
+                new ArrayRealVector(new double[] { 1.0, -3.0 }));
+        PointValuePair fpvp = ConvexOptimizer.feasiblePoint(ineqc);
+        assertTrue(fpvp.getSecond() >= 0.0);
+        // the least infeasible points have max 1
+        assertEquals(1.0, fpvp.getSecond(), 1e-3);
+        fpvp = ConvexOptimizer.feasiblePoint(ineqc, new PhaseI(PhaseI.Method.SLACK));
+        assertTrue(fpvp.getSecond() >= 0.0);
+    }
+
+    @Test
+    public void test_weights_read_only() {
+        ArrayRealVector w = new ArrayRealVector(new double[] { 1.0, -2.0 });
+        LinearFunction lf = new LinearFunction(w, 0.5);
+        QuadraticFunction qf = new QuadraticFunction(new Array2DRowRealMatrix(new double[][] { { 2.0, 0.0 }, { 0.0, 1.0 } }), w, 0.0);
+        double[] x = { 3.0, 1.0 };
+        // the functions keep their own weights, which cannot be changed through getWeights
+        w.setEntry(0, 10.0);
+        assertEquals(1.5, lf.value(x), 0.0);
+        assertEquals(1.5, lf.value(new ArrayRealVector(x)), 0.0);
+        assertEquals(1.0, lf.getWeights().getEntry(0), 0.0);
+        assertEquals(1.0, qf.getWeights().getEntry(0), 0.0);
+        for (RealVector weights: new RealVector[] { lf.getWeights(), qf.getWeights() }) {
+            try {
+                weights.setEntry(0, 10.0);
+                fail("expected a MathUnsupportedOperationException");
+            } catch (MathUnsupportedOperationException e) {
+                // expected
+            }
+        }
+        assertEquals(1.5, lf.value(x), 0.0);
+        // nor their quadratic weights through getQuadraticWeights
+        qf.getQuadraticWeights().setEntry(0, 0, 100.0);
+        assertEquals(2.0, qf.getQuadraticWeights().getEntry(0, 0), 0.0);
+        assertEquals(qf.value(x), qf.value(new ArrayRealVector(x)), 0.0);
+        assertEquals(0.5 * (2.0 * 9.0 + 1.0) + 3.0 - 2.0, qf.value(x), 0.0);
+    }
+
+    // evaluate(x, g, h) must agree with the separate value, gradient and Hessian, in both APIs
+    private static void assertFused(final ConvexFunction f, final double[] x) {
+        final int n = f.dimensions();
+        double[] g = new double[n];
+        double[][] h = new double[n][n];
+        double v = f.evaluate(x, g, h);
+        double tol = 1e-12 * (1.0 + Math.abs(v));
+        assertEquals(f.value(x), v, tol);
+        assertEquals(v, f.evaluate(x, null, null), tol);
+        assertEquals(v, f.value(new ArrayRealVector(x)), tol);
+        double[] gs = new double[n];
+        f.gradient(x, gs);
+        assertArrayEquals(gs, g, 1e-12);
+        double[] gv = new double[n];
+        assertEquals(v, f.evaluate(x, gv, null), tol);
+        assertArrayEquals(gs, gv, 1e-12);
+        assertArrayEquals(gs, f.gradient(new ArrayRealVector(x)).toArray(), 1e-12);
+        double[][] hs = new double[n][n];
+        f.hessian(x, hs);
+        double[][] hv = f.hessian(new ArrayRealVector(x)).getData();
+        Evaluation e = f.evaluate(new ArrayRealVector(x), 2);
+        assertEquals(v, e.value, tol);
+        assertArrayEquals(gs, e.gradient.toArray(), 1e-12);
+        for (int i = 0; i < n; ++i) {
+            assertArrayEquals(hs[i], h[i], 1e-12);
+            assertArrayEquals(hs[i], hv[i], 1e-12);
+            assertArrayEquals(hs[i], e.hessian.getRow(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void test_fused_evaluate() {
+        double[] x = { 0.3, -0.2, 0.1 };
+        double[][] a = { { 1.0, 1.0, 1.0 }, { -1.0, 0.5, 0.0 }, { 0.0, 1.0, -1.0 }, { -1.0, 0.0, 0.0 } };
+        double[] b = { 2.0, 1.0, 1.5, 1.0 };
+        LinearInequalityConstraint rows = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(a), new ArrayRealVector(b));
+        LinearFunction lf = new LinearFunction(new ArrayRealVector(new double[] { 1.0, -2.0, 0.5 }), 0.25);
+        QuadraticFunction qf = new QuadraticFunction(
+                new double[][] { { 4.0, 1.0, 0.0 }, { 1.0, 3.0, 1.0 }, { 0.0, 1.0, 2.0 } },
+                new double[] { 1.0, -2.0, 0.5 }, 0.75);
+        FactorQuadraticFunction ff = new FactorQuadraticFunction(
+                new double[][] { { 0.5, 0.1 }, { -0.2, 0.3 }, { 0.3, 0.0 } },
+                new double[] { 1.0, 2.0, 0.5 }, new double[] { 1.0, -1.0, 0.5 }, 0.5);
+        LogBarrierFunction bounded = new LogBarrierFunction(2.5, qf, rows.lcf);
+        bounded.setBounds(new double[] { -1.0, Double.NEGATIVE_INFINITY, -1.0 },
+                new double[] { 1.0, 1.0, Double.POSITIVE_INFINITY });
+        // nonlinear constraints: an n-ball, and a quadratic
+        ConvexFunction ball = QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(3, 0.0), 2.0, 1.0);
+        ConvexFunction[] mixed = { rows.lcf[0], rows.lcf[1], ball };
+        // a presolved objective, with x2 pinned to 0.5 by an equality
+        OptimizationData[] reduced = new Presolve().reduce(new ObjectiveFunction(qf),
+                new LinearEqualityConstraint(new double[][] { { 0.0, 0.0, 2.0 } }, new double[] { 1.0 }),
+                new InitialGuess(new double[] { 0.0, 0.0, 0.5 })).getData();
+        ConvexFunction restricted = null;
+        for (OptimizationData data: reduced) {
+            if (data instanceof ObjectiveFunction) restricted = (ConvexFunction) ((ObjectiveFunction) data).getObjectiveFunction();
+        }
+        assertEquals(2, restricted.dimensions());
+
+        for (ConvexFunction f: new ConvexFunction[] {
+                lf, qf, ff, ball,
+                new LogBarrierFunction(2.5, qf, rows.lcf), bounded, new LogBarrierFunction(1.5, ff, mixed),
+                new SparseLogBarrierFunction(2.5, qf, SparseMatrix.fromDense(a), b),
+                new SmoothMaxFunction(2.0, rows.lcf), new SmoothMaxFunction(2.0, qf, lf, ball),
+                new SmoothMaxFunction(2.0, null, LinearConstraintBlock.pack(rows.lcf), qf, ball) }) {
+            assertFused(f, x);
+        }
+        assertFused(restricted, new double[] { 0.3, -0.2 });
+    }
 }
@@ -0,0 +1,174 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolution;
+import com.optimization.util.KKTSolver;
+import com.optimization.util.LogBarrierFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NewtonOptimizerTest {
+
+    private static final double[][] A = { { 4.0, 1.0, 0.0 }, { 1.0, 3.0, 1.0 }, { 0.0, 1.0, 2.0 } };
+    private static final double[] B = { 1.0, -2.0, 0.5 };
+
+    // counts the evaluations of its (constant) Hessian
+    private static class CountingQuadratic extends QuadraticFunction {
+        int hessians;
+
+        CountingQuadratic() {
+            super(A, B, 0.0);
+        }
+
+        @Override
+        public void hessian(final double[] x, final double[][] h) {
+            ++hessians;
+            super.hessian(x, h);
+        }
+    }
+
+    @Test
+    public void test_factor_once() {
+        RealMatrix h = new Array2DRowRealMatrix(A);
+        KKTSolver svd = new KKTSolver(KKTSolver.Factorization.SVD);
+        InitialGuess ig = new InitialGuess(new double[] { 1.0, 1.0, 1.0 });
+
+        // unconstrained: the minimum solves A.x = -b
+        CountingQuadratic f = new CountingQuadratic();
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pu = newton.optimize(new ObjectiveFunction(f), ig);
+        KKTSolution ref = svd.solve(h, new ArrayRealVector(B));
+        assertArrayEquals(ref.xDelta.toArray(), pu.getPoint(), 1e-10);
+        assertTrue(newton.getIterations() >= 2);
+        assertEquals(1, f.hessians);
+
+        // with x0 + x1 + x2 = 1, from a point off the constraint
+        f = new CountingQuadratic();
+        RealMatrix e = new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0, 1.0 } });
+        PointValuePair pe = newton.optimize(new ObjectiveFunction(f), ig,
+                new LinearEqualityConstraint(e.getData(), new double[] { 1.0 }));
+        // from x = 0: H.v + A^T.nu = -b, A.v = 1
+        ref = svd.solve(h, e, e.transpose(), new ArrayRealVector(B), new ArrayRealVector(new double[] { -1.0 }));
+        assertArrayEquals(ref.xDelta.toArray(), pe.getPoint(), 1e-10);
+        assertTrue(newton.getIterations() >= 2);
+        assertEquals(1, f.hessians);
+    }
+
+    @Test
+    public void test_no_step_bound() {
+        // a maxStep that is not > 0 is ignored, and the search starts from the full step
+        for (final double bound: new double[] { 0.0, -1.0, Double.NaN }) {
+            QuadraticFunction f = new QuadraticFunction(A, B, 0.0) {
+                @Override
+                public double maxStep(final double[] x, final double[] dx) {
+                    return bound;
+                }
+            };
+            PointValuePair pu = new NewtonOptimizer().optimize(new ObjectiveFunction(f),
+                    new InitialGuess(new double[] { 1.0, 1.0, 1.0 }));
+            KKTSolution ref = new KKTSolver(KKTSolver.Factorization.SVD).solve(
+                    new Array2DRowRealMatrix(A), new ArrayRealVector(B));
+            assertArrayEquals(ref.xDelta.toArray(), pu.getPoint(), 1e-10);
+        }
+    }
+
+    @Test
+    public void test_reoptimize_after_set_t() {
+        ConvexFunction[] rows = {
+                new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0, 1.0 }), -2.0),
+                new LinearFunction(new ArrayRealVector(new double[] { -1.0, 0.5, 0.0 }), -1.0),
+                new LinearFunction(new ArrayRealVector(new double[] { 0.0, 1.0, -1.0 }), -1.5) };
+        QuadraticFunction f0 = new QuadraticFunction(A, B, 0.0);
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { 1.0, 1.0, 1.0 } }, new double[] { 1.0 });
+        InitialGuess ig = new InitialGuess(new double[] { 0.0, 0.0, 0.0 });
+
+        // center at t = 1, then move the same barrier to t = 10 and re-solve from there
+        LogBarrierFunction b = new LogBarrierFunction(1.0, f0, rows);
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair p1 = newton.optimize(new ObjectiveFunction(b), ig, eqc);
+        b.setT(10.0);
+        PointValuePair p2 = newton.reoptimize(p1.getPoint(), newton.getDual());
+
+        // the same as a fresh solve at t = 10
+        NewtonOptimizer fresh = new NewtonOptimizer();
+        PointValuePair pf = fresh.optimize(new ObjectiveFunction(new LogBarrierFunction(10.0, f0, rows)), ig, eqc);
+        assertArrayEquals(pf.getPoint(), p2.getPoint(), 1e-8);
+        assertEquals(pf.getValue(), p2.getValue(), 1e-8);
+        assertArrayEquals(fresh.getDual(), newton.getDual(), 1e-6);
+        assertEquals(1.0, p2.getPoint()[0] + p2.getPoint()[1] + p2.getPoint()[2], 1e-10);
+        assertTrue(newton.getIterations() <= fresh.getIterations());
+    }
+
+    // counts the evaluations of its low-rank Hessian
+    private static class CountingFactor extends FactorQuadraticFunction {
+        int evaluations;
+
+        CountingFactor(final double[] d) {
+            super(new double[][] { { 0.5 }, { -0.2 }, { 0.3 }, { 0.1 } }, d, new double[] { 1.0, -1.0, 0.5, 0.0 }, 0.0);
+        }
+
+        @Override
+        public LowRankHessian lowRankHessian() {
+            final LowRankHessian form = super.lowRankHessian();
+            return new LowRankHessian(form.rank(), form.isDiagonalPositive()) {
+                @Override
+                public void evaluate(final double[] x, final double[] d, final double[][] u) {
+                    ++evaluations;
+                    form.evaluate(x, d, u);
+                }
+            };
+        }
+    }
+
+    @Test
+    public void test_low_rank_path() {
+        // one general row, and bound rows on x0 and x3: the barrier Hessian has rank 1 + 1 < 4
+        ConvexFunction[] rows = {
+                new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0, 1.0, 1.0 }), -2.0),
+                new LinearFunction(new ArrayRealVector(new double[] { -1.0, 0.0, 0.0, 0.0 }), -1.0),
+                new LinearFunction(new ArrayRealVector(new double[] { 0.0, 0.0, 0.0, 1.0 }), -1.5) };
+        InitialGuess ig = new InitialGuess(new double[] { 0.0, 0.0, 0.0, 0.0 });
+        double[] d = { 1.0, 2.0, 0.5, 1.0 };
+
+        // solved by the Woodbury identity at every iteration
+        CountingFactor f = new CountingFactor(d);
+        LogBarrierFunction b = new LogBarrierFunction(2.0, f, rows);
+        assertEquals(2, b.lowRankHessian().rank());
+        assertTrue(b.lowRankHessian().isDiagonalPositive());
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pl = newton.optimize(new ObjectiveFunction(b), ig);
+        assertTrue(newton.getIterations() >= 2);
+        assertEquals(newton.getIterations(), f.evaluations);
+
+        // the LU solver always falls back to the dense matrix, which is then kept to
+        f = new CountingFactor(d);
+        b = new LogBarrierFunction(2.0, f, rows);
+        PointValuePair pu = newton.optimize(new ObjectiveFunction(b), ig, new KKTSolver(KKTSolver.Factorization.LU));
+        assertTrue(newton.getIterations() >= 2);
+        assertEquals(1, f.evaluations);
+        assertArrayEquals(pl.getPoint(), pu.getPoint(), 1e-8);
+
+        // a diagonal with zeros, as of x1 in the factor model, or of every variable of an LP,
+        // is known to be positive only once the barrier bounds every variable
+        f = new CountingFactor(new double[] { 1.0, 0.0, 0.5, 1.0 });
+        assertFalse(f.lowRankHessian().isDiagonalPositive());
+        b = new LogBarrierFunction(2.0, f, rows);
+        assertFalse(b.lowRankHessian().isDiagonalPositive());
+        newton.optimize(new ObjectiveFunction(b), ig);
+        assertEquals(0, f.evaluations);
+        b.setBounds(new double[] { Double.NEGATIVE_INFINITY, -5.0, -5.0, Double.NEGATIVE_INFINITY },
+                new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY });
+        assertTrue(b.lowRankHessian().isDiagonalPositive());
+        newton.optimize(new ObjectiveFunction(b), ig);
+        assertEquals(newton.getIterations(), f.evaluations);
+        LogBarrierFunction lp = new LogBarrierFunction(2.0,
+                new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0, 1.0, 1.0 }), 0.0), rows);
+        assertFalse(lp.lowRankHessian().isDiagonalPositive());
+    }
+}
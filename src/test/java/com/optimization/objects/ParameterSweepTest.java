@@ -0,0 +1,92 @@
+package com.optimization.objects;
+
+import com.optimization.util.KKTSolver;
+import com.optimization.util.LBFGSSolver;
+import com.optimization.util.NewtonCGSolver;
+import com.optimization.util.NewtonWorkspace;
+import com.optimization.util.SparseKKTSolver;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParameterSweepTest {
+
+    @Test
+    public void test_frontier() {
+        // long-only weights summing to at most 1, with a cap of 0.6 on each
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] {
+                        { -1.0, 0.0, 0.0 },
+                        { 0.0, -1.0, 0.0 },
+                        { 0.0, 0.0, -1.0 },
+                        { 1.0, 0.0, 0.0 },
+                        { 0.0, 1.0, 0.0 },
+                        { 0.0, 0.0, 1.0 },
+                        { 1.0, 1.0, 1.0 }
+                }),
+                new ArrayRealVector(new double[] { 0.0, 0.0, 0.0, 0.6, 0.6, 0.6, 1.0 }));
+        QuadraticFunction risk = new QuadraticFunction(
+                new double[][] { { 0.04, 0.01, 0.0 }, { 0.01, 0.09, 0.02 }, { 0.0, 0.02, 0.16 } },
+                new double[] { 0.0, 0.0, 0.0 },
+                0.0);
+        LinearFunction ret = new LinearFunction(new ArrayRealVector(new double[] { 0.05, 0.08, 0.12 }), 0.0);
+        InitialGuess ig = new InitialGuess(new double[] { 0.2, 0.2, 0.2 });
+        ParameterSweep.ParametricObjective frontier = ParameterSweep.frontier(risk, ret);
+
+        double[] lambdas = new double[24];
+        for (int k = 0; k < lambdas.length; ++k) lambdas[k] = 0.5 * Math.pow(1.25, k);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<BatchSolver.Result> results = new ParameterSweep(executor, 3, ineqc, ig).solve(frontier, lambdas);
+            assertEquals(lambdas.length, results.size());
+            int sweepNewton = 0;
+            int coldNewton = 0;
+            for (int k = 0; k < lambdas.length; ++k) {
+                BatchSolver.Result r = results.get(k);
+                assertTrue(r.isSuccess());
+                BarrierOptimizer cold = new BarrierOptimizer();
+                PointValuePair pc = cold.optimize(new ObjectiveFunction(frontier.at(lambdas[k])), ineqc, ig);
+                assertEquals(pc.getSecond(), r.solution.getSecond(), 1e-8);
+                assertArrayEquals(pc.getFirst(), r.solution.getFirst(), 1e-4);
+                sweepNewton += r.newtonIterations;
+                coldNewton += cold.getNewtonIterations();
+            }
+            // all but the first point of each segment are warm-started
+            assertTrue(sweepNewton < coldNewton);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_rejects_shared_state() {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            for (OptimizationData data: new OptimizationData[] { new SparseKKTSolver(),
+                    new NewtonCGSolver(), new NewtonWorkspace(), new SolverStatistics() }) {
+                try {
+                    new ParameterSweep(executor, 2, data);
+                    fail("expected an IllegalArgumentException for " + data.getClass().getSimpleName());
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+            // the settings of an L-BFGS solver are read, and each optimizer keeps its own pairs
+            new ParameterSweep(executor, 2, new LBFGSSolver());
+            // a KKT solver holds only its choice of factorization
+            new ParameterSweep(executor, 2, new KKTSolver(KKTSolver.Factorization.SVD));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.optimization.objects;
+
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PresolveTest {
+
+    private static final ObjectiveFunction F = new ObjectiveFunction(new QuadraticFunction(
+            new double[][] { { 2.0, 0.0, 0.0 }, { 0.0, 2.0, 0.0 }, { 0.0, 0.0, 2.0 } },
+            new double[] { -1.0, -1.0, -1.0 }, 0.0));
+
+    private static LinearInequalityConstraint ineq(final double[][] a, final double[] b) {
+        return new LinearInequalityConstraint(new Array2DRowRealMatrix(a), new ArrayRealVector(b));
+    }
+
+    private static void assertRejected(final OptimizationData... optData) {
+        try {
+            new Presolve().reduce(optData);
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_inconsistent_equalities() {
+        // x2 = 1 pins x2, leaving 2.x2 = 3 with no free variable
+        assertRejected(F, new LinearEqualityConstraint(
+                new double[][] { { 0.0, 0.0, 1.0 }, { 0.0, 0.0, 2.0 } }, new double[] { 1.0, 3.0 }));
+        // parallel rows with different right-hand sides
+        assertRejected(F, new LinearEqualityConstraint(
+                new double[][] { { 1.0, 1.0, 0.0 }, { 2.0, 2.0, 0.0 } }, new double[] { 1.0, 3.0 }));
+    }
+
+    @Test
+    public void test_pinned_outside_bounds() {
+        assertRejected(F, new LinearEqualityConstraint(new double[][] { { 1.0, 0.0, 0.0 } }, new double[] { 5.0 }),
+                new SimpleBounds(new double[] { 0.0, 0.0, 0.0 }, new double[] { 3.0, 3.0, 3.0 }));
+    }
+
+    @Test
+    public void test_infeasible_rows() {
+        // 0 < -1
+        assertRejected(F, ineq(new double[][] { { 0.0, 0.0, 0.0 } }, new double[] { -1.0 }));
+        // x0 < 1 and x0 > 2
+        assertRejected(F, ineq(new double[][] { { 1.0, 0.0, 0.0 }, { -1.0, 0.0, 0.0 } }, new double[] { 1.0, -2.0 }));
+        // x2 = 1 makes x0 + x2 < 1 into x0 < 0, against x0 > 0.5
+        assertRejected(F, ineq(new double[][] { { 1.0, 0.0, 1.0 }, { -1.0, 0.0, 0.0 } }, new double[] { 1.0, -0.5 }),
+                new LinearEqualityConstraint(new double[][] { { 0.0, 0.0, 1.0 } }, new double[] { 1.0 }));
+    }
+
+    @Test
+    public void test_unsupported_constraints() {
+        LinearInequalityConstraint rows = ineq(new double[][] { { 1.0, 1.0, 1.0 } }, new double[] { 1.0 });
+        assertRejected(F, LinearConstraintBlock.pack(rows.lcf));
+        assertRejected(F, new LinearConstraintSet(new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0, 1.0 } }),
+                new ArrayRealVector(new double[] { 1.0 })));
+        SparseMatrix a = SparseMatrix.fromDense(new double[][] { { 1.0, 1.0, 1.0 } });
+        assertRejected(F, new SparseLinearInequalityConstraint(a, new double[] { 1.0 }));
+        assertRejected(F, new SparseLinearEqualityConstraint(a, new double[] { 1.0 }));
+    }
+
+    @Test
+    public void test_all_fixed() {
+        // x0 = 1, then x0 + x1 = 3, then x1 + x2 = 2: every variable is pinned in turn
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0, 1.0 }, { 1.0, 1.0, 0.0 }, { 1.0, 0.0, 0.0 } },
+                new double[] { 2.0, 3.0, 1.0 });
+        LinearInequalityConstraint ineqc = ineq(new double[][] { { 1.0, 1.0, 1.0 } }, new double[] { 5.0 });
+        Presolve.Reduction r = new Presolve().reduce(F, ineqc, eqc);
+        assertNull(r.getData());
+        assertEquals(3, r.getFixedVariables());
+        BarrierOptimizer optimizer = new BarrierOptimizer();
+        PointValuePair pvp = optimizer.optimize(F, ineqc, eqc, new Presolve());
+        assertArrayEquals(new double[] { 1.0, 2.0, 0.0 }, pvp.getPoint(), 0.0);
+        assertEquals(((QuadraticFunction) F.getObjectiveFunction()).value(pvp.getPoint()), pvp.getValue(), 0.0);
+        assertNull(optimizer.getWarmStart());
+        // and the inequalities still have to hold at the fixed point
+        try {
+            optimizer.optimize(F, ineq(new double[][] { { 1.0, 1.0, 1.0 } }, new double[] { 2.0 }), eqc, new Presolve());
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
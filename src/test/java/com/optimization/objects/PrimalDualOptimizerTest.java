@@ -0,0 +1,126 @@
+package com.optimization.objects;
+
+import com.optimization.util.SparseMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class PrimalDualOptimizerTest {
+
+    private static final LinearInequalityConstraint INEQC = new LinearInequalityConstraint(
+            new Array2DRowRealMatrix(new double[][] {
+                    { -1.0, 0.0 },
+                    { 0.0, -1.0 },
+                    { -1.0, -3.0 },
+                    { 2.0, 5.0 },
+                    { 3.0, 4.0 }
+            }),
+            new ArrayRealVector(new double[] { 0.0,0.0,-15.0,100.0,80.0 }));
+
+    private static final LinearEqualityConstraint EQC = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 1.0 } },
+            new double[] { 14.0 });
+
+    private static OptimizationData[] args(boolean withEquality, OptimizationData... data) {
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>(Arrays.asList(data));
+        if (withEquality) args.add(EQC);
+        return args.toArray(new OptimizationData[0]);
+    }
+
+    @Test
+    public void test_matches_barrier() {
+        InitialGuess ig = new InitialGuess(ConvexOptimizer.feasiblePoint(INEQC).getFirst());
+        ConvexFunction[] objectives = new ConvexFunction[] {
+                new QuadraticFunction(
+                        new double[][] { { 1.0, 0.2 }, { 0.2, 0.5 } },
+                        new double[] { -17.0, 4.0 },
+                        0.0),
+                new LinearFunction(new ArrayRealVector(new double[] { -1.0, -2.0 }), 0.0)
+        };
+        for (ConvexFunction f: objectives) {
+            for (boolean withEquality: new boolean[] { false, true }) {
+                BarrierOptimizer barrier = new BarrierOptimizer();
+                PointValuePair pb = barrier.optimize(args(withEquality, new ObjectiveFunction(f), INEQC, ig));
+                PrimalDualOptimizer pd = new PrimalDualOptimizer();
+                PointValuePair pp = pd.optimize(args(withEquality, new ObjectiveFunction(f), INEQC, ig));
+                assertArrayEquals(pb.getFirst(), pp.getFirst(), 1e-6);
+                assertEquals(pb.getSecond(), pp.getSecond(), 1e-6);
+                // one factorization per iteration, against one per Newton step
+                assertTrue(2 * pd.getIterations() < barrier.getNewtonIterations());
+                assertEquals(5, pd.getInequalityDual().length);
+                assertEquals(withEquality, pd.getDual() != null);
+            }
+        }
+    }
+
+    @Test
+    public void test_infeasible_start_equality() {
+        // the equality constraint need not hold at the initial guess
+        PrimalDualOptimizer pd = new PrimalDualOptimizer();
+        PointValuePair pp = pd.optimize(
+                new ObjectiveFunction(new QuadraticFunction(
+                        new double[][] { { 1.0, 0.0 }, { 0.0, 1.0 } },
+                        new double[] { 0.0, 0.0 },
+                        0.0)),
+                INEQC, EQC, new InitialGuess(new double[] { 1.0, 5.0 }));
+        assertArrayEquals(new double[] { 7.0, 7.0 }, pp.getFirst(), 1e-8);
+        // grad + AT.nu = 0 at the optimum, where no inequality is active
+        assertEquals(-7.0, pd.getDual()[0], 1e-6);
+    }
+
+    @Test
+    public void test_other_constraint_types() {
+        // the unconstrained optimum (1, 1) is cut off by x0 + x1 < 1, or by x < 0.5
+        ObjectiveFunction f = new ObjectiveFunction(new QuadraticFunction(
+                new double[][] { { 1.0, 0.0 }, { 0.0, 1.0 } },
+                new double[] { -1.0, -1.0 },
+                0.0));
+        InitialGuess ig = new InitialGuess(new double[] { 0.0, 0.0 });
+        Array2DRowRealMatrix a = new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0 } });
+        ArrayRealVector b = new ArrayRealVector(new double[] { 1.0 });
+        SimpleBounds bounds = new SimpleBounds(new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY },
+                new double[] { 0.5, 0.5 });
+        for (OptimizationData constraint: new OptimizationData[] { LinearConstraintBlock.direct(a, b),
+                new LinearConstraintBlock(a, b), new LinearConstraintSet(a, b), bounds }) {
+            PointValuePair pb = new BarrierOptimizer().optimize(f, constraint, ig);
+            PrimalDualOptimizer pd = new PrimalDualOptimizer();
+            PointValuePair pp = pd.optimize(f, constraint, ig);
+            assertArrayEquals(new double[] { 0.5, 0.5 }, pp.getFirst(), 1e-6);
+            assertArrayEquals(pb.getFirst(), pp.getFirst(), 1e-6);
+            assertEquals((constraint == bounds) ? 2 : 1, pd.getInequalityDual().length);
+        }
+        // stacked with dense rows x > -5
+        LinearInequalityConstraint dense = new LinearInequalityConstraint(
+                new Array2DRowRealMatrix(new double[][] { { -1.0, 0.0 }, { 0.0, -1.0 } }),
+                new ArrayRealVector(new double[] { 5.0, 5.0 }));
+        PrimalDualOptimizer pd = new PrimalDualOptimizer();
+        PointValuePair pp = pd.optimize(f, dense, LinearConstraintBlock.direct(a, b), bounds, ig);
+        assertArrayEquals(new double[] { 0.5, 0.5 }, pp.getFirst(), 1e-6);
+        assertEquals(2 + 1 + 2, pd.getInequalityDual().length);
+    }
+
+    @Test
+    public void test_rejects_sparse_constraints() {
+        ObjectiveFunction f = new ObjectiveFunction(new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0 }), 0.0));
+        SparseMatrix a = SparseMatrix.fromDense(new double[][] { { 1.0, 1.0 } });
+        for (OptimizationData constraint: new OptimizationData[] {
+                new SparseLinearInequalityConstraint(a, new double[] { 1.0 }),
+                new SparseLinearEqualityConstraint(a, new double[] { 1.0 }) }) {
+            try {
+                new PrimalDualOptimizer().optimize(f, INEQC, constraint, new InitialGuess(new double[] { 1.0, 1.0 }));
+                fail("expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class KKTSolverTest {
+
+    @Test
+    public void test_factorization_fallback() {
+        RealVector g = new ArrayRealVector(new double[] { 1.0, 2.0 });
+
+        RealMatrix pd = new Array2DRowRealMatrix(new double[][] { { 4.0, 1.0 }, { 1.0, 3.0 } });
+        KKTSolution s1 = new KKTSolver().solve(pd, g);
+        assertEquals(KKTSolver.Factorization.CHOLESKY, s1.hessianFactorization);
+        KKTSolution r1 = new KKTSolver(KKTSolver.Factorization.SVD).solve(pd, g);
+        assertArrayEquals(r1.xDelta.toArray(), s1.xDelta.toArray(), 1e-12);
+        assertEquals(r1.lambdaSquared, s1.lambdaSquared, 1e-12);
+
+        RealMatrix indefinite = new Array2DRowRealMatrix(new double[][] { { 1.0, 2.0 }, { 2.0, 1.0 } });
+        assertEquals(KKTSolver.Factorization.LU, new KKTSolver().solve(indefinite, g).hessianFactorization);
+
+        RealMatrix singular = new Array2DRowRealMatrix(new double[][] { { 1.0, 0.0 }, { 0.0, 0.0 } });
+        assertEquals(KKTSolver.Factorization.SVD, new KKTSolver().solve(singular, g).hessianFactorization);
+    }
+
+    @Test
+    public void test_equality_constrained() {
+        RealMatrix H = new Array2DRowRealMatrix(new double[][] {
+                { 4.0, 1.0, 0.0 },
+                { 1.0, 3.0, 1.0 },
+                { 0.0, 1.0, 2.0 } });
+        RealMatrix A = new Array2DRowRealMatrix(new double[][] { { 1.0, 1.0, 1.0 } });
+        RealVector g = new ArrayRealVector(new double[] { 1.0, -2.0, 0.5 });
+        RealVector h = new ArrayRealVector(new double[] { 0.25 });
+
+        KKTSolution fast = new KKTSolver().solve(H, A, A.transpose(), g, h);
+        KKTSolution ref = new KKTSolver(KKTSolver.Factorization.SVD).solve(H, A, A.transpose(), g, h);
+        assertEquals(KKTSolver.Factorization.CHOLESKY, fast.hessianFactorization);
+        assertEquals(KKTSolver.Factorization.CHOLESKY, fast.schurFactorization);
+        assertArrayEquals(ref.xDelta.toArray(), fast.xDelta.toArray(), 1e-12);
+        assertArrayEquals(ref.nuPlus.toArray(), fast.nuPlus.toArray(), 1e-12);
+        // A.v = -h
+        assertEquals(-0.25, A.operate(fast.xDelta).getEntry(0), 1e-12);
+    }
+
+    @Test
+    public void test_low_rank() {
+        double[][] u = { { 1.0, -0.5, 0.25, 2.0 }, { 0.0, 1.5, -1.0, 0.5 } };
+        double[][] A = { { 1.0, 1.0, 1.0, 1.0 } };
+        double[] g = { 1.0, -2.0, 0.5, 3.0 };
+        double[] h = { 0.25 };
+        for (double[] d: new double[][] { { 2.0, 0.5, 1.0, 3.0 }, { 2.0, 0.0, 1.0, 3.0 } }) {
+            double[][] H = new double[4][4];
+            for (int i = 0; i < 4; ++i) {
+                H[i][i] = d[i];
+                for (double[] ua: u)
+                    for (int j = 0; j < 4; ++j) H[i][j] += ua[i] * ua[j];
+            }
+            RealMatrix Am = new Array2DRowRealMatrix(A);
+            KKTSolution ref = new KKTSolver(KKTSolver.Factorization.SVD).solve(
+                    new Array2DRowRealMatrix(H), Am, Am.transpose(), new ArrayRealVector(g), new ArrayRealVector(h));
+            KKTSolution refFree = new KKTSolver(KKTSolver.Factorization.SVD).solve(
+                    new Array2DRowRealMatrix(H), new ArrayRealVector(g));
+            for (int p = 0; p <= 1; ++p) {
+                NewtonWorkspace ws = new NewtonWorkspace();
+                ws.ensureLowRank(4, p, u.length);
+                System.arraycopy(d, 0, ws.lowRankD, 0, 4);
+                for (int a = 0; a < u.length; ++a) System.arraycopy(u[a], 0, ws.lowRankU[a], 0, 4);
+                double[] v = new double[4];
+                double[] w = new double[p];
+                KKTSolver kkt = new KKTSolver();
+                kkt.solveLowRank((p > 0) ? A : null, g, (p > 0) ? h : new double[0], v, w, ws);
+                // a zero in d falls back to the dense solve
+                assertEquals(d[1] > 0.0, ws.lowRank);
+                KKTSolution expected = (p > 0) ? ref : refFree;
+                assertArrayEquals(expected.xDelta.toArray(), v, 1e-12);
+                if (p > 0) assertArrayEquals(ref.nuPlus.toArray(), w, 1e-12);
+                // again from the factors left in ws
+                kkt.resolve(ws.hess, (p > 0) ? A : null, g, (p > 0) ? h : new double[0], v, w, ws);
+                assertArrayEquals(expected.xDelta.toArray(), v, 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.optimization.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class KernelsTest {
+
+    private static double[] random(final Random rng, final int n) {
+        double[] x = new double[n];
+        for (int j = 0; j < n; ++j) x[j] = rng.nextDouble() - 0.5;
+        return x;
+    }
+
+    @Test
+    public void test_dot() {
+        Random rng = new Random(17L);
+        double[] a = random(rng, 16);
+        double[] b = random(rng, 16);
+        // every remainder of the 4-way unroll, and more than one unrolled pass, at several offsets
+        for (int n = 0; n <= 9; ++n) {
+            for (int ao = 0; ao <= 3; ++ao) {
+                for (int bo = 0; bo <= 2; ++bo) {
+                    double expected = 0.0;
+                    for (int j = 0; j < n; ++j) expected += a[ao + j] * b[bo + j];
+                    assertEquals(expected, Kernels.dot(a, ao, b, bo, n), 1e-15);
+                }
+            }
+        }
+        // exact on small integers, where no rounding hides a missed or repeated term
+        double[] u = { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0 };
+        assertEquals(0.0, Kernels.dot(u, 0, u, 0, 0), 0.0);
+        assertEquals(1.0 + 4.0 + 9.0 + 16.0 + 25.0, Kernels.dot(u, 0, u, 0, 5), 0.0);
+        assertEquals(2.0 * 3.0 + 3.0 * 4.0 + 4.0 * 5.0 + 5.0 * 6.0 + 6.0 * 7.0, Kernels.dot(u, 1, u, 2, 5), 0.0);
+    }
+
+    @Test
+    public void test_axpy_scale() {
+        Random rng = new Random(23L);
+        double[] x = random(rng, 12);
+        for (int n = 0; n <= 5; ++n) {
+            for (int xo = 0; xo <= 2; ++xo) {
+                for (int yo = 0; yo <= 2; ++yo) {
+                    double[] y = random(rng, 12);
+                    double[] expected = y.clone();
+                    for (int j = 0; j < n; ++j) expected[yo + j] += -1.5 * x[xo + j];
+                    Kernels.axpy(-1.5, x, xo, y, yo, n);
+                    // the entries outside [yo, yo + n) are untouched
+                    assertArrayEquals(expected, y, 0.0);
+                    for (int j = 0; j < n; ++j) expected[yo + j] *= 0.25;
+                    Kernels.scale(0.25, y, yo, n);
+                    assertArrayEquals(expected, y, 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_rank1_upper_symmetrize() {
+        Random rng = new Random(31L);
+        for (int n = 0; n <= 5; ++n) {
+            double[] u = random(rng, n + 1);
+            if (n > 1) u[1] = 0.0;
+            double[][] h = new double[n][];
+            for (int j = 0; j < n; ++j) h[j] = random(rng, n);
+            double[][] before = new double[n][];
+            for (int j = 0; j < n; ++j) before[j] = h[j].clone();
+            Kernels.rank1Upper(2.0, u, h, n);
+            for (int j = 0; j < n; ++j) {
+                for (int k = 0; k < n; ++k) {
+                    // the upper triangle is updated, the lower left alone
+                    double expected = before[j][k] + ((k >= j) ? 2.0 * u[j] * u[k] : 0.0);
+                    assertEquals(expected, h[j][k], 1e-15);
+                }
+            }
+            Kernels.symmetrize(h, n);
+            for (int j = 0; j < n; ++j) {
+                for (int k = 0; k < n; ++k) {
+                    assertEquals(h[Math.min(j, k)][Math.max(j, k)], h[j][k], 0.0);
+                    if (k >= j) assertEquals(before[j][k] + 2.0 * u[j] * u[k], h[j][k], 1e-15);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_exp_shifted() {
+        double[] x = { 9.0, 1.0, 2.0, 3.0, 800.0, 9.0 };
+        // the range [1, 5), shifted by its maximum, so that e^800 does not overflow
+        double z = Kernels.max(x, 1, 5);
+        assertEquals(800.0, z, 0.0);
+        double s = Kernels.expShifted(0.5, z, x, 1, 5);
+        double[] expected = { 9.0, Math.exp(-399.5), Math.exp(-399.0), Math.exp(-398.5), 1.0, 9.0 };
+        assertArrayEquals(expected, x, 0.0);
+        assertEquals(expected[1] + expected[2] + expected[3] + 1.0, s, 1e-15);
+        // an empty range
+        assertEquals(Double.NEGATIVE_INFINITY, Kernels.max(x, 2, 2), 0.0);
+        assertEquals(0.0, Kernels.expShifted(1.0, 0.0, x, 3, 3), 0.0);
+        assertArrayEquals(expected, x, 0.0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.optimization.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LBFGSSolverTest {
+
+    @Test
+    public void test_rejected_pair() {
+        for (int memory = 1; memory <= 3; ++memory) {
+            // pairs of f = x0^2 + 2.x1^2, with g = (2.x0, 4.x1), filling the memory
+            LBFGSSolver solver = new LBFGSSolver(memory, 0);
+            double[][] xs = { { 1.0, 1.0 }, { 0.5, 0.8 }, { 0.2, 0.5 }, { 0.1, 0.3 } };
+            for (double[] x: xs) solver.update(x, new double[] { 2.0 * x[0], 4.0 * x[1] });
+            assertEquals(memory, solver.getPairs());
+            double[] g = { 1.0, -0.5 };
+            double[] before = new double[2];
+            solver.direction(g, before, null);
+
+            // a step along which the gradient decreases: s.y < 0, so the pair is skipped,
+            // and the oldest pair in the ring is kept as it was
+            solver.update(new double[] { 0.3, 0.3 }, new double[] { -1.0, 1.2 });
+            assertEquals(memory, solver.getPairs());
+            double[] after = new double[2];
+            solver.direction(g, after, null);
+            assertArrayEquals(before, after, 0.0);
+            assertTrue(Kernels.dot(g, 0, after, 0, 2) < 0.0);
+        }
+    }
+
+    @Test
+    public void test_scaled_identity() {
+        // f = x^2: the pair s = 1, y = 2 scales the gradient by s.y/y.y = 0.5
+        LBFGSSolver solver = new LBFGSSolver(1, 0);
+        solver.update(new double[] { 0.0 }, new double[] { 0.0 });
+        solver.update(new double[] { 1.0 }, new double[] { 2.0 });
+        double[] d = new double[1];
+        assertEquals(0.5, solver.direction(new double[] { 1.0 }, d, null), 1e-15);
+        assertEquals(-0.5, d[0], 1e-15);
+        // s = 1, y = -0.5 fails the curvature condition
+        solver.update(new double[] { 2.0 }, new double[] { 1.5 });
+        assertEquals(1, solver.getPairs());
+        solver.direction(new double[] { 1.0 }, d, null);
+        assertEquals(-0.5, d[0], 1e-15);
+    }
+}
@@ -0,0 +1,140 @@
+package com.optimization.util;
+
+import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.LinearFunction;
+import com.optimization.objects.QuadraticFunction;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LogBarrierFunctionTest {
+
+    private static final QuadraticFunction F0 = new QuadraticFunction(
+            new double[][] { { 2.0, 0.5, 0.0 }, { 0.5, 1.0, 0.2 }, { 0.0, 0.2, 3.0 } },
+            new double[] { 1.0, -1.0, 0.5 }, 0.0);
+
+    // x0 + x1 + x2 < 2, -x0 + 0.5.x1 < 1, x1 - x2 < 1.5
+    private static ConvexFunction[] rows() {
+        return new ConvexFunction[] {
+                new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0, 1.0 }), -2.0),
+                new LinearFunction(new ArrayRealVector(new double[] { -1.0, 0.5, 0.0 }), -1.0),
+                new LinearFunction(new ArrayRealVector(new double[] { 0.0, 1.0, -1.0 }), -1.5) };
+    }
+
+    // lineEvaluate(s) must agree with evaluate(x + s.dx), in value and gradient
+    private static void assertLine(final ConvexFunction b, final double[] x, final double[] dx, final double[] steps) {
+        assertTrue(b.beginLine(x, dx));
+        for (double s: steps) {
+            double[] xs = new double[x.length];
+            for (int j = 0; j < x.length; ++j) xs[j] = x[j] + s * dx[j];
+            double[] g = new double[x.length];
+            double[] ge = new double[x.length];
+            double v = b.lineEvaluate(s, g);
+            double ve = b.evaluate(xs, ge, null);
+            if (Double.isInfinite(ve)) {
+                assertEquals(Double.POSITIVE_INFINITY, v, 0.0);
+                assertEquals(Double.POSITIVE_INFINITY, b.lineEvaluate(s, null), 0.0);
+                continue;
+            }
+            assertEquals(ve, v, 1e-12 * (1.0 + Math.abs(ve)));
+            assertArrayEquals(ge, g, 1e-10);
+            assertEquals(v, b.lineEvaluate(s, null), 0.0);
+        }
+    }
+
+    @Test
+    public void test_line_evaluate() {
+        LogBarrierFunction b = new LogBarrierFunction(2.5, F0, rows());
+        double[] x = { 0.2, -0.3, 0.1 };
+        double[] dx = { 0.5, 1.0, -0.25 };
+        double[] steps = { 0.0, 0.1, 0.5, 1.0, 1.2, 1.5, 5.0 };
+        assertLine(b, x, dx, steps);
+        // the line terms of the ratio test, when maxStep came first, are the same
+        assertTrue(b.maxStep(x, dx) < 5.0);
+        assertLine(b, x, dx, steps);
+
+        // with bounds -1 < x0, x1 < 1, -0.5 < x2 < 2; a step of 1.5 crosses x1 < 1
+        b.setBounds(new double[] { -1.0, Double.NEGATIVE_INFINITY, -0.5 },
+                new double[] { Double.POSITIVE_INFINITY, 1.0, 2.0 });
+        assertLine(b, x, dx, steps);
+        assertEquals(Double.POSITIVE_INFINITY, b.lineEvaluate(1.5, null), 0.0);
+        double[] back = { -0.5, -0.25, 0.1 };
+        assertLine(b, x, back, new double[] { 0.0, 0.5, 1.0, 2.0, 3.0 });
+
+        // a new t is used by the next line
+        b.setT(10.0);
+        assertLine(b, x, dx, steps);
+    }
+
+    @Test
+    public void test_default_begin_line() {
+        double[] x = { 0.2, -0.3, 0.1 };
+        double[] dx = { 0.5, 1.0, -0.25 };
+        assertFalse(F0.beginLine(x, dx));
+        try {
+            F0.lineEvaluate(0.5, null);
+            fail("expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        // a constraint that is not linear has no line restriction
+        ConvexFunction ball = QuadraticFunction.nBallConstraintFunction(
+                new ArrayRealVector(new double[] { 0.0, 0.0, 0.0 }), 2.0, 1.0);
+        assertFalse(new LogBarrierFunction(1.0, F0, new ConvexFunction[] { ball }).beginLine(x, dx));
+        // nor does a point outside the domain
+        LogBarrierFunction b = new LogBarrierFunction(1.0, F0, rows());
+        assertFalse(b.beginLine(new double[] { 2.0, 2.0, 2.0 }, dx));
+    }
+
+    @Test
+    public void test_max_step() {
+        double[] x = { 0.2, -0.3, 0.1 };
+        double[] dx = { 0.5, 1.0, -0.25 };
+        // the rows are at -2, -1.35 and -1.9, and move by 1.25, 0 and 1.25: min(2/1.25, 1.9/1.25)
+        LogBarrierFunction b = new LogBarrierFunction(1.0, F0, rows());
+        assertEquals(1.52, b.maxStep(x, dx), 1e-15);
+        // with x1 < 1 at 1.3/1, and x2 > -0.5 at 0.6/0.25
+        b.setBounds(new double[] { -1.0, Double.NEGATIVE_INFINITY, -0.5 },
+                new double[] { Double.POSITIVE_INFINITY, 1.0, 2.0 });
+        assertEquals(1.3, b.maxStep(x, dx), 1e-15);
+        // the same rows, as G.x < h
+        SparseMatrix g = SparseMatrix.fromDense(new double[][] {
+                { 1.0, 1.0, 1.0 }, { -1.0, 0.5, 0.0 }, { 0.0, 1.0, -1.0 } });
+        SparseLogBarrierFunction sb = new SparseLogBarrierFunction(1.0, F0, g, new double[] { 2.0, 1.0, 1.5 });
+        assertEquals(1.52, sb.maxStep(x, dx), 1e-15);
+    }
+
+    @Test
+    public void test_line_after_max_step() {
+        double[] x = { 0.2, -0.3, 0.1 };
+        double[] dx = { 0.5, 1.0, -0.25 };
+        double[] steps = { 0.0, 0.5, 1.0 };
+        SparseMatrix g = SparseMatrix.fromDense(new double[][] {
+                { 1.0, 1.0, 1.0 }, { -1.0, 0.5, 0.0 }, { 0.0, 1.0, -1.0 } });
+        LogBarrierFunction b = new LogBarrierFunction(1.5, F0, rows());
+        SparseLogBarrierFunction sb = new SparseLogBarrierFunction(1.5, F0, g, new double[] { 2.0, 1.0, 1.5 });
+        for (ConvexFunction f: new ConvexFunction[] { b, sb }) {
+            // the line reuses the ratio test products of the same x and dx
+            x = new double[] { 0.2, -0.3, 0.1 };
+            dx = new double[] { 0.5, 1.0, -0.25 };
+            f.maxStep(x, dx);
+            assertLine(f, x, dx, steps);
+            // but not once x or dx have changed in place
+            f.maxStep(x, dx);
+            x[0] = -0.4;
+            assertLine(f, x, dx, steps);
+            f.maxStep(x, dx);
+            dx[2] = 0.25;
+            assertLine(f, x, dx, steps);
+            // nor after a line has been started
+            f.maxStep(x, dx);
+            double[] y = { 0.0, 0.0, 0.0 };
+            assertLine(f, y, dx, steps);
+            assertLine(f, x, dx, steps);
+        }
+        // nor once the constraints have changed
+        b.maxStep(x, dx);
+        b.setLinearConstraints(new double[] { 1.0, 0.0, 0.0 }, new double[] { -1.0 }, 1);
+        assertLine(b, x, dx, steps);
+    }
+}
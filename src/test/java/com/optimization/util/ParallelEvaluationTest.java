@@ -0,0 +1,65 @@
+package com.optimization.util;
+
+import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.LinearFunction;
+import com.optimization.objects.QuadraticFunction;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelEvaluationTest {
+
+    private final ForkJoinPool pool2 = new ForkJoinPool(2);
+    private final ForkJoinPool pool3 = new ForkJoinPool(3);
+
+    @After
+    public void shutdown() {
+        pool2.shutdown();
+        pool3.shutdown();
+    }
+
+    // random constraints a.x - 1 <= 0 (feasible at x = 0), plus an n-ball
+    private static ConvexFunction[] constraints(int m, int n) {
+        Random rnd = new Random(17);
+        ConvexFunction[] f = new ConvexFunction[m + 1];
+        for (int k = 0; k < m; ++k) {
+            double[] a = new double[n];
+            for (int j = 0; j < n; ++j) a[j] = rnd.nextGaussian();
+            f[k] = new LinearFunction(new ArrayRealVector(a), -1.0);
+        }
+        f[m] = QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(n, 0.0), 10.0, 1.0);
+        return f;
+    }
+
+    @Test
+    public void test_parallel_matches_sequential() {
+        final int n = 4;
+        ConvexFunction[] f = constraints(37, n);
+        ConvexFunction f0 = QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(n, 1.0), 1.0, 2.0);
+        double[] x = { 0.01, -0.02, 0.03, 0.0 };
+        ParallelEvaluation pe2 = new ParallelEvaluation(pool2, 5);
+        ParallelEvaluation pe3 = new ParallelEvaluation(pool3, 5);
+
+        ConvexFunction[] seq = { new LogBarrierFunction(3.0, f0, f), new SmoothMaxFunction(2.0, f) };
+        ConvexFunction[] par2 = { new LogBarrierFunction(3.0, f0, f, pe2), new SmoothMaxFunction(2.0, pe2, f) };
+        ConvexFunction[] par3 = { new LogBarrierFunction(3.0, f0, f, pe3), new SmoothMaxFunction(2.0, pe3, f) };
+        for (int i = 0; i < seq.length; ++i) {
+            double[] gs = new double[n], g2 = new double[n], g3 = new double[n];
+            double[][] hs = new double[n][n], h2 = new double[n][n], h3 = new double[n][n];
+            double vs = seq[i].evaluate(x, gs, hs);
+            double v2 = par2[i].evaluate(x, g2, h2);
+            double v3 = par3[i].evaluate(x, g3, h3);
+            assertEquals(vs, v2, 1e-12);
+            assertArrayEquals(gs, g2, 1e-12);
+            for (int j = 0; j < n; ++j) assertArrayEquals(hs[j], h2[j], 1e-12);
+            // reduction order is fixed by the chunk size, not by the pool
+            assertEquals(v2, v3, 0.0);
+            assertArrayEquals(g2, g3, 0.0);
+            for (int j = 0; j < n; ++j) assertArrayEquals(h2[j], h3[j], 0.0);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.optimization.util;
+
+import com.optimization.objects.ConvexFunction;
+import com.optimization.objects.LinearConstraintBlock;
+import com.optimization.objects.LinearFunction;
+import com.optimization.objects.QuadraticFunction;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SmoothMaxFunctionTest {
+
+    // (1/a)log(sum(e^(a f[k]))), its gradient sum(p[k].g[k]) and its Hessian
+    // sum(p[k].(H[k] + a.g[k].g[k]T)) - a.gm.gmT, shifted by the maximum z of f[k]
+    private static double expected(final double alpha, final ConvexFunction[] f, final double[] x,
+                                   final double[] g, final double[][] h) {
+        final int n = x.length;
+        double[] v = new double[f.length];
+        double z = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < f.length; ++k) {
+            v[k] = f[k].value(x);
+            z = Math.max(z, v[k]);
+        }
+        double s = 0.0;
+        for (int k = 0; k < f.length; ++k) s += Math.exp(alpha * (v[k] - z));
+        for (int k = 0; k < f.length; ++k) {
+            final double p = Math.exp(alpha * (v[k] - z)) / s;
+            double[] gk = new double[n];
+            double[][] hk = new double[n][n];
+            f[k].gradient(x, gk);
+            f[k].hessian(x, hk);
+            for (int i = 0; i < n; ++i) {
+                g[i] += p * gk[i];
+                for (int j = 0; j < n; ++j) h[i][j] += p * (hk[i][j] + alpha * gk[i] * gk[j]);
+            }
+        }
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j) h[i][j] -= alpha * g[i] * g[j];
+        return z + (Math.log(s) / alpha);
+    }
+
+    private static void assertMatches(final double alpha, final ConvexFunction smax, final ConvexFunction[] f,
+                                      final double[] x) {
+        final int n = x.length;
+        double[] ge = new double[n];
+        double[][] he = new double[n][n];
+        double ve = expected(alpha, f, x, ge, he);
+        double[] g = new double[n];
+        double[][] h = new double[n][n];
+        double v = smax.evaluate(x, g, h);
+        assertFalse(Double.isInfinite(v) || Double.isNaN(v));
+        assertEquals(ve, v, 1e-12 * Math.abs(ve));
+        for (int i = 0; i < n; ++i) {
+            assertFalse(Double.isInfinite(g[i]) || Double.isNaN(g[i]));
+            assertEquals(ge[i], g[i], 1e-9);
+            for (int j = 0; j < n; ++j) {
+                assertFalse(Double.isInfinite(h[i][j]) || Double.isNaN(h[i][j]));
+                assertEquals(he[i][j], h[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void test_large_values() {
+        // values of about 1e3, where e^(a f[k]) overflows without the shift by the maximum
+        final double alpha = 2.0;
+        double[] x = { 0.3, -0.2, 0.1 };
+        LinearFunction[] rows = {
+                new LinearFunction(new ArrayRealVector(new double[] { 1.0, 1.0, 1.0 }), 1000.0),
+                new LinearFunction(new ArrayRealVector(new double[] { -1.0, 0.5, 0.0 }), 999.5),
+                new LinearFunction(new ArrayRealVector(new double[] { 0.0, 1.0, -1.0 }), 1000.2) };
+        QuadraticFunction q = new QuadraticFunction(
+                new double[][] { { 4.0, 1.0, 0.0 }, { 1.0, 3.0, 1.0 }, { 0.0, 1.0, 2.0 } },
+                new double[] { 1.0, -2.0, 0.5 }, 1000.1);
+        assertTrue(Double.isInfinite(Math.exp(alpha * q.value(x))));
+        ConvexFunction[] all = { rows[0], rows[1], rows[2], q };
+
+        assertMatches(alpha, new SmoothMaxFunction(alpha, all), all, x);
+        assertMatches(alpha, new SmoothMaxFunction(alpha, null, LinearConstraintBlock.pack(rows), q), all, x);
+        // the maximum among the linear rows, and among the other functions
+        double[] y = { 0.5, 0.5, 0.0 };
+        assertTrue(rows[0].value(y) > q.value(y));
+        assertMatches(alpha, new SmoothMaxFunction(alpha, null, LinearConstraintBlock.pack(rows), q), all, y);
+        assertMatches(alpha, new SmoothMaxFunction(alpha, all), all, y);
+    }
+}
@@ -0,0 +1,89 @@
+package com.optimization.util;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class SparseKKTSolverTest {
+
+    // a random sparse SPD matrix: a tridiagonal band plus a few random couplings
+    private static double[][] sparseSPD(int n, Random rnd) {
+        double[][] h = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            h[i][i] = 4.0 + rnd.nextDouble();
+            if (i + 1 < n) h[i][i + 1] = h[i + 1][i] = -1.0;
+        }
+        for (int k = 0; k < n / 2; ++k) {
+            int i = rnd.nextInt(n), j = rnd.nextInt(n);
+            if (i != j) {
+                h[i][j] = h[j][i] = 0.5;
+                h[i][i] += 0.5;
+                h[j][j] += 0.5;
+            }
+        }
+        return h;
+    }
+
+    @Test
+    public void test_matches_dense() {
+        Random rnd = new Random(3);
+        final int n = 40, p = 5;
+        double[][] h = sparseSPD(n, rnd);
+        double[][] a = new double[p][n];
+        for (int k = 0; k < p; ++k)
+            for (int l = 0; l < 3; ++l) a[k][rnd.nextInt(n)] = rnd.nextGaussian();
+        double[] g = new double[n];
+        for (int j = 0; j < n; ++j) g[j] = rnd.nextGaussian();
+        double[] r = { 0.1, -0.2, 0.3, 0.0, 1.0 };
+
+        RealMatrix H = new Array2DRowRealMatrix(h);
+        RealMatrix A = new Array2DRowRealMatrix(a);
+        KKTSolution ref = new KKTSolver(KKTSolver.Factorization.SVD).solve(H, A, A.transpose(),
+                new ArrayRealVector(g), new ArrayRealVector(r));
+        KKTSolution ref0 = new KKTSolver().solve(H, new ArrayRealVector(g));
+
+        SparseKKTSolver solver = new SparseKKTSolver();
+        SparseMatrix hs = SparseMatrix.upperFromDense(h);
+        SparseMatrix as = SparseMatrix.fromDense(a);
+        double[] v = new double[n], w = new double[p];
+        for (int rep = 0; rep < 2; ++rep) {
+            // the second pass reuses the symbolic analysis
+            solver.solve(hs, as, g, r, v, w);
+            assertArrayEquals(ref.xDelta.toArray(), v, 1e-10);
+            assertArrayEquals(ref.nuPlus.toArray(), w, 1e-10);
+            double lsq = solver.solve(hs, g, v);
+            assertArrayEquals(ref0.xDelta.toArray(), v, 1e-10);
+            assertEquals(ref0.lambdaSquared, lsq, 1e-10);
+        }
+        // a banded matrix with a few couplings factors with little fill
+        assertTrue(solver.factorNonZeros() < (n * n) / 4);
+    }
+
+    @Test
+    public void test_minimum_degree_arrow() {
+        // an arrow matrix: row 0 is dense. Eliminated first it would fill the whole factor,
+        // so minimum degree must eliminate it (next to) last, and L has no fill at all.
+        final int n = 50;
+        double[][] h = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            h[i][i] = n;
+            h[0][i] = h[i][0] = 1.0;
+        }
+        SparseLDL ldl = new SparseLDL(SparseMatrix.upperFromDense(h));
+        assertTrue((ldl.getPermutation()[n - 1] == 0) || (ldl.getPermutation()[n - 2] == 0));
+        assertEquals(n - 1, ldl.factorNonZeros());
+        SparseMatrix hs = SparseMatrix.upperFromDense(h);
+        ldl.factor(hs.values);
+        double[] b = new double[n];
+        java.util.Arrays.fill(b, 1.0);
+        double[] x = new double[n];
+        ldl.solve(b, x);
+        double[] hx = new double[n];
+        hs.symmetricMultiply(x, hx);
+        assertArrayEquals(b, hx, 1e-12);
+    }
+}